@@ -17,11 +17,31 @@
 
 package co.com.leronarenwino;
 
+import co.com.leronarenwino.cli.EnginesCommand;
+import co.com.leronarenwino.cli.GenerateCommand;
+import co.com.leronarenwino.cli.LoadCommand;
+import co.com.leronarenwino.cli.RenderCommand;
+import co.com.leronarenwino.cli.SnapshotCommand;
+import co.com.leronarenwino.cli.SuiteCommand;
 import co.com.leronarenwino.editor.TemplateEditor;
 
 public class Main {
     public static void main(String[] args) {
 
+        // Command line tools run without opening the editor
+        if (args.length > 0) {
+            switch (args[0]) {
+                case "--suite" -> System.exit(SuiteCommand.run(args));
+                case "--generate" -> System.exit(GenerateCommand.run(args));
+                case "--load" -> System.exit(LoadCommand.run(args));
+                case "--render" -> System.exit(RenderCommand.run(args));
+                case "--snapshot" -> System.exit(SnapshotCommand.run(args));
+                case "--engines" -> System.exit(EnginesCommand.run(args));
+                default -> {
+                    // Anything else opens the editor
+                }
+            }
+        }
 
         // Create and display the form
         java.awt.EventQueue.invokeLater(() -> new TemplateEditor().setVisible(true));
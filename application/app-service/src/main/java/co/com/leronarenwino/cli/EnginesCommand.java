@@ -0,0 +1,182 @@
+/*
+ * This file is part of FreeMarker JSON/XML Toolkit.
+ *
+ * FreeMarker JSON/XML Toolkit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FreeMarker JSON/XML Toolkit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with FreeMarker JSON/XML Toolkit. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package co.com.leronarenwino.cli;
+
+import co.com.leronarenwino.CompiledTemplate;
+import co.com.leronarenwino.CompilingProcessor;
+import co.com.leronarenwino.FreemarkerProcessor;
+import co.com.leronarenwino.TemplateValidator;
+import co.com.leronarenwino.datamodel.DataUsage;
+import co.com.leronarenwino.diff.LineDiff;
+import co.com.leronarenwino.diff.MyersDiff;
+
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Checks the compiled engine against FreeMarker from the command line:
+ * {@code --engines --template <file>[,...] --data <file|dir>[,...] [--iterations <n>] [--warmup <n>]}.
+ * <p>
+ * Every template is rendered with every data model by both engines. The outputs must
+ * be identical, or both renders must fail; the first differing line is shown otherwise.
+ * Then both engines render the models the given number of times, after the warmup
+ * renders, and the mean time per render and the speedup are printed. The exit code
+ * is 1 when any output differs.
+ */
+public class EnginesCommand {
+
+    private static final String USAGE = "Usage: --engines --template <file>[,...] --data <file|dir>[,...] "
+            + "[--iterations <n>] [--warmup <n>]";
+
+    private EnginesCommand() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    public static int run(String[] args) {
+        List<Path> templates = new ArrayList<>();
+        String data = null;
+        int iterations = 20;
+        int warmup = 10;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--engines" -> {
+                        // Selects this command
+                    }
+                    case "--template" -> {
+                        for (String file : args[++i].split(",")) {
+                            if (!file.isBlank()) templates.add(Path.of(file.trim()));
+                        }
+                    }
+                    case "--data" -> data = args[++i];
+                    case "--iterations" -> iterations = Integer.parseInt(args[++i]);
+                    case "--warmup" -> warmup = Integer.parseInt(args[++i]);
+                    default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException | IllegalArgumentException e) {
+            System.err.println(e instanceof ArrayIndexOutOfBoundsException ? "Missing option value" : e.getMessage());
+            templates.clear();
+        }
+        if (templates.isEmpty() || data == null || iterations < 0 || warmup < 0) {
+            System.err.println(USAGE);
+            return 2;
+        }
+
+        SuiteCommand.loadEditorSettings();
+        FreemarkerProcessor interpreter = new FreemarkerProcessor();
+        CompilingProcessor compiler = new CompilingProcessor();
+        int differences = 0;
+        try {
+            List<Path> dataFiles = LoadCommand.dataFiles(data);
+            for (Path template : templates) {
+                String templateContent = Files.readString(template);
+                String fallbackReason = compiler.fallbackReason(templateContent);
+                System.out.printf("%s: %s%n", template,
+                        fallbackReason == null ? "compiled" : "rendered by FreeMarker (" + fallbackReason + ")");
+                CompiledTemplate interpreted = interpreter.compile(templateContent);
+                CompiledTemplate compiled = compiler.compile(templateContent);
+                DataUsage usage = interpreter.analyzeUsage(templateContent);
+                List<Map<String, Object>> rendered = new ArrayList<>();
+                for (Path file : dataFiles) {
+                    Map<String, Object> dataModel = TemplateValidator.readDataFile(file, usage);
+                    Outcome expected = render(interpreted, dataModel);
+                    Outcome actual = render(compiled, dataModel);
+                    if (expected.failed() && actual.failed()) {
+                        System.out.printf("  %s: both engines fail%n", file.getFileName());
+                    } else if (expected.failed() || actual.failed() || !expected.output().equals(actual.output())) {
+                        differences++;
+                        System.out.printf("  %s: DIFFERENT%n%s", file.getFileName(), describe(expected, actual));
+                    } else {
+                        rendered.add(dataModel);
+                    }
+                }
+                System.out.printf("  identical output for %d of %d data model(s)%n", rendered.size(), dataFiles.size());
+                if (iterations > 0 && !rendered.isEmpty()) {
+                    double interpretedMillis = time(interpreted, rendered, warmup, iterations);
+                    double compiledMillis = time(compiled, rendered, warmup, iterations);
+                    System.out.printf("  FreeMarker %.3f ms, compiled %.3f ms per render (%.2fx)%n",
+                            interpretedMillis, compiledMillis, interpretedMillis / compiledMillis);
+                }
+            }
+        } catch (Exception e) {
+            System.err.println("Engine comparison failed: " + e.getMessage());
+            return 1;
+        }
+        if (differences > 0) {
+            System.out.printf("%d render(s) differ%n", differences);
+            return 1;
+        }
+        return 0;
+    }
+
+    private static Outcome render(CompiledTemplate template, Map<String, Object> dataModel) {
+        StringWriter out = new StringWriter();
+        try {
+            template.render(dataModel, out);
+            return new Outcome(out.toString(), null);
+        } catch (Exception e) {
+            return new Outcome(out.toString(), e);
+        }
+    }
+
+    // The failure, or the first line that differs
+    private static String describe(Outcome expected, Outcome actual) {
+        if (expected.failed() != actual.failed()) {
+            Outcome failed = expected.failed() ? expected : actual;
+            return String.format("    only %s fails: %s%n", expected.failed() ? "FreeMarker" : "the compiled engine",
+                    failed.error().getMessage());
+        }
+        LineDiff diff = LineDiff.compute(expected.output(), actual.output());
+        MyersDiff.Edit edit = diff.getEdits().get(0);
+        return String.format("    line %d%n    FreeMarker: %s%n    compiled:   %s%n", edit.oldStart() + 1,
+                line(expected.output(), diff.oldOffset(edit.oldStart()), edit.isInsert()),
+                line(actual.output(), diff.newOffset(edit.newStart()), edit.isDelete()));
+    }
+
+    private static String line(String text, int start, boolean absent) {
+        if (absent) return "(no line)";
+        int end = text.indexOf('\n', start);
+        return text.substring(start, end < 0 ? text.length() : end).stripTrailing();
+    }
+
+    // Mean milliseconds per render over the data models
+    private static double time(CompiledTemplate template, List<Map<String, Object>> dataModels, int warmup,
+                               int iterations) throws Exception {
+        Writer out = Writer.nullWriter();
+        for (int i = 0; i < warmup; i++) {
+            for (Map<String, Object> dataModel : dataModels) template.render(dataModel, out);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            for (Map<String, Object> dataModel : dataModels) template.render(dataModel, out);
+        }
+        return (System.nanoTime() - start) / 1e6 / ((double) iterations * dataModels.size());
+    }
+
+    private record Outcome(String output, Exception error) {
+        boolean failed() {
+            return error != null;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * This file is part of FreeMarker JSON/XML Toolkit.
+ *
+ * FreeMarker JSON/XML Toolkit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FreeMarker JSON/XML Toolkit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with FreeMarker JSON/XML Toolkit. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package co.com.leronarenwino.cli;
+
+import co.com.leronarenwino.generator.DataGenerator;
+import co.com.leronarenwino.generator.Shape;
+import co.com.leronarenwino.generator.ShapeInference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedOutputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * Writes a synthetic data model from the command line:
+ * {@code --generate (--sample <file> | --schema <file>) --out <file> [--seed <n>]
+ * [--array-length <n>] [--depth <n>] [--string-length <n>] [--size <n>[KB|MB|GB]]}.
+ */
+public class GenerateCommand {
+
+    private static final String USAGE = "Usage: --generate (--sample <file> | --schema <file>) --out <file> [--seed <n>] "
+            + "[--array-length <n>] [--depth <n>] [--string-length <n>] [--size <n>[KB|MB|GB]]";
+
+    private GenerateCommand() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    public static int run(String[] args) {
+        Path sample = null;
+        Path schema = null;
+        Path out = null;
+        long seed = 42;
+        int arrayLength = 0;
+        int depth = 0;
+        int stringLength = 0;
+        long size = 0;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--generate" -> {
+                        // Selects this command
+                    }
+                    case "--sample" -> sample = Path.of(args[++i]);
+                    case "--schema" -> schema = Path.of(args[++i]);
+                    case "--out" -> out = Path.of(args[++i]);
+                    case "--seed" -> seed = Long.parseLong(args[++i]);
+                    case "--array-length" -> arrayLength = Integer.parseInt(args[++i]);
+                    case "--depth" -> depth = Integer.parseInt(args[++i]);
+                    case "--string-length" -> stringLength = Integer.parseInt(args[++i]);
+                    case "--size" -> size = parseSize(args[++i]);
+                    default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException | IllegalArgumentException e) {
+            System.err.println(e instanceof ArrayIndexOutOfBoundsException ? "Missing option value" : e.getMessage());
+            out = null;
+        }
+        if (out == null || (sample == null) == (schema == null)) {
+            System.err.println(USAGE);
+            return 2;
+        }
+
+        try {
+            ObjectMapper mapper = new ObjectMapper();
+            Shape shape = sample != null
+                    ? ShapeInference.fromSample(mapper.readTree(sample.toFile()))
+                    : ShapeInference.fromSchema(mapper.readTree(schema.toFile()));
+            DataGenerator.Options options = new DataGenerator.Options(seed, arrayLength, depth, stringLength, size);
+            long start = System.nanoTime();
+            long written;
+            try (OutputStream stream = new BufferedOutputStream(Files.newOutputStream(out), 1 << 16)) {
+                written = DataGenerator.generate(shape, options, stream);
+            }
+            System.out.printf("Wrote %,d bytes to %s in %d ms%n", written, out, (System.nanoTime() - start) / 1_000_000);
+            return 0;
+        } catch (Exception e) {
+            System.err.println("Generation failed: " + e.getMessage());
+            return 1;
+        }
+    }
+
+    static long parseSize(String text) {
+        String value = text.trim().toUpperCase(Locale.ROOT);
+        long unit = 1;
+        if (value.endsWith("KB")) unit = 1L << 10;
+        else if (value.endsWith("MB")) unit = 1L << 20;
+        else if (value.endsWith("GB")) unit = 1L << 30;
+        if (unit > 1) value = value.substring(0, value.length() - 2).trim();
+        return (long) (Double.parseDouble(value) * unit);
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * This file is part of FreeMarker JSON/XML Toolkit.
+ *
+ * FreeMarker JSON/XML Toolkit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FreeMarker JSON/XML Toolkit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with FreeMarker JSON/XML Toolkit. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package co.com.leronarenwino.cli;
+
+import co.com.leronarenwino.CompiledTemplate;
+import co.com.leronarenwino.FreemarkerProcessor;
+import co.com.leronarenwino.TemplateValidator;
+import co.com.leronarenwino.datamodel.DataUsage;
+import co.com.leronarenwino.load.LoadDriver;
+import co.com.leronarenwino.load.LoadReport;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Drives a template with sustained load from the command line:
+ * {@code --load --template <file> --data <file|dir>[,...] [--concurrency <n>] [--rate <per second>]
+ * [--mode open|closed] [--duration 30s] [--warmup 5s]}.
+ */
+public class LoadCommand {
+
+    private static final String USAGE = "Usage: --load --template <file> --data <file|dir>[,...] [--concurrency <n>] "
+            + "[--rate <per second>] [--mode open|closed] [--duration 30s] [--warmup 5s]";
+
+    private LoadCommand() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    public static int run(String[] args) {
+        Path template = null;
+        String data = null;
+        int concurrency = Runtime.getRuntime().availableProcessors();
+        double rate = 0;
+        LoadDriver.Mode mode = null;
+        long duration = 30_000_000_000L;
+        long warmup = 5_000_000_000L;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--load" -> {
+                        // Selects this command
+                    }
+                    case "--template" -> template = Path.of(args[++i]);
+                    case "--data" -> data = args[++i];
+                    case "--concurrency" -> concurrency = Integer.parseInt(args[++i]);
+                    case "--rate" -> rate = Double.parseDouble(args[++i]);
+                    case "--mode" -> mode = LoadDriver.Mode.valueOf(args[++i].toUpperCase(Locale.ROOT));
+                    case "--duration" -> duration = parseDuration(args[++i]);
+                    case "--warmup" -> warmup = parseDuration(args[++i]);
+                    default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException | IllegalArgumentException e) {
+            System.err.println(e instanceof ArrayIndexOutOfBoundsException ? "Missing option value" : e.getMessage());
+            template = null;
+        }
+        if (template == null || data == null || concurrency < 1) {
+            System.err.println(USAGE);
+            return 2;
+        }
+        if (mode == null) {
+            mode = rate > 0 ? LoadDriver.Mode.OPEN : LoadDriver.Mode.CLOSED;
+        }
+
+        SuiteCommand.loadEditorSettings();
+        try {
+            FreemarkerProcessor processor = new FreemarkerProcessor();
+            String templateContent = Files.readString(template);
+            CompiledTemplate compiled = processor.compile(templateContent);
+            // Models keep only what the template reads
+            DataUsage usage = processor.analyzeUsage(templateContent);
+            List<Map<String, Object>> dataModels = new ArrayList<>();
+            for (Path file : dataFiles(data)) {
+                dataModels.add(TemplateValidator.readDataFile(file, usage));
+            }
+            LoadDriver.Options options = new LoadDriver.Options(mode, concurrency, rate, duration, warmup);
+            System.out.printf("Running %d data model(s) for %d s after %d s of warmup...%n",
+                    dataModels.size(), duration / 1_000_000_000L, warmup / 1_000_000_000L);
+            LoadReport report = new LoadDriver(compiled, dataModels, options).run();
+            System.out.print(report.format());
+            return report.errors() == 0 ? 0 : 1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return 1;
+        } catch (Exception e) {
+            System.err.println("Load run failed: " + e.getMessage());
+            return 1;
+        }
+    }
+
+    // Files as given, and every .json file of a directory in name order
+    static List<Path> dataFiles(String list) throws IOException {
+        List<Path> files = new ArrayList<>();
+        for (String entry : list.split(",")) {
+            Path path = Path.of(entry.trim());
+            if (Files.isDirectory(path)) {
+                try (Stream<Path> children = Files.list(path)) {
+                    children.filter(child -> child.getFileName().toString().endsWith(".json")).sorted().forEach(files::add);
+                }
+            } else {
+                files.add(path);
+            }
+        }
+        return files;
+    }
+
+    static long parseDuration(String text) {
+        String value = text.trim().toLowerCase(Locale.ROOT);
+        double unit = 1e9;
+        if (value.endsWith("ms")) {
+            unit = 1e6;
+            value = value.substring(0, value.length() - 2);
+        } else if (value.endsWith("s")) {
+            value = value.substring(0, value.length() - 1);
+        } else if (value.endsWith("m")) {
+            unit = 60e9;
+            value = value.substring(0, value.length() - 1);
+        }
+        return (long) (Double.parseDouble(value.trim()) * unit);
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * This file is part of FreeMarker JSON/XML Toolkit.
+ *
+ * FreeMarker JSON/XML Toolkit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FreeMarker JSON/XML Toolkit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with FreeMarker JSON/XML Toolkit. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package co.com.leronarenwino.cli;
+
+import co.com.leronarenwino.CompiledTemplate;
+import co.com.leronarenwino.CompilingProcessor;
+import co.com.leronarenwino.FreemarkerProcessor;
+import co.com.leronarenwino.TemplateProcessor;
+import co.com.leronarenwino.TemplateValidator;
+import co.com.leronarenwino.config.FreemarkerConfigProvider;
+import co.com.leronarenwino.datamodel.CsvTable;
+import co.com.leronarenwino.datamodel.DataSnapshot;
+import co.com.leronarenwino.datamodel.DataUsage;
+import co.com.leronarenwino.datamodel.StreamedDataModel;
+import co.com.leronarenwino.registry.TemplateRegistry;
+
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Renders a template with a data file from the command line:
+ * {@code --render --template <file> [--templates <dir>] [--data <file>] [--stream <path>[,...]]
+ * [--csv <name>=<file>]... [--delimiter <char>] [--out <file>] [--pure-report] [--compiled]}.
+ * <p>
+ * Arrays named with {@code --stream} (member paths like {@code records} or
+ * {@code data.records}) stay in the data file and are read one element at a time
+ * while the template lists them, so a template going once through a huge array
+ * renders in constant memory. Each {@code --csv} adds a top-level variable holding
+ * the rows of a CSV file, also read while the template lists them. A data file
+ * written by {@code --snapshot} is memory-mapped instead of parsed. With
+ * {@code --pure-report} the hit rates of memoized pure macros go to standard error.
+ * With {@code --compiled} the template is compiled instead of interpreted, unless it
+ * uses something only FreeMarker implements. With {@code --templates} the template is
+ * a name in that directory, loaded through a {@link TemplateRegistry} so its includes
+ * and imports resolve against the directory and then the library path.
+ */
+public class RenderCommand {
+
+    private static final String USAGE = "Usage: --render --template <file> [--templates <dir>] [--data <file>] "
+            + "[--stream <path>[,...]] [--csv <name>=<file>]... [--delimiter <char>|tab] [--out <file>] [--pure-report] "
+            + "[--compiled]";
+
+    private RenderCommand() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    public static int run(String[] args) {
+        Path template = null;
+        Path templateDirectory = null;
+        Path data = null;
+        Path out = null;
+        Set<String> streamed = new LinkedHashSet<>();
+        Map<String, Path> csvFiles = new LinkedHashMap<>();
+        char delimiter = CsvTable.DEFAULT_DELIMITER;
+        boolean pureReport = false;
+        boolean compiled = false;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--render" -> {
+                        // Selects this command
+                    }
+                    case "--template" -> template = Path.of(args[++i]);
+                    case "--templates" -> templateDirectory = Path.of(args[++i]);
+                    case "--data" -> data = Path.of(args[++i]);
+                    case "--stream" -> {
+                        for (String path : args[++i].split(",")) {
+                            if (!path.isBlank()) streamed.add(path.trim());
+                        }
+                    }
+                    case "--csv" -> {
+                        String[] binding = args[++i].split("=", 2);
+                        if (binding.length != 2 || binding[0].isBlank()) {
+                            throw new IllegalArgumentException("Expected --csv <name>=<file>: " + args[i]);
+                        }
+                        csvFiles.put(binding[0].trim(), Path.of(binding[1]));
+                    }
+                    case "--delimiter" -> delimiter = CsvTable.parseDelimiter(args[++i]);
+                    case "--out" -> out = Path.of(args[++i]);
+                    case "--pure-report" -> pureReport = true;
+                    case "--compiled" -> compiled = true;
+                    default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+                }
+            }
+            if (compiled && templateDirectory != null) {
+                throw new IllegalArgumentException("--compiled cannot be combined with --templates");
+            }
+        } catch (ArrayIndexOutOfBoundsException | IllegalArgumentException e) {
+            System.err.println(e instanceof ArrayIndexOutOfBoundsException ? "Missing option value" : e.getMessage());
+            template = null;
+        }
+        if (template == null || (data == null && csvFiles.isEmpty())) {
+            System.err.println(USAGE);
+            return 2;
+        }
+
+        SuiteCommand.loadEditorSettings();
+        long start = System.nanoTime();
+        List<CsvTable> tables = new ArrayList<>();
+        TemplateRegistry registry = null;
+        try {
+            CompiledTemplate renderer;
+            DataUsage usage;
+            if (templateDirectory != null) {
+                registry = new TemplateRegistry(templateDirectory);
+                String name = template.toString().replace('\\', '/');
+                renderer = registry.load(name);
+                usage = registry.analyzeUsage(name);
+            } else {
+                TemplateProcessor processor = compiled ? new CompilingProcessor() : new FreemarkerProcessor();
+                String templateContent = Files.readString(template);
+                renderer = (dataModel, writer) -> processor.processTemplate(templateContent, dataModel, writer);
+                usage = processor.analyzeUsage(templateContent);
+            }
+            Map<String, Object> csvModel = new LinkedHashMap<>();
+            for (Map.Entry<String, Path> entry : csvFiles.entrySet()) {
+                CsvTable table = CsvTable.open(entry.getValue(), delimiter);
+                tables.add(table);
+                csvModel.put(entry.getKey(), table);
+            }
+            try (StreamedDataModel model = readModel(data, usage, streamed);
+                 Writer writer = out != null
+                         ? Files.newBufferedWriter(out)
+                         : new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 1 << 16)) {
+                Map<String, Object> root = model.model();
+                if (!csvModel.isEmpty()) {
+                    // CSV variables win over data file members of the same name
+                    root = new LinkedHashMap<>(root);
+                    root.putAll(csvModel);
+                }
+                renderer.render(root, writer);
+            }
+            if (out != null) {
+                System.out.printf("Rendered %s in %d ms%n", out, (System.nanoTime() - start) / 1_000_000);
+            }
+            if (pureReport) {
+                System.err.print(FreemarkerConfigProvider.getPureMacroReport());
+            }
+            return 0;
+        } catch (Exception e) {
+            System.err.println("Render failed: " + e.getMessage());
+            return 1;
+        } finally {
+            tables.forEach(CsvTable::close);
+            if (registry != null) registry.close();
+        }
+    }
+
+    // A snapshot is already read lazily, so it needs no streamed paths
+    private static StreamedDataModel readModel(Path data, DataUsage usage, Set<String> streamed) throws Exception {
+        if (data == null) {
+            return new StreamedDataModel(Map.of(), List.of());
+        }
+        if (DataSnapshot.isSnapshot(data)) {
+            return new StreamedDataModel(DataSnapshot.open(data), List.of());
+        }
+        return TemplateValidator.parseJsonFileToDataModel(data, usage, streamed);
+    }
+}
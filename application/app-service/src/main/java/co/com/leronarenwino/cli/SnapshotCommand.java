@@ -0,0 +1,75 @@
+/*
+ * This file is part of FreeMarker JSON/XML Toolkit.
+ *
+ * FreeMarker JSON/XML Toolkit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FreeMarker JSON/XML Toolkit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with FreeMarker JSON/XML Toolkit. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package co.com.leronarenwino.cli;
+
+import co.com.leronarenwino.datamodel.DataSnapshot;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Saves a JSON data model as a binary snapshot from the command line:
+ * {@code --snapshot --data <file> --out <file>}.
+ * <p>
+ * The snapshot can be given wherever a data file is read (render, suite and load
+ * commands). It is memory-mapped rather than parsed, so reopening even a very large
+ * model is almost instant and reads only the parts a template touches.
+ */
+public class SnapshotCommand {
+
+    private static final String USAGE = "Usage: --snapshot --data <file> --out <file>";
+
+    private SnapshotCommand() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    public static int run(String[] args) {
+        Path data = null;
+        Path out = null;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--snapshot" -> {
+                        // Selects this command
+                    }
+                    case "--data" -> data = Path.of(args[++i]);
+                    case "--out" -> out = Path.of(args[++i]);
+                    default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException | IllegalArgumentException e) {
+            System.err.println(e instanceof ArrayIndexOutOfBoundsException ? "Missing option value" : e.getMessage());
+            out = null;
+        }
+        if (data == null || out == null) {
+            System.err.println(USAGE);
+            return 2;
+        }
+
+        long start = System.nanoTime();
+        try {
+            long size = DataSnapshot.write(data, out);
+            System.out.printf("Wrote %s (%,d bytes from %,d bytes of JSON) in %d ms%n",
+                    out, size, Files.size(data), (System.nanoTime() - start) / 1_000_000);
+            return 0;
+        } catch (Exception e) {
+            System.err.println("Snapshot failed: " + e.getMessage());
+            return 1;
+        }
+    }
+}
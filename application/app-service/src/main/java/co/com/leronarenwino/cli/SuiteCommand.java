@@ -0,0 +1,115 @@
+/*
+ * This file is part of FreeMarker JSON/XML Toolkit.
+ *
+ * FreeMarker JSON/XML Toolkit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FreeMarker JSON/XML Toolkit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with FreeMarker JSON/XML Toolkit. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package co.com.leronarenwino.cli;
+
+import co.com.leronarenwino.FreemarkerProcessor;
+import co.com.leronarenwino.config.FreemarkerConfigProvider;
+import co.com.leronarenwino.suite.JUnitXmlReport;
+import co.com.leronarenwino.suite.SuiteDiscovery;
+import co.com.leronarenwino.suite.SuiteDiscovery.TemplateSuite;
+import co.com.leronarenwino.suite.SuiteRunner;
+import co.com.leronarenwino.suite.SuiteRunner.CaseResult;
+import co.com.leronarenwino.suite.SuiteRunner.Status;
+import co.com.leronarenwino.suite.SuiteRunner.SuiteResult;
+
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static co.com.leronarenwino.settings.Settings.PROPERTIES_FILE;
+import static utils.PropertiesManager.loadProperties;
+import static utils.SettingsSingleton.defaultAppProperties;
+import static utils.SettingsSingleton.setSettingsFromProperties;
+
+/**
+ * Runs a regression suite from the command line:
+ * {@code --suite <dir> [--report <file.xml>] [--threads <n>] [--fail-fast]}.
+ * Exits with 0 when every case passes, 1 when any fails and 2 on bad usage.
+ */
+public class SuiteCommand {
+
+    private static final String USAGE = "Usage: --suite <dir> [--report <file.xml>] [--threads <n>] [--fail-fast]";
+
+    private SuiteCommand() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    public static int run(String[] args) {
+        Path root = null;
+        Path report = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean failFast = false;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--suite" -> root = Path.of(args[++i]);
+                    case "--report" -> report = Path.of(args[++i]);
+                    case "--threads" -> threads = Integer.parseInt(args[++i]);
+                    case "--fail-fast" -> failFast = true;
+                    default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException | IllegalArgumentException e) {
+            System.err.println(e instanceof ArrayIndexOutOfBoundsException ? "Missing option value" : e.getMessage());
+            root = null;
+        }
+        if (root == null) {
+            System.err.println(USAGE);
+            return 2;
+        }
+
+        loadEditorSettings();
+        try {
+            List<TemplateSuite> suites = SuiteDiscovery.discover(root);
+            SuiteResult result = new SuiteRunner(new FreemarkerProcessor(), threads, failFast).run(suites);
+            printSummary(result);
+            if (report != null) {
+                try (Writer out = Files.newBufferedWriter(report, StandardCharsets.UTF_8)) {
+                    JUnitXmlReport.write(result, out);
+                }
+            }
+            return result.isSuccessful() ? 0 : 1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return 1;
+        } catch (Exception e) {
+            System.err.println("Suite failed: " + e.getMessage());
+            return 1;
+        }
+    }
+
+    // Same locale, time zone and library path as the editor
+    static void loadEditorSettings() {
+        setSettingsFromProperties(loadProperties(PROPERTIES_FILE, defaultAppProperties()));
+        FreemarkerConfigProvider.reloadConfiguration();
+    }
+
+    private static void printSummary(SuiteResult result) {
+        for (CaseResult caseResult : result.results()) {
+            if (caseResult.status() == Status.FAILED || caseResult.status() == Status.ERROR) {
+                System.out.println(caseResult.status() + " " + caseResult.testCase().suite() + "/" + caseResult.testCase().name());
+                caseResult.messages().forEach(message -> System.out.println("    " + message));
+            }
+        }
+        System.out.printf("%d cases: %d passed, %d failed, %d errors, %d skipped in %d ms%n",
+                result.results().size(), result.count(Status.PASSED), result.count(Status.FAILED),
+                result.count(Status.ERROR), result.count(Status.SKIPPED), result.nanos() / 1_000_000);
+    }
+}
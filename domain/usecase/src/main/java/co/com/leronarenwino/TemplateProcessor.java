@@ -17,8 +17,26 @@
 
 package co.com.leronarenwino;
 
+import co.com.leronarenwino.datamodel.DataUsage;
+
+import java.io.Writer;
 import java.util.Map;
 
 public interface TemplateProcessor {
     String processTemplate(String templateContent, Map<String, Object> dataModel) throws Exception;
+
+    // Writes the output as it is produced; processors that can stream override this
+    default void processTemplate(String templateContent, Map<String, Object> dataModel, Writer out) throws Exception {
+        out.write(processTemplate(templateContent, dataModel));
+    }
+
+    // Parses the template once for many renders; processors that cannot parse ahead render from the text each time
+    default CompiledTemplate compile(String templateContent) throws Exception {
+        return (dataModel, out) -> processTemplate(templateContent, dataModel, out);
+    }
+
+    // Data the template can read, so callers parse only that; processors that cannot tell need everything
+    default DataUsage analyzeUsage(String templateContent) {
+        return DataUsage.everything();
+    }
 }
\ No newline at end of file
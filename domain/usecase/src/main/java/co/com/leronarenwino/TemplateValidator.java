@@ -17,13 +17,20 @@
 
 package co.com.leronarenwino;
 
-import com.fasterxml.jackson.core.type.TypeReference;
+import co.com.leronarenwino.datamodel.DataModelReader;
+import co.com.leronarenwino.datamodel.DataSnapshot;
+import co.com.leronarenwino.datamodel.DataUsage;
+import co.com.leronarenwino.datamodel.StreamedDataModel;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 public class TemplateValidator {
 
@@ -38,6 +45,10 @@ public class TemplateValidator {
         return templateProcessor.processTemplate(templateContent, dataModel);
     }
 
+    public void processTemplate(String templateContent, Map<String, Object> dataModel, Writer out) throws Exception {
+        templateProcessor.processTemplate(templateContent, dataModel, out);
+    }
+
     public static List<String> validateFieldsPresentWithTypes(String jsonOutput, String[] expectedFields) throws Exception {
         List<String> missing = new ArrayList<>(expectedFields.length);
         JsonNode jsonNode = MAPPER.readTree(jsonOutput);
@@ -81,8 +92,30 @@ public class TemplateValidator {
     }
 
     public static Map<String, Object> parseJsonToDataModel(String json) throws Exception {
-        return MAPPER.readValue(json, new TypeReference<>() {
-        });
+        return DataModelReader.read(json, DataUsage.everything());
+    }
+
+    // Parses only the parts of the data model the template reads
+    public static Map<String, Object> parseJsonToDataModel(String json, DataUsage usage) throws Exception {
+        return DataModelReader.read(json, usage);
+    }
+
+    // Reads a data file, leaving the arrays at the streamed paths in the file to be listed once
+    public static StreamedDataModel parseJsonFileToDataModel(Path file, DataUsage usage, Set<String> streamedPaths)
+            throws Exception {
+        return DataModelReader.read(file, usage, streamedPaths);
+    }
+
+    // Reads a data file that is either JSON or a snapshot; a snapshot is mapped and read lazily whatever the usage
+    public static Map<String, Object> readDataFile(Path file, DataUsage usage) throws Exception {
+        if (DataSnapshot.isSnapshot(file)) {
+            return DataSnapshot.open(file);
+        }
+        return DataModelReader.read(Files.readString(file), usage);
+    }
+
+    public DataUsage analyzeUsage(String templateContent) {
+        return templateProcessor.analyzeUsage(templateContent);
     }
 
     public static String formatFlexibleJson(String input) {
@@ -0,0 +1,158 @@
+/*
+ * This file is part of FreeMarker JSON/XML Toolkit.
+ *
+ * FreeMarker JSON/XML Toolkit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FreeMarker JSON/XML Toolkit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with FreeMarker JSON/XML Toolkit. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package co.com.leronarenwino.cache;
+
+import co.com.leronarenwino.TemplateProcessor;
+import co.com.leronarenwino.datamodel.DataUsage;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * Returns the stored output when the same template is rendered again with an
+ * equivalent data model.
+ * <p>
+ * Templates whose output can change without the template or the data changing are
+ * never cached: those reading the clock ({@code .now}), evaluating strings as FTL, or
+ * pulling in other templates whose content is not part of the fingerprint, with
+ * {@code #include}, {@code #import} or {@code .get_optional_template}.
+ */
+public class CachingTemplateProcessor implements TemplateProcessor {
+
+    private static final Pattern UNCACHEABLE = Pattern.compile(
+            "\\.now\\b|\\?(?:eval|eval_json|interpret)\\b|[<\\[]#(?:include|import)\\b"
+                    + "|\\.(?:get_optional_template|getOptionalTemplate)\\b");
+
+    private final TemplateProcessor delegate;
+    private final RenderCache cache;
+    private final Supplier<?> context;
+
+    public CachingTemplateProcessor(TemplateProcessor delegate, RenderCache cache) {
+        this(delegate, cache, () -> "");
+    }
+
+    // The context (e.g. a configuration generation) is part of the key, so a settings change misses the cache
+    public CachingTemplateProcessor(TemplateProcessor delegate, RenderCache cache, Supplier<?> context) {
+        this.delegate = delegate;
+        this.cache = cache;
+        this.context = context;
+    }
+
+    @Override
+    public String processTemplate(String templateContent, Map<String, Object> dataModel) throws Exception {
+        String key = cacheKey(templateContent, dataModel);
+        if (key == null) {
+            cache.recordBypass();
+            return delegate.processTemplate(templateContent, dataModel);
+        }
+        String cached = cache.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        String output = delegate.processTemplate(templateContent, dataModel);
+        cache.put(key, output);
+        return output;
+    }
+
+    @Override
+    public void processTemplate(String templateContent, Map<String, Object> dataModel, Writer out) throws Exception {
+        String key = cacheKey(templateContent, dataModel);
+        if (key == null) {
+            cache.recordBypass();
+            delegate.processTemplate(templateContent, dataModel, out);
+            return;
+        }
+        String cached = cache.get(key);
+        if (cached != null) {
+            out.write(cached);
+            return;
+        }
+        // Keep a copy while streaming, unless the output grows too large to be cached anyway
+        CopyingWriter copying = new CopyingWriter(out, cache.getStats().maxBytes() / 2);
+        delegate.processTemplate(templateContent, dataModel, copying);
+        if (copying.copy != null) {
+            cache.put(key, copying.copy.toString());
+        }
+    }
+
+    @Override
+    public DataUsage analyzeUsage(String templateContent) {
+        return delegate.analyzeUsage(templateContent);
+    }
+
+    public RenderCache getCache() {
+        return cache;
+    }
+
+    public static boolean isCacheable(String templateContent) {
+        return !UNCACHEABLE.matcher(templateContent).find();
+    }
+
+    private String cacheKey(String templateContent, Map<String, Object> dataModel) {
+        if (!isCacheable(templateContent)) return null;
+        String dataFingerprint = Fingerprint.ofDataModel(dataModel);
+        if (dataFingerprint == null) return null;
+        return Fingerprint.ofTemplate(templateContent) + ':' + dataFingerprint + ':' + context.get();
+    }
+
+    private static final class CopyingWriter extends Writer {
+        private final Writer out;
+        private final long maxChars;
+        private StringBuilder copy = new StringBuilder();
+
+        private CopyingWriter(Writer out, long maxChars) {
+            this.out = out;
+            this.maxChars = maxChars;
+        }
+
+        @Override
+        public void write(char[] buffer, int offset, int length) throws IOException {
+            out.write(buffer, offset, length);
+            if (copy == null) return;
+            if (copy.length() + (long) length > maxChars) {
+                copy = null;
+            } else {
+                copy.append(buffer, offset, length);
+            }
+        }
+
+        @Override
+        public void write(String text, int offset, int length) throws IOException {
+            out.write(text, offset, length);
+            if (copy == null) return;
+            if (copy.length() + (long) length > maxChars) {
+                copy = null;
+            } else {
+                copy.append(text, offset, offset + length);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+}
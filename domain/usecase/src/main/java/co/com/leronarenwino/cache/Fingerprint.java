@@ -0,0 +1,118 @@
+/*
+ * This file is part of FreeMarker JSON/XML Toolkit.
+ *
+ * FreeMarker JSON/XML Toolkit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FreeMarker JSON/XML Toolkit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with FreeMarker JSON/XML Toolkit. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package co.com.leronarenwino.cache;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * SHA-256 fingerprints of template sources and data models.
+ * <p>
+ * Data models are hashed canonically: map entries in key order and every value
+ * tagged with its type, so two models that render the same always produce the same
+ * fingerprint regardless of insertion order.
+ */
+public class Fingerprint {
+
+    private Fingerprint() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    public static String ofTemplate(String templateContent) {
+        return ofText(templateContent);
+    }
+
+    public static String ofText(String text) {
+        MessageDigest digest = newDigest();
+        digest.update(text.getBytes(StandardCharsets.UTF_8));
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    // Null when the model holds values whose rendering cannot be derived from their content
+    public static String ofDataModel(Map<String, Object> dataModel) {
+        MessageDigest digest = newDigest();
+        if (!update(digest, dataModel)) {
+            return null;
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static boolean update(MessageDigest digest, Object value) {
+        if (value == null) {
+            tag(digest, 'n', "");
+        } else if (value instanceof String s) {
+            tag(digest, 's', s);
+        } else if (value instanceof Boolean b) {
+            tag(digest, 'b', b.toString());
+        } else if (value instanceof Integer || value instanceof Long || value instanceof Short
+                || value instanceof Byte || value instanceof BigInteger) {
+            tag(digest, 'i', value.toString());
+        } else if (value instanceof Double || value instanceof Float) {
+            tag(digest, 'd', value.toString());
+        } else if (value instanceof BigDecimal d) {
+            tag(digest, 'D', d.toString());
+        } else if (value instanceof Map<?, ?> map) {
+            List<String> keys = new ArrayList<>(map.size());
+            for (Object key : map.keySet()) {
+                if (!(key instanceof String k)) return false;
+                keys.add(k);
+            }
+            keys.sort(null);
+            tag(digest, '{', Integer.toString(keys.size()));
+            for (String key : keys) {
+                tag(digest, 'k', key);
+                if (!update(digest, map.get(key))) return false;
+            }
+        } else if (value instanceof Collection<?> collection) {
+            tag(digest, '[', Integer.toString(collection.size()));
+            for (Object item : collection) {
+                if (!update(digest, item)) return false;
+            }
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    // Type tag and length prefix keep adjacent values from running into each other
+    private static void tag(MessageDigest digest, char type, String content) {
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        digest.update((byte) type);
+        digest.update((byte) (bytes.length >>> 24));
+        digest.update((byte) (bytes.length >>> 16));
+        digest.update((byte) (bytes.length >>> 8));
+        digest.update((byte) bytes.length);
+        digest.update(bytes);
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * This file is part of FreeMarker JSON/XML Toolkit.
+ *
+ * FreeMarker JSON/XML Toolkit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FreeMarker JSON/XML Toolkit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with FreeMarker JSON/XML Toolkit. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package co.com.leronarenwino.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Rendered outputs in least-recently-used order, bounded by their approximate heap
+ * size rather than by entry count, with an optional time-to-live.
+ */
+public class RenderCache {
+
+    // Per entry: key string, map node and the output String header
+    private static final long ENTRY_OVERHEAD_BYTES = 160;
+
+    private final long maxBytes;
+    private final long ttlMillis;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long currentBytes;
+    private long hits;
+    private long misses;
+    private long bypasses;
+    private long evictions;
+    private long expirations;
+
+    public RenderCache(long maxBytes, long ttlMillis) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("maxBytes must be positive");
+        }
+        this.maxBytes = maxBytes;
+        this.ttlMillis = ttlMillis;
+    }
+
+    public synchronized String get(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        if (isExpired(entry, System.currentTimeMillis())) {
+            removeEntry(key, entry);
+            expirations++;
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.output;
+    }
+
+    public synchronized void put(String key, String output) {
+        long size = sizeOf(key, output);
+        if (size > maxBytes) return;
+        Entry previous = entries.remove(key);
+        if (previous != null) {
+            currentBytes -= previous.size;
+        }
+        entries.put(key, new Entry(output, size, System.currentTimeMillis()));
+        currentBytes += size;
+        evictIfNeeded();
+    }
+
+    public synchronized void recordBypass() {
+        bypasses++;
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        currentBytes = 0;
+    }
+
+    public synchronized Stats getStats() {
+        return new Stats(hits, misses, bypasses, evictions, expirations, entries.size(), currentBytes, maxBytes);
+    }
+
+    private void evictIfNeeded() {
+        long now = System.currentTimeMillis();
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        // Eldest first: expired entries go regardless of space, then the least recently used
+        while (it.hasNext() && (currentBytes > maxBytes || ttlMillis > 0)) {
+            Map.Entry<String, Entry> eldest = it.next();
+            boolean expired = isExpired(eldest.getValue(), now);
+            if (!expired && currentBytes <= maxBytes) break;
+            it.remove();
+            currentBytes -= eldest.getValue().size;
+            if (expired) {
+                expirations++;
+            } else {
+                evictions++;
+            }
+        }
+    }
+
+    private boolean isExpired(Entry entry, long now) {
+        return ttlMillis > 0 && now - entry.createdAt >= ttlMillis;
+    }
+
+    private void removeEntry(String key, Entry entry) {
+        entries.remove(key);
+        currentBytes -= entry.size;
+    }
+
+    private static long sizeOf(String key, String output) {
+        return ENTRY_OVERHEAD_BYTES + 2L * key.length() + 2L * output.length();
+    }
+
+    private record Entry(String output, long size, long createdAt) {
+    }
+
+    public record Stats(long hits, long misses, long bypasses, long evictions, long expirations,
+                        int entries, long bytes, long maxBytes) {
+
+        public double hitRatio() {
+            long lookups = hits + misses;
+            return lookups == 0 ? 0.0 : (double) hits / lookups;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("hits=%d misses=%d bypasses=%d hitRatio=%.1f%% entries=%d bytes=%d/%d evictions=%d expirations=%d",
+                    hits, misses, bypasses, hitRatio() * 100, entries, bytes, maxBytes, evictions, expirations);
+        }
+    }
+}
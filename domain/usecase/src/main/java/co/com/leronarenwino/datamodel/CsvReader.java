@@ -0,0 +1,136 @@
+/*
+ * This file is part of FreeMarker JSON/XML Toolkit.
+ *
+ * FreeMarker JSON/XML Toolkit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FreeMarker JSON/XML Toolkit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with FreeMarker JSON/XML Toolkit. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package co.com.leronarenwino.datamodel;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits CSV text into records as RFC 4180 describes it: fields may be quoted,
+ * a quote inside a quoted field is doubled, and quoted fields may hold the
+ * delimiter and line breaks. Lines end with "\n", "\r\n" or a lone "\r"; blank
+ * lines are skipped.
+ */
+final class CsvReader implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Reader reader;
+    private final char delimiter;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private final StringBuilder field = new StringBuilder();
+    private final List<String> fields = new ArrayList<>();
+    private int position;
+    private int limit;
+    // Line where the last record started, 1-based
+    private long line;
+    private long nextLine = 1;
+
+    CsvReader(Reader reader, char delimiter) {
+        this.reader = reader;
+        this.delimiter = delimiter;
+    }
+
+    long getLine() {
+        return line;
+    }
+
+    // Fields of the next record, null at the end; the list is reused by the next call
+    List<String> next() throws IOException {
+        int c;
+        // Blank lines between records
+        while ((c = read()) == '\n' || c == '\r') {
+            endLine(c);
+        }
+        if (c == -1) return null;
+        line = nextLine;
+        fields.clear();
+        while (true) {
+            field.setLength(0);
+            if (c == '"') {
+                c = readQuoted();
+            } else {
+                while (c != delimiter && c != '\n' && c != '\r' && c != -1) {
+                    field.append((char) c);
+                    c = read();
+                }
+            }
+            fields.add(field.toString());
+            if (c != delimiter) {
+                endLine(c);
+                return fields;
+            }
+            c = read();
+        }
+    }
+
+    // Reads a quoted field from after its opening quote; returns the character after the field
+    private int readQuoted() throws IOException {
+        while (true) {
+            int c = read();
+            if (c == -1) {
+                throw new IOException("Unterminated quoted field starting on line " + line);
+            }
+            if (c == '"') {
+                c = read();
+                if (c != '"') {
+                    // Text between the closing quote and the delimiter is kept as written
+                    while (c != delimiter && c != '\n' && c != '\r' && c != -1) {
+                        field.append((char) c);
+                        c = read();
+                    }
+                    return c;
+                }
+            } else if (c == '\n' || (c == '\r' && peek() != '\n')) {
+                nextLine++;
+            }
+            field.append((char) c);
+        }
+    }
+
+    private void endLine(int c) throws IOException {
+        if (c == '\r' && peek() == '\n') position++;
+        if (c != -1) nextLine++;
+    }
+
+    private int read() throws IOException {
+        if (position == limit && !fill()) return -1;
+        return buffer[position++];
+    }
+
+    private int peek() throws IOException {
+        if (position == limit && !fill()) return -1;
+        return buffer[position];
+    }
+
+    private boolean fill() throws IOException {
+        int n = reader.read(buffer, 0, buffer.length);
+        if (n <= 0) return false;
+        position = 0;
+        limit = n;
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
@@ -0,0 +1,333 @@
+/*
+ * This file is part of FreeMarker JSON/XML Toolkit.
+ *
+ * FreeMarker JSON/XML Toolkit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FreeMarker JSON/XML Toolkit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with FreeMarker JSON/XML Toolkit. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package co.com.leronarenwino.datamodel;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+/**
+ * The rows of a UTF-8 CSV file, read from the file while a template lists them.
+ * <p>
+ * The first record names the fields, and each row is an object keyed by those
+ * names that shares one key table with every other row. Opening the table reads
+ * only the header and a sample of rows to pick a type per column: a column whose
+ * sampled values are all integers, numbers or {@code true}/{@code false} reads as
+ * that type, anything else as text. Integers with leading zeros, such as postal
+ * codes, stay text. An empty cell is missing in a typed column and an empty string
+ * in a text column, and a value that does not fit its column's type keeps its text.
+ * <p>
+ * Every listing reads the file again from the start, so a table can be listed any
+ * number of times without holding its rows. The row count needs a full scan and is
+ * only worked out when a template asks for it. A listing a template leaves early,
+ * through {@code ?first}, {@code ?has_content} or {@code #break}, keeps its file
+ * open until {@link #close()}; a render gets its own {@link #session()} to close
+ * when it ends.
+ */
+public final class CsvTable implements LazyCollection, Closeable {
+
+    public static final char DEFAULT_DELIMITER = ',';
+    private static final int SAMPLE_ROWS = 1000;
+    private static final Pattern INTEGER = Pattern.compile("-?(0|[1-9][0-9]{0,18})");
+    private static final Pattern NUMBER = Pattern.compile("-?(0|[1-9][0-9]*)(\\.[0-9]+)?([eE][+-]?[0-9]+)?");
+
+    private enum Type {INTEGER, NUMBER, BOOLEAN, TEXT}
+
+    private final Path file;
+    private final char delimiter;
+    private final KeyTable keys;
+    private final Type[] types;
+    private final boolean empty;
+    private final Set<CsvReader> openReaders = Collections.synchronizedSet(new HashSet<>());
+    // Shared by the sessions of a table, so the rows are counted once
+    private final AtomicInteger size;
+
+    private CsvTable(Path file, char delimiter, KeyTable keys, Type[] types, boolean empty, AtomicInteger size) {
+        this.file = file;
+        this.delimiter = delimiter;
+        this.keys = keys;
+        this.types = types;
+        this.empty = empty;
+        this.size = size;
+    }
+
+    public static CsvTable open(Path file, char delimiter) throws IOException {
+        if (delimiter == '"' || delimiter == '\n' || delimiter == '\r') {
+            throw new IllegalArgumentException("Invalid CSV delimiter: " + delimiter);
+        }
+        try (CsvReader reader = createReader(file, delimiter)) {
+            List<String> header = reader.next();
+            if (header == null) {
+                throw new IOException(file + " is empty, expected a header row");
+            }
+            KeyTable keys = keysOf(header);
+            Sampler sampler = new Sampler(keys.size());
+            int rows = 0;
+            List<String> fields;
+            while (rows < SAMPLE_ROWS && (fields = reader.next()) != null) {
+                sampler.add(fields);
+                rows++;
+            }
+            return new CsvTable(file, delimiter, keys, sampler.types(), rows == 0, new AtomicInteger(-1));
+        }
+    }
+
+    // A single character, or "tab" / "\t" for a tab
+    public static char parseDelimiter(String text) {
+        if (text.equalsIgnoreCase("tab") || text.equals("\\t")) return '\t';
+        if (text.length() != 1) {
+            throw new IllegalArgumentException("A CSV delimiter is one character or \"tab\": " + text);
+        }
+        return text.charAt(0);
+    }
+
+    private static CsvReader createReader(Path file, char delimiter) throws IOException {
+        InputStreamReader reader = new InputStreamReader(Files.newInputStream(file), StandardCharsets.UTF_8);
+        return new CsvReader(reader, delimiter);
+    }
+
+    // Blank names are numbered and repeated names get a suffix, so every field stays reachable
+    private static KeyTable keysOf(List<String> header) {
+        KeyTable keys = KeyTable.empty();
+        Set<String> seen = new HashSet<>();
+        for (int i = 0; i < header.size(); i++) {
+            String name = header.get(i).strip();
+            if (i == 0 && name.startsWith("\uFEFF")) name = name.substring(1);
+            if (name.isEmpty()) name = "column" + (i + 1);
+            String unique = name;
+            for (int n = 2; !seen.add(unique); n++) {
+                unique = name + "_" + n;
+            }
+            keys = keys.addChild(unique);
+        }
+        return keys;
+    }
+
+    // The same rows with their own open files, so closing them leaves other renders' listings alone
+    public CsvTable session() {
+        return new CsvTable(file, delimiter, keys, types, empty, size);
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public char getDelimiter() {
+        return delimiter;
+    }
+
+    public List<String> getColumns() {
+        List<String> columns = new ArrayList<>(keys.size());
+        for (int i = 0; i < keys.size(); i++) {
+            columns.add(keys.keyAt(i));
+        }
+        return columns;
+    }
+
+    @Override
+    public int size() {
+        int rows = size.get();
+        if (rows < 0) {
+            rows = countRows();
+            size.set(rows);
+        }
+        return rows;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return empty;
+    }
+
+    private int countRows() {
+        try (CsvReader reader = createReader(file, delimiter)) {
+            long rows = -1;
+            while (reader.next() != null) {
+                rows++;
+            }
+            return (int) Math.min(Math.max(rows, 0), Integer.MAX_VALUE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read " + file, e);
+        }
+    }
+
+    // The file is opened on the first hasNext, and closed at its end or by close()
+    @Override
+    public Iterator<Object> iterator() {
+        return new Iterator<>() {
+            private CsvReader reader;
+            private List<String> pending;
+            private boolean done;
+
+            @Override
+            public boolean hasNext() {
+                if (pending != null) return true;
+                if (done) return false;
+                try {
+                    if (reader == null) {
+                        reader = createReader(file, delimiter);
+                        openReaders.add(reader);
+                        reader.next();
+                    }
+                    pending = reader.next();
+                } catch (IOException e) {
+                    finish();
+                    throw new UncheckedIOException("Could not read " + file
+                            + (reader != null ? " near line " + reader.getLine() : ""), e);
+                }
+                if (pending == null) {
+                    finish();
+                    return false;
+                }
+                return true;
+            }
+
+            @Override
+            public Object next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                Object row = toRow(pending);
+                pending = null;
+                return row;
+            }
+
+            private void finish() {
+                done = true;
+                if (reader != null) {
+                    openReaders.remove(reader);
+                    closeQuietly(reader);
+                }
+            }
+        };
+    }
+
+    private CompactObject toRow(List<String> fields) {
+        Object[] values = new Object[types.length];
+        int count = Math.min(fields.size(), values.length);
+        for (int i = 0; i < count; i++) {
+            values[i] = convert(fields.get(i), types[i]);
+        }
+        return new CompactObject(keys, values);
+    }
+
+    private static Object convert(String text, Type type) {
+        if (type == Type.TEXT) return text;
+        if (text.isEmpty()) return null;
+        try {
+            switch (type) {
+                case INTEGER -> {
+                    if (INTEGER.matcher(text).matches()) {
+                        long value = Long.parseLong(text);
+                        if (value == (int) value) return (int) value;
+                        return value;
+                    }
+                }
+                case NUMBER -> {
+                    if (NUMBER.matcher(text).matches()) return Double.parseDouble(text);
+                }
+                default -> {
+                    if (text.equalsIgnoreCase("true")) return Boolean.TRUE;
+                    if (text.equalsIgnoreCase("false")) return Boolean.FALSE;
+                }
+            }
+        } catch (NumberFormatException e) {
+            // Beyond long: keep the text
+        }
+        return text;
+    }
+
+    private static void closeQuietly(CsvReader reader) {
+        try {
+            reader.close();
+        } catch (IOException e) {
+            // Nothing left to read from it
+        }
+    }
+
+    // Releases the files of listings a template left early
+    @Override
+    public void close() {
+        synchronized (openReaders) {
+            openReaders.forEach(CsvTable::closeQuietly);
+            openReaders.clear();
+        }
+    }
+
+    int openReaderCount() {
+        return openReaders.size();
+    }
+
+    @Override
+    public String toString() {
+        return "CSV " + file.getFileName();
+    }
+
+    // Narrows each column to the most specific type its non-empty sample values share
+    private static final class Sampler {
+        private final boolean[] seen;
+        private final boolean[] integer;
+        private final boolean[] number;
+        private final boolean[] bool;
+
+        private Sampler(int columns) {
+            seen = new boolean[columns];
+            integer = new boolean[columns];
+            number = new boolean[columns];
+            bool = new boolean[columns];
+            Arrays.fill(integer, true);
+            Arrays.fill(number, true);
+            Arrays.fill(bool, true);
+        }
+
+        private void add(List<String> fields) {
+            for (int i = 0; i < Math.min(fields.size(), seen.length); i++) {
+                String text = fields.get(i);
+                if (text.isEmpty()) continue;
+                seen[i] = true;
+                if (integer[i] && !INTEGER.matcher(text).matches()) integer[i] = false;
+                if (number[i] && !NUMBER.matcher(text).matches()) number[i] = false;
+                if (bool[i] && !text.equalsIgnoreCase("true") && !text.equalsIgnoreCase("false")) bool[i] = false;
+            }
+        }
+
+        private Type[] types() {
+            Type[] types = new Type[seen.length];
+            for (int i = 0; i < types.length; i++) {
+                if (!seen[i]) types[i] = Type.TEXT;
+                else if (integer[i]) types[i] = Type.INTEGER;
+                else if (number[i]) types[i] = Type.NUMBER;
+                else if (bool[i]) types[i] = Type.BOOLEAN;
+                else types[i] = Type.TEXT;
+            }
+            return types;
+        }
+    }
+}
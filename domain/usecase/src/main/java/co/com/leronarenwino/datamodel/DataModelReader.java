@@ -0,0 +1,275 @@
+/*
+ * This file is part of FreeMarker JSON/XML Toolkit.
+ *
+ * FreeMarker JSON/XML Toolkit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FreeMarker JSON/XML Toolkit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with FreeMarker JSON/XML Toolkit. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package co.com.leronarenwino.datamodel;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reads a JSON data model into a compact form, keeping only what a template uses.
+ * <p>
+ * Unused members are skipped at the token level without building any values, so
+ * the cost of a large document is mostly the fields the template reads. Objects
+ * become {@link CompactObject}s whose key tables are shared across the document.
+ * Arrays holding only integers or only decimals are stored unboxed in a
+ * {@link LongArrayList} or {@link DoubleArrayList}, other arrays become fixed-size
+ * lists. Scalars are the same strings, numbers and booleans a plain Jackson parse
+ * gives.
+ * <p>
+ * Read from a file, arrays at chosen paths can be left in the file as
+ * {@link StreamedArray}s, read element by element while a template lists them.
+ */
+public class DataModelReader {
+
+    private static final JsonFactory FACTORY = new JsonFactory();
+    // Element of an array whose items are only counted or tested: keeps the size and every scalar
+    private static final DataUsage.Node NOTHING = new DataUsage.Node();
+    // Objects wider than this, or beyond this many distinct key tables, are plain maps
+    private static final int MAX_SHARED_KEYS = 64;
+    private static final int MAX_KEY_TABLES = 8192;
+
+    private final JsonParser parser;
+    // File and member paths (like "data.records") of arrays left in the file
+    private final Path file;
+    private final Set<String> streamedPaths;
+    private final List<StreamedArray> streams = new ArrayList<>();
+    private final KeyTable root = KeyTable.empty();
+    private int keyTables;
+    // Values of the objects and arrays being read, innermost last
+    private Object[] stack = new Object[64];
+    private int top;
+
+    DataModelReader(JsonParser parser) {
+        this(parser, null, Set.of());
+    }
+
+    private DataModelReader(JsonParser parser, Path file, Set<String> streamedPaths) {
+        this.parser = parser;
+        this.file = file;
+        this.streamedPaths = streamedPaths;
+    }
+
+    public static Map<String, Object> read(String json, DataUsage usage) throws IOException {
+        try (JsonParser parser = FACTORY.createParser(json)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("The data model must be a JSON object");
+            }
+            return new DataModelReader(parser).readObject(usage.isEverything() ? null : usage.getRoot(), null);
+        }
+    }
+
+    // The arrays at the streamed paths are only counted here; the file must stay in place while rendering
+    public static StreamedDataModel read(Path file, DataUsage usage, Set<String> streamedPaths) throws IOException {
+        try (JsonParser parser = createParser(Files.newInputStream(file))) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("The data model must be a JSON object");
+            }
+            DataModelReader reader = new DataModelReader(parser, file, streamedPaths);
+            Map<String, Object> model = reader.readObject(usage.isEverything() ? null : usage.getRoot(),
+                    streamedPaths.isEmpty() ? null : "");
+            return new StreamedDataModel(model, reader.streams);
+        }
+    }
+
+    static JsonParser createParser(InputStream in) throws IOException {
+        return FACTORY.createParser(in);
+    }
+
+    // The parser is on the first token of the value and is left on its last one; a null node reads everything
+    Object readValue(DataUsage.Node node) throws IOException {
+        return readValue(node, null);
+    }
+
+    // Paths are tracked through objects only, and only while there are streamed paths to find
+    private Object readValue(DataUsage.Node node, String path) throws IOException {
+        DataUsage.Node used = node == null || node.isWhole() ? null : node;
+        return switch (parser.currentToken()) {
+            case START_OBJECT -> readObject(used, path);
+            case START_ARRAY -> readArray(used);
+            case VALUE_STRING -> parser.getText();
+            case VALUE_NUMBER_INT, VALUE_NUMBER_FLOAT -> parser.getNumberValue();
+            case VALUE_TRUE -> Boolean.TRUE;
+            case VALUE_FALSE -> Boolean.FALSE;
+            case VALUE_EMBEDDED_OBJECT -> parser.getEmbeddedObject();
+            default -> null;
+        };
+    }
+
+    private Map<String, Object> readObject(DataUsage.Node node, String path) throws IOException {
+        int base = top;
+        KeyTable table = root;
+        Map<String, Object> wide = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.currentName();
+            DataUsage.Node child = node == null ? null : node.getChild(name);
+            parser.nextToken();
+            if (node != null && child == null) {
+                parser.skipChildren();
+                continue;
+            }
+            String memberPath = path == null ? null : path.isEmpty() ? name : path + '.' + name;
+            Object value = memberPath != null && parser.currentToken() == JsonToken.START_ARRAY
+                    && streamedPaths.contains(memberPath)
+                    ? stream(memberPath, child)
+                    : readValue(child, memberPath);
+            if (wide != null) {
+                wide.put(name, value);
+                continue;
+            }
+            int existing = table.indexOf(name);
+            if (existing >= 0) {
+                // Repeated key: the last value wins, as with a map
+                stack[base + existing] = value;
+                continue;
+            }
+            KeyTable next = extend(table, name);
+            if (next == null) {
+                wide = toMap(table, base);
+                wide.put(name, value);
+                continue;
+            }
+            table = next;
+            push(value);
+        }
+        if (wide != null) {
+            return wide;
+        }
+        return new CompactObject(table, pop(base));
+    }
+
+    private List<?> readArray(DataUsage.Node node) throws IOException {
+        DataUsage.Node element = node == null ? null : node.getElement() != null ? node.getElement() : NOTHING;
+        int base = top;
+        JsonToken token = parser.nextToken();
+        if (token == JsonToken.VALUE_NUMBER_INT || token == JsonToken.VALUE_NUMBER_FLOAT) {
+            List<Number> numbers = readNumbers();
+            if (numbers != null) return numbers;
+            token = parser.currentToken();
+        }
+        while (token != JsonToken.END_ARRAY) {
+            push(readValue(element));
+            token = parser.nextToken();
+        }
+        return Arrays.asList(pop(base));
+    }
+
+    /*
+     * Arrays of only integers or only decimals go into a primitive array. On the first
+     * value of another kind the numbers read so far are pushed boxed, as a plain parse
+     * stores them, and null is returned with the parser on that value.
+     */
+    private List<Number> readNumbers() throws IOException {
+        JsonToken kind = parser.currentToken();
+        long[] longs = kind == JsonToken.VALUE_NUMBER_INT ? new long[16] : null;
+        double[] doubles = longs == null ? new double[16] : null;
+        int size = 0;
+        JsonToken token = kind;
+        while (token == kind && isPrimitive()) {
+            if (longs != null) {
+                if (size == longs.length) longs = Arrays.copyOf(longs, size * 2);
+                longs[size++] = parser.getLongValue();
+            } else {
+                if (size == doubles.length) doubles = Arrays.copyOf(doubles, size * 2);
+                doubles[size++] = parser.getDoubleValue();
+            }
+            token = parser.nextToken();
+        }
+        if (token == JsonToken.END_ARRAY) {
+            return longs != null
+                    ? new LongArrayList(Arrays.copyOf(longs, size))
+                    : new DoubleArrayList(Arrays.copyOf(doubles, size));
+        }
+        for (int i = 0; i < size; i++) {
+            if (longs != null) {
+                long value = longs[i];
+                if (value == (int) value) {
+                    push((int) value);
+                } else {
+                    push(value);
+                }
+            } else {
+                push(doubles[i]);
+            }
+        }
+        return null;
+    }
+
+    // Integers beyond long and decimals read as BigDecimal keep their boxed type
+    private boolean isPrimitive() throws IOException {
+        JsonParser.NumberType type = parser.getNumberType();
+        return type == JsonParser.NumberType.INT || type == JsonParser.NumberType.LONG
+                || type == JsonParser.NumberType.DOUBLE;
+    }
+
+    // Leaves the array in the file, noting where it starts and how many elements it has
+    private StreamedArray stream(String path, DataUsage.Node node) throws IOException {
+        long offset = parser.currentTokenLocation().getByteOffset();
+        int size = 0;
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            parser.skipChildren();
+            size++;
+        }
+        DataUsage.Node used = node == null || node.isWhole() ? null : node;
+        DataUsage.Node element = used == null ? null : used.getElement() != null ? used.getElement() : NOTHING;
+        StreamedArray array = new StreamedArray(file, path, offset, size, element);
+        streams.add(array);
+        return array;
+    }
+
+    private KeyTable extend(KeyTable table, String key) {
+        KeyTable child = table.child(key);
+        if (child != null) return child;
+        if (table.size() >= MAX_SHARED_KEYS || keyTables >= MAX_KEY_TABLES) return null;
+        keyTables++;
+        return table.addChild(key);
+    }
+
+    // Moves an object read so far out of the stack into a map, for objects too wide to share keys
+    private Map<String, Object> toMap(KeyTable table, int base) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        Object[] values = pop(base);
+        for (int i = 0; i < values.length; i++) {
+            map.put(table.keyAt(i), values[i]);
+        }
+        return map;
+    }
+
+    private void push(Object value) {
+        if (top == stack.length) stack = Arrays.copyOf(stack, top * 2);
+        stack[top++] = value;
+    }
+
+    private Object[] pop(int base) {
+        Object[] values = Arrays.copyOfRange(stack, base, top);
+        Arrays.fill(stack, base, top, null);
+        top = base;
+        return values;
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * This file is part of FreeMarker JSON/XML Toolkit.
+ *
+ * FreeMarker JSON/XML Toolkit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FreeMarker JSON/XML Toolkit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with FreeMarker JSON/XML Toolkit. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package co.com.leronarenwino.datamodel;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A parsed data model saved in a binary file that is memory-mapped to reopen it.
+ * <p>
+ * The file holds a table of the member names, then every object as a slot per
+ * member (name index, type tag and either the value itself or the offset of a
+ * string, object or array), every array as a slot per element, and numeric arrays
+ * as raw longs or doubles. Opening reads only the header and the names. Objects
+ * and arrays are decoded when a template reaches them, straight from the mapped
+ * pages, so only the pages a template reads are ever loaded. Values are the same
+ * types {@link DataModelReader} gives, with objects and arrays as read-only views
+ * over the file.
+ * <p>
+ * The file must not change while a model opened from it is in use.
+ */
+public final class DataSnapshot {
+
+    private static final byte[] MAGIC = {'F', 'T', 'L', 'S', 'N', 'A', 'P', 0};
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 32;
+
+    static final byte NULL = 0;
+    static final byte FALSE = 1;
+    static final byte TRUE = 2;
+    static final byte INT = 3;
+    static final byte LONG = 4;
+    static final byte DOUBLE = 5;
+    static final byte BIG_INTEGER = 6;
+    static final byte BIG_DECIMAL = 7;
+    static final byte STRING = 8;
+    static final byte OBJECT = 9;
+    static final byte ARRAY = 10;
+    static final byte LONGS = 11;
+    static final byte DOUBLES = 12;
+
+    // Object slots: name index, tag, value; array slots leave out the name
+    static final int OBJECT_SLOT = Integer.BYTES + 1 + Long.BYTES;
+    static final int ARRAY_SLOT = 1 + Long.BYTES;
+    // Wider objects also store their slot numbers sorted by name index, for binary search
+    static final int LINEAR_SCAN_MAX = 8;
+
+    private final MappedData data;
+    private final String[] keys;
+    private final Map<String, Integer> keyIds;
+
+    private DataSnapshot(MappedData data, String[] keys) {
+        this.data = data;
+        this.keys = keys;
+        this.keyIds = new HashMap<>(keys.length * 2);
+        for (int i = 0; i < keys.length; i++) {
+            keyIds.put(keys[i], i);
+        }
+    }
+
+    // Writes the data model of a JSON file as a snapshot; returns the snapshot size in bytes
+    public static long write(Path json, Path snapshot) throws IOException {
+        return SnapshotWriter.write(json, snapshot);
+    }
+
+    public static Map<String, Object> open(Path file) throws IOException {
+        MappedData data = MappedData.map(file);
+        if (data.size() < HEADER_SIZE || !hasMagic(data)) {
+            throw new IOException(file + " is not a data snapshot");
+        }
+        int version = data.getInt(MAGIC.length);
+        if (version != VERSION) {
+            throw new IOException(file + " is a version " + version + " snapshot, expected version " + VERSION);
+        }
+        int keyCount = data.getInt(MAGIC.length + 4);
+        long position = data.getLong(MAGIC.length + 8);
+        String[] keys = new String[keyCount];
+        for (int i = 0; i < keyCount; i++) {
+            keys[i] = data.getString(position);
+            position += Integer.BYTES + data.getInt(position);
+        }
+        DataSnapshot snapshot = new DataSnapshot(data, keys);
+        return new SnapshotObject(snapshot, data.getLong(MAGIC.length + 16));
+    }
+
+    public static boolean isSnapshot(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            return Arrays.equals(in.readNBytes(MAGIC.length), MAGIC);
+        }
+    }
+
+    static byte[] magic() {
+        return MAGIC.clone();
+    }
+
+    private static boolean hasMagic(MappedData data) {
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (data.getByte(i) != MAGIC[i]) return false;
+        }
+        return true;
+    }
+
+    MappedData data() {
+        return data;
+    }
+
+    String keyAt(int id) {
+        return keys[id];
+    }
+
+    int keyId(Object key) {
+        Integer id = keyIds.get(key);
+        return id == null ? -1 : id;
+    }
+
+    Object decode(byte tag, long payload) {
+        return switch (tag) {
+            case FALSE -> Boolean.FALSE;
+            case TRUE -> Boolean.TRUE;
+            case INT -> (int) payload;
+            case LONG -> payload;
+            case DOUBLE -> Double.longBitsToDouble(payload);
+            case BIG_INTEGER -> new BigInteger(data.getString(payload));
+            case BIG_DECIMAL -> new BigDecimal(data.getString(payload));
+            case STRING -> data.getString(payload);
+            case OBJECT -> new SnapshotObject(this, payload);
+            case ARRAY -> new SnapshotArray(this, payload);
+            case LONGS -> decodeLongs(payload);
+            case DOUBLES -> decodeDoubles(payload);
+            default -> null;
+        };
+    }
+
+    // Numeric arrays are copied out whole, in the unboxed form the template models expect
+    private LongArrayList decodeLongs(long position) {
+        long[] values = new long[data.getInt(position)];
+        long from = position + Integer.BYTES;
+        for (int i = 0; i < values.length; i++) {
+            values[i] = data.getLong(from + (long) i * Long.BYTES);
+        }
+        return new LongArrayList(values);
+    }
+
+    private DoubleArrayList decodeDoubles(long position) {
+        double[] values = new double[data.getInt(position)];
+        long from = position + Integer.BYTES;
+        for (int i = 0; i < values.length; i++) {
+            values[i] = data.getDouble(from + (long) i * Double.BYTES);
+        }
+        return new DoubleArrayList(values);
+    }
+}
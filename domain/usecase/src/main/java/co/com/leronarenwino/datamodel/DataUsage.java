@@ -0,0 +1,132 @@
+/*
+ * This file is part of FreeMarker JSON/XML Toolkit.
+ *
+ * FreeMarker JSON/XML Toolkit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FreeMarker JSON/XML Toolkit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with FreeMarker JSON/XML Toolkit. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package co.com.leronarenwino.datamodel;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The parts of a data model a template can read, as a tree of field names.
+ * <p>
+ * A node marked whole is needed with everything below it. Otherwise only its
+ * listed children are needed, and for arrays only what the element node lists.
+ * A usage of everything stands for templates that cannot be analyzed, and means
+ * the data model is parsed in full.
+ */
+public final class DataUsage {
+
+    private static final DataUsage EVERYTHING = new DataUsage(null);
+
+    private final Node root;
+
+    private DataUsage(Node root) {
+        this.root = root;
+    }
+
+    public static DataUsage everything() {
+        return EVERYTHING;
+    }
+
+    public static DataUsage of(Node root) {
+        return new DataUsage(root);
+    }
+
+    public boolean isEverything() {
+        return root == null || root.isWhole();
+    }
+
+    public Node getRoot() {
+        return root;
+    }
+
+    // Canonical form, equal for equal usages, e.g. {customer{name},items[]{qty,sku}}
+    @Override
+    public String toString() {
+        if (isEverything()) return "*";
+        StringBuilder out = new StringBuilder();
+        root.appendTo(out);
+        return out.toString();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof DataUsage other && toString().equals(other.toString());
+    }
+
+    @Override
+    public int hashCode() {
+        return toString().hashCode();
+    }
+
+    // Built while analyzing a template and only read afterwards
+    public static final class Node {
+        private final Map<String, Node> children = new TreeMap<>();
+        private Node element;
+        private boolean whole;
+
+        public Node child(String name) {
+            return children.computeIfAbsent(name, k -> new Node());
+        }
+
+        public Node element() {
+            if (element == null) element = new Node();
+            return element;
+        }
+
+        public void markWhole() {
+            whole = true;
+        }
+
+        public boolean isWhole() {
+            return whole;
+        }
+
+        // Null when the field is not used
+        public Node getChild(String name) {
+            return children.get(name);
+        }
+
+        public Node getElement() {
+            return element;
+        }
+
+        private void appendTo(StringBuilder out) {
+            if (whole) {
+                out.append('*');
+                return;
+            }
+            if (element != null) {
+                out.append("[]");
+                element.appendTo(out);
+            }
+            if (children.isEmpty()) return;
+            out.append('{');
+            boolean first = true;
+            for (Map.Entry<String, Node> child : children.entrySet()) {
+                if (!first) out.append(',');
+                first = false;
+                out.append(child.getKey());
+                Node node = child.getValue();
+                if (node.whole || node.element != null || !node.children.isEmpty()) {
+                    node.appendTo(out);
+                }
+            }
+            out.append('}');
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * This file is part of FreeMarker JSON/XML Toolkit.
+ *
+ * FreeMarker JSON/XML Toolkit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FreeMarker JSON/XML Toolkit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with FreeMarker JSON/XML Toolkit. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package co.com.leronarenwino.datamodel;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The keys of a {@link CompactObject}, in order, shared by every object that has
+ * the same keys in the same order.
+ * <p>
+ * Tables form a tree from the empty table: adding a key to a table always gives
+ * the same child table, so the thousands of elements of an array of records end up
+ * pointing at one table instead of each holding its own keys.
+ */
+final class KeyTable {
+
+    // Up to this many keys a scan is faster than a hash lookup
+    private static final int LINEAR_SCAN_MAX = 8;
+
+    private final String[] keys;
+    private final Map<String, Integer> index;
+    // Most tables only ever grow one way, so the first child is kept outside the map
+    private String firstKey;
+    private KeyTable firstChild;
+    private Map<String, KeyTable> children;
+
+    private KeyTable(String[] keys) {
+        this.keys = keys;
+        if (keys.length > LINEAR_SCAN_MAX) {
+            index = new HashMap<>(keys.length * 2);
+            for (int i = 0; i < keys.length; i++) {
+                index.put(keys[i], i);
+            }
+        } else {
+            index = null;
+        }
+    }
+
+    static KeyTable empty() {
+        return new KeyTable(new String[0]);
+    }
+
+    int size() {
+        return keys.length;
+    }
+
+    String keyAt(int i) {
+        return keys[i];
+    }
+
+    int indexOf(Object key) {
+        if (index != null) {
+            Integer i = index.get(key);
+            return i == null ? -1 : i;
+        }
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i].equals(key)) return i;
+        }
+        return -1;
+    }
+
+    // Existing table for these keys plus one more, or null when none was created yet
+    KeyTable child(String key) {
+        if (key.equals(firstKey)) return firstChild;
+        return children == null ? null : children.get(key);
+    }
+
+    KeyTable addChild(String key) {
+        String[] extended = Arrays.copyOf(keys, keys.length + 1);
+        extended[keys.length] = key;
+        KeyTable table = new KeyTable(extended);
+        if (firstChild == null) {
+            firstKey = key;
+            firstChild = table;
+        } else {
+            if (children == null) children = new HashMap<>();
+            children.put(key, table);
+        }
+        return table;
+    }
+}
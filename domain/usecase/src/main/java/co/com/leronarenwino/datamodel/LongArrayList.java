@@ -0,0 +1,53 @@
+/*
+ * This file is part of FreeMarker JSON/XML Toolkit.
+ *
+ * FreeMarker JSON/XML Toolkit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FreeMarker JSON/XML Toolkit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with FreeMarker JSON/XML Toolkit. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package co.com.leronarenwino.datamodel;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * Read-only JSON array of integers stored as a {@code long[]}.
+ * <p>
+ * Elements are boxed only when read, into the same {@code Integer} or {@code Long}
+ * a plain parse would have stored.
+ */
+public final class LongArrayList extends AbstractList<Number> implements RandomAccess {
+
+    private final long[] values;
+
+    LongArrayList(long[] values) {
+        this.values = values;
+    }
+
+    public long getLong(int index) {
+        return values[index];
+    }
+
+    @Override
+    public Number get(int index) {
+        long value = values[index];
+        // Not a conditional expression, which would promote the Integer to Long
+        if (value == (int) value) return (int) value;
+        return value;
+    }
+
+    @Override
+    public int size() {
+        return values.length;
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * This file is part of FreeMarker JSON/XML Toolkit.
+ *
+ * FreeMarker JSON/XML Toolkit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FreeMarker JSON/XML Toolkit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with FreeMarker JSON/XML Toolkit. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package co.com.leronarenwino.datamodel;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+/**
+ * A file mapped read-only into memory, in chunks so files beyond 2 GB can be read
+ * with long offsets.
+ * <p>
+ * Each chunk also maps the first bytes of the next one, so an int, long or double
+ * never straddles two chunks; only longer runs of bytes are copied piecewise. All
+ * reads are absolute, so threads can share an instance.
+ */
+final class MappedData {
+
+    private static final int CHUNK_BITS = 30;
+    private static final long CHUNK_SIZE = 1L << CHUNK_BITS;
+    private static final int OVERLAP = Long.BYTES;
+
+    private final MappedByteBuffer[] chunks;
+    private final long size;
+
+    private MappedData(MappedByteBuffer[] chunks, long size) {
+        this.chunks = chunks;
+        this.size = size;
+    }
+
+    // The mapping outlives the channel, and is released once the data is unreachable
+    static MappedData map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file)) {
+            long size = channel.size();
+            MappedByteBuffer[] chunks = new MappedByteBuffer[(int) Math.max(1, (size + CHUNK_SIZE - 1) >>> CHUNK_BITS)];
+            for (int i = 0; i < chunks.length; i++) {
+                long start = i * CHUNK_SIZE;
+                chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(size - start, CHUNK_SIZE + OVERLAP));
+            }
+            return new MappedData(chunks, size);
+        }
+    }
+
+    long size() {
+        return size;
+    }
+
+    byte getByte(long position) {
+        return chunks[(int) (position >>> CHUNK_BITS)].get((int) (position & (CHUNK_SIZE - 1)));
+    }
+
+    int getInt(long position) {
+        return chunks[(int) (position >>> CHUNK_BITS)].getInt((int) (position & (CHUNK_SIZE - 1)));
+    }
+
+    long getLong(long position) {
+        return chunks[(int) (position >>> CHUNK_BITS)].getLong((int) (position & (CHUNK_SIZE - 1)));
+    }
+
+    double getDouble(long position) {
+        return chunks[(int) (position >>> CHUNK_BITS)].getDouble((int) (position & (CHUNK_SIZE - 1)));
+    }
+
+    // A UTF-8 string written as its byte length followed by the bytes
+    String getString(long position) {
+        int length = getInt(position);
+        byte[] bytes = new byte[length];
+        long from = position + Integer.BYTES;
+        int copied = 0;
+        while (copied < length) {
+            MappedByteBuffer chunk = chunks[(int) ((from + copied) >>> CHUNK_BITS)];
+            int offset = (int) ((from + copied) & (CHUNK_SIZE - 1));
+            int count = (int) Math.min(length - copied, CHUNK_SIZE - offset);
+            chunk.get(offset, bytes, copied, count);
+            copied += count;
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * This file is part of FreeMarker JSON/XML Toolkit.
+ *
+ * FreeMarker JSON/XML Toolkit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FreeMarker JSON/XML Toolkit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with FreeMarker JSON/XML Toolkit. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package co.com.leronarenwino.datamodel;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * Read-only view of an array in a {@link DataSnapshot}, decoding each element
+ * from the mapped file when it is read.
+ */
+final class SnapshotArray extends AbstractList<Object> implements RandomAccess {
+
+    private final DataSnapshot snapshot;
+    private final MappedData data;
+    private final long slots;
+    private final int size;
+
+    SnapshotArray(DataSnapshot snapshot, long position) {
+        this.snapshot = snapshot;
+        this.data = snapshot.data();
+        this.size = data.getInt(position);
+        this.slots = position + Integer.BYTES;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Object get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + size);
+        }
+        long slot = slots + (long) index * DataSnapshot.ARRAY_SLOT;
+        return snapshot.decode(data.getByte(slot), data.getLong(slot + 1));
+    }
+}
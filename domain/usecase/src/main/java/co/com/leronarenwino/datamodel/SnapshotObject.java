@@ -0,0 +1,124 @@
+/*
+ * This file is part of FreeMarker JSON/XML Toolkit.
+ *
+ * FreeMarker JSON/XML Toolkit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FreeMarker JSON/XML Toolkit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with FreeMarker JSON/XML Toolkit. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package co.com.leronarenwino.datamodel;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Read-only view of an object in a {@link DataSnapshot}, decoding members from the
+ * mapped file as they are read. Members keep their document order.
+ */
+final class SnapshotObject extends AbstractMap<String, Object> {
+
+    private final DataSnapshot snapshot;
+    private final MappedData data;
+    private final long slots;
+    private final int size;
+
+    SnapshotObject(DataSnapshot snapshot, long position) {
+        this.snapshot = snapshot;
+        this.data = snapshot.data();
+        this.size = data.getInt(position);
+        this.slots = position + Integer.BYTES;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    public String keyAt(int i) {
+        return snapshot.keyAt(data.getInt(slot(i)));
+    }
+
+    public Object valueAt(int i) {
+        long slot = slot(i);
+        return snapshot.decode(data.getByte(slot + Integer.BYTES), data.getLong(slot + Integer.BYTES + 1));
+    }
+
+    @Override
+    public Object get(Object key) {
+        int i = indexOf(key);
+        return i < 0 ? null : valueAt(i);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return indexOf(key) >= 0;
+    }
+
+    private int indexOf(Object key) {
+        int id = snapshot.keyId(key);
+        if (id < 0) return -1;
+        if (size <= DataSnapshot.LINEAR_SCAN_MAX) {
+            for (int i = 0; i < size; i++) {
+                if (data.getInt(slot(i)) == id) return i;
+            }
+            return -1;
+        }
+        long sorted = slot(size);
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int i = data.getInt(sorted + (long) middle * Integer.BYTES);
+            int found = data.getInt(slot(i));
+            if (found < id) low = middle + 1;
+            else if (found > id) high = middle - 1;
+            else return i;
+        }
+        return -1;
+    }
+
+    private long slot(int i) {
+        return slots + (long) i * DataSnapshot.OBJECT_SLOT;
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public int size() {
+                return size;
+            }
+
+            @Override
+            public Iterator<Entry<String, Object>> iterator() {
+                return new Iterator<>() {
+                    private int next;
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < size;
+                    }
+
+                    @Override
+                    public Entry<String, Object> next() {
+                        if (next >= size) throw new NoSuchElementException();
+                        int i = next++;
+                        return new SimpleImmutableEntry<>(keyAt(i), valueAt(i));
+                    }
+                };
+            }
+        };
+    }
+}
@@ -0,0 +1,318 @@
+/*
+ * This file is part of FreeMarker JSON/XML Toolkit.
+ *
+ * FreeMarker JSON/XML Toolkit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FreeMarker JSON/XML Toolkit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with FreeMarker JSON/XML Toolkit. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package co.com.leronarenwino.datamodel;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes a {@link DataSnapshot} while reading the JSON token by token.
+ * <p>
+ * Every value is written before the object or array holding it, so a container is
+ * written once its end is reached, with the offsets of its values already known.
+ * Only the slots of the containers still open are kept in memory, never the model.
+ */
+final class SnapshotWriter implements Closeable {
+
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final int NO_KEY = -1;
+
+    private final JsonParser parser;
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private long position;
+    private final Map<String, Integer> keyIds = new HashMap<>();
+    private final List<String> keys = new ArrayList<>();
+    // Slots of the objects and arrays being written, innermost last
+    private int[] slotKeys = new int[64];
+    private byte[] slotTags = new byte[64];
+    private long[] slotValues = new long[64];
+    private int top;
+
+    private SnapshotWriter(JsonParser parser, FileChannel channel) {
+        this.parser = parser;
+        this.channel = channel;
+    }
+
+    static long write(Path json, Path snapshot) throws IOException {
+        try (JsonParser parser = DataModelReader.createParser(Files.newInputStream(json));
+             SnapshotWriter writer = new SnapshotWriter(parser, FileChannel.open(snapshot, StandardOpenOption.CREATE,
+                     StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE))) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("The data model must be a JSON object");
+            }
+            return writer.writeModel();
+        } catch (IOException | RuntimeException e) {
+            // A partial snapshot must not be mistaken for a complete one
+            Files.deleteIfExists(snapshot);
+            throw e;
+        }
+    }
+
+    private long writeModel() throws IOException {
+        // The header is written last, once the offsets are known
+        ensure(DataSnapshot.HEADER_SIZE);
+        buffer.put(new byte[DataSnapshot.HEADER_SIZE]);
+        position += DataSnapshot.HEADER_SIZE;
+        long root = writeObject();
+        long keysOffset = position;
+        for (String key : keys) {
+            writeString(key);
+        }
+        flush();
+        ByteBuffer header = ByteBuffer.allocate(DataSnapshot.HEADER_SIZE);
+        header.put(DataSnapshot.magic())
+                .putInt(DataSnapshot.VERSION)
+                .putInt(keys.size())
+                .putLong(keysOffset)
+                .putLong(root)
+                .flip();
+        while (header.hasRemaining()) {
+            channel.write(header, header.position());
+        }
+        return position;
+    }
+
+    // The parser is on the first token of the value; pushes its slot
+    private void pushValue(int key) throws IOException {
+        switch (parser.currentToken()) {
+            case START_OBJECT -> push(key, DataSnapshot.OBJECT, writeObject());
+            case START_ARRAY -> pushArray(key);
+            case VALUE_STRING -> push(key, DataSnapshot.STRING, writeString(parser.getText()));
+            case VALUE_NUMBER_INT -> {
+                switch (parser.getNumberType()) {
+                    case INT -> push(key, DataSnapshot.INT, parser.getIntValue());
+                    case LONG -> push(key, DataSnapshot.LONG, parser.getLongValue());
+                    default -> push(key, DataSnapshot.BIG_INTEGER, writeString(parser.getBigIntegerValue().toString()));
+                }
+            }
+            case VALUE_NUMBER_FLOAT -> {
+                if (parser.getNumberType() == JsonParser.NumberType.BIG_DECIMAL) {
+                    push(key, DataSnapshot.BIG_DECIMAL, writeString(parser.getDecimalValue().toString()));
+                } else {
+                    push(key, DataSnapshot.DOUBLE, Double.doubleToRawLongBits(parser.getDoubleValue()));
+                }
+            }
+            case VALUE_TRUE -> push(key, DataSnapshot.TRUE, 0);
+            case VALUE_FALSE -> push(key, DataSnapshot.FALSE, 0);
+            default -> push(key, DataSnapshot.NULL, 0);
+        }
+    }
+
+    // Returns the offset of the object; a repeated key keeps its first place and its last value, as with a map
+    private long writeObject() throws IOException {
+        int base = top;
+        Map<Integer, Integer> wide = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            int key = keyId(parser.currentName());
+            parser.nextToken();
+            pushValue(key);
+            int slot = top - 1;
+            int existing = -1;
+            if (wide != null) {
+                Integer found = wide.putIfAbsent(key, slot);
+                if (found != null) existing = found;
+            } else {
+                for (int i = base; i < slot; i++) {
+                    if (slotKeys[i] == key) {
+                        existing = i;
+                        break;
+                    }
+                }
+                if (existing < 0 && top - base > DataSnapshot.LINEAR_SCAN_MAX) {
+                    wide = new HashMap<>();
+                    for (int i = base; i < top; i++) {
+                        wide.put(slotKeys[i], i);
+                    }
+                }
+            }
+            if (existing >= 0) {
+                slotTags[existing] = slotTags[slot];
+                slotValues[existing] = slotValues[slot];
+                top--;
+            }
+        }
+        int count = top - base;
+        long start = position;
+        writeInt(count);
+        for (int i = base; i < top; i++) {
+            writeInt(slotKeys[i]);
+            writeByte(slotTags[i]);
+            writeLong(slotValues[i]);
+        }
+        if (count > DataSnapshot.LINEAR_SCAN_MAX) {
+            long[] sorted = new long[count];
+            for (int i = 0; i < count; i++) {
+                sorted[i] = ((long) slotKeys[base + i] << 32) | i;
+            }
+            Arrays.sort(sorted);
+            for (long entry : sorted) {
+                writeInt((int) entry);
+            }
+        }
+        top = base;
+        return start;
+    }
+
+    // Arrays of only integers or only decimals are stored raw, like the unboxed arrays of the reader
+    private void pushArray(int key) throws IOException {
+        int base = top;
+        JsonToken token = parser.nextToken();
+        if (token == JsonToken.VALUE_NUMBER_INT || token == JsonToken.VALUE_NUMBER_FLOAT) {
+            if (writeNumbers(key)) return;
+            token = parser.currentToken();
+        }
+        while (token != JsonToken.END_ARRAY) {
+            pushValue(NO_KEY);
+            token = parser.nextToken();
+        }
+        long start = position;
+        writeInt(top - base);
+        for (int i = base; i < top; i++) {
+            writeByte(slotTags[i]);
+            writeLong(slotValues[i]);
+        }
+        top = base;
+        push(key, DataSnapshot.ARRAY, start);
+    }
+
+    /*
+     * Same rule as DataModelReader.readNumbers: on the first value of another kind
+     * the numbers read so far are pushed as single slots and false is returned with
+     * the parser on that value.
+     */
+    private boolean writeNumbers(int key) throws IOException {
+        JsonToken kind = parser.currentToken();
+        boolean integers = kind == JsonToken.VALUE_NUMBER_INT;
+        long[] values = new long[16];
+        int size = 0;
+        JsonToken token = kind;
+        while (token == kind && isPrimitive()) {
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            values[size++] = integers ? parser.getLongValue() : Double.doubleToRawLongBits(parser.getDoubleValue());
+            token = parser.nextToken();
+        }
+        if (token == JsonToken.END_ARRAY) {
+            long start = position;
+            writeInt(size);
+            for (int i = 0; i < size; i++) {
+                writeLong(values[i]);
+            }
+            push(key, integers ? DataSnapshot.LONGS : DataSnapshot.DOUBLES, start);
+            return true;
+        }
+        for (int i = 0; i < size; i++) {
+            long value = values[i];
+            byte tag = !integers ? DataSnapshot.DOUBLE : value == (int) value ? DataSnapshot.INT : DataSnapshot.LONG;
+            push(NO_KEY, tag, value);
+        }
+        return false;
+    }
+
+    private boolean isPrimitive() throws IOException {
+        JsonParser.NumberType type = parser.getNumberType();
+        return type == JsonParser.NumberType.INT || type == JsonParser.NumberType.LONG
+                || type == JsonParser.NumberType.DOUBLE;
+    }
+
+    private int keyId(String name) {
+        Integer id = keyIds.get(name);
+        if (id == null) {
+            id = keys.size();
+            keyIds.put(name, id);
+            keys.add(name);
+        }
+        return id;
+    }
+
+    private void push(int key, byte tag, long value) {
+        if (top == slotKeys.length) {
+            slotKeys = Arrays.copyOf(slotKeys, top * 2);
+            slotTags = Arrays.copyOf(slotTags, top * 2);
+            slotValues = Arrays.copyOf(slotValues, top * 2);
+        }
+        slotKeys[top] = key;
+        slotTags[top] = tag;
+        slotValues[top] = value;
+        top++;
+    }
+
+    private long writeString(String text) throws IOException {
+        long start = position;
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        writeInt(bytes.length);
+        int written = 0;
+        while (written < bytes.length) {
+            if (!buffer.hasRemaining()) flush();
+            int count = Math.min(buffer.remaining(), bytes.length - written);
+            buffer.put(bytes, written, count);
+            written += count;
+        }
+        position += bytes.length;
+        return start;
+    }
+
+    private void writeByte(byte value) throws IOException {
+        ensure(1);
+        buffer.put(value);
+        position++;
+    }
+
+    private void writeInt(int value) throws IOException {
+        ensure(Integer.BYTES);
+        buffer.putInt(value);
+        position += Integer.BYTES;
+    }
+
+    private void writeLong(long value) throws IOException {
+        ensure(Long.BYTES);
+        buffer.putLong(value);
+        position += Long.BYTES;
+    }
+
+    private void ensure(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) flush();
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * This file is part of FreeMarker JSON/XML Toolkit.
+ *
+ * FreeMarker JSON/XML Toolkit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FreeMarker JSON/XML Toolkit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with FreeMarker JSON/XML Toolkit. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package co.com.leronarenwino.datamodel;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A JSON array of the data model left in its file and parsed one element at a
+ * time while a template lists it.
+ * <p>
+ * Reading the data model only notes where the array starts and how many elements
+ * it has. Listing it opens the file at that offset, and each element is garbage as
+ * soon as the loop moves on, so memory stays flat however long the array is. The
+ * array can therefore be gone through only once.
+ */
+public final class StreamedArray implements LazyCollection, Closeable {
+
+    private final Path file;
+    private final String path;
+    private final long offset;
+    private final int size;
+    // Usage of each element, null to read elements whole
+    private final DataUsage.Node element;
+    private boolean started;
+    private JsonParser parser;
+
+    StreamedArray(Path file, String path, long offset, int size, DataUsage.Node element) {
+        this.file = file;
+        this.path = path;
+        this.offset = offset;
+        this.size = size;
+        this.element = element;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /*
+     * Iterators can be created freely: one that has not read an element answers
+     * hasNext from the count, so testing for content does not use up the pass. The
+     * first element read claims the single pass, and any other iterator then fails.
+     */
+    @Override
+    public Iterator<Object> iterator() {
+        return new Iterator<>() {
+            private DataModelReader reader;
+            private boolean pending;
+            private boolean done;
+
+            @Override
+            public boolean hasNext() {
+                if (pending) return true;
+                if (done) return false;
+                if (reader == null) {
+                    checkNotStarted();
+                    return size > 0;
+                }
+                try {
+                    if (parser == null || parser.nextToken() == JsonToken.END_ARRAY) {
+                        done = true;
+                        close();
+                        return false;
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Could not read \"" + path + "\" from " + file, e);
+                }
+                pending = true;
+                return true;
+            }
+
+            @Override
+            public Object next() {
+                if (reader == null) {
+                    reader = start();
+                }
+                if (!hasNext()) throw new NoSuchElementException();
+                pending = false;
+                try {
+                    return reader.readValue(element);
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Could not read \"" + path + "\" from " + file, e);
+                }
+            }
+        };
+    }
+
+    private synchronized void checkNotStarted() {
+        if (started) {
+            throw new IllegalStateException("\"" + path + "\" is streamed from the data file and can only be listed once");
+        }
+    }
+
+    private synchronized DataModelReader start() {
+        checkNotStarted();
+        started = true;
+        try {
+            return open();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read \"" + path + "\" from " + file, e);
+        }
+    }
+
+    private DataModelReader open() throws IOException {
+        FileChannel channel = FileChannel.open(file);
+        try {
+            channel.position(offset);
+            parser = DataModelReader.createParser(Channels.newInputStream(channel));
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IOException("The data file changed since it was read");
+            }
+            return new DataModelReader(parser);
+        } catch (IOException e) {
+            parser = null;
+            channel.close();
+            throw e;
+        }
+    }
+
+    // Releases the file when a template stops listing early
+    @Override
+    public synchronized void close() throws IOException {
+        if (parser != null) {
+            parser.close();
+            parser = null;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * This file is part of FreeMarker JSON/XML Toolkit.
+ *
+ * FreeMarker JSON/XML Toolkit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FreeMarker JSON/XML Toolkit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with FreeMarker JSON/XML Toolkit. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package co.com.leronarenwino.diff;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares a rendered output with a known-good ("golden") output.
+ * <p>
+ * JSON and XML are compared structurally: formatting does not matter, numbers
+ * compare by value and object members in any order. Both are read as streams in
+ * lockstep, so memory stays small even for very large outputs; only a JSON object
+ * whose members come in a different order is buffered. Anything else is compared
+ * line by line with {@link LineDiff}.
+ */
+public class GoldenComparator {
+
+    public static final int DEFAULT_MAX_DIFFERENCES = 1000;
+    private static final int MAX_SNIPPET = 200;
+
+    public enum Mode {AUTO, JSON, XML, TEXT}
+
+    public enum Kind {CHANGED, TYPE_MISMATCH, MISSING, UNEXPECTED, TEXT}
+
+    // Lines are 1-based, 0 when unknown
+    public record Difference(Kind kind, String path, String expected, String actual, int expectedLine, int actualLine) {
+
+        @Override
+        public String toString() {
+            return switch (kind) {
+                case MISSING -> path + ": missing, expected " + expected;
+                case UNEXPECTED -> path + ": unexpected " + actual;
+                case TYPE_MISMATCH -> path + ": type differs, expected " + expected + " but was " + actual;
+                default -> path + ": expected " + expected + " but was " + actual;
+            };
+        }
+    }
+
+    public record Result(Mode mode, List<Difference> differences, boolean truncated, String note) {
+
+        public boolean isEqual() {
+            return differences.isEmpty();
+        }
+    }
+
+    private GoldenComparator() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    public static Result compare(String expected, String actual, Mode mode) {
+        return compare(expected, actual, mode, DEFAULT_MAX_DIFFERENCES);
+    }
+
+    public static Result compare(String expected, String actual, Mode mode, int maxDifferences) {
+        Mode resolved = mode == Mode.AUTO ? detect(expected) : mode;
+        Collector collector = new Collector(maxDifferences);
+        String note = null;
+        try {
+            switch (resolved) {
+                case JSON -> JsonComparator.compare(expected, actual, collector);
+                case XML -> XmlComparator.compare(expected, actual, collector);
+                default -> compareText(expected, actual, collector);
+            }
+        } catch (Collector.LimitReached e) {
+            // Enough differences collected
+        } catch (Exception e) {
+            // Not parseable as the detected format: fall back to comparing the text
+            String message = String.valueOf(e.getMessage()).lines().findFirst().orElse("");
+            note = resolved + " comparison failed (" + message + "), compared as text";
+            resolved = Mode.TEXT;
+            collector = new Collector(maxDifferences);
+            try {
+                compareText(expected, actual, collector);
+            } catch (Collector.LimitReached limit) {
+                // Enough differences collected
+            }
+        }
+        return new Result(resolved, collector.differences, collector.truncated, note);
+    }
+
+    public static Mode detect(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c) || c == '\uFEFF') continue;
+            if (c == '{' || c == '[') return Mode.JSON;
+            if (c == '<') return Mode.XML;
+            return Mode.TEXT;
+        }
+        return Mode.TEXT;
+    }
+
+    private static void compareText(String expected, String actual, Collector collector) {
+        LineDiff diff = LineDiff.compute(expected, actual);
+        for (MyersDiff.Edit edit : diff.getEdits()) {
+            String oldLines = expected.substring(diff.oldOffset(edit.oldStart()), diff.oldOffset(edit.oldEnd()));
+            String newLines = actual.substring(diff.newOffset(edit.newStart()), diff.newOffset(edit.newEnd()));
+            String path = edit.isInsert() ? "after line " + edit.oldStart()
+                    : edit.oldEnd() - edit.oldStart() == 1 ? "line " + (edit.oldStart() + 1)
+                    : "lines " + (edit.oldStart() + 1) + "-" + edit.oldEnd();
+            collector.add(new Difference(Kind.TEXT, path, snippet(oldLines), snippet(newLines),
+                    edit.oldStart() + 1, edit.newStart() + 1));
+        }
+    }
+
+    static String snippet(String text) {
+        String single = text.replace("\r", "\\r").replace("\n", "\\n");
+        return single.length() <= MAX_SNIPPET ? single : single.substring(0, MAX_SNIPPET) + "…";
+    }
+
+    // Stops the comparison by exception once the limit is reached, so large inputs are not read to the end
+    static final class Collector {
+        private final int max;
+        private final List<Difference> differences = new ArrayList<>();
+        private boolean truncated;
+
+        Collector(int max) {
+            this.max = Math.max(1, max);
+        }
+
+        void add(Difference difference) {
+            if (differences.size() >= max) {
+                truncated = true;
+                throw new LimitReached();
+            }
+            differences.add(difference);
+        }
+
+        static final class LimitReached extends RuntimeException {
+            private static final long serialVersionUID = 1L;
+
+            LimitReached() {
+                super(null, null, false, false);
+            }
+        }
+    }
+}
@@ -0,0 +1,271 @@
+/*
+ * This file is part of FreeMarker JSON/XML Toolkit.
+ *
+ * FreeMarker JSON/XML Toolkit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FreeMarker JSON/XML Toolkit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with FreeMarker JSON/XML Toolkit. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package co.com.leronarenwino.diff;
+
+import co.com.leronarenwino.diff.GoldenComparator.Collector;
+import co.com.leronarenwino.diff.GoldenComparator.Difference;
+import co.com.leronarenwino.diff.GoldenComparator.Kind;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Structural JSON comparison reading both documents token by token in lockstep.
+ * <p>
+ * Objects are compared member by member while the names line up. From the first
+ * name that differs, the rest of both objects is read into trees and matched by
+ * name, so reordered members cost memory only for that object.
+ */
+final class JsonComparator {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final JsonParser expected;
+    private final JsonParser actual;
+    private final Collector collector;
+
+    private JsonComparator(JsonParser expected, JsonParser actual, Collector collector) {
+        this.expected = expected;
+        this.actual = actual;
+        this.collector = collector;
+    }
+
+    static void compare(String expectedText, String actualText, Collector collector) throws IOException {
+        try (JsonParser expected = MAPPER.createParser(expectedText);
+             JsonParser actual = MAPPER.createParser(actualText)) {
+            JsonComparator comparator = new JsonComparator(expected, actual, collector);
+            expected.nextToken();
+            actual.nextToken();
+            if (expected.currentToken() == null || actual.currentToken() == null) {
+                if (expected.currentToken() != actual.currentToken()) {
+                    comparator.report(expected.currentToken() == null ? Kind.UNEXPECTED : Kind.MISSING, "$",
+                            comparator.describe(expected), comparator.describe(actual));
+                }
+                return;
+            }
+            comparator.compareValue("$");
+            // Drain both so trailing garbage still fails as a parse error
+            while (expected.nextToken() != null) expected.skipChildren();
+            while (actual.nextToken() != null) actual.skipChildren();
+        }
+    }
+
+    // Both parsers are on the first token of a value and end on its last token
+    private void compareValue(String path) throws IOException {
+        JsonToken e = expected.currentToken();
+        JsonToken a = actual.currentToken();
+        if (category(e) != category(a)) {
+            report(Kind.TYPE_MISMATCH, path, describe(expected), describe(actual));
+            expected.skipChildren();
+            actual.skipChildren();
+            return;
+        }
+        switch (e) {
+            case START_OBJECT -> compareObject(path);
+            case START_ARRAY -> compareArray(path);
+            default -> {
+                if (!sameScalar()) {
+                    report(Kind.CHANGED, path, describe(expected), describe(actual));
+                }
+            }
+        }
+    }
+
+    private void compareArray(String path) throws IOException {
+        int index = 0;
+        while (true) {
+            JsonToken e = expected.nextToken();
+            JsonToken a = actual.nextToken();
+            if (e == JsonToken.END_ARRAY && a == JsonToken.END_ARRAY) return;
+            String item = path + "[" + index++ + "]";
+            if (e == JsonToken.END_ARRAY) {
+                reportRemaining(actual, Kind.UNEXPECTED, item, index - 1, path, JsonToken.END_ARRAY);
+                return;
+            }
+            if (a == JsonToken.END_ARRAY) {
+                reportRemaining(expected, Kind.MISSING, item, index - 1, path, JsonToken.END_ARRAY);
+                return;
+            }
+            compareValue(item);
+        }
+    }
+
+    // Reports the rest of an array found on one side only; the other side is already at its end
+    private void reportRemaining(JsonParser parser, Kind kind, String firstPath, int index, String path,
+                                 JsonToken end) throws IOException {
+        String item = firstPath;
+        while (parser.currentToken() != end) {
+            String text = describe(parser);
+            int line = parser.currentTokenLocation().getLineNr();
+            parser.skipChildren();
+            collector.add(new Difference(kind, item, kind == Kind.MISSING ? text : null,
+                    kind == Kind.UNEXPECTED ? text : null,
+                    kind == Kind.MISSING ? line : expected.currentTokenLocation().getLineNr(),
+                    kind == Kind.UNEXPECTED ? line : actual.currentTokenLocation().getLineNr()));
+            parser.nextToken();
+            item = path + "[" + ++index + "]";
+        }
+    }
+
+    private void compareObject(String path) throws IOException {
+        while (true) {
+            JsonToken e = expected.nextToken();
+            JsonToken a = actual.nextToken();
+            if (e == JsonToken.END_OBJECT && a == JsonToken.END_OBJECT) return;
+            if (e == JsonToken.FIELD_NAME && a == JsonToken.FIELD_NAME
+                    && expected.currentName().equals(actual.currentName())) {
+                String member = path + "." + expected.currentName();
+                expected.nextToken();
+                actual.nextToken();
+                compareValue(member);
+                continue;
+            }
+            // Names no longer line up: match the rest of both objects by name
+            int expectedLine = expected.currentTokenLocation().getLineNr();
+            int actualLine = actual.currentTokenLocation().getLineNr();
+            compareMembers(path, readRemaining(expected), readRemaining(actual), expectedLine, actualLine);
+            return;
+        }
+    }
+
+    // Reads the members left in the current object, from a field name or the closing brace
+    private static Map<String, JsonNode> readRemaining(JsonParser parser) throws IOException {
+        Map<String, JsonNode> members = new LinkedHashMap<>();
+        while (parser.currentToken() == JsonToken.FIELD_NAME) {
+            String name = parser.currentName();
+            parser.nextToken();
+            members.put(name, parser.readValueAsTree());
+            parser.nextToken();
+        }
+        return members;
+    }
+
+    private void compareMembers(String path, Map<String, JsonNode> expectedMembers,
+                                Map<String, JsonNode> actualMembers, int expectedLine, int actualLine) {
+        for (Map.Entry<String, JsonNode> entry : expectedMembers.entrySet()) {
+            JsonNode other = actualMembers.get(entry.getKey());
+            String member = path + "." + entry.getKey();
+            if (other == null) {
+                collector.add(new Difference(Kind.MISSING, member, describe(entry.getValue()), null,
+                        expectedLine, actualLine));
+            } else {
+                compareNodes(member, entry.getValue(), other, expectedLine, actualLine);
+            }
+        }
+        for (Map.Entry<String, JsonNode> entry : actualMembers.entrySet()) {
+            if (!expectedMembers.containsKey(entry.getKey())) {
+                collector.add(new Difference(Kind.UNEXPECTED, path + "." + entry.getKey(), null,
+                        describe(entry.getValue()), expectedLine, actualLine));
+            }
+        }
+    }
+
+    // Same rules as the streaming comparison, for members that had to be buffered
+    private void compareNodes(String path, JsonNode e, JsonNode a, int expectedLine, int actualLine) {
+        if (nodeCategory(e) != nodeCategory(a)) {
+            collector.add(new Difference(Kind.TYPE_MISMATCH, path, describe(e), describe(a), expectedLine, actualLine));
+        } else if (e.isObject()) {
+            Map<String, JsonNode> expectedMembers = new LinkedHashMap<>();
+            Map<String, JsonNode> actualMembers = new LinkedHashMap<>();
+            e.properties().forEach(entry -> expectedMembers.put(entry.getKey(), entry.getValue()));
+            a.properties().forEach(entry -> actualMembers.put(entry.getKey(), entry.getValue()));
+            compareMembers(path, expectedMembers, actualMembers, expectedLine, actualLine);
+        } else if (e.isArray()) {
+            Iterator<JsonNode> ei = e.elements();
+            Iterator<JsonNode> ai = a.elements();
+            int index = 0;
+            while (ei.hasNext() || ai.hasNext()) {
+                String item = path + "[" + index++ + "]";
+                if (!ai.hasNext()) {
+                    collector.add(new Difference(Kind.MISSING, item, describe(ei.next()), null, expectedLine, actualLine));
+                } else if (!ei.hasNext()) {
+                    collector.add(new Difference(Kind.UNEXPECTED, item, null, describe(ai.next()), expectedLine, actualLine));
+                } else {
+                    compareNodes(item, ei.next(), ai.next(), expectedLine, actualLine);
+                }
+            }
+        } else if (e.isNumber() ? e.decimalValue().compareTo(a.decimalValue()) != 0 : !e.equals(a)) {
+            collector.add(new Difference(Kind.CHANGED, path, describe(e), describe(a), expectedLine, actualLine));
+        }
+    }
+
+    private boolean sameScalar() throws IOException {
+        JsonToken token = expected.currentToken();
+        if (token == JsonToken.VALUE_NUMBER_INT || token == JsonToken.VALUE_NUMBER_FLOAT) {
+            // 1, 1.0 and 1e0 are the same number
+            return expected.getDecimalValue().compareTo(actual.getDecimalValue()) == 0;
+        }
+        if (token == JsonToken.VALUE_STRING) {
+            return expected.getText().equals(actual.getText());
+        }
+        return token == actual.currentToken();
+    }
+
+    private void report(Kind kind, String path, String expectedText, String actualText) {
+        collector.add(new Difference(kind, path, expectedText, actualText,
+                expected.currentTokenLocation().getLineNr(), actual.currentTokenLocation().getLineNr()));
+    }
+
+    private static int category(JsonToken token) {
+        if (token == null) return 0;
+        return switch (token) {
+            case START_OBJECT -> 1;
+            case START_ARRAY -> 2;
+            case VALUE_STRING -> 3;
+            case VALUE_NUMBER_INT, VALUE_NUMBER_FLOAT -> 4;
+            case VALUE_TRUE, VALUE_FALSE -> 5;
+            default -> 6;
+        };
+    }
+
+    private static int nodeCategory(JsonNode node) {
+        if (node.isObject()) return 1;
+        if (node.isArray()) return 2;
+        if (node.isTextual()) return 3;
+        if (node.isNumber()) return 4;
+        if (node.isBoolean()) return 5;
+        return 6;
+    }
+
+    private String describe(JsonParser parser) {
+        JsonToken token = parser.currentToken();
+        if (token == null) return "nothing";
+        try {
+            return switch (token) {
+                case START_OBJECT -> "{…}";
+                case START_ARRAY -> "[…]";
+                case VALUE_STRING -> GoldenComparator.snippet("\"" + parser.getText() + "\"");
+                default -> GoldenComparator.snippet(parser.getText());
+            };
+        } catch (IOException e) {
+            return token.asString();
+        }
+    }
+
+    private static String describe(JsonNode node) {
+        if (node.isObject()) return "{…}";
+        if (node.isArray()) return "[…]";
+        return GoldenComparator.snippet(node.toString());
+    }
+}
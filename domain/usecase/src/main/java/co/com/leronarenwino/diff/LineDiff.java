@@ -0,0 +1,166 @@
+/*
+ * This file is part of FreeMarker JSON/XML Toolkit.
+ *
+ * FreeMarker JSON/XML Toolkit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FreeMarker JSON/XML Toolkit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with FreeMarker JSON/XML Toolkit. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package co.com.leronarenwino.diff;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Line-level diff of two texts. Lines keep their terminators, so the edits map
+ * back to exact character ranges through {@link #oldOffset(int)} and
+ * {@link #newOffset(int)}.
+ * <p>
+ * Equal lines are interned to the same id without copying them out of the text,
+ * and the ids are compared with {@link MyersDiff}.
+ */
+public class LineDiff {
+
+    private final CharSequence oldText;
+    private final CharSequence newText;
+    private final int[] oldStarts;
+    private final int[] newStarts;
+    private final List<MyersDiff.Edit> edits;
+
+    private LineDiff(CharSequence oldText, CharSequence newText) {
+        this.oldText = oldText;
+        this.newText = newText;
+        this.oldStarts = lineStarts(oldText);
+        this.newStarts = lineStarts(newText);
+        Map<LineKey, Integer> ids = new HashMap<>();
+        int[] oldIds = intern(oldText, oldStarts, ids);
+        int[] newIds = intern(newText, newStarts, ids);
+        this.edits = MyersDiff.diff(oldIds, newIds);
+    }
+
+    public static LineDiff compute(CharSequence oldText, CharSequence newText) {
+        return new LineDiff(oldText, newText);
+    }
+
+    // Edits in line numbers
+    public List<MyersDiff.Edit> getEdits() {
+        return edits;
+    }
+
+    public boolean isIdentical() {
+        return edits.isEmpty();
+    }
+
+    public int getOldLineCount() {
+        return oldStarts.length - 1;
+    }
+
+    public int getNewLineCount() {
+        return newStarts.length - 1;
+    }
+
+    // Character offset where the line starts; the line count gives the text length
+    public int oldOffset(int line) {
+        return oldStarts[line];
+    }
+
+    public int newOffset(int line) {
+        return newStarts[line];
+    }
+
+    public CharSequence getOldText() {
+        return oldText;
+    }
+
+    public CharSequence getNewText() {
+        return newText;
+    }
+
+    // New text that replaces the old lines of the edit
+    public CharSequence replacementOf(MyersDiff.Edit edit) {
+        return newText.subSequence(newStarts[edit.newStart()], newStarts[edit.newEnd()]);
+    }
+
+    // Start offsets of every line plus the text length; "\n", "\r\n" and a lone "\r" end a line
+    static int[] lineStarts(CharSequence text) {
+        int[] starts = new int[16];
+        int count = 0;
+        int length = text.length();
+        int position = 0;
+        while (position < length) {
+            if (count + 1 >= starts.length) starts = Arrays.copyOf(starts, starts.length * 2);
+            starts[count++] = position;
+            while (position < length) {
+                char c = text.charAt(position++);
+                if (c == '\n') break;
+                if (c == '\r') {
+                    if (position < length && text.charAt(position) == '\n') position++;
+                    break;
+                }
+            }
+        }
+        starts = Arrays.copyOf(starts, count + 1);
+        starts[count] = length;
+        return starts;
+    }
+
+    private static int[] intern(CharSequence text, int[] starts, Map<LineKey, Integer> ids) {
+        int[] result = new int[starts.length - 1];
+        for (int i = 0; i < result.length; i++) {
+            LineKey key = new LineKey(text, starts[i], starts[i + 1]);
+            Integer id = ids.get(key);
+            if (id == null) {
+                id = ids.size();
+                ids.put(key, id);
+            }
+            result[i] = id;
+        }
+        return result;
+    }
+
+    // A line compared by content in place, without copying it into its own String
+    private static final class LineKey {
+        private final CharSequence text;
+        private final int start;
+        private final int end;
+        private final int hash;
+
+        private LineKey(CharSequence text, int start, int end) {
+            this.text = text;
+            this.start = start;
+            this.end = end;
+            int h = 0;
+            for (int i = start; i < end; i++) {
+                h = 31 * h + text.charAt(i);
+            }
+            this.hash = h;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof LineKey other) || other.hash != hash || other.end - other.start != end - start) {
+                return false;
+            }
+            for (int i = 0; i < end - start; i++) {
+                if (text.charAt(start + i) != other.text.charAt(other.start + i)) return false;
+            }
+            return true;
+        }
+    }
+}
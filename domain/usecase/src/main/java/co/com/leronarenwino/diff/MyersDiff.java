@@ -0,0 +1,176 @@
+/*
+ * This file is part of FreeMarker JSON/XML Toolkit.
+ *
+ * FreeMarker JSON/XML Toolkit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FreeMarker JSON/XML Toolkit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with FreeMarker JSON/XML Toolkit. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package co.com.leronarenwino.diff;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Myers' O(ND) difference algorithm in its linear-space form: the middle snake of
+ * each box is found with a forward and a backward search, and the boxes on either
+ * side of it are solved in turn.
+ * <p>
+ * Sequences are compared as ints, usually ids of interned lines. Memory stays
+ * linear in the input. Boxes that would cost more than a budget of edit steps are
+ * split at the furthest point reached instead, so very different inputs give a
+ * valid but not always minimal script in bounded time.
+ */
+public class MyersDiff {
+
+    // Edit steps times sequence length allowed per box before the search falls back to a heuristic split
+    private static final long WORK_BUDGET = 200_000_000L;
+    private static final int MIN_COST_LIMIT = 256;
+
+    private MyersDiff() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    // Replaces a[oldStart, oldEnd) with b[newStart, newEnd); edits come in order and never touch each other
+    public record Edit(int oldStart, int oldEnd, int newStart, int newEnd) {
+
+        public boolean isInsert() {
+            return oldStart == oldEnd;
+        }
+
+        public boolean isDelete() {
+            return newStart == newEnd;
+        }
+    }
+
+    public static List<Edit> diff(int[] a, int[] b) {
+        List<Edit> edits = new ArrayList<>();
+        int size = a.length + b.length + 2;
+        int[] forward = new int[2 * size + 1];
+        int[] backward = new int[2 * size + 1];
+        int costLimit = (int) Math.max(MIN_COST_LIMIT, WORK_BUDGET / Math.max(1, a.length + b.length));
+
+        // Boxes still to solve, left before right so the edits come out in order
+        Deque<int[]> boxes = new ArrayDeque<>();
+        boxes.push(new int[]{0, a.length, 0, b.length});
+        while (!boxes.isEmpty()) {
+            int[] box = boxes.pop();
+            int aLo = box[0];
+            int aHi = box[1];
+            int bLo = box[2];
+            int bHi = box[3];
+            while (aLo < aHi && bLo < bHi && a[aLo] == b[bLo]) {
+                aLo++;
+                bLo++;
+            }
+            while (aLo < aHi && bLo < bHi && a[aHi - 1] == b[bHi - 1]) {
+                aHi--;
+                bHi--;
+            }
+            if (aLo == aHi || bLo == bHi) {
+                if (aLo < aHi || bLo < bHi) add(edits, aLo, aHi, bLo, bHi);
+                continue;
+            }
+            int[] snake = middleSnake(a, aLo, aHi, b, bLo, bHi, forward, backward, size, costLimit);
+            // A split that leaves the whole box on one side would not terminate
+            if (snake == null || (snake[2] == aLo && snake[3] == bLo) || (snake[0] == aHi && snake[1] == bHi)) {
+                add(edits, aLo, aHi, bLo, bHi);
+                continue;
+            }
+            boxes.push(new int[]{snake[2], aHi, snake[3], bHi});
+            boxes.push(new int[]{aLo, snake[0], bLo, snake[1]});
+        }
+        return edits;
+    }
+
+    private static void add(List<Edit> edits, int aLo, int aHi, int bLo, int bHi) {
+        if (!edits.isEmpty()) {
+            Edit last = edits.get(edits.size() - 1);
+            if (last.oldEnd() == aLo && last.newEnd() == bLo) {
+                edits.set(edits.size() - 1, new Edit(last.oldStart(), aHi, last.newStart(), bHi));
+                return;
+            }
+        }
+        edits.add(new Edit(aLo, aHi, bLo, bHi));
+    }
+
+    // Start and end of the middle snake as {x, y, u, v} in absolute positions; both boxes are non-empty and trimmed
+    private static int[] middleSnake(int[] a, int aLo, int aHi, int[] b, int bLo, int bHi,
+                                     int[] forward, int[] backward, int offset, int costLimit) {
+        int n = aHi - aLo;
+        int m = bHi - bLo;
+        int delta = n - m;
+        boolean odd = (delta & 1) != 0;
+        forward[offset + 1] = 0;
+        backward[offset + 1] = 0;
+        int maxD = (n + m + 1) / 2;
+        for (int d = 0; d <= maxD; d++) {
+            if (d > costLimit) {
+                return furthestForward(forward, offset, d - 1, n, m, aLo, bLo);
+            }
+            for (int k = -d; k <= d; k += 2) {
+                int x = (k == -d || (k != d && forward[offset + k - 1] < forward[offset + k + 1]))
+                        ? forward[offset + k + 1]
+                        : forward[offset + k - 1] + 1;
+                int y = x - k;
+                int startX = x;
+                int startY = y;
+                while (x < n && y < m && a[aLo + x] == b[bLo + y]) {
+                    x++;
+                    y++;
+                }
+                forward[offset + k] = x;
+                if (odd && k >= delta - (d - 1) && k <= delta + (d - 1)
+                        && x + backward[offset + delta - k] >= n) {
+                    return new int[]{aLo + startX, bLo + startY, aLo + x, bLo + y};
+                }
+            }
+            for (int k = -d; k <= d; k += 2) {
+                int x = (k == -d || (k != d && backward[offset + k - 1] < backward[offset + k + 1]))
+                        ? backward[offset + k + 1]
+                        : backward[offset + k - 1] + 1;
+                int y = x - k;
+                int startX = x;
+                int startY = y;
+                while (x < n && y < m && a[aHi - 1 - x] == b[bHi - 1 - y]) {
+                    x++;
+                    y++;
+                }
+                backward[offset + k] = x;
+                if (!odd && delta - k >= -d && delta - k <= d
+                        && x + forward[offset + delta - k] >= n) {
+                    return new int[]{aHi - x, bHi - y, aHi - startX, bHi - startY};
+                }
+            }
+        }
+        return null;
+    }
+
+    // The forward point that got furthest, used as an empty snake to split a box too costly to solve exactly
+    private static int[] furthestForward(int[] forward, int offset, int d, int n, int m, int aLo, int bLo) {
+        int bestX = 0;
+        int bestY = 0;
+        for (int k = -d; k <= d; k += 2) {
+            int x = Math.min(forward[offset + k], n);
+            int y = x - k;
+            if (y < 0 || y > m) continue;
+            if (x + y > bestX + bestY) {
+                bestX = x;
+                bestY = y;
+            }
+        }
+        if (bestX == n && bestY == m) return null;
+        return new int[]{aLo + bestX, bLo + bestY, aLo + bestX, bLo + bestY};
+    }
+}
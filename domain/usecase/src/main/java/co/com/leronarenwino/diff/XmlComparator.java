@@ -0,0 +1,270 @@
+/*
+ * This file is part of FreeMarker JSON/XML Toolkit.
+ *
+ * FreeMarker JSON/XML Toolkit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FreeMarker JSON/XML Toolkit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with FreeMarker JSON/XML Toolkit. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package co.com.leronarenwino.diff;
+
+import co.com.leronarenwino.diff.GoldenComparator.Collector;
+import co.com.leronarenwino.diff.GoldenComparator.Difference;
+import co.com.leronarenwino.diff.GoldenComparator.Kind;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.StringReader;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Structural XML comparison reading both documents with StAX in lockstep.
+ * <p>
+ * Elements, attributes in any order and trimmed text are compared; comments,
+ * processing instructions and whitespace between elements are ignored. Paths
+ * name each element with its position among same-named siblings.
+ */
+final class XmlComparator {
+
+    private static final XMLInputFactory FACTORY = createFactory();
+
+    private final Cursor expected;
+    private final Cursor actual;
+    private final Collector collector;
+    private final Deque<Level> levels = new ArrayDeque<>();
+
+    private XmlComparator(Cursor expected, Cursor actual, Collector collector) {
+        this.expected = expected;
+        this.actual = actual;
+        this.collector = collector;
+    }
+
+    private static XMLInputFactory createFactory() {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        // Golden files are local, but never resolve external entities
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        return factory;
+    }
+
+    static void compare(String expectedText, String actualText, Collector collector) throws XMLStreamException {
+        Cursor expected = new Cursor(FACTORY.createXMLStreamReader(new StringReader(expectedText)));
+        Cursor actual = new Cursor(FACTORY.createXMLStreamReader(new StringReader(actualText)));
+        try {
+            new XmlComparator(expected, actual, collector).run();
+        } finally {
+            expected.reader.close();
+            actual.reader.close();
+        }
+    }
+
+    private void run() throws XMLStreamException {
+        levels.push(new Level(""));
+        expected.advance();
+        actual.advance();
+        while (expected.event != XMLStreamConstants.END_DOCUMENT || actual.event != XMLStreamConstants.END_DOCUMENT) {
+            int e = expected.event;
+            int a = actual.event;
+            if (e == a && e == XMLStreamConstants.START_ELEMENT) {
+                String path = levels.peek().child(expected.name);
+                if (expected.name.equals(actual.name)) {
+                    compareAttributes(path);
+                    levels.push(new Level(path));
+                    expected.advance();
+                    actual.advance();
+                } else {
+                    add(Kind.CHANGED, path, "<" + expected.name + ">", "<" + actual.name + ">");
+                    expected.skipElement();
+                    actual.skipElement();
+                }
+            } else if (e == a && e == XMLStreamConstants.CHARACTERS) {
+                if (!expected.text.equals(actual.text)) {
+                    add(Kind.CHANGED, levels.peek().path + "/text()",
+                            GoldenComparator.snippet(expected.text), GoldenComparator.snippet(actual.text));
+                }
+                expected.advance();
+                actual.advance();
+            } else if (e == a) {
+                // Both closed the same element
+                levels.pop();
+                expected.advance();
+                actual.advance();
+            } else if (isExtra(e, a)) {
+                reportExtra(expected, Kind.MISSING);
+            } else if (isExtra(a, e)) {
+                reportExtra(actual, Kind.UNEXPECTED);
+            } else {
+                // Text on one side against an element on the other
+                add(Kind.TYPE_MISMATCH, levels.peek().path, describe(expected), describe(actual));
+                skipNode(expected);
+                skipNode(actual);
+            }
+        }
+    }
+
+    // Content on one side while the other has already closed its element or document
+    private static boolean isExtra(int event, int other) {
+        return event != XMLStreamConstants.END_ELEMENT && event != XMLStreamConstants.END_DOCUMENT
+                && (other == XMLStreamConstants.END_ELEMENT || other == XMLStreamConstants.END_DOCUMENT);
+    }
+
+    private void reportExtra(Cursor cursor, Kind kind) throws XMLStreamException {
+        String path = cursor.event == XMLStreamConstants.START_ELEMENT
+                ? levels.peek().child(cursor.name)
+                : levels.peek().path + "/text()";
+        String text = describe(cursor);
+        add(kind, path, kind == Kind.MISSING ? text : null, kind == Kind.UNEXPECTED ? text : null);
+        skipNode(cursor);
+    }
+
+    private static void skipNode(Cursor cursor) throws XMLStreamException {
+        if (cursor.event == XMLStreamConstants.START_ELEMENT) {
+            cursor.skipElement();
+        } else {
+            cursor.advance();
+        }
+    }
+
+    private void compareAttributes(String path) {
+        Map<String, String> e = expected.attributes();
+        Map<String, String> a = actual.attributes();
+        for (Map.Entry<String, String> entry : e.entrySet()) {
+            String other = a.get(entry.getKey());
+            String attribute = path + "/@" + entry.getKey();
+            if (other == null) {
+                add(Kind.MISSING, attribute, entry.getValue(), null);
+            } else if (!other.equals(entry.getValue())) {
+                add(Kind.CHANGED, attribute, entry.getValue(), other);
+            }
+        }
+        for (Map.Entry<String, String> entry : a.entrySet()) {
+            if (!e.containsKey(entry.getKey())) {
+                add(Kind.UNEXPECTED, path + "/@" + entry.getKey(), null, entry.getValue());
+            }
+        }
+    }
+
+    private void add(Kind kind, String path, String expectedText, String actualText) {
+        collector.add(new Difference(kind, path.isEmpty() ? "/" : path, expectedText, actualText,
+                expected.line, actual.line));
+    }
+
+    private static String describe(Cursor cursor) {
+        return switch (cursor.event) {
+            case XMLStreamConstants.START_ELEMENT -> "<" + cursor.name + ">";
+            case XMLStreamConstants.CHARACTERS -> GoldenComparator.snippet(cursor.text);
+            default -> "nothing";
+        };
+    }
+
+    // Element path plus a counter of the children seen so far by name
+    private static final class Level {
+        private final String path;
+        private final Map<String, Integer> counts = new HashMap<>();
+
+        private Level(String path) {
+            this.path = path;
+        }
+
+        private String child(String name) {
+            int index = counts.merge(name, 1, Integer::sum);
+            return path + "/" + name + "[" + index + "]";
+        }
+    }
+
+    // Reader positioned on the next significant event: element start or end, non-blank text or document end
+    private static final class Cursor {
+        private final XMLStreamReader reader;
+        private int event;
+        private int line;
+        private String name;
+        private String text;
+        // Event read past the end of a text run, delivered by the next advance
+        private int held = -1;
+        private Cursor(XMLStreamReader reader) {
+            this.reader = reader;
+        }
+
+        private void advance() throws XMLStreamException {
+            if (held != -1) {
+                set(held);
+                held = -1;
+                return;
+            }
+            StringBuilder pending = null;
+            while (true) {
+                int next = reader.hasNext() ? reader.next() : XMLStreamConstants.END_DOCUMENT;
+                if (next == XMLStreamConstants.CHARACTERS || next == XMLStreamConstants.CDATA
+                        || next == XMLStreamConstants.SPACE) {
+                    if (pending == null) {
+                        pending = new StringBuilder();
+                        line = reader.getLocation().getLineNumber();
+                    }
+                    pending.append(reader.getText());
+                    continue;
+                }
+                if (next == XMLStreamConstants.COMMENT || next == XMLStreamConstants.PROCESSING_INSTRUCTION
+                        || next == XMLStreamConstants.DTD || next == XMLStreamConstants.START_DOCUMENT) {
+                    continue;
+                }
+                if (pending != null && !pending.toString().isBlank()) {
+                    text = pending.toString().strip();
+                    event = XMLStreamConstants.CHARACTERS;
+                    held = next;
+                    return;
+                }
+                set(next);
+                return;
+            }
+        }
+
+        private void set(int next) {
+            event = next;
+            line = reader.getLocation().getLineNumber();
+            name = next == XMLStreamConstants.START_ELEMENT || next == XMLStreamConstants.END_ELEMENT
+                    ? qualifiedName() : null;
+        }
+
+        private String qualifiedName() {
+            String prefix = reader.getPrefix();
+            return prefix == null || prefix.isEmpty() ? reader.getLocalName() : prefix + ":" + reader.getLocalName();
+        }
+
+        private Map<String, String> attributes() {
+            Map<String, String> attributes = new TreeMap<>();
+            for (int i = 0; i < reader.getAttributeCount(); i++) {
+                String prefix = reader.getAttributePrefix(i);
+                String local = reader.getAttributeLocalName(i);
+                attributes.put(prefix == null || prefix.isEmpty() ? local : prefix + ":" + local,
+                        reader.getAttributeValue(i));
+            }
+            return attributes;
+        }
+
+        private void skipElement() throws XMLStreamException {
+            int depth = 0;
+            do {
+                if (event == XMLStreamConstants.START_ELEMENT) depth++;
+                else if (event == XMLStreamConstants.END_ELEMENT) depth--;
+                if (depth > 0) advance();
+            } while (depth > 0);
+            advance();
+        }
+    }
+}
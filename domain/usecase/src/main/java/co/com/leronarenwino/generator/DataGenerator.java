@@ -0,0 +1,201 @@
+/*
+ * This file is part of FreeMarker JSON/XML Toolkit.
+ *
+ * FreeMarker JSON/XML Toolkit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FreeMarker JSON/XML Toolkit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with FreeMarker JSON/XML Toolkit. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package co.com.leronarenwino.generator;
+
+import co.com.leronarenwino.generator.Shape.ArrayShape;
+import co.com.leronarenwino.generator.Shape.BooleanShape;
+import co.com.leronarenwino.generator.Shape.NumberShape;
+import co.com.leronarenwino.generator.Shape.ObjectShape;
+import co.com.leronarenwino.generator.Shape.StringShape;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Writes synthetic documents of a {@link Shape} as a JSON stream, so outputs of
+ * any size are produced without being held in memory.
+ * <p>
+ * The same shape, options and seed always give the same bytes. With a target
+ * size, the outermost array keeps growing until the output reaches it and every
+ * other array gets the configured length.
+ */
+public class DataGenerator {
+
+    private static final JsonFactory FACTORY = new JsonFactory();
+    private static final char[] TEXT_CHARS = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789     ".toCharArray();
+    private static final long MIN_EPOCH_DAY = LocalDate.of(2000, 1, 1).toEpochDay();
+    private static final long MAX_EPOCH_DAY = LocalDate.of(2030, 12, 31).toEpochDay();
+
+    /**
+     * @param arrayLength  elements per array, 0 for the length seen in the sample
+     * @param maxDepth     containers nested deeper than this are written empty, 0 for no limit
+     * @param stringLength length of free-text strings, 0 for the lengths seen in the sample
+     * @param targetBytes  approximate output size reached by growing the outermost array, 0 for none
+     */
+    public record Options(long seed, int arrayLength, int maxDepth, int stringLength, long targetBytes) {
+    }
+
+    private final Options options;
+    private final SplittableRandom random;
+    private final ArrayShape growable;
+    private JsonGenerator generator;
+    private CountingOutputStream counter;
+
+    private DataGenerator(Shape shape, Options options) {
+        this.options = options;
+        this.random = new SplittableRandom(options.seed());
+        this.growable = options.targetBytes() > 0 ? outermostArray(shape) : null;
+    }
+
+    // Returns the number of bytes written; the stream is left open
+    public static long generate(Shape shape, Options options, OutputStream out) throws IOException {
+        DataGenerator dataGenerator = new DataGenerator(shape, options);
+        dataGenerator.counter = new CountingOutputStream(out);
+        try (JsonGenerator json = FACTORY.createGenerator(dataGenerator.counter, JsonEncoding.UTF8)) {
+            json.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            dataGenerator.generator = json;
+            dataGenerator.write(shape, 1);
+        }
+        return dataGenerator.counter.count;
+    }
+
+    private void write(Shape shape, int depth) throws IOException {
+        boolean tooDeep = options.maxDepth() > 0 && depth > options.maxDepth();
+        if (shape instanceof ObjectShape object) {
+            generator.writeStartObject();
+            if (!tooDeep) {
+                for (Map.Entry<String, Shape> field : object.fields().entrySet()) {
+                    generator.writeFieldName(field.getKey());
+                    write(field.getValue(), depth + 1);
+                }
+            }
+            generator.writeEndObject();
+        } else if (shape instanceof ArrayShape array) {
+            generator.writeStartArray();
+            if (!tooDeep) {
+                if (array == growable) {
+                    while (written() < options.targetBytes()) {
+                        write(array.element(), depth + 1);
+                    }
+                } else {
+                    int length = options.arrayLength() > 0 ? options.arrayLength() : array.length();
+                    for (int i = 0; i < length; i++) {
+                        write(array.element(), depth + 1);
+                    }
+                }
+            }
+            generator.writeEndArray();
+        } else if (shape instanceof StringShape string) {
+            generator.writeString(string(string));
+        } else if (shape instanceof NumberShape number) {
+            writeNumber(number);
+        } else if (shape instanceof BooleanShape) {
+            generator.writeBoolean(random.nextBoolean());
+        } else {
+            generator.writeNull();
+        }
+    }
+
+    private String string(StringShape shape) {
+        if (shape.isEnumeration()) {
+            return shape.values().get(random.nextInt(shape.values().size()));
+        }
+        switch (shape.format()) {
+            case DATE -> {
+                return LocalDate.ofEpochDay(random.nextLong(MIN_EPOCH_DAY, MAX_EPOCH_DAY + 1)).toString();
+            }
+            case DATE_TIME -> {
+                long seconds = random.nextLong(MIN_EPOCH_DAY * 86_400, (MAX_EPOCH_DAY + 1) * 86_400);
+                return LocalDateTime.ofEpochSecond(seconds, 0, ZoneOffset.UTC) + "Z";
+            }
+            default -> {
+                int length = options.stringLength() > 0
+                        ? options.stringLength()
+                        : random.nextInt(shape.minLength(), shape.maxLength() + 1);
+                char[] text = new char[length];
+                for (int i = 0; i < length; i++) {
+                    text[i] = TEXT_CHARS[random.nextInt(TEXT_CHARS.length)];
+                }
+                return new String(text);
+            }
+        }
+    }
+
+    private void writeNumber(NumberShape shape) throws IOException {
+        double min = shape.min();
+        double max = shape.max();
+        if (min == max) {
+            // A single sample value says little about the range, so vary around it
+            min = Math.min(0, min);
+            max = Math.max(10, Math.abs(max) * 2);
+        }
+        if (shape.integral()) {
+            generator.writeNumber(random.nextLong((long) min, (long) max + 1));
+        } else {
+            double value = min + random.nextDouble() * (max - min);
+            generator.writeNumber(Math.round(value * 100) / 100.0);
+        }
+    }
+
+    private long written() {
+        return counter.count + generator.getOutputBuffered();
+    }
+
+    // Breadth first, so the array closest to the root is grown
+    private static ArrayShape outermostArray(Shape shape) {
+        Deque<Shape> queue = new ArrayDeque<>();
+        queue.add(shape);
+        while (!queue.isEmpty()) {
+            Shape next = queue.poll();
+            if (next instanceof ArrayShape array) return array;
+            if (next instanceof ObjectShape object) queue.addAll(object.fields().values());
+        }
+        return null;
+    }
+
+    private static final class CountingOutputStream extends FilterOutputStream {
+        private long count;
+
+        private CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
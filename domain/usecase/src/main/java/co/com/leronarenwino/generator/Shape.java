@@ -0,0 +1,55 @@
+/*
+ * This file is part of FreeMarker JSON/XML Toolkit.
+ *
+ * FreeMarker JSON/XML Toolkit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FreeMarker JSON/XML Toolkit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with FreeMarker JSON/XML Toolkit. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package co.com.leronarenwino.generator;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Shape of a data model: the fields, array sizes and value ranges a generator
+ * reproduces. Built from a sample document or a schema by {@link ShapeInference}.
+ */
+public sealed interface Shape {
+
+    // Fields keep the order they were first seen in
+    record ObjectShape(Map<String, Shape> fields) implements Shape {
+    }
+
+    // Length is the longest array seen, used when no length is configured
+    record ArrayShape(Shape element, int length) implements Shape {
+    }
+
+    // Values holds the distinct strings seen while there are few of them, or null
+    record StringShape(int minLength, int maxLength, List<String> values, int samples, Format format) implements Shape {
+
+        public boolean isEnumeration() {
+            return values != null && values.size() < samples;
+        }
+    }
+
+    record NumberShape(boolean integral, double min, double max) implements Shape {
+    }
+
+    record BooleanShape() implements Shape {
+    }
+
+    record NullShape() implements Shape {
+    }
+
+    enum Format {TEXT, DATE, DATE_TIME}
+}
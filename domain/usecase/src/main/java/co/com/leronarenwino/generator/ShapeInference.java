@@ -0,0 +1,174 @@
+/*
+ * This file is part of FreeMarker JSON/XML Toolkit.
+ *
+ * FreeMarker JSON/XML Toolkit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FreeMarker JSON/XML Toolkit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with FreeMarker JSON/XML Toolkit. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package co.com.leronarenwino.generator;
+
+import co.com.leronarenwino.generator.Shape.ArrayShape;
+import co.com.leronarenwino.generator.Shape.BooleanShape;
+import co.com.leronarenwino.generator.Shape.Format;
+import co.com.leronarenwino.generator.Shape.NullShape;
+import co.com.leronarenwino.generator.Shape.NumberShape;
+import co.com.leronarenwino.generator.Shape.ObjectShape;
+import co.com.leronarenwino.generator.Shape.StringShape;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Builds a {@link Shape} from a sample document or from a JSON Schema subset
+ * ({@code type}, {@code properties}, {@code items}, {@code enum}, {@code format},
+ * {@code minLength}/{@code maxLength}, {@code minimum}/{@code maximum} and
+ * {@code minItems}/{@code maxItems}).
+ * <p>
+ * In a sample, all elements of an array are merged into one element shape, so a
+ * field present in any element appears in the generated ones.
+ */
+public class ShapeInference {
+
+    // More distinct strings than this are treated as free text rather than an enumeration
+    private static final int MAX_ENUM_VALUES = 8;
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final Pattern DATE = Pattern.compile("\\d{4}-\\d{2}-\\d{2}");
+    private static final Pattern DATE_TIME = Pattern.compile("\\d{4}-\\d{2}-\\d{2}[T ]\\d{2}:\\d{2}(:\\d{2}(\\.\\d+)?)?(Z|[+-]\\d{2}:?\\d{2})?");
+
+    private ShapeInference() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    public static Shape fromSampleJson(String json) throws IOException {
+        return fromSample(MAPPER.readTree(json));
+    }
+
+    public static Shape fromSample(JsonNode node) {
+        if (node.isObject()) {
+            Map<String, Shape> fields = new LinkedHashMap<>();
+            node.properties().forEach(entry -> fields.put(entry.getKey(), fromSample(entry.getValue())));
+            return new ObjectShape(fields);
+        }
+        if (node.isArray()) {
+            Shape element = new NullShape();
+            for (JsonNode item : node) {
+                element = merge(element, fromSample(item));
+            }
+            return new ArrayShape(element, node.size());
+        }
+        if (node.isTextual()) {
+            String text = node.asText();
+            return new StringShape(text.length(), text.length(), List.of(text), 1, formatOf(text));
+        }
+        if (node.isNumber()) {
+            return new NumberShape(node.isIntegralNumber(), node.asDouble(), node.asDouble());
+        }
+        if (node.isBoolean()) {
+            return new BooleanShape();
+        }
+        return new NullShape();
+    }
+
+    public static Shape fromSchema(JsonNode schema) {
+        JsonNode type = schema.get("type");
+        String name = type == null ? guessType(schema) : type.isArray() ? firstNonNull(type) : type.asText();
+        return switch (name) {
+            case "object" -> {
+                Map<String, Shape> fields = new LinkedHashMap<>();
+                JsonNode properties = schema.path("properties");
+                properties.properties().forEach(entry -> fields.put(entry.getKey(), fromSchema(entry.getValue())));
+                yield new ObjectShape(fields);
+            }
+            case "array" -> {
+                int length = schema.path("maxItems").asInt(schema.path("minItems").asInt(3));
+                yield new ArrayShape(fromSchema(schema.path("items")), length);
+            }
+            case "string" -> {
+                List<String> values = null;
+                if (schema.path("enum").isArray()) {
+                    values = new ArrayList<>();
+                    for (JsonNode value : schema.get("enum")) values.add(value.asText());
+                }
+                Format format = switch (schema.path("format").asText()) {
+                    case "date" -> Format.DATE;
+                    case "date-time" -> Format.DATE_TIME;
+                    default -> Format.TEXT;
+                };
+                int min = schema.path("minLength").asInt(1);
+                int max = schema.path("maxLength").asInt(Math.max(min, 12));
+                // Listed values are always picked from, however many there are
+                yield new StringShape(min, max, values, values == null ? 0 : Integer.MAX_VALUE, format);
+            }
+            case "integer", "number" -> new NumberShape(name.equals("integer"),
+                    schema.path("minimum").asDouble(0), schema.path("maximum").asDouble(1000));
+            case "boolean" -> new BooleanShape();
+            default -> new NullShape();
+        };
+    }
+
+    private static String guessType(JsonNode schema) {
+        if (schema.has("properties")) return "object";
+        if (schema.has("items")) return "array";
+        if (schema.has("enum")) return "string";
+        return "null";
+    }
+
+    private static String firstNonNull(JsonNode types) {
+        for (JsonNode type : types) {
+            if (!type.asText().equals("null")) return type.asText();
+        }
+        return "null";
+    }
+
+    // Widens two shapes seen at the same place; when the kinds differ the first non-null one wins
+    static Shape merge(Shape a, Shape b) {
+        if (a instanceof NullShape) return b;
+        if (b instanceof NullShape) return a;
+        if (a instanceof ObjectShape x && b instanceof ObjectShape y) {
+            Map<String, Shape> fields = new LinkedHashMap<>(x.fields());
+            y.fields().forEach((name, shape) -> fields.merge(name, shape, ShapeInference::merge));
+            return new ObjectShape(fields);
+        }
+        if (a instanceof ArrayShape x && b instanceof ArrayShape y) {
+            return new ArrayShape(merge(x.element(), y.element()), Math.max(x.length(), y.length()));
+        }
+        if (a instanceof StringShape x && b instanceof StringShape y) {
+            List<String> values = null;
+            if (x.values() != null && y.values() != null) {
+                values = new ArrayList<>(x.values());
+                for (String value : y.values()) {
+                    if (!values.contains(value)) values.add(value);
+                }
+                if (values.size() > MAX_ENUM_VALUES) values = null;
+            }
+            return new StringShape(Math.min(x.minLength(), y.minLength()), Math.max(x.maxLength(), y.maxLength()),
+                    values, x.samples() + y.samples(), x.format() == y.format() ? x.format() : Format.TEXT);
+        }
+        if (a instanceof NumberShape x && b instanceof NumberShape y) {
+            return new NumberShape(x.integral() && y.integral(), Math.min(x.min(), y.min()), Math.max(x.max(), y.max()));
+        }
+        return a;
+    }
+
+    private static Format formatOf(String text) {
+        if (DATE.matcher(text).matches()) return Format.DATE;
+        if (DATE_TIME.matcher(text).matches()) return Format.DATE_TIME;
+        return Format.TEXT;
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * This file is part of FreeMarker JSON/XML Toolkit.
+ *
+ * FreeMarker JSON/XML Toolkit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FreeMarker JSON/XML Toolkit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with FreeMarker JSON/XML Toolkit. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package co.com.leronarenwino.load;
+
+import co.com.leronarenwino.CompiledTemplate;
+
+import java.io.Writer;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Renders a compiled template with a pool of data models from several threads for
+ * a fixed time and measures latency, throughput, GC time and allocation.
+ * <p>
+ * Open loop follows a fixed schedule at the target rate, as independent clients
+ * would. Latency counts from the scheduled start, so time spent behind schedule
+ * shows up. Closed loop starts the next render when the previous one ends, paced
+ * to the target rate if one is given. A render that overruns the pace is corrected
+ * for coordinated omission by also recording the renders it held back.
+ */
+public class LoadDriver {
+
+    public enum Mode {OPEN, CLOSED}
+
+    // A rate of 0 renders as fast as possible, which only makes sense closed loop
+    public record Options(Mode mode, int concurrency, double ratePerSecond, long durationNanos, long warmupNanos) {
+    }
+
+    private final CompiledTemplate template;
+    private final List<Map<String, Object>> dataModels;
+    private final Options options;
+
+    public LoadDriver(CompiledTemplate template, List<Map<String, Object>> dataModels, Options options) {
+        if (dataModels.isEmpty()) {
+            throw new IllegalArgumentException("At least one data model is needed");
+        }
+        if (options.mode() == Mode.OPEN && options.ratePerSecond() <= 0) {
+            throw new IllegalArgumentException("Open loop needs a target rate");
+        }
+        this.template = template;
+        this.dataModels = List.copyOf(dataModels);
+        this.options = options;
+    }
+
+    public LoadReport run() throws InterruptedException {
+        if (options.warmupNanos() > 0) {
+            runPhase(options.warmupNanos());
+        }
+        List<GarbageCollectorMXBean> collectors = ManagementFactory.getGarbageCollectorMXBeans();
+        long gcTimeBefore = collectors.stream().mapToLong(GarbageCollectorMXBean::getCollectionTime).sum();
+        long gcCountBefore = collectors.stream().mapToLong(GarbageCollectorMXBean::getCollectionCount).sum();
+
+        List<Worker> workers = runPhase(options.durationNanos());
+
+        long gcTime = collectors.stream().mapToLong(GarbageCollectorMXBean::getCollectionTime).sum() - gcTimeBefore;
+        long gcCount = collectors.stream().mapToLong(GarbageCollectorMXBean::getCollectionCount).sum() - gcCountBefore;
+        LatencyHistogram latency = new LatencyHistogram();
+        LatencyHistogram serviceTime = new LatencyHistogram();
+        long errors = 0;
+        long allocated = 0;
+        long elapsed = 0;
+        String firstError = null;
+        for (Worker worker : workers) {
+            latency.add(worker.latency);
+            serviceTime.add(worker.serviceTime);
+            errors += worker.errors;
+            allocated = worker.allocated < 0 || allocated < 0 ? -1 : allocated + worker.allocated;
+            elapsed = Math.max(elapsed, worker.elapsed);
+            if (firstError == null) firstError = worker.firstError;
+        }
+        return new LoadReport(options, serviceTime.getTotalCount(), errors, firstError, elapsed,
+                latency, serviceTime, gcCount, gcTime, allocated);
+    }
+
+    private List<Worker> runPhase(long durationNanos) throws InterruptedException {
+        long start = System.nanoTime() + 10_000_000L;
+        List<Worker> workers = new ArrayList<>(options.concurrency());
+        List<Thread> threads = new ArrayList<>(options.concurrency());
+        for (int i = 0; i < options.concurrency(); i++) {
+            Worker worker = new Worker(i, start, start + durationNanos);
+            Thread thread = new Thread(worker, "load-driver-" + i);
+            thread.setDaemon(true);
+            workers.add(worker);
+            threads.add(thread);
+        }
+        threads.forEach(Thread::start);
+        try {
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        } finally {
+            threads.forEach(Thread::interrupt);
+        }
+        return workers;
+    }
+
+    private final class Worker implements Runnable {
+        private final int id;
+        private final long start;
+        private final long end;
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LatencyHistogram serviceTime = new LatencyHistogram();
+        private long errors;
+        private long allocated;
+        private long elapsed;
+        private String firstError;
+
+        private Worker(int id, long start, long end) {
+            this.id = id;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public void run() {
+            int concurrency = options.concurrency();
+            // Each worker takes every n-th slot of the schedule, so together they hit the target rate
+            long interval = options.ratePerSecond() > 0 ? (long) (1e9 * concurrency / options.ratePerSecond()) : 0;
+            long next = start + (interval > 0 ? interval * id / concurrency : 0);
+            Writer sink = Writer.nullWriter();
+            ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+            long allocatedBefore = allocatedBytes(threadBean);
+            int model = id;
+
+            waitUntil(start);
+            while (!Thread.currentThread().isInterrupted()) {
+                if (interval > 0) {
+                    if (next >= end) break;
+                    waitUntil(next);
+                } else if (System.nanoTime() >= end) {
+                    break;
+                }
+                long begin = System.nanoTime();
+                try {
+                    template.render(dataModels.get(model % dataModels.size()), sink);
+                } catch (Exception e) {
+                    errors++;
+                    if (firstError == null) firstError = String.valueOf(e.getMessage());
+                    next += interval;
+                    continue;
+                } finally {
+                    model += concurrency;
+                }
+                long finish = System.nanoTime();
+                serviceTime.record(finish - begin);
+                if (interval == 0) {
+                    latency.record(finish - begin);
+                } else if (options.mode() == Mode.OPEN) {
+                    latency.record(finish - next);
+                    next += interval;
+                } else {
+                    latency.recordCorrected(finish - begin, interval);
+                    // Closed loop never catches up on missed slots
+                    next = Math.max(next + interval, finish);
+                }
+            }
+            elapsed = System.nanoTime() - start;
+            long allocatedAfter = allocatedBytes(threadBean);
+            allocated = allocatedBefore < 0 || allocatedAfter < 0 ? -1 : allocatedAfter - allocatedBefore;
+        }
+    }
+
+    private static long allocatedBytes(ThreadMXBean threadBean) {
+        if (threadBean instanceof com.sun.management.ThreadMXBean sunBean && sunBean.isThreadAllocatedMemoryEnabled()) {
+            return sunBean.getCurrentThreadAllocatedBytes();
+        }
+        return -1;
+    }
+
+    private static void waitUntil(long deadline) {
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0 && !Thread.currentThread().isInterrupted()) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+}
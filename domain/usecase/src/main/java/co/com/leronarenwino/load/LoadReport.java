@@ -0,0 +1,64 @@
+/*
+ * This file is part of FreeMarker JSON/XML Toolkit.
+ *
+ * FreeMarker JSON/XML Toolkit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FreeMarker JSON/XML Toolkit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with FreeMarker JSON/XML Toolkit. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package co.com.leronarenwino.load;
+
+import java.util.Locale;
+
+/**
+ * Outcome of a {@link LoadDriver} run. Latency is corrected for coordinated
+ * omission; service time is how long the renders themselves took.
+ *
+ * @param allocatedBytes bytes allocated by the rendering threads, -1 when the JVM cannot tell
+ */
+public record LoadReport(LoadDriver.Options options, long requests, long errors, String firstError, long elapsedNanos,
+                         LatencyHistogram latency, LatencyHistogram serviceTime,
+                         long gcCount, long gcMillis, long allocatedBytes) {
+
+    public double getThroughput() {
+        return elapsedNanos == 0 ? 0 : requests * 1e9 / elapsedNanos;
+    }
+
+    public String format() {
+        double seconds = elapsedNanos / 1e9;
+        StringBuilder out = new StringBuilder();
+        out.append(String.format(Locale.ROOT, "%s loop, %d threads, target %s, %.1f s%n",
+                options.mode() == LoadDriver.Mode.OPEN ? "Open" : "Closed", options.concurrency(),
+                options.ratePerSecond() > 0 ? String.format(Locale.ROOT, "%.1f/s", options.ratePerSecond()) : "max rate",
+                seconds));
+        out.append(String.format(Locale.ROOT, "Requests     %,d (%,d errors), %.1f/s%n", requests, errors, getThroughput()));
+        out.append(percentiles("Latency", latency));
+        out.append(percentiles("Service time", serviceTime));
+        out.append(String.format(Locale.ROOT, "GC           %d collections, %d ms (%.1f%% of the run)%n",
+                gcCount, gcMillis, seconds == 0 ? 0 : gcMillis / 10.0 / seconds));
+        if (allocatedBytes >= 0) {
+            out.append(String.format(Locale.ROOT, "Allocation   %.1f MB/s, %.1f KB per render%n",
+                    allocatedBytes / 1048576.0 / seconds,
+                    requests + errors == 0 ? 0 : allocatedBytes / 1024.0 / (requests + errors)));
+        }
+        if (firstError != null) {
+            out.append("First error  ").append(firstError.lines().findFirst().orElse("")).append(System.lineSeparator());
+        }
+        return out.toString();
+    }
+
+    private static String percentiles(String label, LatencyHistogram histogram) {
+        return String.format(Locale.ROOT, "%-12s p50 %.3f ms, p99 %.3f ms, p99.9 %.3f ms, max %.3f ms%n", label,
+                histogram.getValueAtPercentile(50) / 1e6, histogram.getValueAtPercentile(99) / 1e6,
+                histogram.getValueAtPercentile(99.9) / 1e6, histogram.getMax() / 1e6);
+    }
+}
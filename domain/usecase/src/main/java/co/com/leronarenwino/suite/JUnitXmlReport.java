@@ -0,0 +1,127 @@
+/*
+ * This file is part of FreeMarker JSON/XML Toolkit.
+ *
+ * FreeMarker JSON/XML Toolkit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FreeMarker JSON/XML Toolkit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with FreeMarker JSON/XML Toolkit. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package co.com.leronarenwino.suite;
+
+import co.com.leronarenwino.suite.SuiteRunner.CaseResult;
+import co.com.leronarenwino.suite.SuiteRunner.Status;
+import co.com.leronarenwino.suite.SuiteRunner.SuiteResult;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.Writer;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Writes a suite result in the JUnit XML format read by CI servers: one
+ * {@code testsuite} per template and one {@code testcase} per case, with times in seconds.
+ * Cases run in parallel, so a suite's time is the wall time from its first case
+ * starting to its last one ending, not the sum of its cases.
+ */
+public class JUnitXmlReport {
+
+    private JUnitXmlReport() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    public static void write(SuiteResult result, Writer out) throws XMLStreamException {
+        Map<String, List<CaseResult>> bySuite = result.results().stream()
+                .collect(Collectors.groupingBy(r -> r.testCase().suite(), LinkedHashMap::new, Collectors.toList()));
+        XMLStreamWriter xml = XMLOutputFactory.newFactory().createXMLStreamWriter(out);
+        xml.writeStartDocument("UTF-8", "1.0");
+        xml.writeCharacters("\n");
+        xml.writeStartElement("testsuites");
+        writeCounts(xml, result.results(), result.nanos());
+        for (Map.Entry<String, List<CaseResult>> suite : bySuite.entrySet()) {
+            xml.writeCharacters("\n  ");
+            xml.writeStartElement("testsuite");
+            xml.writeAttribute("name", suite.getKey());
+            writeCounts(xml, suite.getValue(), wallTime(suite.getValue()));
+            for (CaseResult caseResult : suite.getValue()) {
+                writeCase(xml, caseResult);
+            }
+            xml.writeCharacters("\n  ");
+            xml.writeEndElement();
+        }
+        xml.writeCharacters("\n");
+        xml.writeEndElement();
+        xml.writeCharacters("\n");
+        xml.writeEndDocument();
+        xml.flush();
+    }
+
+    private static void writeCounts(XMLStreamWriter xml, List<CaseResult> results, long nanos) throws XMLStreamException {
+        xml.writeAttribute("tests", String.valueOf(results.size()));
+        xml.writeAttribute("failures", String.valueOf(count(results, Status.FAILED)));
+        xml.writeAttribute("errors", String.valueOf(count(results, Status.ERROR)));
+        xml.writeAttribute("skipped", String.valueOf(count(results, Status.SKIPPED)));
+        xml.writeAttribute("time", seconds(nanos));
+    }
+
+    private static void writeCase(XMLStreamWriter xml, CaseResult result) throws XMLStreamException {
+        xml.writeCharacters("\n    ");
+        xml.writeStartElement("testcase");
+        xml.writeAttribute("classname", result.testCase().suite());
+        xml.writeAttribute("name", result.testCase().name());
+        xml.writeAttribute("time", seconds(result.nanos()));
+        String element = switch (result.status()) {
+            case FAILED -> "failure";
+            case ERROR -> "error";
+            case SKIPPED -> "skipped";
+            default -> null;
+        };
+        if (element != null) {
+            xml.writeCharacters("\n      ");
+            xml.writeStartElement(element);
+            if (!result.messages().isEmpty()) {
+                // Full messages go in the body, the attribute keeps a one-line summary
+                xml.writeAttribute("message", result.messages().get(0).lines().findFirst().orElse(""));
+                if (result.status() != Status.SKIPPED) {
+                    xml.writeCharacters(String.join("\n", result.messages()));
+                }
+            }
+            xml.writeEndElement();
+            xml.writeCharacters("\n    ");
+        }
+        xml.writeEndElement();
+    }
+
+    // Skipped cases did not run, so they do not stretch the span
+    private static long wallTime(List<CaseResult> results) {
+        long first = Long.MAX_VALUE;
+        long last = Long.MIN_VALUE;
+        for (CaseResult result : results) {
+            if (result.status() == Status.SKIPPED) continue;
+            first = Math.min(first, result.started());
+            last = Math.max(last, result.started() + result.nanos());
+        }
+        return first > last ? 0 : last - first;
+    }
+
+    private static long count(List<CaseResult> results, Status status) {
+        return results.stream().filter(result -> result.status() == status).count();
+    }
+
+    private static String seconds(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1_000_000_000.0);
+    }
+}
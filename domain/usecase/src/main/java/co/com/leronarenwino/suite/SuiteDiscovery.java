@@ -0,0 +1,111 @@
+/*
+ * This file is part of FreeMarker JSON/XML Toolkit.
+ *
+ * FreeMarker JSON/XML Toolkit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FreeMarker JSON/XML Toolkit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with FreeMarker JSON/XML Toolkit. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package co.com.leronarenwino.suite;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Finds the regression cases below a suite directory laid out as
+ * <pre>
+ * suite/
+ *   invoice/
+ *     template.ftl
+ *     cases/
+ *       basic/
+ *         data.json        data model (optional, empty model without it)
+ *         expected.json    golden output, any extension (optional)
+ *         fields.txt       expected fields as in the editor (optional)
+ * </pre>
+ * Templates and cases are returned sorted by name so reports are stable.
+ */
+public class SuiteDiscovery {
+
+    public static final String TEMPLATE_FILE = "template.ftl";
+    public static final String CASES_DIRECTORY = "cases";
+    public static final String DATA_FILE = "data.json";
+    public static final String FIELDS_FILE = "fields.txt";
+    public static final String EXPECTED_PREFIX = "expected.";
+
+    public record TemplateSuite(String name, Path template, List<TestCase> cases) {
+    }
+
+    // Missing files are null
+    public record TestCase(String suite, String name, Path data, Path expected, Path fields) {
+    }
+
+    private SuiteDiscovery() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    public static List<TemplateSuite> discover(Path root) throws IOException {
+        if (!Files.isDirectory(root)) {
+            throw new IOException("Suite directory not found: " + root);
+        }
+        // A suite pointed directly at one template directory is accepted too
+        if (Files.isRegularFile(root.resolve(TEMPLATE_FILE))) {
+            return List.of(discoverTemplate(root));
+        }
+        List<TemplateSuite> suites = new ArrayList<>();
+        for (Path directory : sortedDirectories(root)) {
+            if (Files.isRegularFile(directory.resolve(TEMPLATE_FILE))) {
+                suites.add(discoverTemplate(directory));
+            }
+        }
+        return suites;
+    }
+
+    private static TemplateSuite discoverTemplate(Path directory) throws IOException {
+        String suite = directory.toAbsolutePath().normalize().getFileName().toString();
+        List<TestCase> cases = new ArrayList<>();
+        Path casesDirectory = directory.resolve(CASES_DIRECTORY);
+        if (Files.isDirectory(casesDirectory)) {
+            for (Path caseDirectory : sortedDirectories(casesDirectory)) {
+                cases.add(new TestCase(suite, caseDirectory.getFileName().toString(),
+                        existing(caseDirectory.resolve(DATA_FILE)),
+                        findExpected(caseDirectory),
+                        existing(caseDirectory.resolve(FIELDS_FILE))));
+            }
+        }
+        return new TemplateSuite(suite, directory.resolve(TEMPLATE_FILE), cases);
+    }
+
+    private static Path findExpected(Path caseDirectory) throws IOException {
+        try (Stream<Path> files = Files.list(caseDirectory)) {
+            return files.filter(Files::isRegularFile)
+                    .filter(file -> file.getFileName().toString().startsWith(EXPECTED_PREFIX))
+                    .sorted()
+                    .findFirst()
+                    .orElse(null);
+        }
+    }
+
+    private static Path existing(Path file) {
+        return Files.isRegularFile(file) ? file : null;
+    }
+
+    private static List<Path> sortedDirectories(Path parent) throws IOException {
+        try (Stream<Path> children = Files.list(parent)) {
+            return children.filter(Files::isDirectory).sorted().toList();
+        }
+    }
+}
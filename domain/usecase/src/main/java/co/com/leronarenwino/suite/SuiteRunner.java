@@ -0,0 +1,190 @@
+/*
+ * This file is part of FreeMarker JSON/XML Toolkit.
+ *
+ * FreeMarker JSON/XML Toolkit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FreeMarker JSON/XML Toolkit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with FreeMarker JSON/XML Toolkit. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package co.com.leronarenwino.suite;
+
+import co.com.leronarenwino.CompiledTemplate;
+import co.com.leronarenwino.TemplateProcessor;
+import co.com.leronarenwino.TemplateValidator;
+import co.com.leronarenwino.datamodel.DataUsage;
+import co.com.leronarenwino.diff.GoldenComparator;
+import co.com.leronarenwino.suite.SuiteDiscovery.TemplateSuite;
+import co.com.leronarenwino.suite.SuiteDiscovery.TestCase;
+
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Renders and checks the cases of a suite in parallel.
+ * <p>
+ * Each template is compiled once and its compiled form is shared by all of its
+ * cases. A case fails when its output differs from the golden output or lacks an
+ * expected field, and errors when the data does not parse or the render throws.
+ * With fail-fast, cases that have not started when the first one fails are skipped.
+ */
+public class SuiteRunner {
+
+    // Differences listed per failed case, the rest is summarized
+    private static final int MAX_REPORTED_DIFFERENCES = 20;
+
+    private final TemplateProcessor processor;
+    private final int threads;
+    private final boolean failFast;
+
+    public enum Status {PASSED, FAILED, ERROR, SKIPPED}
+
+    // Started is the time the case began, in nanoseconds after the run started
+    public record CaseResult(TestCase testCase, Status status, long started, long nanos, List<String> messages) {
+    }
+
+    // A suite's template, compiled and analyzed once for all of its cases
+    private record Prepared(CompiledTemplate template, DataUsage usage) {
+    }
+
+    public record SuiteResult(List<CaseResult> results, long nanos) {
+
+        public long count(Status status) {
+            return results.stream().filter(result -> result.status() == status).count();
+        }
+
+        public boolean isSuccessful() {
+            return count(Status.FAILED) == 0 && count(Status.ERROR) == 0;
+        }
+    }
+
+    public SuiteRunner(TemplateProcessor processor, int threads, boolean failFast) {
+        this.processor = processor;
+        this.threads = Math.max(1, threads);
+        this.failFast = failFast;
+    }
+
+    public SuiteResult run(List<TemplateSuite> suites) throws InterruptedException {
+        long start = System.nanoTime();
+        AtomicInteger threadNumber = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads, task -> {
+            Thread thread = new Thread(task, "suite-runner-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            Map<TemplateSuite, Future<Prepared>> compiled = new HashMap<>();
+            for (TemplateSuite suite : suites) {
+                compiled.put(suite, executor.submit(() -> prepare(suite)));
+            }
+            AtomicBoolean stop = new AtomicBoolean();
+            List<Future<CaseResult>> pending = new ArrayList<>();
+            for (TemplateSuite suite : suites) {
+                Future<Prepared> template = compiled.get(suite);
+                for (TestCase testCase : suite.cases()) {
+                    pending.add(executor.submit(() -> runCase(testCase, template, stop, start)));
+                }
+            }
+            List<CaseResult> results = new ArrayList<>(pending.size());
+            for (Future<CaseResult> future : pending) {
+                try {
+                    results.add(future.get());
+                } catch (ExecutionException e) {
+                    // runCase reports its own failures; only an unexpected Error gets here
+                    throw new IllegalStateException(e.getCause());
+                }
+            }
+            return new SuiteResult(results, System.nanoTime() - start);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private Prepared prepare(TemplateSuite suite) throws Exception {
+        String templateContent = Files.readString(suite.template());
+        return new Prepared(processor.compile(templateContent), processor.analyzeUsage(templateContent));
+    }
+
+    private CaseResult runCase(TestCase testCase, Future<Prepared> template, AtomicBoolean stop, long runStart) {
+        long start = System.nanoTime();
+        if (stop.get()) {
+            return new CaseResult(testCase, Status.SKIPPED, start - runStart, 0, List.of("Skipped after an earlier failure"));
+        }
+        List<String> messages = new ArrayList<>();
+        Status status;
+        try {
+            String output = render(testCase, template);
+            check(testCase, output, messages);
+            status = messages.isEmpty() ? Status.PASSED : Status.FAILED;
+        } catch (Exception e) {
+            messages.add(describe(e));
+            status = Status.ERROR;
+        }
+        if (failFast && status != Status.PASSED) {
+            stop.set(true);
+        }
+        return new CaseResult(testCase, status, start - runStart, System.nanoTime() - start, messages);
+    }
+
+    private static String render(TestCase testCase, Future<Prepared> template) throws Exception {
+        Prepared prepared;
+        try {
+            prepared = template.get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Template does not compile: " + describe(e.getCause()), e.getCause());
+        }
+        // Only the fields the template reads are parsed
+        Map<String, Object> dataModel = testCase.data() == null
+                ? Map.of()
+                : TemplateValidator.readDataFile(testCase.data(), prepared.usage());
+        StringWriter output = new StringWriter();
+        prepared.template().render(dataModel, output);
+        return output.toString();
+    }
+
+    private static void check(TestCase testCase, String output, List<String> messages) throws Exception {
+        if (testCase.expected() != null) {
+            GoldenComparator.Result comparison = GoldenComparator.compare(
+                    Files.readString(testCase.expected()), output, GoldenComparator.Mode.AUTO, MAX_REPORTED_DIFFERENCES);
+            comparison.differences().forEach(difference -> messages.add(difference.toString()));
+            if (comparison.truncated()) {
+                messages.add("More than " + MAX_REPORTED_DIFFERENCES + " differences");
+            }
+        }
+        if (testCase.fields() != null) {
+            // Same splitting and unescaping as the expected fields panel
+            String[] fields = Files.readString(testCase.fields()).trim().split("\\s*,\\s*|\\s+");
+            String json = output.contains("\\\"") ? output.replace("\\\"", "\"") : output;
+            try {
+                for (String missing : TemplateValidator.validateFieldsPresentWithTypes(json, fields)) {
+                    messages.add("Missing field: " + missing);
+                }
+            } catch (Exception e) {
+                messages.add("Output is not valid JSON, fields not checked: " + describe(e));
+            }
+        }
+    }
+
+    private static String describe(Throwable e) {
+        String message = e.getMessage();
+        return message == null ? e.getClass().getSimpleName() : message;
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * This file is part of FreeMarker JSON/XML Toolkit.
+ *
+ * FreeMarker JSON/XML Toolkit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FreeMarker JSON/XML Toolkit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with FreeMarker JSON/XML Toolkit. If not, see <https://www.gnu.org/licenses/>.
+ */
+package co.com.leronarenwino.datamodel;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CsvReaderTest {
+
+    @TempDir
+    Path directory;
+
+    private static List<List<String>> records(Reader reader, char delimiter) throws IOException {
+        List<List<String>> records = new ArrayList<>();
+        try (CsvReader csv = new CsvReader(reader, delimiter)) {
+            List<String> fields;
+            while ((fields = csv.next()) != null) records.add(List.copyOf(fields));
+        }
+        return records;
+    }
+
+    private static List<List<String>> records(String text) throws IOException {
+        return records(new StringReader(text), ',');
+    }
+
+    // Hands out one character per read, so every character sits on a buffer boundary
+    private static Reader trickling(String text) {
+        return new Reader() {
+            private int position;
+
+            @Override
+            public int read(char[] buffer, int offset, int length) {
+                if (position == text.length()) return -1;
+                buffer[offset] = text.charAt(position++);
+                return 1;
+            }
+
+            @Override
+            public void close() {
+                // Nothing to release
+            }
+        };
+    }
+
+    @Test
+    void splitsFieldsAndRecords() throws IOException {
+        assertEquals(List.of(List.of("a", "b", ""), List.of("1", "", "3")), records("a,b,\n1,,3"));
+        assertEquals(List.of(List.of("a"), List.of("b"), List.of("c")), records("a\r\nb\rc\n"));
+    }
+
+    @Test
+    void skipsBlankLines() throws IOException {
+        assertEquals(List.of(List.of("a"), List.of("b")), records("\n\r\na\n\n\nb\n\n"));
+        assertEquals(List.of(), records(""));
+    }
+
+    @Test
+    void quotedFieldsHoldDelimitersQuotesAndLineBreaks() throws IOException {
+        String text = "\"a,b\",\"say \"\"hi\"\"\",\"two\r\nlines\"\n\"\",x\n";
+        List<List<String>> expected = List.of(List.of("a,b", "say \"hi\"", "two\r\nlines"), List.of("", "x"));
+        assertEquals(expected, records(text));
+        assertEquals(expected, records(trickling(text), ','));
+    }
+
+    @Test
+    void keepsTextAfterAClosingQuote() throws IOException {
+        assertEquals(List.of(List.of("ab c", "d")), records("\"ab\" c,d"));
+    }
+
+    @Test
+    void countsLinesInsideQuotedFields() throws IOException {
+        try (CsvReader csv = new CsvReader(new StringReader("a\n\"b\nc\r\nd\"\n\ne\r\n"), ',')) {
+            csv.next();
+            assertEquals(1, csv.getLine());
+            csv.next();
+            assertEquals(2, csv.getLine());
+            csv.next();
+            assertEquals(6, csv.getLine());
+            assertNull(csv.next());
+        }
+    }
+
+    @Test
+    void otherDelimiters() throws IOException {
+        assertEquals(List.of(List.of("a", "b,c")), records(new StringReader("a\tb,c"), '\t'));
+        assertEquals(List.of(List.of("a", "b")), records(trickling("a;b\r\n"), ';'));
+    }
+
+    @Test
+    void unterminatedQuoteIsAnError() {
+        IOException e = assertThrows(IOException.class, () -> records("a\n\"b,c\n"));
+        assertTrue(e.getMessage().contains("line 2"), e.getMessage());
+    }
+
+    @Test
+    void recordsLongerThanTheBuffer() throws IOException {
+        char[] chars = new char[200_000];
+        Arrays.fill(chars, 'x');
+        String value = new String(chars);
+        assertEquals(List.of(List.of(value, "\"" + value), List.of("y")),
+                records("\"" + value + "\",\"\"\"" + value + "\"\ny"));
+    }
+
+    @Test
+    void tablesTypeTheirColumnsFromTheSample() throws IOException {
+        Path file = directory.resolve("rows.csv");
+        Files.writeString(file, "\uFEFFid,zip,price,active,name,name,\n"
+                + "1,01234,1.5,true,a,b,\n"
+                + "3000000000,99999,,FALSE,,c,x\n", StandardCharsets.UTF_8);
+        try (CsvTable table = CsvTable.open(file, CsvTable.DEFAULT_DELIMITER)) {
+            assertEquals(List.of("id", "zip", "price", "active", "name", "name_2", "column7"), table.getColumns());
+            assertEquals(2, table.size());
+            List<Map<?, ?>> rows = new ArrayList<>();
+            for (Object row : table) rows.add((Map<?, ?>) row);
+            assertEquals(1, rows.get(0).get("id"));
+            assertEquals(3_000_000_000L, rows.get(1).get("id"));
+            assertEquals("01234", rows.get(0).get("zip"));
+            assertEquals(1.5, rows.get(0).get("price"));
+            assertNull(rows.get(1).get("price"));
+            assertEquals(Boolean.FALSE, rows.get(1).get("active"));
+            assertEquals("", rows.get(1).get("name"));
+        }
+    }
+
+    @Test
+    void closingASessionReleasesListingsLeftEarly() throws IOException {
+        Path file = directory.resolve("rows.csv");
+        Files.writeString(file, "id\n1\n2\n3\n", StandardCharsets.UTF_8);
+        try (CsvTable table = CsvTable.open(file, CsvTable.DEFAULT_DELIMITER)) {
+            CsvTable first = table.session();
+            CsvTable second = table.session();
+            // ?has_content, ?first and #break each stop after one row
+            assertTrue(first.iterator().hasNext());
+            assertEquals(1, ((Map<?, ?>) first.iterator().next()).get("id"));
+            second.iterator().next();
+            assertEquals(2, first.openReaderCount());
+            first.close();
+            assertEquals(0, first.openReaderCount());
+            assertEquals(1, second.openReaderCount());
+            second.close();
+            assertEquals(0, second.openReaderCount());
+            assertEquals(0, table.openReaderCount());
+
+            // A closed session can still be listed, and a full listing closes its file
+            int rows = 0;
+            for (Object ignored : first) rows++;
+            assertEquals(3, rows);
+            assertEquals(3, second.size());
+            assertEquals(0, first.openReaderCount());
+        }
+    }
+}
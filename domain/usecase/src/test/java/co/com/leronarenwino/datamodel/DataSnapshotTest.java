@@ -0,0 +1,150 @@
+/*
+ * This file is part of FreeMarker JSON/XML Toolkit.
+ *
+ * FreeMarker JSON/XML Toolkit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FreeMarker JSON/XML Toolkit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with FreeMarker JSON/XML Toolkit. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package co.com.leronarenwino.datamodel;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DataSnapshotTest {
+
+    @TempDir
+    Path directory;
+
+    private Map<String, Object> roundTrip(String json) throws IOException {
+        Path source = directory.resolve("data.json");
+        Path snapshot = directory.resolve("data.snapshot");
+        Files.writeString(source, json);
+        long size = DataSnapshot.write(source, snapshot);
+        assertEquals(Files.size(snapshot), size);
+        Map<String, Object> model = DataSnapshot.open(snapshot);
+        assertSameModel(DataModelReader.read(json, DataUsage.everything()), model, "");
+        return model;
+    }
+
+    // Same keys in the same order, same elements and the same boxed number types
+    private static void assertSameModel(Object expected, Object actual, String path) {
+        if (expected instanceof Map<?, ?> map) {
+            Map<?, ?> other = assertInstanceOf(Map.class, actual, path);
+            assertEquals(new ArrayList<>(map.keySet()), new ArrayList<>(other.keySet()), path);
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                assertTrue(other.containsKey(entry.getKey()), path + "." + entry.getKey());
+                assertSameModel(entry.getValue(), other.get(entry.getKey()), path + "." + entry.getKey());
+            }
+        } else if (expected instanceof List<?> list) {
+            List<?> other = assertInstanceOf(List.class, actual, path);
+            assertEquals(list.size(), other.size(), path);
+            Iterator<?> iterator = other.iterator();
+            for (int i = 0; i < list.size(); i++) {
+                assertSameModel(list.get(i), other.get(i), path + "[" + i + "]");
+                assertSameModel(list.get(i), iterator.next(), path + "[" + i + "]");
+            }
+        } else if (expected == null) {
+            assertNull(actual, path);
+        } else {
+            assertEquals(expected.getClass(), actual == null ? null : actual.getClass(), path);
+            assertEquals(expected, actual, path);
+        }
+    }
+
+    @Test
+    void scalarsKeepTheirTypes() throws IOException {
+        roundTrip("""
+                {"int": 42, "negative": -7, "long": 9007199254740993, "double": 3.25, "exponent": 1e-3,
+                 "big": 123456789012345678901234567890, "decimal": 0.1000000000000000000000000001,
+                 "true": true, "false": false, "null": null, "empty": "",
+                 "text": "caf\\u00e9 \\u2603 \\ud83d\\ude00 \\"quoted\\"\\n"}
+                """);
+    }
+
+    @Test
+    void nestedObjectsAndArrays() throws IOException {
+        Map<String, Object> model = roundTrip("""
+                {"order": {"id": "A-1", "lines": [
+                    {"sku": "x", "quantity": 2, "tags": []},
+                    {"sku": "y", "quantity": 1, "tags": ["gift", null]}],
+                  "customer": {}},
+                 "matrix": [[1, 2], [3.5, 4.5], [], [[["deep"]]]]}
+                """);
+        Map<?, ?> order = (Map<?, ?>) model.get("order");
+        assertTrue(((Map<?, ?>) order.get("customer")).isEmpty());
+        assertNull(order.get("missing"));
+        assertFalse(order.containsKey("missing"));
+    }
+
+    @Test
+    void numericArrays() throws IOException {
+        roundTrip("""
+                {"ints": [1, 2, 3, -4, 2147483647], "longs": [1, 9007199254740993, -2],
+                 "doubles": [0.5, 1.5, -2.25, 1e10], "mixed": [1, 2.5, "three", null, true, 123456789012345678901234567890]}
+                """);
+    }
+
+    @Test
+    void wideObjectsAreSearchedByKey() throws IOException {
+        StringBuilder json = new StringBuilder("{");
+        for (int i = 0; i < 40; i++) {
+            if (i > 0) json.append(',');
+            // Unsorted keys, so lookups cannot rely on the written order
+            json.append("\"key").append((i * 17) % 40).append("\": ").append(i);
+        }
+        Map<String, Object> model = roundTrip(json.append('}').toString());
+        for (int i = 0; i < 40; i++) {
+            assertEquals(i, model.get("key" + (i * 17) % 40));
+        }
+        assertNull(model.get("key40"));
+        assertNull(model.get(""));
+    }
+
+    @Test
+    void valuesAreReadOnly() throws IOException {
+        Map<String, Object> model = roundTrip("{\"list\": [1, \"two\"], \"object\": {\"a\": 1}}");
+        assertThrows(UnsupportedOperationException.class, () -> model.put("b", 2));
+        @SuppressWarnings("unchecked")
+        List<Object> list = (List<Object>) model.get("list");
+        assertThrows(UnsupportedOperationException.class, () -> list.add(3));
+        @SuppressWarnings("unchecked")
+        Map<String, Object> object = (Map<String, Object>) model.get("object");
+        assertThrows(UnsupportedOperationException.class, () -> object.remove("a"));
+    }
+
+    @Test
+    void onlySnapshotsAreRecognized() throws IOException {
+        Path json = directory.resolve("data.json");
+        Path snapshot = directory.resolve("data.snapshot");
+        Files.writeString(json, "{\"a\": 1}");
+        DataSnapshot.write(json, snapshot);
+        assertTrue(DataSnapshot.isSnapshot(snapshot));
+        assertFalse(DataSnapshot.isSnapshot(json));
+        assertThrows(IOException.class, () -> DataSnapshot.open(json));
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * This file is part of FreeMarker JSON/XML Toolkit.
+ *
+ * FreeMarker JSON/XML Toolkit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FreeMarker JSON/XML Toolkit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with FreeMarker JSON/XML Toolkit. If not, see <https://www.gnu.org/licenses/>.
+ */
+package co.com.leronarenwino.diff;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LineDiffTest {
+
+    // The old text with the changed lines replaced, as the output area patches itself
+    private static String patch(LineDiff diff) {
+        StringBuilder text = new StringBuilder(diff.getOldText());
+        List<MyersDiff.Edit> edits = diff.getEdits();
+        for (int i = edits.size() - 1; i >= 0; i--) {
+            MyersDiff.Edit edit = edits.get(i);
+            text.replace(diff.oldOffset(edit.oldStart()), diff.oldOffset(edit.oldEnd()), diff.replacementOf(edit).toString());
+        }
+        return text.toString();
+    }
+
+    @Test
+    void linesKeepTheirTerminators() {
+        assertArrayEquals(new int[]{0, 2, 5, 7, 8}, LineDiff.lineStarts("a\nb\r\nc\rd"));
+        assertArrayEquals(new int[]{0, 2}, LineDiff.lineStarts("a\n"));
+        assertArrayEquals(new int[]{0}, LineDiff.lineStarts(""));
+    }
+
+    @Test
+    void identicalTextsHaveNoEdits() {
+        LineDiff diff = LineDiff.compute("a\nb\n", new StringBuilder("a\nb\n"));
+        assertTrue(diff.isIdentical());
+        assertEquals(2, diff.getNewLineCount());
+    }
+
+    @Test
+    void changedLinesAreTheOnlyEdit() {
+        LineDiff diff = LineDiff.compute("{\n  \"a\": 1,\n  \"b\": 2\n}\n", "{\n  \"a\": 1,\n  \"b\": 3\n}\n");
+        assertEquals(List.of(new MyersDiff.Edit(2, 3, 2, 3)), diff.getEdits());
+        assertEquals("  \"b\": 3\n", diff.replacementOf(diff.getEdits().get(0)).toString());
+    }
+
+    @Test
+    void patchingTheOldTextGivesTheNewOne() {
+        String[][] pairs = {
+                {"a\nb\nc\n", "a\nc\nd\n"},
+                {"a\nb", "a\nb\n"},
+                {"x\r\ny\r\n", "x\ny\n"},
+                {"", "one\ntwo"},
+                {"one\ntwo", ""},
+                {"same\nsame\nsame\n", "same\nother\nsame\nsame\n"},
+        };
+        for (String[] pair : pairs) {
+            assertEquals(pair[1], patch(LineDiff.compute(pair[0], pair[1])));
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * This file is part of FreeMarker JSON/XML Toolkit.
+ *
+ * FreeMarker JSON/XML Toolkit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FreeMarker JSON/XML Toolkit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with FreeMarker JSON/XML Toolkit. If not, see <https://www.gnu.org/licenses/>.
+ */
+package co.com.leronarenwino.diff;
+
+import co.com.leronarenwino.diff.MyersDiff.Edit;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MyersDiffTest {
+
+    // a with every edit replaced by its part of b
+    private static int[] apply(int[] a, int[] b, List<Edit> edits) {
+        int[] result = new int[b.length];
+        int size = 0;
+        int copied = 0;
+        for (Edit edit : edits) {
+            for (int i = copied; i < edit.oldStart(); i++) result[size++] = a[i];
+            for (int i = edit.newStart(); i < edit.newEnd(); i++) result[size++] = b[i];
+            copied = edit.oldEnd();
+        }
+        for (int i = copied; i < a.length; i++) result[size++] = a[i];
+        return Arrays.copyOf(result, size);
+    }
+
+    private static void assertOrdered(List<Edit> edits) {
+        for (int i = 1; i < edits.size(); i++) {
+            Edit previous = edits.get(i - 1);
+            Edit edit = edits.get(i);
+            assertTrue(previous.oldEnd() < edit.oldStart() || previous.newEnd() < edit.newStart(), edits::toString);
+            assertEquals(edit.oldStart() - previous.oldEnd(), edit.newStart() - previous.newEnd(), edits::toString);
+        }
+    }
+
+    private static int cost(List<Edit> edits) {
+        return edits.stream().mapToInt(edit -> edit.oldEnd() - edit.oldStart() + edit.newEnd() - edit.newStart()).sum();
+    }
+
+    // Fewest inserted plus deleted elements, by the longest common subsequence
+    private static int minimalCost(int[] a, int[] b) {
+        int[][] common = new int[a.length + 1][b.length + 1];
+        for (int i = 1; i <= a.length; i++) {
+            for (int j = 1; j <= b.length; j++) {
+                common[i][j] = a[i - 1] == b[j - 1] ? common[i - 1][j - 1] + 1
+                        : Math.max(common[i - 1][j], common[i][j - 1]);
+            }
+        }
+        return a.length + b.length - 2 * common[a.length][b.length];
+    }
+
+    private static int[] random(Random random, int length, int alphabet) {
+        int[] values = new int[length];
+        for (int i = 0; i < length; i++) values[i] = random.nextInt(alphabet);
+        return values;
+    }
+
+    @Test
+    void identicalSequencesHaveNoEdits() {
+        assertTrue(MyersDiff.diff(new int[]{1, 2, 3}, new int[]{1, 2, 3}).isEmpty());
+        assertTrue(MyersDiff.diff(new int[0], new int[0]).isEmpty());
+    }
+
+    @Test
+    void findsInsertsDeletesAndReplacements() {
+        assertEquals(List.of(new Edit(1, 1, 1, 2)), MyersDiff.diff(new int[]{1, 3}, new int[]{1, 2, 3}));
+        assertEquals(List.of(new Edit(0, 1, 0, 0)), MyersDiff.diff(new int[]{1, 2}, new int[]{2}));
+        assertEquals(List.of(new Edit(1, 2, 1, 2)), MyersDiff.diff(new int[]{1, 2, 3}, new int[]{1, 9, 3}));
+        assertEquals(List.of(new Edit(0, 0, 0, 2)), MyersDiff.diff(new int[0], new int[]{4, 5}));
+    }
+
+    @Test
+    void editScriptsAreMinimalAndTurnOneSequenceIntoTheOther() {
+        Random random = new Random(36);
+        for (int run = 0; run < 2000; run++) {
+            int[] a = random(random, random.nextInt(40), 1 + random.nextInt(6));
+            int[] b = random(random, random.nextInt(40), 1 + random.nextInt(6));
+            List<Edit> edits = MyersDiff.diff(a, b);
+            assertArrayEquals(b, apply(a, b, edits));
+            assertOrdered(edits);
+            assertEquals(minimalCost(a, b), cost(edits), () -> Arrays.toString(a) + " " + Arrays.toString(b));
+        }
+    }
+
+    @Test
+    void sequencesTooDifferentToSolveExactlyStillGetAValidScript() {
+        Random random = new Random(40);
+        // Past the work budget, so boxes are split at the furthest point reached
+        int[] a = random(random, 200_000, 1_000_000);
+        int[] b = a.clone();
+        for (int i = 0; i < b.length; i += 50) b[i] = random.nextInt(1_000_000);
+        int[] c = random(random, 150_000, 1_000_000);
+        List<Edit> edits = MyersDiff.diff(a, c);
+        assertArrayEquals(c, apply(a, c, edits));
+        assertOrdered(edits);
+        edits = MyersDiff.diff(a, b);
+        assertArrayEquals(b, apply(a, b, edits));
+        assertEquals(2 * (b.length / 50), cost(edits), 2 * 20);
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * This file is part of FreeMarker JSON/XML Toolkit.
+ *
+ * FreeMarker JSON/XML Toolkit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FreeMarker JSON/XML Toolkit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with FreeMarker JSON/XML Toolkit. If not, see <https://www.gnu.org/licenses/>.
+ */
+package co.com.leronarenwino.load;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LatencyHistogramTest {
+
+    private static final long MILLIS = 1_000_000L;
+
+    @Test
+    void smallValuesAreExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 100; i++) histogram.record(i);
+        assertEquals(1, histogram.getValueAtPercentile(0));
+        assertEquals(50, histogram.getValueAtPercentile(50));
+        assertEquals(99, histogram.getValueAtPercentile(99));
+        assertEquals(100, histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    void largeValuesAreWithinThePrecision() {
+        Random random = new Random(40);
+        for (int run = 0; run < 10_000; run++) {
+            long value = random.nextLong(Long.MAX_VALUE / 2);
+            value >>>= random.nextInt(62);
+            LatencyHistogram histogram = new LatencyHistogram();
+            histogram.record(value);
+            histogram.record(Long.MAX_VALUE);
+            long reported = histogram.getValueAtPercentile(50);
+            assertTrue(reported >= value && reported - value <= value / 64, value + " reported as " + reported);
+        }
+    }
+
+    @Test
+    void percentilesNeverExceedTheMaximum() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(1000 * MILLIS + 1);
+        assertEquals(1000 * MILLIS + 1, histogram.getValueAtPercentile(100));
+        assertEquals(1000 * MILLIS + 1, histogram.getMax());
+    }
+
+    @Test
+    void emptyAndNegative() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getValueAtPercentile(99));
+        histogram.record(-5);
+        assertEquals(1, histogram.getTotalCount());
+        assertEquals(0, histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    void correctedRecordingAddsTheRequestsAStallHeldBack() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 90; i++) histogram.recordCorrected(MILLIS, 10 * MILLIS);
+        // A stall of one second while a request was due every 10 ms
+        histogram.recordCorrected(1000 * MILLIS, 10 * MILLIS);
+        assertEquals(90 + 100, histogram.getTotalCount());
+        // 90 values of 1 ms, then 10, 20, ... 1000 ms: the 95th is 50 ms
+        long median = histogram.getValueAtPercentile(50);
+        assertTrue(median >= 50 * MILLIS && median - 50 * MILLIS <= 50 * MILLIS / 64, String.valueOf(median));
+
+        LatencyHistogram uncorrected = new LatencyHistogram();
+        for (int i = 0; i < 90; i++) uncorrected.record(MILLIS);
+        uncorrected.record(1000 * MILLIS);
+        // Without the correction the stall hides behind the 90th percentile
+        assertTrue(uncorrected.getValueAtPercentile(90) < 2 * MILLIS);
+        assertTrue(histogram.getValueAtPercentile(90) > 800 * MILLIS);
+    }
+
+    @Test
+    void histogramsAddUp() {
+        LatencyHistogram first = new LatencyHistogram();
+        LatencyHistogram second = new LatencyHistogram();
+        for (int i = 1; i <= 50; i++) first.record(i);
+        for (int i = 51; i <= 100; i++) second.record(i);
+        first.add(second);
+        assertEquals(100, first.getTotalCount());
+        assertEquals(100, first.getMax());
+        assertEquals(75, first.getValueAtPercentile(75));
+    }
+}
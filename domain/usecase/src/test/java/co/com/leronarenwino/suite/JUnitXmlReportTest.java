@@ -0,0 +1,65 @@
+/*
+ * This file is part of FreeMarker JSON/XML Toolkit.
+ *
+ * FreeMarker JSON/XML Toolkit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FreeMarker JSON/XML Toolkit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with FreeMarker JSON/XML Toolkit. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package co.com.leronarenwino.suite;
+
+import co.com.leronarenwino.suite.SuiteDiscovery.TestCase;
+import co.com.leronarenwino.suite.SuiteRunner.CaseResult;
+import co.com.leronarenwino.suite.SuiteRunner.Status;
+import co.com.leronarenwino.suite.SuiteRunner.SuiteResult;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringWriter;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JUnitXmlReportTest {
+
+    private static final long MILLIS = 1_000_000L;
+
+    private static CaseResult result(String suite, String name, Status status, long startedMillis, long millis) {
+        return new CaseResult(new TestCase(suite, name, null, null, null), status,
+                startedMillis * MILLIS, millis * MILLIS, List.of());
+    }
+
+    private static String write(SuiteResult result) throws Exception {
+        StringWriter out = new StringWriter();
+        JUnitXmlReport.write(result, out);
+        return out.toString();
+    }
+
+    @Test
+    void suiteTimeIsTheWallTimeOfItsParallelCases() throws Exception {
+        String xml = write(new SuiteResult(List.of(
+                result("a", "one", Status.PASSED, 0, 400),
+                result("a", "two", Status.PASSED, 100, 400),
+                result("a", "three", Status.FAILED, 200, 400),
+                result("b", "one", Status.PASSED, 50, 100)), 700 * MILLIS));
+        assertTrue(xml.contains("<testsuites tests=\"4\" failures=\"1\" errors=\"0\" skipped=\"0\" time=\"0.700\">"), xml);
+        assertTrue(xml.contains("<testsuite name=\"a\" tests=\"3\" failures=\"1\" errors=\"0\" skipped=\"0\" time=\"0.600\">"), xml);
+        assertTrue(xml.contains("<testsuite name=\"b\" tests=\"1\" failures=\"0\" errors=\"0\" skipped=\"0\" time=\"0.100\">"), xml);
+    }
+
+    @Test
+    void skippedCasesDoNotStretchTheSuiteTime() throws Exception {
+        String xml = write(new SuiteResult(List.of(
+                result("a", "one", Status.ERROR, 0, 200),
+                result("a", "two", Status.SKIPPED, 900, 0)), 900 * MILLIS));
+        assertTrue(xml.contains("<testsuite name=\"a\" tests=\"2\" failures=\"0\" errors=\"1\" skipped=\"1\" time=\"0.200\">"), xml);
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * This file is part of FreeMarker JSON/XML Toolkit.
+ *
+ * FreeMarker JSON/XML Toolkit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FreeMarker JSON/XML Toolkit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with FreeMarker JSON/XML Toolkit. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package co.com.leronarenwino;
+
+import co.com.leronarenwino.cache.Fingerprint;
+import co.com.leronarenwino.compiled.TemplateCompiler;
+import co.com.leronarenwino.compiled.UnsupportedTemplateException;
+import co.com.leronarenwino.config.FreemarkerConfigProvider;
+import co.com.leronarenwino.datamodel.DataUsage;
+import co.com.leronarenwino.memo.PureMacros;
+import freemarker.template.Template;
+
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Renders templates compiled by {@link TemplateCompiler} instead of interpreting them.
+ * A template using anything the compiler does not cover renders through
+ * {@link FreemarkerProcessor}, so every template gets the same output from both.
+ */
+public class CompilingProcessor implements TemplateProcessor {
+
+    private static final Logger logger = Logger.getLogger(CompilingProcessor.class.getName());
+
+    private static final int MAX_PROGRAMS = 32;
+
+    private final FreemarkerProcessor fallback = new FreemarkerProcessor();
+
+    // Compiled templates by template fingerprint and configuration generation, most recently used last
+    private final Map<String, Program> programs = new LinkedHashMap<>(MAX_PROGRAMS + 1, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Program> eldest) {
+            return size() > MAX_PROGRAMS;
+        }
+    };
+
+    @Override
+    public String processTemplate(String templateContent, Map<String, Object> dataModel) throws Exception {
+        StringWriter writer = new StringWriter();
+        processTemplate(templateContent, dataModel, writer);
+        return writer.toString();
+    }
+
+    @Override
+    public void processTemplate(String templateContent, Map<String, Object> dataModel, Writer out) throws Exception {
+        program(templateContent).template().render(dataModel, out);
+    }
+
+    @Override
+    public CompiledTemplate compile(String templateContent) throws Exception {
+        return program(templateContent).template();
+    }
+
+    @Override
+    public DataUsage analyzeUsage(String templateContent) {
+        return fallback.analyzeUsage(templateContent);
+    }
+
+    // Why the template renders through FreeMarker, or null when it is compiled
+    public String fallbackReason(String templateContent) throws Exception {
+        return program(templateContent).fallbackReason();
+    }
+
+    private Program program(String templateContent) throws Exception {
+        String key = Fingerprint.ofTemplate(templateContent) + ':' + FreemarkerConfigProvider.getGeneration();
+        synchronized (programs) {
+            Program cached = programs.get(key);
+            if (cached != null) return cached;
+        }
+        Template template = PureMacros.parse("template", templateContent, FreemarkerConfigProvider.getConfiguration());
+        Program program;
+        try {
+            program = new Program(TemplateCompiler.compile(template), null);
+        } catch (UnsupportedTemplateException e) {
+            logger.log(Level.FINE, "Rendering template through FreeMarker: " + e.getMessage());
+            program = new Program(fallback.compile(templateContent), e.getMessage());
+        }
+        synchronized (programs) {
+            programs.put(key, program);
+        }
+        return program;
+    }
+
+    private record Program(CompiledTemplate template, String fallbackReason) {
+    }
+}
@@ -17,21 +17,89 @@
 
 package co.com.leronarenwino;
 
+import co.com.leronarenwino.analysis.TemplateUsageAnalyzer;
+import co.com.leronarenwino.cache.Fingerprint;
 import co.com.leronarenwino.config.FreemarkerConfigProvider;
+import co.com.leronarenwino.datamodel.DataUsage;
+import co.com.leronarenwino.memo.PureMacros;
+import freemarker.template.Configuration;
+import freemarker.template.ObjectWrapper;
 import freemarker.template.Template;
+import freemarker.template.TemplateModel;
 
+import java.io.IOException;
 import java.io.StringReader;
 import java.io.StringWriter;
+import java.io.Writer;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 public class FreemarkerProcessor implements TemplateProcessor{
 
+    private static final int MAX_ANALYSES = 32;
+
+    // Wrapped form of the last data model, reused while the caller keeps passing the same instance
+    private Map<String, Object> lastDataModel;
+    private ObjectWrapper lastObjectWrapper;
+    private TemplateModel lastWrappedModel;
+
+    // Usage analyses by template fingerprint and configuration generation, most recently used last
+    private final Map<String, DataUsage> usageByTemplate = new LinkedHashMap<>(MAX_ANALYSES + 1, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, DataUsage> eldest) {
+            return size() > MAX_ANALYSES;
+        }
+    };
+
     @Override
     public String processTemplate(String templateContent, Map<String, Object> dataModel) throws Exception {
-        Template template = new Template("template", new StringReader(templateContent), FreemarkerConfigProvider.getConfiguration());
         StringWriter writer = new StringWriter();
-        template.process(dataModel, writer);
+        processTemplate(templateContent, dataModel, writer);
         return writer.toString();
     }
 
+    @Override
+    public void processTemplate(String templateContent, Map<String, Object> dataModel, Writer out) throws Exception {
+        Configuration configuration = FreemarkerConfigProvider.getConfiguration();
+        Template template = PureMacros.parse("template", templateContent, configuration);
+        template.process(wrapDataModel(dataModel, template.getObjectWrapper()), out);
+    }
+
+    @Override
+    public CompiledTemplate compile(String templateContent) throws Exception {
+        Template template = PureMacros.parse("template", templateContent, FreemarkerConfigProvider.getConfiguration());
+        // Wrapped per render: the single cached wrapping above is not meant to be shared between threads
+        return template::process;
+    }
+
+    @Override
+    public DataUsage analyzeUsage(String templateContent) {
+        String key = Fingerprint.ofTemplate(templateContent) + ':' + FreemarkerConfigProvider.getGeneration();
+        synchronized (usageByTemplate) {
+            DataUsage cached = usageByTemplate.get(key);
+            if (cached != null) return cached;
+        }
+        DataUsage usage;
+        try {
+            usage = TemplateUsageAnalyzer.analyze(
+                    new Template("template", new StringReader(templateContent), FreemarkerConfigProvider.getConfiguration()));
+        } catch (IOException e) {
+            // Does not parse: rendering reports the error, with the full data model
+            usage = DataUsage.everything();
+        }
+        synchronized (usageByTemplate) {
+            usageByTemplate.put(key, usage);
+        }
+        return usage;
+    }
+
+    private synchronized TemplateModel wrapDataModel(Map<String, Object> dataModel, ObjectWrapper objectWrapper) throws Exception {
+        if (dataModel != lastDataModel || objectWrapper != lastObjectWrapper) {
+            lastWrappedModel = objectWrapper.wrap(dataModel);
+            lastDataModel = dataModel;
+            lastObjectWrapper = objectWrapper;
+        }
+        return lastWrappedModel;
+    }
+
 }
\ No newline at end of file
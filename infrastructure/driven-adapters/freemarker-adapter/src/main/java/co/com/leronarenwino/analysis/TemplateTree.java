@@ -0,0 +1,189 @@
+/*
+ * This file is part of FreeMarker JSON/XML Toolkit.
+ *
+ * FreeMarker JSON/XML Toolkit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FreeMarker JSON/XML Toolkit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with FreeMarker JSON/XML Toolkit. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package co.com.leronarenwino.analysis;
+
+import freemarker.core.TemplateElement;
+import freemarker.core.TemplateObject;
+import freemarker.template.Configuration;
+import freemarker.template.Template;
+import freemarker.template.Version;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Reads FreeMarker's parsed template tree. FreeMarker exposes it only through
+ * deprecated classes and package-private methods, so every other class reads
+ * templates through this one.
+ * <p>
+ * The layout of the tree is not part of FreeMarker's API. It is read only on the
+ * FreeMarker versions it was checked against. On any other version, or when the
+ * reflective lookups fail, {@link #isReadable()} is false and callers do without it.
+ * Nodes are passed around as plain objects.
+ */
+@SuppressWarnings("deprecation")
+public final class TemplateTree {
+
+    private static final Logger logger = Logger.getLogger(TemplateTree.class.getName());
+
+    // Versions whose tree layout was checked; raise the upper bound after checking a newer release
+    private static final Version OLDEST_CHECKED = new Version(2, 3, 34);
+    private static final Version NEWEST_CHECKED = new Version(2, 3, 34);
+
+    private static final Method PARAMETER_COUNT;
+    private static final Method PARAMETER_VALUE;
+    private static final Method PARAMETER_ROLE;
+    private static final Method NODE_SYMBOL;
+    private static final Method IDENTIFIER_NAME;
+    private static final Class<?> BUILT_IN;
+
+    static {
+        Method count = null;
+        Method value = null;
+        Method role = null;
+        Method symbol = null;
+        Method name = null;
+        Class<?> builtIn = null;
+        Version version = Configuration.getVersion();
+        if (version.intValue() < OLDEST_CHECKED.intValue() || version.intValue() > NEWEST_CHECKED.intValue()) {
+            logger.log(Level.WARNING, "Template tree of FreeMarker " + version + " not checked (only "
+                    + OLDEST_CHECKED + " to " + NEWEST_CHECKED + "), templates will not be analyzed or compiled");
+        } else {
+            try {
+                count = TemplateObject.class.getDeclaredMethod("getParameterCount");
+                value = TemplateObject.class.getDeclaredMethod("getParameterValue", int.class);
+                role = TemplateObject.class.getDeclaredMethod("getParameterRole", int.class);
+                symbol = TemplateObject.class.getDeclaredMethod("getNodeTypeSymbol");
+                name = Class.forName("freemarker.core.Identifier").getDeclaredMethod("getName");
+                builtIn = Class.forName("freemarker.core.BuiltIn");
+                for (Method method : new Method[]{count, value, role, symbol, name}) {
+                    method.setAccessible(true);
+                }
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                logger.log(Level.WARNING, "FreeMarker template tree not readable, templates will not be analyzed or compiled", e);
+                value = null;
+            }
+        }
+        PARAMETER_COUNT = count;
+        PARAMETER_VALUE = value;
+        PARAMETER_ROLE = role;
+        NODE_SYMBOL = symbol;
+        IDENTIFIER_NAME = name;
+        BUILT_IN = builtIn;
+    }
+
+    private TemplateTree() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    public static boolean isReadable() {
+        return PARAMETER_VALUE != null;
+    }
+
+    public static Object root(Template template) {
+        return template.getRootTreeNode();
+    }
+
+    // Class name of the node, such as "IteratorBlock", "Identifier" or "Dot"
+    public static String type(Object node) {
+        return node.getClass().getSimpleName();
+    }
+
+    public static boolean is(Object node, String type) {
+        return node != null && node.getClass().getSimpleName().equals(type);
+    }
+
+    // Directives and text; everything else in the tree is an expression or a plain parameter value
+    public static boolean isElement(Object node) {
+        return node instanceof TemplateElement;
+    }
+
+    public static boolean isExpression(Object node) {
+        return node instanceof TemplateObject && !(node instanceof TemplateElement);
+    }
+
+    public static boolean isBuiltIn(Object node) {
+        return BUILT_IN.isInstance(node);
+    }
+
+    public static int childCount(Object element) {
+        return ((TemplateElement) element).getChildCount();
+    }
+
+    public static Object child(Object element, int index) {
+        return ((TemplateElement) element).getChildAt(index);
+    }
+
+    public static int parameterCount(Object node) throws ReflectiveOperationException {
+        return (Integer) invoke(PARAMETER_COUNT, node);
+    }
+
+    public static Object parameter(Object node, int index) throws ReflectiveOperationException {
+        return invoke(PARAMETER_VALUE, node, index);
+    }
+
+    public static String parameterRole(Object node, int index) throws ReflectiveOperationException {
+        return String.valueOf(invoke(PARAMETER_ROLE, node, index));
+    }
+
+    // Operator of comparisons and arithmetic, as written
+    public static String symbol(Object node) throws ReflectiveOperationException {
+        return (String) invoke(NODE_SYMBOL, node);
+    }
+
+    public static String identifierName(Object node) throws ReflectiveOperationException {
+        return (String) invoke(IDENTIFIER_NAME, node);
+    }
+
+    public static String canonicalForm(Object node) {
+        return ((TemplateObject) node).getCanonicalForm();
+    }
+
+    // "in template ... at line ..., column ...", for messages
+    public static String location(Object node) {
+        return ((TemplateObject) node).getStartLocation();
+    }
+
+    public static int beginLine(Object node) {
+        return ((TemplateObject) node).getBeginLine();
+    }
+
+    public static int beginColumn(Object node) {
+        return ((TemplateObject) node).getBeginColumn();
+    }
+
+    public static int endLine(Object node) {
+        return ((TemplateObject) node).getEndLine();
+    }
+
+    public static int endColumn(Object node) {
+        return ((TemplateObject) node).getEndColumn();
+    }
+
+    private static Object invoke(Method method, Object target, Object... arguments) throws ReflectiveOperationException {
+        try {
+            return method.invoke(target, arguments);
+        } catch (InvocationTargetException e) {
+            // Tree nodes throw for indexes out of range, which a mismatch with this FreeMarker version could cause
+            if (e.getCause() instanceof RuntimeException runtime) throw runtime;
+            throw e;
+        }
+    }
+}
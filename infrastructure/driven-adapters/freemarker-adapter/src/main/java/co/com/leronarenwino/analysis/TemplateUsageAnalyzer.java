@@ -0,0 +1,299 @@
+/*
+ * This file is part of FreeMarker JSON/XML Toolkit.
+ *
+ * FreeMarker JSON/XML Toolkit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FreeMarker JSON/XML Toolkit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with FreeMarker JSON/XML Toolkit. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package co.com.leronarenwino.analysis;
+
+import co.com.leronarenwino.datamodel.DataUsage;
+import freemarker.template.Configuration;
+import freemarker.template.Template;
+import freemarker.template.TemplateModelException;
+import freemarker.template.TemplateScalarModel;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Finds the data model paths a parsed template can read, so the data can be parsed
+ * down to just those before rendering.
+ * <p>
+ * Names are followed through {@code .key}, literal {@code ["key"]} and list loop
+ * variables; a value used in any other way is kept whole. Anything that reads
+ * variables by a name computed at render time ({@code ?eval}, {@code ?interpret},
+ * {@code .vars}, includes and imports) makes the template need everything.
+ * <p>
+ * The tree is read through {@link TemplateTree}; when it cannot be read, on an
+ * unchecked FreeMarker version or after a failure while walking it, the analysis
+ * logs it and also answers everything.
+ */
+public class TemplateUsageAnalyzer {
+
+    private static final Logger logger = Logger.getLogger(TemplateUsageAnalyzer.class.getName());
+
+    private static final Set<String> DYNAMIC_BUILT_INS = Set.of("eval", "interpret");
+    private static final Set<String> DYNAMIC_VARIABLES = Set.of(
+            ".vars", ".data_model", ".dataModel", ".globals", ".main", ".namespace", ".locals");
+    private static final Set<String> ELEMENT_BUILT_INS = Set.of("first", "last");
+    // Built-ins of loop variables that only read the loop state
+    private static final Set<String> LOOP_BUILT_INS = Set.of(
+            "index", "counter", "has_next", "hasNext", "is_first", "isFirst", "is_last", "isLast",
+            "item_parity", "itemParity", "item_parity_cap", "itemParityCap", "item_cycle", "itemCycle",
+            "is_odd_item", "isOddItem", "is_even_item", "isEvenItem");
+
+    private final DataUsage.Node root = new DataUsage.Node();
+    // Innermost scope first; a null binding is a local that holds no data model value
+    private Deque<Map<String, DataUsage.Node>> scopes = new ArrayDeque<>();
+    // Sources of enclosing #list blocks whose #items declares the loop variable
+    private final List<DataUsage.Node> listSources = new ArrayList<>();
+
+    private TemplateUsageAnalyzer() {
+    }
+
+    public static DataUsage analyze(Template template) {
+        Configuration configuration = template.getConfiguration();
+        if (!TemplateTree.isReadable() || !configuration.getAutoIncludes().isEmpty()
+                || !configuration.getAutoImports().isEmpty()) {
+            return DataUsage.everything();
+        }
+        TemplateUsageAnalyzer analyzer = new TemplateUsageAnalyzer();
+        try {
+            analyzer.visit(TemplateTree.root(template));
+            return DataUsage.of(analyzer.root);
+        } catch (DynamicAccess e) {
+            return DataUsage.everything();
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            logger.log(Level.WARNING, "Could not read the tree of template " + template.getName()
+                    + ", its data model will be parsed in full", e);
+            return DataUsage.everything();
+        }
+    }
+
+    private void visit(Object element) throws ReflectiveOperationException {
+        switch (TemplateTree.type(element)) {
+            case "Include", "LibraryLoad" -> throw new DynamicAccess();
+            case "IteratorBlock" -> visitList(element);
+            case "Items" -> visitItems(element);
+            case "Macro" -> visitMacro(element);
+            default -> {
+                useParameters(element, 0);
+                visitChildren(element);
+            }
+        }
+    }
+
+    private void visitChildren(Object element) throws ReflectiveOperationException {
+        for (int i = 0; i < TemplateTree.childCount(element); i++) {
+            visit(TemplateTree.child(element, i));
+        }
+    }
+
+    // <#list source as item> or <#list source as key, value>, parameters: source, variable(s)
+    private void visitList(Object element) throws ReflectiveOperationException {
+        int count = parameterCount(element);
+        DataUsage.Node source = resolve(parameter(element, 0));
+        String variable = count > 1 ? (String) parameter(element, 1) : null;
+        if (variable == null) {
+            listSources.add(source);
+            visitChildren(element);
+            listSources.remove(listSources.size() - 1);
+            return;
+        }
+        String valueVariable = count > 2 ? (String) parameter(element, 2) : null;
+        visitLoopBody(element, source, variable, valueVariable);
+    }
+
+    private void visitItems(Object element) throws ReflectiveOperationException {
+        DataUsage.Node source = listSources.isEmpty() ? null : listSources.get(listSources.size() - 1);
+        String variable = (String) parameter(element, 0);
+        String valueVariable = parameterCount(element) > 1 ? (String) parameter(element, 1) : null;
+        visitLoopBody(element, source, variable, valueVariable);
+    }
+
+    private void visitLoopBody(Object element, DataUsage.Node source, String variable, String valueVariable)
+            throws ReflectiveOperationException {
+        Map<String, DataUsage.Node> frame = new HashMap<>();
+        if (valueVariable != null) {
+            // Listing a hash by key and value reads all of it
+            if (source != null) source.markWhole();
+            frame.put(variable, null);
+            frame.put(valueVariable, null);
+        } else {
+            frame.put(variable, source == null ? null : source.element());
+        }
+        scopes.push(frame);
+        visitChildren(element);
+        scopes.pop();
+    }
+
+    // Parameters: name, then parameter names with their defaults; the body sees only its parameters
+    private void visitMacro(Object element) throws ReflectiveOperationException {
+        Map<String, DataUsage.Node> frame = new HashMap<>();
+        for (int i = 1; i < parameterCount(element); i++) {
+            Object value = parameter(element, i);
+            if (value instanceof String name) {
+                frame.put(name, null);
+            } else {
+                use(value);
+            }
+        }
+        Deque<Map<String, DataUsage.Node>> outer = scopes;
+        scopes = new ArrayDeque<>();
+        scopes.push(frame);
+        visitChildren(element);
+        scopes = outer;
+    }
+
+    // Node of the value the expression evaluates to, or null when that value is not from the data model
+    private DataUsage.Node resolve(Object object) throws ReflectiveOperationException {
+        if (TemplateTree.isElement(object)) {
+            visit(object);
+            return null;
+        }
+        if (!TemplateTree.isExpression(object)) {
+            return null;
+        }
+        if (TemplateTree.isBuiltIn(object)) {
+            return resolveBuiltIn(object);
+        }
+        switch (TemplateTree.type(object)) {
+            case "Identifier" -> {
+                String name = TemplateTree.identifierName(object);
+                for (Map<String, DataUsage.Node> frame : scopes) {
+                    if (frame.containsKey(name)) return frame.get(name);
+                }
+                return root.child(name);
+            }
+            case "Dot" -> {
+                DataUsage.Node target = resolve(parameter(object, 0));
+                return target == null ? null : target.child((String) parameter(object, 1));
+            }
+            case "DynamicKeyName" -> {
+                return resolveKey(resolve(parameter(object, 0)), parameter(object, 1));
+            }
+            case "ParentheticalExpression" -> {
+                return resolve(parameter(object, 0));
+            }
+            case "DefaultToExpression" -> {
+                use(parameter(object, 1));
+                return resolve(parameter(object, 0));
+            }
+            case "ExistsExpression" -> {
+                // Keeping the value, even emptied, is enough to test for it
+                resolve(parameter(object, 0));
+                return null;
+            }
+            case "BuiltinVariable" -> {
+                if (DYNAMIC_VARIABLES.contains(TemplateTree.canonicalForm(object))) throw new DynamicAccess();
+                return null;
+            }
+            case "LocalLambdaExpression" -> {
+                Map<String, DataUsage.Node> frame = new HashMap<>();
+                Object argument = parameter(object, 0);
+                if (TemplateTree.is(argument, "Identifier")) {
+                    frame.put(TemplateTree.identifierName(argument), null);
+                }
+                scopes.push(frame);
+                use(parameter(object, 1));
+                scopes.pop();
+                return null;
+            }
+            default -> {
+                useParameters(object, 0);
+                return null;
+            }
+        }
+    }
+
+    // target[key]: literal names and indexes are followed, computed keys read the whole target
+    private DataUsage.Node resolveKey(DataUsage.Node target, Object key) throws ReflectiveOperationException {
+        String kind = TemplateTree.type(key);
+        if ("StringLiteral".equals(kind) && parameterCount(key) == 0) {
+            try {
+                String name = ((TemplateScalarModel) key).getAsString();
+                return target == null ? null : target.child(name);
+            } catch (TemplateModelException e) {
+                // Not a plain literal after all
+            }
+        }
+        if ("NumberLiteral".equals(kind)) {
+            return target == null ? null : target.element();
+        }
+        use(key);
+        if ("Range".equals(kind)) {
+            // A slice holds the same elements
+            return target;
+        }
+        if (target != null) target.markWhole();
+        return null;
+    }
+
+    // Parameters: target, built-in name, then arguments
+    private DataUsage.Node resolveBuiltIn(Object builtIn) throws ReflectiveOperationException {
+        String name = (String) parameter(builtIn, 1);
+        if (DYNAMIC_BUILT_INS.contains(name)) {
+            throw new DynamicAccess();
+        }
+        useParameters(builtIn, 2);
+        if (LOOP_BUILT_INS.contains(name)) {
+            return null;
+        }
+        DataUsage.Node target = resolve(parameter(builtIn, 0));
+        if (target == null) {
+            return null;
+        }
+        if (ELEMENT_BUILT_INS.contains(name)) {
+            return target.element();
+        }
+        target.markWhole();
+        return null;
+    }
+
+    private void use(Object expression) throws ReflectiveOperationException {
+        DataUsage.Node node = resolve(expression);
+        if (node != null) node.markWhole();
+    }
+
+    private void useParameters(Object object, int from) throws ReflectiveOperationException {
+        int count = parameterCount(object);
+        for (int i = from; i < count; i++) {
+            use(parameter(object, i));
+        }
+    }
+
+    private static int parameterCount(Object object) throws ReflectiveOperationException {
+        return TemplateTree.parameterCount(object);
+    }
+
+    private static Object parameter(Object object, int index) throws ReflectiveOperationException {
+        return TemplateTree.parameter(object, index);
+    }
+
+    // Thrown once a template turns out to need the whole data model, ending the walk
+    private static final class DynamicAccess extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private DynamicAccess() {
+            super(null, null, false, false);
+        }
+    }
+}
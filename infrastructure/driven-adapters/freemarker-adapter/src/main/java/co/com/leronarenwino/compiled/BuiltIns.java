@@ -0,0 +1,271 @@
+/*
+ * This file is part of FreeMarker JSON/XML Toolkit.
+ *
+ * FreeMarker JSON/XML Toolkit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FreeMarker JSON/XML Toolkit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with FreeMarker JSON/XML Toolkit. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package co.com.leronarenwino.compiled;
+
+import freemarker.core.CFormat;
+import freemarker.core.Environment;
+import freemarker.core.NonBooleanException;
+import freemarker.core.NonExtendedHashException;
+import freemarker.core.NonNumericalException;
+import freemarker.core.NonSequenceException;
+import freemarker.core.NonSequenceOrCollectionException;
+import freemarker.core.UnexpectedTypeException;
+import freemarker.template.SimpleNumber;
+import freemarker.template.SimpleScalar;
+import freemarker.template.TemplateBooleanModel;
+import freemarker.template.TemplateCollectionModel;
+import freemarker.template.TemplateCollectionModelEx;
+import freemarker.template.TemplateException;
+import freemarker.template.TemplateHashModel;
+import freemarker.template.TemplateHashModelEx;
+import freemarker.template.TemplateModel;
+import freemarker.template.TemplateModelException;
+import freemarker.template.TemplateModelIterator;
+import freemarker.template.TemplateNumberModel;
+import freemarker.template.TemplateScalarModel;
+import freemarker.template.TemplateSequenceModel;
+import freemarker.template.utility.StringUtil;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// The common built-ins, each compiled for its target expression; null for anything else
+final class BuiltIns {
+
+    private static final Logger logger = Logger.getLogger(BuiltIns.class.getName());
+
+    // ?c of a string quotes it the way the configured c_format does, which FreeMarker keeps package-private
+    private static final Method FORMAT_STRING;
+
+    static {
+        Method method = null;
+        try {
+            method = CFormat.class.getDeclaredMethod("formatString", String.class, Environment.class);
+            method.setAccessible(true);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            logger.log(Level.FINE, "String ?c not available to compiled templates", e);
+        }
+        FORMAT_STRING = method;
+    }
+
+    private BuiltIns() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    @FunctionalInterface
+    private interface Operation {
+        TemplateModel apply(RenderContext context, TemplateModel target) throws TemplateException;
+    }
+
+    // target?name
+    static Expression of(String name, Expression target, String where) {
+        Operation operation = switch (name) {
+            case "upper_case" -> (context, value) ->
+                    new SimpleScalar(Values.text(context, value, where).toUpperCase(context.locale));
+            case "lower_case" -> (context, value) ->
+                    new SimpleScalar(Values.text(context, value, where).toLowerCase(context.locale));
+            case "cap_first" -> (context, value) -> new SimpleScalar(changeFirst(Values.text(context, value, where), true));
+            case "uncap_first" -> (context, value) ->
+                    new SimpleScalar(changeFirst(Values.text(context, value, where), false));
+            case "trim" -> (context, value) -> new SimpleScalar(Values.text(context, value, where).trim());
+            case "json_string" -> (context, value) ->
+                    new SimpleScalar(StringUtil.jsonStringEnc(Values.text(context, value, where)));
+            case "length" -> (context, value) -> new SimpleNumber(Values.text(context, value, where).length());
+            case "size" -> (context, value) -> size(context, value, where);
+            case "first" -> (context, value) -> first(context, value, where);
+            case "last" -> (context, value) -> {
+                if (!(value instanceof TemplateSequenceModel sequence)) {
+                    throw new NonSequenceException("Expected a sequence: " + where, context.env);
+                }
+                return sequence.size() == 0 ? null : sequence.get(sequence.size() - 1);
+            };
+            case "keys", "values" -> {
+                boolean keys = "keys".equals(name);
+                yield (context, value) -> {
+                    if (!(value instanceof TemplateHashModelEx hash)) {
+                        throw new NonExtendedHashException("Expected an extended hash: " + where, context.env);
+                    }
+                    return new Values.Sequence(collect(keys ? hash.keys() : hash.values()));
+                };
+            }
+            case "string" -> (context, value) -> {
+                if (value instanceof TemplateBooleanModel bool) {
+                    return new SimpleScalar(bool.getAsBoolean() ? "true" : "false");
+                }
+                return new SimpleScalar(Values.text(context, value, where));
+            };
+            case "c" -> BuiltIns::computerFormat;
+            case "number" -> (context, value) -> {
+                if (value instanceof TemplateNumberModel) return value;
+                String text = Values.string(context, value, where);
+                try {
+                    return new SimpleNumber(context.arithmetic.toNumber(text));
+                } catch (NumberFormatException e) {
+                    throw new NonNumericalException("Can't convert this string to number: \"" + text + "\": " + where,
+                            context.env);
+                }
+            };
+            case "is_string" -> (context, value) -> Values.bool(value instanceof TemplateScalarModel);
+            case "is_number" -> (context, value) -> Values.bool(value instanceof TemplateNumberModel);
+            case "is_boolean" -> (context, value) -> Values.bool(value instanceof TemplateBooleanModel);
+            case "is_sequence" -> (context, value) -> Values.bool(value instanceof TemplateSequenceModel);
+            case "is_hash" -> (context, value) -> Values.bool(value instanceof TemplateHashModel);
+            case "is_hash_ex" -> (context, value) -> Values.bool(value instanceof TemplateHashModelEx);
+            default -> null;
+        };
+        if (operation == null) return null;
+        return context -> {
+            TemplateModel value = target.eval(context);
+            if (value == null) throw Values.missing(context, where);
+            return operation.apply(context, value);
+        };
+    }
+
+    // target?name(arguments)
+    static Expression call(String name, Expression target, String where, Expression[] arguments, String[] wheres) {
+        if (arguments.length == 1) {
+            Expression argument = arguments[0];
+            String argumentWhere = wheres[0];
+            return switch (name) {
+                case "starts_with", "ends_with", "contains" -> context -> {
+                    String text = Values.text(context, nonNull(context, target, where), where);
+                    String part = Values.text(context, argument.eval(context), argumentWhere);
+                    return Values.bool(switch (name) {
+                        case "starts_with" -> text.startsWith(part);
+                        case "ends_with" -> text.endsWith(part);
+                        default -> text.contains(part);
+                    });
+                };
+                case "join" -> context -> join(context, nonNull(context, target, where), where,
+                        Values.text(context, argument.eval(context), argumentWhere));
+                default -> null;
+            };
+        }
+        if (arguments.length == 2) {
+            Expression first = arguments[0];
+            Expression second = arguments[1];
+            return switch (name) {
+                case "replace" -> context -> {
+                    String text = Values.text(context, nonNull(context, target, where), where);
+                    return new SimpleScalar(text.replace(Values.text(context, first.eval(context), wheres[0]),
+                            Values.text(context, second.eval(context), wheres[1])));
+                };
+                // Only the boolean form; n?string("0.00") formats with a pattern
+                case "string" -> context -> {
+                    TemplateModel value = nonNull(context, target, where);
+                    if (!(value instanceof TemplateBooleanModel bool)) {
+                        throw new NonBooleanException("Expected a boolean: " + where, context.env);
+                    }
+                    return bool.getAsBoolean() ? first.eval(context) : second.eval(context);
+                };
+                default -> null;
+            };
+        }
+        return null;
+    }
+
+    private static TemplateModel nonNull(RenderContext context, Expression expression, String where)
+            throws TemplateException {
+        TemplateModel value = expression.eval(context);
+        if (value == null) throw Values.missing(context, where);
+        return value;
+    }
+
+    // Upper or lower cases the first character that is not white space
+    private static String changeFirst(String text, boolean upper) {
+        int i = 0;
+        while (i < text.length() && Character.isWhitespace(text.charAt(i))) i++;
+        if (i == text.length()) return text;
+        char first = text.charAt(i);
+        char changed = upper ? Character.toUpperCase(first) : Character.toLowerCase(first);
+        if (changed == first) return text;
+        StringBuilder result = new StringBuilder(text);
+        result.setCharAt(i, changed);
+        return result.toString();
+    }
+
+    private static TemplateModel size(RenderContext context, TemplateModel value, String where)
+            throws TemplateException {
+        if (value instanceof TemplateSequenceModel sequence) return new SimpleNumber(sequence.size());
+        if (value instanceof TemplateCollectionModelEx collection) return new SimpleNumber(collection.size());
+        if (value instanceof TemplateHashModelEx hash) return new SimpleNumber(hash.size());
+        throw new UnexpectedTypeException(context.env,
+                "Expected an extended hash, sequence or extended collection: " + where);
+    }
+
+    private static TemplateModel first(RenderContext context, TemplateModel value, String where)
+            throws TemplateException {
+        if (value instanceof TemplateSequenceModel sequence) return sequence.size() == 0 ? null : sequence.get(0);
+        if (value instanceof TemplateCollectionModel collection) {
+            TemplateModelIterator iterator = collection.iterator();
+            return iterator.hasNext() ? iterator.next() : null;
+        }
+        throw new NonSequenceOrCollectionException("Expected a sequence or collection: " + where, context.env);
+    }
+
+    private static List<TemplateModel> collect(TemplateCollectionModel collection) throws TemplateModelException {
+        List<TemplateModel> items = new ArrayList<>();
+        TemplateModelIterator iterator = collection.iterator();
+        while (iterator.hasNext()) items.add(iterator.next());
+        return items;
+    }
+
+    // Missing elements are skipped, the rest printed as ${...} would
+    private static TemplateModel join(RenderContext context, TemplateModel value, String where, String separator)
+            throws TemplateException {
+        List<TemplateModel> items;
+        if (value instanceof TemplateCollectionModel collection) {
+            items = collect(collection);
+        } else if (value instanceof TemplateSequenceModel sequence) {
+            items = new ArrayList<>(sequence.size());
+            for (int i = 0; i < sequence.size(); i++) items.add(sequence.get(i));
+        } else {
+            throw new NonSequenceOrCollectionException("Expected a sequence or collection: " + where, context.env);
+        }
+        StringBuilder text = new StringBuilder();
+        boolean first = true;
+        for (TemplateModel item : items) {
+            if (item == null) continue;
+            if (!first) text.append(separator);
+            text.append(Values.text(context, item, where));
+            first = false;
+        }
+        return new SimpleScalar(text.toString());
+    }
+
+    private static TemplateModel computerFormat(RenderContext context, TemplateModel value) throws TemplateException {
+        if (value instanceof TemplateNumberModel number) return new SimpleScalar(context.formatNumberForComputer(number));
+        if (value instanceof TemplateBooleanModel bool) return new SimpleScalar(bool.getAsBoolean() ? "true" : "false");
+        if (value instanceof TemplateScalarModel scalar && FORMAT_STRING != null) {
+            try {
+                return new SimpleScalar((String) FORMAT_STRING.invoke(context.env.getCFormat(), scalar.getAsString(),
+                        context.env));
+            } catch (InvocationTargetException e) {
+                if (e.getCause() instanceof TemplateException templateException) throw templateException;
+                throw new TemplateModelException(e.getCause());
+            } catch (IllegalAccessException e) {
+                throw new TemplateModelException(e);
+            }
+        }
+        throw new UnexpectedTypeException(context.env, "?c expects a number, boolean or string");
+    }
+}
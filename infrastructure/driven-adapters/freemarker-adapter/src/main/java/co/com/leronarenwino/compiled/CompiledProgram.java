@@ -0,0 +1,67 @@
+/*
+ * This file is part of FreeMarker JSON/XML Toolkit.
+ *
+ * FreeMarker JSON/XML Toolkit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FreeMarker JSON/XML Toolkit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with FreeMarker JSON/XML Toolkit. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package co.com.leronarenwino.compiled;
+
+import co.com.leronarenwino.CompiledTemplate;
+import freemarker.core.Environment;
+import freemarker.template.Template;
+import freemarker.template.TemplateHashModel;
+import freemarker.template.TemplateModel;
+import freemarker.template.TemplateModelException;
+
+import java.io.Writer;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A template compiled by {@link TemplateCompiler}. It holds no render state, so one
+ * program renders on several threads at once.
+ */
+public final class CompiledProgram implements CompiledTemplate {
+
+    private final Template template;
+    private final Instruction body;
+    private final int loopSlots;
+    private final List<MacroDefinition> macros;
+
+    CompiledProgram(Template template, Instruction body, int loopSlots, List<MacroDefinition> macros) {
+        this.template = template;
+        this.body = body;
+        this.loopSlots = loopSlots;
+        this.macros = macros;
+    }
+
+    @Override
+    public void render(Map<String, Object> dataModel, Writer out) throws Exception {
+        TemplateModel wrapped = template.getObjectWrapper().wrap(dataModel);
+        if (!(wrapped instanceof TemplateHashModel root)) {
+            throw new TemplateModelException("The data model must be a hash");
+        }
+        RenderContext context = new RenderContext(new Environment(template, root, out), root, out, loopSlots);
+        try {
+            body.execute(context);
+        } catch (Signal signal) {
+            // #break or #return with nothing to end but the template
+        }
+        out.flush();
+    }
+
+    public int getMacroCount() {
+        return macros.size();
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * This file is part of FreeMarker JSON/XML Toolkit.
+ *
+ * FreeMarker JSON/XML Toolkit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FreeMarker JSON/XML Toolkit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with FreeMarker JSON/XML Toolkit. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package co.com.leronarenwino.compiled;
+
+import freemarker.core.NonSequenceOrCollectionException;
+import freemarker.template.TemplateCollectionModel;
+import freemarker.template.TemplateHashModelEx;
+import freemarker.template.TemplateHashModelEx2;
+import freemarker.template.TemplateModel;
+import freemarker.template.TemplateModelException;
+import freemarker.template.TemplateModelIterator;
+import freemarker.template.TemplateScalarModel;
+import freemarker.template.TemplateSequenceModel;
+
+/**
+ * Position of one running {@code #list} or {@code #items}. Like FreeMarker it asks
+ * for the next element right after reading one, so {@code ?has_next} and
+ * {@code #sep} need no look-ahead of their own.
+ */
+final class Loop {
+
+    TemplateModel item;
+    // Value of the current entry when listing a hash by key and value
+    TemplateModel value;
+    int index = -1;
+    boolean hasNext;
+
+    private TemplateModelIterator iterator;
+    private TemplateSequenceModel sequence;
+    private int size;
+    private TemplateHashModelEx2.KeyValuePairIterator pairs;
+    private TemplateHashModelEx hash;
+
+    // Collections are walked with their iterator before sequences are indexed, as FreeMarker does
+    static Loop open(RenderContext context, TemplateModel listed, boolean byKeyAndValue, String where)
+            throws TemplateModelException, NonSequenceOrCollectionException {
+        Loop loop = new Loop();
+        if (byKeyAndValue) {
+            if (listed instanceof TemplateHashModelEx2 hashEx2) {
+                loop.pairs = hashEx2.keyValuePairIterator();
+                loop.hasNext = loop.pairs.hasNext();
+            } else if (listed instanceof TemplateHashModelEx hashEx) {
+                loop.hash = hashEx;
+                loop.iterator = hashEx.keys().iterator();
+                loop.hasNext = loop.iterator.hasNext();
+            } else {
+                throw new NonSequenceOrCollectionException("The value listed by key and value must be an extended hash: "
+                        + where, context.env);
+            }
+        } else if (listed instanceof TemplateCollectionModel collection) {
+            loop.iterator = collection.iterator();
+            loop.hasNext = loop.iterator.hasNext();
+        } else if (listed instanceof TemplateSequenceModel list) {
+            loop.sequence = list;
+            loop.size = list.size();
+            loop.hasNext = loop.size > 0;
+        } else if (listed instanceof TemplateHashModelEx) {
+            throw new NonSequenceOrCollectionException("The value you try to list is a hash, thus you must specify two "
+                    + "loop variables after the \"as\"; one for the key, and another for the value: " + where, context.env);
+        } else {
+            throw new NonSequenceOrCollectionException("Expected a sequence or collection to list: " + where, context.env);
+        }
+        return loop;
+    }
+
+    void next() throws TemplateModelException {
+        index++;
+        if (sequence != null) {
+            item = sequence.get(index);
+            hasNext = index + 1 < size;
+        } else if (pairs != null) {
+            TemplateHashModelEx2.KeyValuePair pair = pairs.next();
+            item = pair.getKey();
+            value = pair.getValue();
+            hasNext = pairs.hasNext();
+        } else {
+            item = iterator.next();
+            if (hash != null) {
+                value = hash.get(((TemplateScalarModel) item).getAsString());
+            }
+            hasNext = iterator.hasNext();
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * This file is part of FreeMarker JSON/XML Toolkit.
+ *
+ * FreeMarker JSON/XML Toolkit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FreeMarker JSON/XML Toolkit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with FreeMarker JSON/XML Toolkit. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package co.com.leronarenwino.compiled;
+
+import freemarker.core.InvalidReferenceException;
+import freemarker.template.TemplateException;
+import freemarker.template.TemplateModel;
+import freemarker.template.TemplateModelException;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Map;
+
+// A #macro or #function of the compiled template; calls run the body in a frame of their own
+final class MacroDefinition {
+
+    final String name;
+    final boolean function;
+    final String[] parameters;
+    // Default value expressions by parameter, null for required parameters
+    final Expression[] defaults;
+    // Set once the body is compiled, before the program is published
+    Instruction body = Instruction.NOTHING;
+    int loopSlots;
+
+    MacroDefinition(String name, boolean function, String[] parameters, Expression[] defaults) {
+        this.name = name;
+        this.function = function;
+        this.parameters = parameters;
+        this.defaults = defaults;
+    }
+
+    int indexOf(String parameter) {
+        return Arrays.asList(parameters).indexOf(parameter);
+    }
+
+    // Arguments come in parameter order; a missing or null one takes the default
+    RenderContext.Frame call(RenderContext context, TemplateModel[] arguments, boolean[] specified)
+            throws TemplateException, IOException {
+        RenderContext.Frame caller = context.frame;
+        RenderContext.Frame frame = RenderContext.Frame.forCall(loopSlots);
+        for (int i = 0; i < parameters.length; i++) {
+            if (arguments[i] != null) frame.locals.put(parameters[i], arguments[i]);
+        }
+        context.frame = frame;
+        try {
+            applyDefaults(context, frame.locals, specified);
+            body.execute(context);
+        } catch (Signal signal) {
+            if (signal != Signal.RETURN) throw signal;
+        } finally {
+            context.frame = caller;
+        }
+        return frame;
+    }
+
+    // Output of a function body is discarded; its value is what #return left in the frame
+    TemplateModel invoke(RenderContext context, TemplateModel[] arguments, boolean[] specified) throws TemplateException {
+        Writer out = context.out;
+        context.out = Writer.nullWriter();
+        try {
+            return call(context, arguments, specified).returned;
+        } catch (IOException e) {
+            throw new TemplateModelException(e);
+        } finally {
+            context.out = out;
+        }
+    }
+
+    // Defaults can read other parameters, so they are retried for as long as one more resolves
+    private void applyDefaults(RenderContext context, Map<String, TemplateModel> locals, boolean[] specified)
+            throws TemplateException {
+        boolean resolved;
+        boolean unresolved;
+        InvalidReferenceException firstMissing;
+        do {
+            resolved = false;
+            unresolved = false;
+            firstMissing = null;
+            for (int i = 0; i < parameters.length; i++) {
+                if (locals.get(parameters[i]) != null) continue;
+                if (defaults[i] == null) {
+                    throw new TemplateException("When calling " + (function ? "function" : "macro") + " \""
+                            + name + "\", required parameter \"" + parameters[i] + "\" (parameter #" + (i + 1) + ") "
+                            + (specified[i] ? "was specified, but had null/missing value." : "was not specified."),
+                            context.env);
+                }
+                try {
+                    TemplateModel value = defaults[i].eval(context);
+                    if (value != null) {
+                        locals.put(parameters[i], value);
+                        resolved = true;
+                    } else if (!unresolved) {
+                        unresolved = true;
+                        firstMissing = Values.missing(context, "default of parameter \"" + parameters[i] + "\"");
+                    }
+                } catch (InvalidReferenceException e) {
+                    if (!unresolved) {
+                        unresolved = true;
+                        firstMissing = e;
+                    }
+                }
+            }
+        } while (unresolved && resolved);
+        if (unresolved) throw firstMissing;
+    }
+}
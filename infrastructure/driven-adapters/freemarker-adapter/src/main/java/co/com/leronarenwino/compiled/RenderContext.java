@@ -0,0 +1,123 @@
+/*
+ * This file is part of FreeMarker JSON/XML Toolkit.
+ *
+ * FreeMarker JSON/XML Toolkit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FreeMarker JSON/XML Toolkit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with FreeMarker JSON/XML Toolkit. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package co.com.leronarenwino.compiled;
+
+import freemarker.core.ArithmeticEngine;
+import freemarker.core.Environment;
+import freemarker.core.TemplateNumberFormat;
+import freemarker.core.TemplateValueFormatException;
+import freemarker.template.Configuration;
+import freemarker.template.TemplateHashModel;
+import freemarker.template.TemplateModel;
+import freemarker.template.TemplateModelException;
+import freemarker.template.TemplateNumberModel;
+
+import java.io.Writer;
+import java.text.Collator;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * State of one render of a compiled template. The FreeMarker environment is only
+ * created, never processed: it supplies the number formats, locale and arithmetic
+ * the interpreter would use, so both engines print values the same way.
+ */
+final class RenderContext {
+
+    final Environment env;
+    final Configuration configuration;
+    final TemplateHashModel dataModel;
+    final ArithmeticEngine arithmetic;
+    final Locale locale;
+    Writer out;
+    // Variables set by #assign and #global; macros are resolved when the template is compiled
+    final Map<String, TemplateModel> namespace = new HashMap<>();
+    final Map<String, TemplateModel> globals = new HashMap<>();
+    Frame frame;
+
+    private TemplateNumberFormat numberFormat;
+    private TemplateNumberFormat cNumberFormat;
+    private Collator collator;
+
+    RenderContext(Environment env, TemplateHashModel dataModel, Writer out, int loopSlots) {
+        this.env = env;
+        this.configuration = env.getConfiguration();
+        this.dataModel = dataModel;
+        this.arithmetic = env.getArithmeticEngine();
+        this.locale = env.getLocale();
+        this.out = out;
+        this.frame = new Frame(null, loopSlots);
+    }
+
+    // Lookup order of FreeMarker: macro locals, template namespace, globals, data model, shared variables
+    TemplateModel lookup(String name) throws TemplateModelException {
+        TemplateModel value;
+        if (frame.locals != null && (value = frame.locals.get(name)) != null) return value;
+        if ((value = namespace.get(name)) != null) return value;
+        if ((value = globals.get(name)) != null) return value;
+        return lookupDataModel(name);
+    }
+
+    // For names no directive of the template can set
+    TemplateModel lookupDataModel(String name) throws TemplateModelException {
+        TemplateModel value = dataModel.get(name);
+        return value != null ? value : configuration.getSharedVariable(name);
+    }
+
+    String formatNumber(TemplateNumberModel number) throws TemplateModelException {
+        try {
+            if (numberFormat == null) numberFormat = env.getTemplateNumberFormat();
+            return numberFormat.formatToPlainText(number);
+        } catch (TemplateValueFormatException e) {
+            throw new TemplateModelException(e.getMessage(), e);
+        }
+    }
+
+    String formatNumberForComputer(TemplateNumberModel number) throws TemplateModelException {
+        try {
+            if (cNumberFormat == null) cNumberFormat = env.getCTemplateNumberFormat();
+            return cNumberFormat.formatToPlainText(number);
+        } catch (TemplateValueFormatException e) {
+            throw new TemplateModelException(e.getMessage(), e);
+        }
+    }
+
+    // FreeMarker compares strings for equality with the collator of the locale
+    boolean equalStrings(String left, String right) {
+        if (left.equals(right)) return true;
+        if (collator == null) collator = Collator.getInstance(locale);
+        return collator.compare(left, right) == 0;
+    }
+
+    // Variables of the top level or of one macro call
+    static final class Frame {
+        final Map<String, TemplateModel> locals;
+        final Loop[] loops;
+        TemplateModel returned;
+
+        Frame(Map<String, TemplateModel> locals, int loopSlots) {
+            this.locals = locals;
+            this.loops = new Loop[loopSlots];
+        }
+
+        static Frame forCall(int loopSlots) {
+            return new Frame(new HashMap<>(), loopSlots);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+/*
+ * This file is part of FreeMarker JSON/XML Toolkit.
+ *
+ * FreeMarker JSON/XML Toolkit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FreeMarker JSON/XML Toolkit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with FreeMarker JSON/XML Toolkit. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package co.com.leronarenwino.compiled;
+
+// Unwinds to the enclosing loop or macro call; carries no stack trace, so throwing it is cheap
+final class Signal extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    static final Signal BREAK = new Signal();
+    static final Signal CONTINUE = new Signal();
+    // The value of a function's #return is left in its frame
+    static final Signal RETURN = new Signal();
+
+    private Signal() {
+        super(null, null, false, false);
+    }
+}
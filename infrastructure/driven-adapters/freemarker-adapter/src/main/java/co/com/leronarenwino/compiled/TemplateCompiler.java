@@ -0,0 +1,1048 @@
+/*
+ * This file is part of FreeMarker JSON/XML Toolkit.
+ *
+ * FreeMarker JSON/XML Toolkit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FreeMarker JSON/XML Toolkit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with FreeMarker JSON/XML Toolkit. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package co.com.leronarenwino.compiled;
+
+import co.com.leronarenwino.analysis.TemplateTree;
+import freemarker.core.InvalidReferenceException;
+import freemarker.core.NonHashException;
+import freemarker.core.PlainTextOutputFormat;
+import freemarker.core.UndefinedOutputFormat;
+import freemarker.core.UnexpectedTypeException;
+import freemarker.template.Configuration;
+import freemarker.template.SimpleNumber;
+import freemarker.template.SimpleScalar;
+import freemarker.template.Template;
+import freemarker.template.TemplateException;
+import freemarker.template.TemplateHashModel;
+import freemarker.template.TemplateModel;
+import freemarker.template.TemplateModelException;
+import freemarker.template.TemplateNumberModel;
+import freemarker.template.TemplateScalarModel;
+import freemarker.template.TemplateSequenceModel;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Compiles a parsed template into a tree of closures that renders without FreeMarker's
+ * interpreter: no environment stack, no directive dispatch and variables resolved
+ * when compiling wherever the template allows it. Values stay FreeMarker models
+ * wrapped by the template's object wrapper, and numbers are printed with the formats
+ * of a FreeMarker environment, so output is the same as the interpreter's.
+ * <p>
+ * The subset covers text, interpolations, {@code #if}, {@code #list} with
+ * {@code #items}, {@code #sep} and {@code #else}, {@code #assign}, {@code #local},
+ * {@code #global}, macros and functions of the same template, and the common
+ * operators and built-ins. Anything else, such as includes, imports, {@code #nested},
+ * {@code #switch}, escaping output formats or directives from the data model, makes
+ * {@link #compile} throw, and the template is left to FreeMarker.
+ * <p>
+ * The template tree is read through {@link TemplateTree}; when it is not readable
+ * every template is left to FreeMarker.
+ */
+public final class TemplateCompiler {
+
+    private static final Logger logger = Logger.getLogger(TemplateCompiler.class.getName());
+
+    private static final int SCOPE_NAMESPACE = 1;
+    private static final int SCOPE_LOCAL = 2;
+    private static final int SCOPE_GLOBAL = 3;
+    private static final int CONDITION_ELSE = 1;
+
+    private final boolean fallbackOnNullLoopVariable;
+    private final Map<String, MacroDefinition> macros = new LinkedHashMap<>();
+    // Names some directive of the template can set; any other name is read from the data model directly
+    private final Set<String> assignedNames = new HashSet<>();
+    private final Set<String> loopNames = new HashSet<>();
+    private final List<Object> macroElements = new ArrayList<>();
+
+    // Loop variables in scope, innermost last
+    private final List<LoopVariable> loopVariables = new ArrayList<>();
+    // Slots of the loops #sep and #items belong to, innermost last
+    private final List<Integer> iterations = new ArrayList<>();
+    private final List<Integer> openLists = new ArrayList<>();
+    // Body being compiled: its macro (null at the top level) and its number of loop slots
+    private MacroDefinition macro;
+    private int slots;
+
+    private TemplateCompiler(Template template) {
+        this.fallbackOnNullLoopVariable = template.getConfiguration().getFallbackOnNullLoopVariable();
+    }
+
+    public static CompiledProgram compile(Template template) throws UnsupportedTemplateException {
+        if (!TemplateTree.isReadable()) {
+            throw new UnsupportedTemplateException("FreeMarker template tree not readable");
+        }
+        checkSettings(template);
+        TemplateCompiler compiler = new TemplateCompiler(template);
+        try {
+            Object root = TemplateTree.root(template);
+            compiler.declare(root);
+            compiler.checkMacroNames();
+            compiler.compileMacros();
+            compiler.macro = null;
+            compiler.slots = 0;
+            Instruction body = compiler.compileElement(root);
+            return new CompiledProgram(template, body, compiler.slots, List.copyOf(compiler.macros.values()));
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            logger.log(Level.FINE, "Could not compile template " + template.getName(), e);
+            throw new UnsupportedTemplateException("Could not read the template tree: " + e);
+        }
+    }
+
+    // Settings the compiled instructions do not implement
+    private static void checkSettings(Template template) throws UnsupportedTemplateException {
+        Configuration configuration = template.getConfiguration();
+        if (!(template.getOutputFormat() instanceof UndefinedOutputFormat)
+                && !(template.getOutputFormat() instanceof PlainTextOutputFormat)) {
+            throw new UnsupportedTemplateException("Output format " + template.getOutputFormat().getName());
+        }
+        if (!configuration.getAutoIncludes().isEmpty() || !configuration.getAutoImports().isEmpty()) {
+            throw new UnsupportedTemplateException("Auto-includes or auto-imports are configured");
+        }
+        if (template.isClassicCompatible()) {
+            throw new UnsupportedTemplateException("Classic compatible mode");
+        }
+        if (!"true,false".equals(template.getBooleanFormat())) {
+            throw new UnsupportedTemplateException("Boolean format " + template.getBooleanFormat());
+        }
+    }
+
+    // Macros are defined wherever they appear, before anything runs, as in FreeMarker
+    private void declare(Object element) throws ReflectiveOperationException, UnsupportedTemplateException {
+        switch (TemplateTree.type(element)) {
+            case "Macro" -> declareMacro(element);
+            case "Assignment", "BlockAssignment" -> assignedNames.add((String) parameter(element, 0));
+            case "IteratorBlock" -> {
+                for (int i = 1; i < parameterCount(element); i++) loopNames.add((String) parameter(element, i));
+            }
+            case "Items" -> {
+                for (int i = 0; i < parameterCount(element); i++) loopNames.add((String) parameter(element, i));
+            }
+            default -> {
+                // Nothing to declare
+            }
+        }
+        for (int i = 0; i < TemplateTree.childCount(element); i++) {
+            declare(TemplateTree.child(element, i));
+        }
+    }
+
+    // Calls are bound to macros when compiling, so nothing may rebind or hide their names
+    private void checkMacroNames() throws UnsupportedTemplateException {
+        for (String name : macros.keySet()) {
+            if (assignedNames.contains(name) || loopNames.contains(name)) {
+                throw new UnsupportedTemplateException("Macro name " + name + " is also used as a variable");
+            }
+        }
+    }
+
+    // Parameters: name, then parameter names with their defaults, the catch-all name and the type
+    private void declareMacro(Object element) throws ReflectiveOperationException, UnsupportedTemplateException {
+        int count = parameterCount(element);
+        String name = (String) parameter(element, 0);
+        if (parameter(element, count - 2) != null) {
+            throw new UnsupportedTemplateException("Catch-all parameter of macro " + name);
+        }
+        if (macros.containsKey(name)) {
+            throw new UnsupportedTemplateException("Macro " + name + " is defined more than once");
+        }
+        int parameters = (count - 3) / 2;
+        String[] names = new String[parameters];
+        for (int i = 0; i < parameters; i++) {
+            names[i] = (String) parameter(element, 1 + 2 * i);
+            assignedNames.add(names[i]);
+        }
+        boolean function = Integer.valueOf(1).equals(parameter(element, count - 1));
+        macros.put(name, new MacroDefinition(name, function, names, new Expression[parameters]));
+        macroElements.add(element);
+    }
+
+    private void compileMacros() throws ReflectiveOperationException, UnsupportedTemplateException {
+        for (Object element : macroElements) {
+            macro = macros.get((String) parameter(element, 0));
+            slots = 0;
+            for (int i = 0; i < macro.parameters.length; i++) {
+                Object defaultValue = parameter(element, 2 + 2 * i);
+                if (defaultValue != null) macro.defaults[i] = compileExpression(defaultValue);
+            }
+            macro.body = compileChildren(element);
+            macro.loopSlots = slots;
+        }
+    }
+
+    private Instruction compileElement(Object element)
+            throws ReflectiveOperationException, UnsupportedTemplateException {
+        return switch (TemplateTree.type(element)) {
+            case "MixedContent" -> compileChildren(element);
+            case "TextBlock" -> compileText((String) parameter(element, 0));
+            case "DollarVariable" -> compileInterpolation(element);
+            case "IfBlock" -> compileIf(element);
+            case "ConditionalBlock" -> compileIf(element);
+            case "ListElseContainer" -> compileList(TemplateTree.child(element, 0),
+                    compileChildren(TemplateTree.child(element, 1)));
+            case "IteratorBlock" -> compileList(element, Instruction.NOTHING);
+            case "Items" -> compileItems(element);
+            case "Sep" -> compileSep(element);
+            case "AssignmentInstruction" -> compileChildren(element);
+            case "Assignment" -> compileAssignment(element);
+            case "BlockAssignment" -> compileBlockAssignment(element);
+            case "UnifiedCall" -> compileCall(element);
+            case "ReturnInstruction" -> compileReturn(element);
+            case "BreakInstruction" -> context -> {
+                throw Signal.BREAK;
+            };
+            case "ContinueInstruction" -> context -> {
+                throw Signal.CONTINUE;
+            };
+            // Macros were declared up front; comments print nothing
+            case "Macro", "Comment" -> Instruction.NOTHING;
+            default -> throw unsupported(element);
+        };
+    }
+
+    private Instruction compileChildren(Object element)
+            throws ReflectiveOperationException, UnsupportedTemplateException {
+        List<Instruction> instructions = new ArrayList<>(TemplateTree.childCount(element));
+        for (int i = 0; i < TemplateTree.childCount(element); i++) {
+            Instruction instruction = compileElement(TemplateTree.child(element, i));
+            if (instruction != Instruction.NOTHING) instructions.add(instruction);
+        }
+        if (instructions.isEmpty()) return Instruction.NOTHING;
+        if (instructions.size() == 1) return instructions.get(0);
+        Instruction[] sequence = instructions.toArray(new Instruction[0]);
+        return context -> {
+            for (Instruction instruction : sequence) {
+                instruction.execute(context);
+            }
+        };
+    }
+
+    private static Instruction compileText(String text) {
+        if (text.isEmpty()) return Instruction.NOTHING;
+        return context -> context.out.write(text);
+    }
+
+    private Instruction compileInterpolation(Object element)
+            throws ReflectiveOperationException, UnsupportedTemplateException {
+        Object node = parameter(element, 0);
+        if (isStaticString(node)) {
+            return compileText(literalString(node));
+        }
+        Expression expression = compileExpression(node);
+        String where = where(node);
+        return context -> context.out.write(Values.text(context, expression.eval(context), where));
+    }
+
+    // A lone #if, or the #if, #elseif and #else blocks of an IfBlock
+    private Instruction compileIf(Object element)
+            throws ReflectiveOperationException, UnsupportedTemplateException {
+        List<Object> blocks = new ArrayList<>();
+        if ("ConditionalBlock".equals(TemplateTree.type(element))) {
+            blocks.add(element);
+        } else {
+            for (int i = 0; i < TemplateTree.childCount(element); i++) blocks.add(TemplateTree.child(element, i));
+        }
+        int count = blocks.size();
+        Expression[] conditions = new Expression[count];
+        String[] wheres = new String[count];
+        Instruction[] bodies = new Instruction[count];
+        for (int i = 0; i < count; i++) {
+            Object block = blocks.get(i);
+            if (!Integer.valueOf(CONDITION_ELSE).equals(parameter(block, 1))) {
+                conditions[i] = compileExpression(parameter(block, 0));
+                wheres[i] = where(parameter(block, 0));
+            }
+            bodies[i] = compileChildren(block);
+        }
+        if (count == 1) {
+            Expression condition = conditions[0];
+            String where = wheres[0];
+            Instruction body = bodies[0];
+            return context -> {
+                if (Values.isTrue(context, condition.eval(context), where)) body.execute(context);
+            };
+        }
+        return context -> {
+            for (int i = 0; i < count; i++) {
+                if (conditions[i] == null || Values.isTrue(context, conditions[i].eval(context), wheres[i])) {
+                    bodies[i].execute(context);
+                    return;
+                }
+            }
+        };
+    }
+
+    // Parameters: the listed value, then none, one or two loop variables
+    private Instruction compileList(Object element, Instruction otherwise)
+            throws ReflectiveOperationException, UnsupportedTemplateException {
+        Object sourceNode = parameter(element, 0);
+        Expression source = compileExpression(sourceNode);
+        String where = where(sourceNode);
+        int count = parameterCount(element);
+        int slot = slots++;
+        if (count == 1) {
+            openLists.add(slot);
+            Instruction body = compileChildren(element);
+            openLists.remove(openLists.size() - 1);
+            return context -> {
+                Loop loop = open(context, source.eval(context), false, where);
+                if (!loop.hasNext) {
+                    otherwise.execute(context);
+                    return;
+                }
+                context.frame.loops[slot] = loop;
+                try {
+                    body.execute(context);
+                } catch (Signal signal) {
+                    if (signal != Signal.BREAK) throw signal;
+                }
+            };
+        }
+        boolean byKeyAndValue = count > 2;
+        Instruction body = compileLoopBody(element, slot, count > 1 ? (String) parameter(element, 1) : null,
+                byKeyAndValue ? (String) parameter(element, 2) : null);
+        return context -> {
+            Loop loop = open(context, source.eval(context), byKeyAndValue, where);
+            if (!loop.hasNext) {
+                otherwise.execute(context);
+                return;
+            }
+            context.frame.loops[slot] = loop;
+            iterate(context, loop, body);
+        };
+    }
+
+    // <#items as x> repeats its body over the loop its #list opened
+    private Instruction compileItems(Object element)
+            throws ReflectiveOperationException, UnsupportedTemplateException {
+        if (openLists.isEmpty()) throw unsupported(element);
+        int slot = openLists.get(openLists.size() - 1);
+        openLists.remove(openLists.size() - 1);
+        Instruction body = compileLoopBody(element, slot, (String) parameter(element, 0),
+                parameterCount(element) > 1 ? (String) parameter(element, 1) : null);
+        openLists.add(slot);
+        return context -> iterate(context, context.frame.loops[slot], body);
+    }
+
+    private Instruction compileLoopBody(Object element, int slot, String item, String value)
+            throws ReflectiveOperationException, UnsupportedTemplateException {
+        int scope = loopVariables.size();
+        loopVariables.add(new LoopVariable(item, slot, false));
+        if (value != null) loopVariables.add(new LoopVariable(value, slot, true));
+        iterations.add(slot);
+        Instruction body = compileChildren(element);
+        iterations.remove(iterations.size() - 1);
+        loopVariables.subList(scope, loopVariables.size()).clear();
+        return body;
+    }
+
+    private static Loop open(RenderContext context, TemplateModel listed, boolean byKeyAndValue, String where)
+            throws TemplateException {
+        if (listed == null) throw Values.missing(context, where);
+        return Loop.open(context, listed, byKeyAndValue, where);
+    }
+
+    private static void iterate(RenderContext context, Loop loop, Instruction body)
+            throws TemplateException, IOException {
+        do {
+            loop.next();
+            try {
+                body.execute(context);
+            } catch (Signal signal) {
+                if (signal == Signal.BREAK) return;
+                if (signal != Signal.CONTINUE) throw signal;
+            }
+        } while (loop.hasNext);
+    }
+
+    private Instruction compileSep(Object element)
+            throws ReflectiveOperationException, UnsupportedTemplateException {
+        if (iterations.isEmpty()) throw unsupported(element);
+        int slot = iterations.get(iterations.size() - 1);
+        Instruction body = compileChildren(element);
+        return context -> {
+            if (context.frame.loops[slot].hasNext) body.execute(context);
+        };
+    }
+
+    // Parameters: target, operator, source, scope and namespace
+    private Instruction compileAssignment(Object element)
+            throws ReflectiveOperationException, UnsupportedTemplateException {
+        String name = (String) parameter(element, 0);
+        String operator = (String) parameter(element, 1);
+        int scope = (Integer) parameter(element, 3);
+        checkTarget(element, name, scope, parameter(element, 4));
+        Object sourceNode = parameter(element, 2);
+        Expression source = sourceNode == null ? null : compileExpression(sourceNode);
+        String sourceWhere = sourceNode == null ? null : where(sourceNode);
+        String targetWhere = name + "  [" + TemplateTree.location(element) + "]";
+        Expression value = switch (operator) {
+            case "=" -> context -> {
+                TemplateModel result = source.eval(context);
+                if (result == null) throw Values.missing(context, sourceWhere);
+                return result;
+            };
+            case "+=" -> context -> Values.add(context, current(context, scope, name, targetWhere), targetWhere,
+                    source.eval(context), sourceWhere);
+            case "-=", "*=", "/=", "%=" -> {
+                int arithmetic = arithmeticOperator(operator.substring(0, 1));
+                String where = where(element);
+                yield context -> Values.arithmetic(context, arithmetic, current(context, scope, name, targetWhere),
+                        targetWhere, source.eval(context), sourceWhere, where);
+            }
+            case "++" -> context -> new SimpleNumber(context.arithmetic.add(
+                    Values.number(context, current(context, scope, name, targetWhere), targetWhere), 1));
+            case "--" -> context -> new SimpleNumber(context.arithmetic.subtract(
+                    Values.number(context, current(context, scope, name, targetWhere), targetWhere), 1));
+            default -> throw unsupported(element);
+        };
+        return context -> variables(context, scope).put(name, value.eval(context));
+    }
+
+    private Instruction compileBlockAssignment(Object element)
+            throws ReflectiveOperationException, UnsupportedTemplateException {
+        String name = (String) parameter(element, 0);
+        int scope = (Integer) parameter(element, 1);
+        checkTarget(element, name, scope, parameter(element, 2));
+        Instruction body = compileChildren(element);
+        return context -> {
+            Writer out = context.out;
+            StringWriter capture = new StringWriter();
+            context.out = capture;
+            try {
+                body.execute(context);
+            } finally {
+                context.out = out;
+            }
+            variables(context, scope).put(name, new SimpleScalar(capture.toString()));
+        };
+    }
+
+    private void checkTarget(Object element, String name, int scope, Object namespace)
+            throws UnsupportedTemplateException {
+        if (namespace != null || (scope == SCOPE_LOCAL && macro == null)) throw unsupported(element);
+        if (scope == SCOPE_LOCAL) {
+            for (LoopVariable variable : loopVariables) {
+                if (variable.name().equals(name)) throw unsupported(element);
+            }
+        }
+    }
+
+    // Compound assignments read the variable from the scope they write to, and only from there
+    private static TemplateModel current(RenderContext context, int scope, String name, String where)
+            throws InvalidReferenceException {
+        TemplateModel value = variables(context, scope).get(name);
+        if (value == null) throw Values.missing(context, where);
+        return value;
+    }
+
+    private static Map<String, TemplateModel> variables(RenderContext context, int scope) {
+        return switch (scope) {
+            case SCOPE_LOCAL -> context.frame.locals;
+            case SCOPE_GLOBAL -> context.globals;
+            default -> context.namespace;
+        };
+    }
+
+    // <@name .../> of a macro of this template, without nested content or loop variables
+    private Instruction compileCall(Object element)
+            throws ReflectiveOperationException, UnsupportedTemplateException {
+        MacroDefinition callee = calledMacro(parameter(element, 0), false);
+        if (callee == null || TemplateTree.childCount(element) > 0) throw unsupported(element);
+        int parameters = callee.parameters.length;
+        Expression[] arguments = new Expression[parameters];
+        boolean[] specified = new boolean[parameters];
+        int count = parameterCount(element);
+        int positional = 0;
+        String error = null;
+        for (int i = 1; i < count; i++) {
+            String role = TemplateTree.parameterRole(element, i);
+            int index;
+            if ("argument name".equals(role)) {
+                String name = (String) parameter(element, i++);
+                index = callee.indexOf(name);
+                if (index < 0 && error == null) {
+                    error = "Macro \"" + callee.name + "\" has no parameter with name \"" + name + "\".";
+                }
+            } else if ("argument value".equals(role)) {
+                index = positional < parameters ? positional : -1;
+                positional++;
+            } else {
+                throw unsupported(element);
+            }
+            if (index >= 0) {
+                arguments[index] = compileExpression(parameter(element, i));
+                specified[index] = true;
+            }
+        }
+        if (positional > parameters) {
+            error = "Macro \"" + callee.name + "\" only accepts " + parameters + " parameters, but got "
+                    + positional + ".";
+        }
+        if (error != null) {
+            String message = error + "  [" + TemplateTree.location(element) + "]";
+            return context -> {
+                throw new TemplateException(message, context.env);
+            };
+        }
+        return context -> callee.call(context, evaluate(context, arguments), specified);
+    }
+
+    // name(...) of a function of this template
+    private Expression compileFunctionCall(Object node, MacroDefinition callee)
+            throws ReflectiveOperationException, UnsupportedTemplateException {
+        int parameters = callee.parameters.length;
+        int count = parameterCount(node) - 1;
+        if (count > parameters) {
+            String message = "Function \"" + callee.name + "\" only accepts " + parameters + " parameters, but got "
+                    + count + ".  [" + TemplateTree.location(node) + "]";
+            return context -> {
+                throw new TemplateException(message, context.env);
+            };
+        }
+        Expression[] arguments = new Expression[parameters];
+        boolean[] specified = new boolean[parameters];
+        for (int i = 0; i < count; i++) {
+            arguments[i] = compileExpression(parameter(node, i + 1));
+            specified[i] = true;
+        }
+        return context -> callee.invoke(context, evaluate(context, arguments), specified);
+    }
+
+    private static TemplateModel[] evaluate(RenderContext context, Expression[] arguments) throws TemplateException {
+        TemplateModel[] values = new TemplateModel[arguments.length];
+        for (int i = 0; i < arguments.length; i++) {
+            if (arguments[i] != null) values[i] = arguments[i].eval(context);
+        }
+        return values;
+    }
+
+    private MacroDefinition calledMacro(Object callee, boolean function) throws ReflectiveOperationException {
+        if (!TemplateTree.is(callee, "Identifier")) return null;
+        MacroDefinition definition = macros.get(TemplateTree.identifierName(callee));
+        return definition != null && definition.function == function ? definition : null;
+    }
+
+    private Instruction compileReturn(Object element)
+            throws ReflectiveOperationException, UnsupportedTemplateException {
+        if (macro == null) throw unsupported(element);
+        Object valueNode = parameter(element, 0);
+        if (valueNode == null) {
+            return context -> {
+                throw Signal.RETURN;
+            };
+        }
+        if (!macro.function) throw unsupported(element);
+        Expression value = compileExpression(valueNode);
+        return context -> {
+            context.frame.returned = value.eval(context);
+            throw Signal.RETURN;
+        };
+    }
+
+    private Expression compileExpression(Object node) throws ReflectiveOperationException, UnsupportedTemplateException {
+        if (TemplateTree.isBuiltIn(node)) {
+            return compileBuiltIn(node);
+        }
+        String kind = node.getClass().getSimpleName();
+        return switch (kind) {
+            case "Identifier" -> compileIdentifier(TemplateTree.identifierName(node));
+            case "Dot" -> compileDot(node);
+            case "DynamicKeyName" -> compileDynamicKey(node);
+            case "StringLiteral" -> compileString(node);
+            case "NumberLiteral" -> constant(new SimpleNumber(literalNumber(node)));
+            case "BooleanLiteral" -> constant(Values.bool("true".equals(TemplateTree.canonicalForm(node))));
+            case "ListLiteral" -> compileListLiteral(node);
+            case "HashLiteral" -> compileHashLiteral(node);
+            case "ParentheticalExpression" -> compileExpression(parameter(node, 0));
+            case "AndExpression", "OrExpression" -> compileLogical(node, "AndExpression".equals(kind));
+            case "NotExpression" -> {
+                Expression operand = compileExpression(parameter(node, 0));
+                String where = where(parameter(node, 0));
+                yield context -> Values.bool(!Values.isTrue(context, operand.eval(context), where));
+            }
+            case "ComparisonExpression" -> compileComparison(node);
+            case "ArithmeticExpression" -> compileArithmetic(node);
+            case "AddConcatExpression" -> compileAdd(node);
+            case "UnaryPlusMinusExpression" -> compileUnary(node);
+            case "ExistsExpression" -> {
+                Expression operand = compileMaybeMissing(parameter(node, 0));
+                yield context -> Values.bool(operand.eval(context) != null);
+            }
+            case "DefaultToExpression" -> compileDefault(node);
+            case "MethodCall" -> compileMethodCall(node);
+            case "Range" -> compileRange(node);
+            default -> throw unsupported(node);
+        };
+    }
+
+    private static Expression constant(TemplateModel value) {
+        return context -> value;
+    }
+
+    // Loop variables are found by position; other names go through the scopes FreeMarker would search
+    private Expression compileIdentifier(String name) throws UnsupportedTemplateException {
+        if (macros.containsKey(name)) {
+            throw new UnsupportedTemplateException("Macro " + name + " used as a value");
+        }
+        Expression scoped = assignedNames.contains(name)
+                ? context -> context.lookup(name)
+                : context -> context.lookupDataModel(name);
+        List<LoopVariable> matches = new ArrayList<>();
+        // x_index and x_has_next read the state of the loop of x and are never null, so the search ends there
+        Expression state = null;
+        for (int i = loopVariables.size() - 1; i >= 0 && state == null; i--) {
+            LoopVariable variable = loopVariables.get(i);
+            if (variable.name().equals(name)) {
+                matches.add(variable);
+            } else {
+                state = loopState(name, variable);
+            }
+        }
+        if (matches.isEmpty()) return state != null ? state : scoped;
+        LoopVariable innermost = matches.get(0);
+        int slot = innermost.slot();
+        boolean value = innermost.value();
+        if (!fallbackOnNullLoopVariable) {
+            return context -> {
+                Loop loop = context.frame.loops[slot];
+                return value ? loop.value : loop.item;
+            };
+        }
+        // A null element lets the name resolve further out, as FreeMarker does by default
+        LoopVariable[] candidates = matches.toArray(new LoopVariable[0]);
+        Expression outer = state != null ? state : scoped;
+        return context -> {
+            Loop[] loops = context.frame.loops;
+            for (LoopVariable candidate : candidates) {
+                Loop loop = loops[candidate.slot()];
+                TemplateModel result = candidate.value() ? loop.value : loop.item;
+                if (result != null) return result;
+            }
+            return outer.eval(context);
+        };
+    }
+
+    private static Expression loopState(String name, LoopVariable variable) {
+        if (variable.value() || !name.startsWith(variable.name())) return null;
+        int slot = variable.slot();
+        return switch (name.substring(variable.name().length())) {
+            case "_index" -> context -> new SimpleNumber(context.frame.loops[slot].index);
+            case "_has_next" -> context -> Values.bool(context.frame.loops[slot].hasNext);
+            default -> null;
+        };
+    }
+
+    private LoopVariable loopVariable(Object node) throws ReflectiveOperationException {
+        if (!TemplateTree.is(node, "Identifier")) return null;
+        String name = TemplateTree.identifierName(node);
+        for (int i = loopVariables.size() - 1; i >= 0; i--) {
+            if (loopVariables.get(i).name().equals(name)) return loopVariables.get(i);
+        }
+        return null;
+    }
+
+    private Expression compileDot(Object node) throws ReflectiveOperationException, UnsupportedTemplateException {
+        Object targetNode = parameter(node, 0);
+        // What a built-in returns can be a hash too, like n?string.c; only FreeMarker knows
+        if (TemplateTree.isBuiltIn(targetNode)) throw unsupported(node);
+        return keyOf(compileExpression(targetNode), where(targetNode), (String) parameter(node, 1));
+    }
+
+    private static Expression keyOf(Expression target, String where, String key) {
+        return context -> {
+            TemplateModel value = target.eval(context);
+            if (value instanceof TemplateHashModel hash) return hash.get(key);
+            if (value == null) throw Values.missing(context, where);
+            throw new NonHashException("Expected a hash: " + where, context.env);
+        };
+    }
+
+    // target[key] with a string key or a numeric index; ranges slice and are left to FreeMarker
+    private Expression compileDynamicKey(Object node) throws ReflectiveOperationException, UnsupportedTemplateException {
+        Object targetNode = parameter(node, 0);
+        Object keyNode = parameter(node, 1);
+        if (TemplateTree.isBuiltIn(targetNode) || TemplateTree.is(keyNode, "Range")) throw unsupported(node);
+        Expression target = compileExpression(targetNode);
+        String where = where(targetNode);
+        if (isStaticString(keyNode)) {
+            return keyOf(target, where, literalString(keyNode));
+        }
+        Expression key = compileExpression(keyNode);
+        String keyWhere = where(keyNode);
+        return context -> {
+            TemplateModel value = target.eval(context);
+            if (value == null) throw Values.missing(context, where);
+            TemplateModel keyValue = key.eval(context);
+            if (keyValue instanceof TemplateNumberModel number) {
+                return element(context, value, number.getAsNumber().intValue(), where);
+            }
+            if (keyValue instanceof TemplateScalarModel scalar) {
+                if (value instanceof TemplateHashModel hash) return hash.get(scalar.getAsString());
+                throw new NonHashException("Expected a hash: " + where, context.env);
+            }
+            if (keyValue == null) throw Values.missing(context, keyWhere);
+            throw new UnexpectedTypeException(context.env, "Expected a number or string as key: " + keyWhere);
+        };
+    }
+
+    // Anything that prints, numbers included, is indexed by character, as FreeMarker does
+    private static TemplateModel element(RenderContext context, TemplateModel value, int index, String where)
+            throws TemplateException {
+        if (value instanceof TemplateSequenceModel sequence) {
+            return index < sequence.size() ? sequence.get(index) : null;
+        }
+        if (!Values.isText(value)) {
+            throw new UnexpectedTypeException(context.env, "Expected a sequence or string: " + where);
+        }
+        String string = Values.text(context, value, where);
+        if (index < 0 || index >= string.length()) {
+            throw new TemplateException("Index " + index + " is out of bounds: " + where, context.env);
+        }
+        return new SimpleScalar(string.substring(index, index + 1));
+    }
+
+    // Static text, or parts with ${...} in between
+    private Expression compileString(Object node) throws ReflectiveOperationException, UnsupportedTemplateException {
+        if (isStaticString(node)) {
+            return constant(new SimpleScalar(literalString(node)));
+        }
+        int count = parameterCount(node);
+        Object[] parts = new Object[count];
+        String[] wheres = new String[count];
+        for (int i = 0; i < count; i++) {
+            Object part = parameter(node, i);
+            if (part instanceof String) {
+                parts[i] = part;
+            } else if (TemplateTree.is(part, "DollarVariable")) {
+                parts[i] = compileExpression(parameter(part, 0));
+                wheres[i] = where(parameter(part, 0));
+            } else {
+                throw unsupported(node);
+            }
+        }
+        return context -> {
+            StringBuilder text = new StringBuilder();
+            for (int i = 0; i < parts.length; i++) {
+                if (parts[i] instanceof Expression expression) {
+                    text.append(Values.text(context, expression.eval(context), wheres[i]));
+                } else {
+                    text.append((String) parts[i]);
+                }
+            }
+            return new SimpleScalar(text.toString());
+        };
+    }
+
+    private Expression compileListLiteral(Object node) throws ReflectiveOperationException, UnsupportedTemplateException {
+        int count = parameterCount(node);
+        Expression[] items = new Expression[count];
+        String[] wheres = new String[count];
+        for (int i = 0; i < count; i++) {
+            items[i] = compileExpression(parameter(node, i));
+            wheres[i] = where(parameter(node, i));
+        }
+        return context -> {
+            List<TemplateModel> values = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                TemplateModel value = items[i].eval(context);
+                if (value == null) throw Values.missing(context, wheres[i]);
+                values.add(value);
+            }
+            return new Values.Sequence(values);
+        };
+    }
+
+    private Expression compileHashLiteral(Object node) throws ReflectiveOperationException, UnsupportedTemplateException {
+        int count = parameterCount(node) / 2;
+        Expression[] keys = new Expression[count];
+        Expression[] values = new Expression[count];
+        String[] keyWheres = new String[count];
+        String[] valueWheres = new String[count];
+        for (int i = 0; i < count; i++) {
+            keys[i] = compileExpression(parameter(node, 2 * i));
+            keyWheres[i] = where(parameter(node, 2 * i));
+            values[i] = compileExpression(parameter(node, 2 * i + 1));
+            valueWheres[i] = where(parameter(node, 2 * i + 1));
+        }
+        return context -> {
+            Map<String, TemplateModel> entries = new LinkedHashMap<>();
+            for (int i = 0; i < count; i++) {
+                String key = Values.text(context, keys[i].eval(context), keyWheres[i]);
+                TemplateModel value = values[i].eval(context);
+                if (value == null) throw Values.missing(context, valueWheres[i]);
+                entries.put(key, value);
+            }
+            return new Values.Hash(entries);
+        };
+    }
+
+    private Expression compileLogical(Object node, boolean and)
+            throws ReflectiveOperationException, UnsupportedTemplateException {
+        Expression left = compileExpression(parameter(node, 0));
+        Expression right = compileExpression(parameter(node, 1));
+        String leftWhere = where(parameter(node, 0));
+        String rightWhere = where(parameter(node, 1));
+        return context -> {
+            boolean first = Values.isTrue(context, left.eval(context), leftWhere);
+            if (first != and) return Values.bool(first);
+            return Values.bool(Values.isTrue(context, right.eval(context), rightWhere));
+        };
+    }
+
+    private Expression compileComparison(Object node) throws ReflectiveOperationException, UnsupportedTemplateException {
+        Values.Comparison operator = Values.Comparison.of(TemplateTree.symbol(node));
+        if (operator == null) throw unsupported(node);
+        Expression left = compileExpression(parameter(node, 0));
+        Expression right = compileExpression(parameter(node, 1));
+        String leftWhere = where(parameter(node, 0));
+        String rightWhere = where(parameter(node, 1));
+        return context -> Values.bool(Values.compare(context, operator, left.eval(context), leftWhere,
+                right.eval(context), rightWhere));
+    }
+
+    private Expression compileArithmetic(Object node) throws ReflectiveOperationException, UnsupportedTemplateException {
+        int operator = (Integer) parameter(node, 2);
+        Expression left = compileExpression(parameter(node, 0));
+        Expression right = compileExpression(parameter(node, 1));
+        String leftWhere = where(parameter(node, 0));
+        String rightWhere = where(parameter(node, 1));
+        String where = where(node);
+        return context -> Values.arithmetic(context, operator, left.eval(context), leftWhere,
+                right.eval(context), rightWhere, where);
+    }
+
+    private static int arithmeticOperator(String symbol) {
+        return switch (symbol) {
+            case "-" -> Values.SUBTRACT;
+            case "*" -> Values.MULTIPLY;
+            case "/" -> Values.DIVIDE;
+            default -> Values.MODULUS;
+        };
+    }
+
+    private Expression compileAdd(Object node) throws ReflectiveOperationException, UnsupportedTemplateException {
+        Expression left = compileExpression(parameter(node, 0));
+        Expression right = compileExpression(parameter(node, 1));
+        String leftWhere = where(parameter(node, 0));
+        String rightWhere = where(parameter(node, 1));
+        return context -> Values.add(context, left.eval(context), leftWhere, right.eval(context), rightWhere);
+    }
+
+    // Parameters: operand and type, 0 for minus
+    private Expression compileUnary(Object node) throws ReflectiveOperationException, UnsupportedTemplateException {
+        Expression operand = compileExpression(parameter(node, 0));
+        String where = where(parameter(node, 0));
+        boolean minus = Integer.valueOf(0).equals(parameter(node, 1));
+        return context -> {
+            Number number = Values.number(context, operand.eval(context), where);
+            return minus ? new SimpleNumber(context.arithmetic.multiply(-1, number)) : new SimpleNumber(number);
+        };
+    }
+
+    private Expression compileDefault(Object node) throws ReflectiveOperationException, UnsupportedTemplateException {
+        Expression value = compileMaybeMissing(parameter(node, 0));
+        Object defaultNode = parameter(node, 1);
+        Expression otherwise = defaultNode == null ? constant(Values.EMPTY) : compileExpression(defaultNode);
+        return context -> {
+            TemplateModel result = value.eval(context);
+            return result != null ? result : otherwise.eval(context);
+        };
+    }
+
+    // x!, x?? and ?has_content only forgive a missing last step, unless x is in parentheses
+    private Expression compileMaybeMissing(Object node) throws ReflectiveOperationException, UnsupportedTemplateException {
+        if (!TemplateTree.is(node, "ParentheticalExpression")) return compileExpression(node);
+        Expression inner = compileExpression(parameter(node, 0));
+        return context -> {
+            try {
+                return inner.eval(context);
+            } catch (InvalidReferenceException e) {
+                return null;
+            }
+        };
+    }
+
+    // Bounded ranges only: 1..n, 1..<n, 1..!n and 1..*n
+    private Expression compileRange(Object node) throws ReflectiveOperationException, UnsupportedTemplateException {
+        String symbol = TemplateTree.symbol(node);
+        Object endNode = parameter(node, 1);
+        if (endNode == null) throw unsupported(node);
+        Expression start = compileExpression(parameter(node, 0));
+        Expression end = compileExpression(endNode);
+        String startWhere = where(parameter(node, 0));
+        String endWhere = where(endNode);
+        return switch (symbol) {
+            case ".." -> context -> range(Values.number(context, start.eval(context), startWhere).intValue(),
+                    Values.number(context, end.eval(context), endWhere).intValue(), true);
+            case "..<", "..!" -> context -> range(Values.number(context, start.eval(context), startWhere).intValue(),
+                    Values.number(context, end.eval(context), endWhere).intValue(), false);
+            case "..*" -> context -> {
+                int first = Values.number(context, start.eval(context), startWhere).intValue();
+                int size = Values.number(context, end.eval(context), endWhere).intValue();
+                return size == 0 ? new Values.Sequence(List.of())
+                        : range(first, size > 0 ? first + size - 1 : first + size + 1, true);
+            };
+            default -> throw unsupported(node);
+        };
+    }
+
+    // Counts down when the end is below the start; an exclusive end equal to the start is empty
+    private static TemplateModel range(int start, int end, boolean inclusive) {
+        int step = end >= start ? 1 : -1;
+        int size = Math.abs(end - start) + (inclusive ? 1 : 0);
+        List<TemplateModel> items = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) items.add(new SimpleNumber(start + step * i));
+        return new Values.Sequence(items);
+    }
+
+    // callee(arguments): a function of this template or a built-in taking arguments
+    private Expression compileMethodCall(Object node) throws ReflectiveOperationException, UnsupportedTemplateException {
+        Object callee = parameter(node, 0);
+        MacroDefinition function = calledMacro(callee, true);
+        if (function != null) return compileFunctionCall(node, function);
+        if (!TemplateTree.isBuiltIn(callee)) throw unsupported(node);
+        Object targetNode = parameter(callee, 0);
+        String name = builtInName(callee);
+        int count = parameterCount(node) - 1;
+        Expression[] arguments = new Expression[count];
+        String[] wheres = new String[count];
+        for (int i = 0; i < count; i++) {
+            arguments[i] = compileExpression(parameter(node, i + 1));
+            wheres[i] = where(parameter(node, i + 1));
+        }
+        Expression call = BuiltIns.call(name, compileExpression(targetNode), where(targetNode), arguments, wheres);
+        if (call == null) throw unsupported(node);
+        return call;
+    }
+
+    // Parameters: target, name, then the arguments of built-ins like ?then that are parsed with them
+    private Expression compileBuiltIn(Object node) throws ReflectiveOperationException, UnsupportedTemplateException {
+        Object targetNode = parameter(node, 0);
+        String name = builtInName(node);
+        String where = where(targetNode);
+        LoopVariable variable = loopVariable(targetNode);
+        if (variable != null) {
+            Expression loopBuiltIn = loopBuiltIn(name, variable.slot());
+            if (loopBuiltIn != null) return loopBuiltIn;
+        }
+        switch (name) {
+            case "has_content" -> {
+                Expression target = compileMaybeMissing(targetNode);
+                return context -> Values.bool(!Values.isEmpty(target.eval(context)));
+            }
+            case "then" -> {
+                Expression target = compileExpression(targetNode);
+                Expression whenTrue = compileExpression(parameter(node, 2));
+                Expression whenFalse = compileExpression(parameter(node, 3));
+                return context -> Values.isTrue(context, target.eval(context), where)
+                        ? whenTrue.eval(context) : whenFalse.eval(context);
+            }
+            default -> {
+                if (parameterCount(node) > 2) throw unsupported(node);
+                Expression builtIn = BuiltIns.of(name, compileExpression(targetNode), where);
+                if (builtIn == null) throw unsupported(node);
+                return builtIn;
+            }
+        }
+    }
+
+    // Built-ins of the loop variable read the state of its loop
+    private static Expression loopBuiltIn(String name, int slot) {
+        return switch (name) {
+            case "index" -> context -> new SimpleNumber(context.frame.loops[slot].index);
+            case "counter" -> context -> new SimpleNumber(context.frame.loops[slot].index + 1);
+            case "has_next" -> context -> Values.bool(context.frame.loops[slot].hasNext);
+            case "is_first" -> context -> Values.bool(context.frame.loops[slot].index == 0);
+            case "is_last" -> context -> Values.bool(!context.frame.loops[slot].hasNext);
+            case "is_odd_item" -> context -> Values.bool(context.frame.loops[slot].index % 2 == 0);
+            case "is_even_item" -> context -> Values.bool(context.frame.loops[slot].index % 2 != 0);
+            case "item_parity" -> context -> new SimpleScalar(context.frame.loops[slot].index % 2 == 0 ? "odd" : "even");
+            case "item_parity_cap" -> context ->
+                    new SimpleScalar(context.frame.loops[slot].index % 2 == 0 ? "Odd" : "Even");
+            default -> null;
+        };
+    }
+
+    // Built-in names may be written in camel case
+    private static String builtInName(Object node) throws ReflectiveOperationException {
+        String name = (String) parameter(node, 1);
+        StringBuilder snake = new StringBuilder(name.length() + 4);
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (Character.isUpperCase(c)) {
+                snake.append('_').append(Character.toLowerCase(c));
+            } else {
+                snake.append(c);
+            }
+        }
+        return snake.toString();
+    }
+
+    private static boolean isStaticString(Object node) throws ReflectiveOperationException {
+        return TemplateTree.is(node, "StringLiteral") && parameterCount(node) == 0;
+    }
+
+    // String and number literals are their own models
+    private static String literalString(Object node) throws UnsupportedTemplateException {
+        try {
+            return ((TemplateScalarModel) node).getAsString();
+        } catch (TemplateModelException e) {
+            throw unsupported(node);
+        }
+    }
+
+    private static Number literalNumber(Object node) throws UnsupportedTemplateException {
+        try {
+            return ((TemplateNumberModel) node).getAsNumber();
+        } catch (TemplateModelException e) {
+            throw unsupported(node);
+        }
+    }
+
+    // Canonical form and location, for error messages
+    private static String where(Object node) {
+        return TemplateTree.canonicalForm(node) + "  [" + TemplateTree.location(node) + "]";
+    }
+
+    private static UnsupportedTemplateException unsupported(Object node) {
+        return new UnsupportedTemplateException("Not compiled: "
+                + TemplateTree.canonicalForm(node).lines().findFirst().orElse("") + " " + TemplateTree.location(node));
+    }
+
+    private static int parameterCount(Object object) throws ReflectiveOperationException {
+        return TemplateTree.parameterCount(object);
+    }
+
+    private static Object parameter(Object object, int index) throws ReflectiveOperationException {
+        return TemplateTree.parameter(object, index);
+    }
+
+    private record LoopVariable(String name, int slot, boolean value) {
+    }
+}
@@ -0,0 +1,394 @@
+/*
+ * This file is part of FreeMarker JSON/XML Toolkit.
+ *
+ * FreeMarker JSON/XML Toolkit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FreeMarker JSON/XML Toolkit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with FreeMarker JSON/XML Toolkit. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package co.com.leronarenwino.compiled;
+
+import freemarker.core.InvalidReferenceException;
+import freemarker.core.NonBooleanException;
+import freemarker.core.NonNumericalException;
+import freemarker.core.NonStringException;
+import freemarker.core.NonStringOrTemplateOutputException;
+import freemarker.template.SimpleNumber;
+import freemarker.template.SimpleScalar;
+import freemarker.template.TemplateBooleanModel;
+import freemarker.template.TemplateCollectionModel;
+import freemarker.template.TemplateCollectionModelEx;
+import freemarker.template.TemplateDateModel;
+import freemarker.template.TemplateException;
+import freemarker.template.TemplateHashModel;
+import freemarker.template.TemplateHashModelEx;
+import freemarker.template.TemplateHashModelEx2;
+import freemarker.template.TemplateModel;
+import freemarker.template.TemplateModelException;
+import freemarker.template.TemplateModelIterator;
+import freemarker.template.TemplateNumberModel;
+import freemarker.template.TemplateScalarModel;
+import freemarker.template.TemplateSequenceModel;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Conversions and operators of the compiled engine, following the rules FreeMarker's
+ * {@code EvalUtil} and expression classes apply to the same models. Errors are of the
+ * FreeMarker exception types the interpreter throws for the same mistake, or a plain
+ * {@link TemplateException} where it uses an internal one, and carry the canonical
+ * form and location of the failing expression.
+ */
+final class Values {
+
+    static final int SUBTRACT = 0;
+    static final int MULTIPLY = 1;
+    static final int DIVIDE = 2;
+    static final int MODULUS = 3;
+
+    // What x! gives when x is missing and no default is written
+    static final TemplateModel EMPTY = new Empty();
+
+    private Values() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    static TemplateModel bool(boolean value) {
+        return value ? TemplateBooleanModel.TRUE : TemplateBooleanModel.FALSE;
+    }
+
+    // Printed form of ${...}: numbers through the number format, strings as they are
+    static String text(RenderContext context, TemplateModel model, String where) throws TemplateException {
+        if (model instanceof TemplateNumberModel number) return context.formatNumber(number);
+        if (model instanceof TemplateDateModel) {
+            throw new TemplateModelException("The compiled engine does not format dates: " + where);
+        }
+        if (model instanceof TemplateScalarModel scalar) return scalar.getAsString();
+        if (model == null) throw missing(context, where);
+        if (model instanceof TemplateBooleanModel) {
+            throw new TemplateException("Can't convert boolean to string automatically, because the "
+                    + "\"boolean_format\" setting was \"true,false\": " + where, context.env);
+        }
+        throw new NonStringOrTemplateOutputException("Expected a string or number: " + where, context.env);
+    }
+
+    static boolean isText(TemplateModel model) {
+        return model instanceof TemplateNumberModel || model instanceof TemplateScalarModel;
+    }
+
+    static String string(RenderContext context, TemplateModel model, String where) throws TemplateException {
+        if (model instanceof TemplateScalarModel scalar) return scalar.getAsString();
+        if (model == null) throw missing(context, where);
+        throw new NonStringException("Expected a string: " + where, context.env);
+    }
+
+    static Number number(RenderContext context, TemplateModel model, String where) throws TemplateException {
+        if (model instanceof TemplateNumberModel number) return number.getAsNumber();
+        if (model == null) throw missing(context, where);
+        throw new NonNumericalException("Expected a number: " + where, context.env);
+    }
+
+    static boolean isTrue(RenderContext context, TemplateModel model, String where) throws TemplateException {
+        if (model instanceof TemplateBooleanModel bool) return bool.getAsBoolean();
+        if (model == null) throw missing(context, where);
+        throw new NonBooleanException("Expected a boolean: " + where, context.env);
+    }
+
+    // Rules of ?has_content
+    static boolean isEmpty(TemplateModel model) throws TemplateModelException {
+        if (model instanceof TemplateSequenceModel sequence) return sequence.size() == 0;
+        if (model instanceof TemplateScalarModel scalar) {
+            String string = scalar.getAsString();
+            return string == null || string.isEmpty();
+        }
+        if (model == null) return true;
+        if (model instanceof TemplateCollectionModelEx collection) return collection.isEmpty();
+        if (model instanceof TemplateCollectionModel collection) return !collection.iterator().hasNext();
+        if (model instanceof TemplateHashModel hash) return hash.isEmpty();
+        return !(model instanceof TemplateNumberModel || model instanceof TemplateDateModel
+                || model instanceof TemplateBooleanModel);
+    }
+
+    // Where is the whole operation; a failure like division by zero is reported there, as FreeMarker does
+    static TemplateModel arithmetic(RenderContext context, int operator, TemplateModel left, String leftWhere,
+                                    TemplateModel right, String rightWhere, String where) throws TemplateException {
+        Number first = number(context, left, leftWhere);
+        Number second = number(context, right, rightWhere);
+        try {
+            return new SimpleNumber(switch (operator) {
+                case SUBTRACT -> context.arithmetic.subtract(first, second);
+                case MULTIPLY -> context.arithmetic.multiply(first, second);
+                case DIVIDE -> context.arithmetic.divide(first, second);
+                default -> context.arithmetic.modulus(first, second);
+            });
+        } catch (ArithmeticException e) {
+            throw new TemplateException("Arithmetic operation failed: " + e.getMessage() + ": " + where, e, context.env);
+        }
+    }
+
+    // The + operator: numbers add, strings and numbers concatenate, then sequences and hashes
+    static TemplateModel add(RenderContext context, TemplateModel left, String leftWhere,
+                             TemplateModel right, String rightWhere) throws TemplateException {
+        if (left == null) throw missing(context, leftWhere);
+        if (right == null) throw missing(context, rightWhere);
+        if (left instanceof TemplateNumberModel first && right instanceof TemplateNumberModel second) {
+            return new SimpleNumber(context.arithmetic.add(first.getAsNumber(), second.getAsNumber()));
+        }
+        if (isText(left) && isText(right)) {
+            return new SimpleScalar(text(context, left, leftWhere).concat(text(context, right, rightWhere)));
+        }
+        if (left instanceof TemplateHashModelEx first && right instanceof TemplateHashModelEx second
+                && !isText(left) && !isText(right)) {
+            Map<String, TemplateModel> entries = new LinkedHashMap<>();
+            putAll(entries, first);
+            putAll(entries, second);
+            return new Hash(entries);
+        }
+        if (left instanceof TemplateSequenceModel first && right instanceof TemplateSequenceModel second) {
+            List<TemplateModel> items = new ArrayList<>(first.size() + second.size());
+            for (int i = 0; i < first.size(); i++) items.add(first.get(i));
+            for (int i = 0; i < second.size(); i++) items.add(second.get(i));
+            return new Sequence(items);
+        }
+        // Either side could be a boolean or anything else that does not print
+        text(context, left, leftWhere);
+        text(context, right, rightWhere);
+        throw new TemplateException("Can't add these values: " + leftWhere + " + " + rightWhere, context.env);
+    }
+
+    private static void putAll(Map<String, TemplateModel> entries, TemplateHashModelEx hash)
+            throws TemplateModelException {
+        TemplateModelIterator keys = hash.keys().iterator();
+        while (keys.hasNext()) {
+            String key = ((TemplateScalarModel) keys.next()).getAsString();
+            entries.put(key, hash.get(key));
+        }
+    }
+
+    // Result of compareNumbers or the like; strings and booleans only compare for equality
+    static boolean compare(RenderContext context, Comparison operator, TemplateModel left, String leftWhere,
+                           TemplateModel right, String rightWhere) throws TemplateException {
+        if (left == null) throw missing(context, leftWhere);
+        if (right == null) throw missing(context, rightWhere);
+        int result;
+        if (left instanceof TemplateNumberModel first && right instanceof TemplateNumberModel second) {
+            result = context.arithmetic.compareNumbers(first.getAsNumber(), second.getAsNumber());
+        } else if (left instanceof TemplateDateModel && right instanceof TemplateDateModel) {
+            throw new TemplateModelException("The compiled engine does not compare dates: " + leftWhere);
+        } else if (left instanceof TemplateScalarModel first && right instanceof TemplateScalarModel second) {
+            if (!operator.isEquality()) {
+                throw new TemplateException("Can't use operator \"" + operator.symbol
+                        + "\" on string values: " + leftWhere, context.env);
+            }
+            boolean equal = context.equalStrings(first.getAsString(), second.getAsString());
+            return equal == (operator == Comparison.EQUALS);
+        } else if (left instanceof TemplateBooleanModel first && right instanceof TemplateBooleanModel second) {
+            if (!operator.isEquality()) {
+                throw new TemplateException("Can't use operator \"" + operator.symbol
+                        + "\" on boolean values: " + leftWhere, context.env);
+            }
+            result = Boolean.compare(first.getAsBoolean(), second.getAsBoolean());
+        } else {
+            throw new TemplateException("Can't compare values of these types. Allowed comparisons are between "
+                    + "two numbers, two strings, two dates, or two booleans: " + leftWhere + " and " + rightWhere,
+                    context.env);
+        }
+        return operator.test(result);
+    }
+
+    static TemplateCollectionModel collection(Collection<? extends TemplateModel> items) {
+        return () -> {
+            Iterator<? extends TemplateModel> iterator = items.iterator();
+            return new TemplateModelIterator() {
+                @Override
+                public TemplateModel next() {
+                    return iterator.next();
+                }
+
+                @Override
+                public boolean hasNext() {
+                    return iterator.hasNext();
+                }
+            };
+        };
+    }
+
+    static InvalidReferenceException missing(RenderContext context, String where) {
+        return new InvalidReferenceException("The following has evaluated to null or missing:\n==> " + where,
+                context.env);
+    }
+
+    enum Comparison {
+        EQUALS("=="), NOT_EQUALS("!="), LESS("<"), LESS_OR_EQUAL("<="), GREATER(">"), GREATER_OR_EQUAL(">=");
+
+        private final String symbol;
+
+        Comparison(String symbol) {
+            this.symbol = symbol;
+        }
+
+        // Symbols as the parser keeps them, including lt, \lt and &lt; spellings
+        static Comparison of(String symbol) {
+            String operator = symbol.startsWith("\\") ? symbol.substring(1) : symbol;
+            return switch (operator) {
+                case "=", "==" -> EQUALS;
+                case "!=" -> NOT_EQUALS;
+                case "<", "lt", "&lt;" -> LESS;
+                case "<=", "lte", "&lt;=" -> LESS_OR_EQUAL;
+                case ">", "gt", "&gt;" -> GREATER;
+                case ">=", "gte", "&gt;=" -> GREATER_OR_EQUAL;
+                default -> null;
+            };
+        }
+
+        boolean isEquality() {
+            return this == EQUALS || this == NOT_EQUALS;
+        }
+
+        boolean test(int comparison) {
+            return switch (this) {
+                case EQUALS -> comparison == 0;
+                case NOT_EQUALS -> comparison != 0;
+                case LESS -> comparison < 0;
+                case LESS_OR_EQUAL -> comparison <= 0;
+                case GREATER -> comparison > 0;
+                default -> comparison >= 0;
+            };
+        }
+    }
+
+    // List literals, ranges, concatenations and the result of ?keys and ?values
+    static final class Sequence implements TemplateSequenceModel {
+        private final List<? extends TemplateModel> items;
+
+        Sequence(List<? extends TemplateModel> items) {
+            this.items = items;
+        }
+
+        @Override
+        public TemplateModel get(int index) {
+            return index >= 0 && index < items.size() ? items.get(index) : null;
+        }
+
+        @Override
+        public int size() {
+            return items.size();
+        }
+    }
+
+    // Hash literals and concatenations, listed in insertion order
+    static final class Hash implements TemplateHashModelEx2 {
+        private final Map<String, TemplateModel> entries;
+
+        Hash(Map<String, TemplateModel> entries) {
+            this.entries = entries;
+        }
+
+        @Override
+        public TemplateModel get(String key) {
+            return entries.get(key);
+        }
+
+        @Override
+        public int size() {
+            return entries.size();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return entries.isEmpty();
+        }
+
+        @Override
+        public TemplateCollectionModel keys() {
+            List<TemplateModel> keys = new ArrayList<>(entries.size());
+            for (String key : entries.keySet()) keys.add(new SimpleScalar(key));
+            return collection(keys);
+        }
+
+        @Override
+        public TemplateCollectionModel values() {
+            return collection(entries.values());
+        }
+
+        @Override
+        public KeyValuePairIterator keyValuePairIterator() {
+            Iterator<Map.Entry<String, TemplateModel>> iterator = entries.entrySet().iterator();
+            return new KeyValuePairIterator() {
+                @Override
+                public boolean hasNext() {
+                    return iterator.hasNext();
+                }
+
+                @Override
+                public KeyValuePair next() {
+                    Map.Entry<String, TemplateModel> entry = iterator.next();
+                    TemplateModel key = new SimpleScalar(entry.getKey());
+                    return new KeyValuePair() {
+                        @Override
+                        public TemplateModel getKey() {
+                            return key;
+                        }
+
+                        @Override
+                        public TemplateModel getValue() {
+                            return entry.getValue();
+                        }
+                    };
+                }
+            };
+        }
+    }
+
+    // Empty string, sequence and hash at once
+    private static final class Empty implements TemplateScalarModel, TemplateSequenceModel, TemplateHashModelEx {
+        @Override
+        public String getAsString() {
+            return "";
+        }
+
+        @Override
+        public TemplateModel get(int index) {
+            return null;
+        }
+
+        @Override
+        public TemplateModel get(String key) {
+            return null;
+        }
+
+        @Override
+        public int size() {
+            return 0;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return true;
+        }
+
+        @Override
+        public TemplateCollectionModel keys() {
+            return collection(List.of());
+        }
+
+        @Override
+        public TemplateCollectionModel values() {
+            return collection(List.of());
+        }
+    }
+}
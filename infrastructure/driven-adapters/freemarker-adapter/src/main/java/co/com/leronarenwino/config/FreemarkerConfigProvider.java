@@ -17,23 +17,57 @@
 
 package co.com.leronarenwino.config;
 
+import co.com.leronarenwino.directive.JsonDirective;
+import co.com.leronarenwino.directive.XmlDirective;
+import co.com.leronarenwino.memo.PureMacroCache;
+import co.com.leronarenwino.memo.PureMacroLoader;
+import co.com.leronarenwino.model.CompactObjectWrapper;
+import freemarker.cache.FileTemplateLoader;
+import freemarker.cache.MultiTemplateLoader;
+import freemarker.cache.TemplateLoader;
 import freemarker.template.Configuration;
 import freemarker.template.TemplateExceptionHandler;
 import utils.SettingsSingleton;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Locale;
+import java.util.Set;
 import java.util.TimeZone;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 public class FreemarkerConfigProvider {
+    private static final Logger logger = Logger.getLogger(FreemarkerConfigProvider.class.getName());
+
     private static Configuration cfg = createConfiguration();
+    private static volatile long generation;
 
     public static synchronized void reloadConfiguration() {
         cfg = createConfiguration();
+        generation++;
+    }
+
+    // Changes every time the configuration is reloaded
+    public static long getGeneration() {
+        return generation;
     }
 
     private static Configuration createConfiguration() {
         Configuration configuration = new Configuration(Configuration.VERSION_2_3_34);
         configuration.setDefaultEncoding("UTF-8");
+        // Wraps parsed JSON objects directly, without the generic map adapter
+        configuration.setObjectWrapper(new CompactObjectWrapper(Configuration.VERSION_2_3_34));
+        // Built-in directives; a data model member of the same name hides them
+        configuration.setSharedVariable(JsonDirective.NAME, new JsonDirective());
+        configuration.setSharedVariable(XmlDirective.NAME, new XmlDirective());
+        configuration.setSharedVariable(PureMacroCache.NAME,
+                new PureMacroCache(getPureMacroNames(), SettingsSingleton.getPureCacheEntries()));
 
         // Load settings from SettingsSingleton (which reads from properties)
         String localeStr = SettingsSingleton.getLocale();
@@ -54,6 +88,12 @@ public class FreemarkerConfigProvider {
             configuration.setTimeZone(TimeZone.getTimeZone(timeZoneStr));
         }
 
+        // Shared macro libraries for <#include> and <#import>
+        List<Path> libraryPath = getLibraryPath();
+        if (!libraryPath.isEmpty()) {
+            configuration.setTemplateLoader(new PureMacroLoader(createLoader(libraryPath), configuration));
+        }
+
         configuration.setTemplateExceptionHandler(TemplateExceptionHandler.RETHROW_HANDLER);
         configuration.setLogTemplateExceptions(false);
         configuration.setWrapUncheckedExceptions(true);
@@ -64,4 +104,46 @@ public class FreemarkerConfigProvider {
     public static Configuration getConfiguration() {
         return cfg;
     }
+
+    // Hit rates of the pure macros memoized since the configuration was last loaded
+    public static String getPureMacroReport() {
+        return PureMacroCache.of(cfg).report();
+    }
+
+    public static List<Path> getLibraryPath() {
+        List<Path> paths = new ArrayList<>();
+        String libraryPath = SettingsSingleton.getLibraryPath();
+        if (libraryPath == null || libraryPath.isBlank()) return paths;
+        for (String entry : libraryPath.split(File.pathSeparator)) {
+            if (entry.isBlank()) continue;
+            Path path = Path.of(entry.trim()).toAbsolutePath().normalize();
+            if (Files.isDirectory(path)) {
+                paths.add(path);
+            } else {
+                logger.log(Level.WARNING, "Ignoring missing library directory " + path);
+            }
+        }
+        return paths;
+    }
+
+    private static Set<String> getPureMacroNames() {
+        Set<String> names = new LinkedHashSet<>();
+        for (String name : SettingsSingleton.getPureMacros().split(",")) {
+            if (!name.isBlank()) names.add(name.trim());
+        }
+        return names;
+    }
+
+    // Directories are searched in order, the first one containing the template wins
+    public static TemplateLoader createLoader(List<Path> directories) {
+        List<TemplateLoader> loaders = new ArrayList<>(directories.size());
+        for (Path directory : directories) {
+            try {
+                loaders.add(new FileTemplateLoader(directory.toFile()));
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Could not open template directory " + directory, e);
+            }
+        }
+        return loaders.size() == 1 ? loaders.get(0) : new MultiTemplateLoader(loaders.toArray(new TemplateLoader[0]));
+    }
 }
\ No newline at end of file
@@ -0,0 +1,102 @@
+/*
+ * This file is part of FreeMarker JSON/XML Toolkit.
+ *
+ * FreeMarker JSON/XML Toolkit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FreeMarker JSON/XML Toolkit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with FreeMarker JSON/XML Toolkit. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package co.com.leronarenwino.directive;
+
+import freemarker.ext.util.WrapperTemplateModel;
+import freemarker.template.AdapterTemplateModel;
+import freemarker.template.TemplateBooleanModel;
+import freemarker.template.TemplateDateModel;
+import freemarker.template.TemplateDirectiveBody;
+import freemarker.template.TemplateModel;
+import freemarker.template.TemplateModelException;
+import freemarker.template.TemplateScalarModel;
+import freemarker.template.utility.DateUtil;
+
+import java.util.Date;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+
+/**
+ * Parameter checks and value access shared by the serializing directives.
+ */
+final class Directives {
+
+    private static final DateUtil.DateToISO8601CalendarFactory CALENDARS =
+            new DateUtil.TrivialDateToISO8601CalendarFactory();
+
+    private Directives() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    static void checkCall(String directive, Map<String, TemplateModel> params, Set<String> allowed,
+                          TemplateModel[] loopVars, TemplateDirectiveBody body) throws TemplateModelException {
+        for (String name : params.keySet()) {
+            if (!allowed.contains(name)) {
+                throw new TemplateModelException("<@" + directive + "> does not support the parameter \"" + name
+                        + "\"; supported: " + String.join(", ", allowed));
+            }
+        }
+        if (!params.containsKey("value")) {
+            throw new TemplateModelException("<@" + directive + "> needs a value parameter, like value=order");
+        }
+        if (body != null || loopVars.length > 0) {
+            throw new TemplateModelException("<@" + directive + "> takes no body or loop variables, close it with />");
+        }
+    }
+
+    // A directive cannot tell an undefined value from a null one, so neither is written
+    static TemplateModel valueParam(String directive, Map<String, TemplateModel> params) throws TemplateModelException {
+        TemplateModel value = params.get("value");
+        if (value == null) {
+            throw new TemplateModelException("<@" + directive + "> value is undefined or null; give it a default, "
+                    + "like value=order!{}");
+        }
+        return value;
+    }
+
+    static boolean booleanParam(String directive, Map<String, TemplateModel> params, String name, boolean defaultValue)
+            throws TemplateModelException {
+        TemplateModel value = params.get(name);
+        if (value == null) return defaultValue;
+        if (value instanceof TemplateBooleanModel bool) return bool.getAsBoolean();
+        throw new TemplateModelException("<@" + directive + "> parameter \"" + name + "\" must be a boolean, like "
+                + name + "=true");
+    }
+
+    static String stringParam(String directive, Map<String, TemplateModel> params, String name, String defaultValue)
+            throws TemplateModelException {
+        TemplateModel value = params.get(name);
+        if (value == null) return defaultValue;
+        if (value instanceof TemplateScalarModel scalar) return scalar.getAsString();
+        throw new TemplateModelException("<@" + directive + "> parameter \"" + name + "\" must be a string");
+    }
+
+    // The Java value behind a model wrapping data model values, or null for models built in the template
+    static Object unwrap(TemplateModel model) {
+        if (model instanceof AdapterTemplateModel adapter) return adapter.getAdaptedObject(Object.class);
+        if (model instanceof WrapperTemplateModel wrapper) return wrapper.getWrappedObject();
+        return null;
+    }
+
+    // ISO 8601 text of a date, time or date-time; an unknown type prints as date-time
+    static String isoDate(Date date, int type, TimeZone timeZone) {
+        return DateUtil.dateToISO8601String(date, type != TemplateDateModel.TIME, type != TemplateDateModel.DATE,
+                type != TemplateDateModel.DATE, DateUtil.ACCURACY_MILLISECONDS, timeZone, CALENDARS);
+    }
+}
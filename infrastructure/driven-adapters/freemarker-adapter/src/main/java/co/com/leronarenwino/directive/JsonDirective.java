@@ -0,0 +1,231 @@
+/*
+ * This file is part of FreeMarker JSON/XML Toolkit.
+ *
+ * FreeMarker JSON/XML Toolkit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FreeMarker JSON/XML Toolkit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with FreeMarker JSON/XML Toolkit. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package co.com.leronarenwino.directive;
+
+import co.com.leronarenwino.datamodel.DoubleArrayList;
+import co.com.leronarenwino.datamodel.LongArrayList;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.StreamWriteFeature;
+import com.fasterxml.jackson.core.util.DefaultIndenter;
+import com.fasterxml.jackson.core.util.DefaultPrettyPrinter;
+import freemarker.core.Environment;
+import freemarker.template.TemplateBooleanModel;
+import freemarker.template.TemplateCollectionModel;
+import freemarker.template.TemplateDateModel;
+import freemarker.template.TemplateDirectiveBody;
+import freemarker.template.TemplateDirectiveModel;
+import freemarker.template.TemplateException;
+import freemarker.template.TemplateHashModelEx;
+import freemarker.template.TemplateHashModelEx2;
+import freemarker.template.TemplateModel;
+import freemarker.template.TemplateModelException;
+import freemarker.template.TemplateModelIterator;
+import freemarker.template.TemplateNumberModel;
+import freemarker.template.TemplateScalarModel;
+import freemarker.template.TemplateSequenceModel;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Date;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * {@code <@json value=order.items pretty=false/>}: writes a value as JSON straight
+ * to the template output through a Jackson {@link JsonGenerator}.
+ * <p>
+ * Data model values are written from the Java objects behind their template
+ * models, so objects and arrays from the data file are walked without wrapping
+ * each member. Hashes and sequences built in the template are walked through
+ * their models. Dates are written as ISO 8601 strings in the template's time zone.
+ * <p>
+ * An undefined or null {@code value} is an error. Null members and items of the
+ * objects and arrays being written, such as JSON nulls from the data file, are
+ * written as {@code null}.
+ */
+public class JsonDirective implements TemplateDirectiveModel {
+
+    public static final String NAME = "json";
+    private static final Set<String> PARAMETERS = Set.of("value", "pretty");
+    private static final JsonFactory FACTORY = JsonFactory.builder()
+            // The output belongs to the template: never close or flush it from here
+            .disable(StreamWriteFeature.AUTO_CLOSE_TARGET)
+            .disable(StreamWriteFeature.FLUSH_PASSED_TO_STREAM)
+            .disable(StreamWriteFeature.AUTO_CLOSE_CONTENT)
+            .enable(StreamWriteFeature.WRITE_BIGDECIMAL_AS_PLAIN)
+            .build();
+    private static final DefaultIndenter INDENTER = new DefaultIndenter("  ", "\n");
+
+    // The interface declares a raw Map; FreeMarker always passes parameter names to models
+    @Override
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    public void execute(Environment env, Map params, TemplateModel[] loopVars, TemplateDirectiveBody body)
+            throws TemplateException, IOException {
+        Map<String, TemplateModel> parameters = (Map<String, TemplateModel>) params;
+        Directives.checkCall(NAME, parameters, PARAMETERS, loopVars, body);
+        TemplateModel value = Directives.valueParam(NAME, parameters);
+        boolean pretty = Directives.booleanParam(NAME, parameters, "pretty", false);
+        try (JsonGenerator generator = FACTORY.createGenerator(env.getOut())) {
+            if (pretty) {
+                DefaultPrettyPrinter printer = new DefaultPrettyPrinter();
+                printer.indentObjectsWith(INDENTER);
+                printer.indentArraysWith(INDENTER);
+                generator.setPrettyPrinter(printer);
+            }
+            new Writer(generator, env).writeModel(value);
+        }
+    }
+
+    private static final class Writer {
+        private final JsonGenerator generator;
+        private final Environment env;
+
+        private Writer(JsonGenerator generator, Environment env) {
+            this.generator = generator;
+            this.env = env;
+        }
+
+        private void writeModel(TemplateModel model) throws IOException, TemplateModelException {
+            if (model == null) {
+                generator.writeNull();
+                return;
+            }
+            Object wrapped = Directives.unwrap(model);
+            if (wrapped != null) {
+                writeValue(wrapped);
+            } else if (model instanceof TemplateNumberModel number) {
+                writeNumber(number.getAsNumber());
+            } else if (model instanceof TemplateBooleanModel bool) {
+                generator.writeBoolean(bool.getAsBoolean());
+            } else if (model instanceof TemplateDateModel date) {
+                generator.writeString(Directives.isoDate(date.getAsDate(), date.getDateType(), env.getTimeZone()));
+            } else if (model instanceof TemplateScalarModel scalar) {
+                generator.writeString(scalar.getAsString());
+            } else if (model instanceof TemplateHashModelEx2 hash) {
+                generator.writeStartObject();
+                TemplateHashModelEx2.KeyValuePairIterator pairs = hash.keyValuePairIterator();
+                while (pairs.hasNext()) {
+                    TemplateHashModelEx2.KeyValuePair pair = pairs.next();
+                    generator.writeFieldName(keyOf(pair.getKey()));
+                    writeModel(pair.getValue());
+                }
+                generator.writeEndObject();
+            } else if (model instanceof TemplateHashModelEx hash) {
+                generator.writeStartObject();
+                TemplateModelIterator keys = hash.keys().iterator();
+                while (keys.hasNext()) {
+                    String key = keyOf(keys.next());
+                    generator.writeFieldName(key);
+                    writeModel(hash.get(key));
+                }
+                generator.writeEndObject();
+            } else if (model instanceof TemplateSequenceModel sequence) {
+                generator.writeStartArray();
+                for (int i = 0, size = sequence.size(); i < size; i++) {
+                    writeModel(sequence.get(i));
+                }
+                generator.writeEndArray();
+            } else if (model instanceof TemplateCollectionModel collection) {
+                generator.writeStartArray();
+                TemplateModelIterator items = collection.iterator();
+                while (items.hasNext()) {
+                    writeModel(items.next());
+                }
+                generator.writeEndArray();
+            } else {
+                throw new TemplateModelException("<@json> cannot write a " + model.getClass().getSimpleName()
+                        + " value as JSON");
+            }
+        }
+
+        private static String keyOf(TemplateModel key) throws TemplateModelException {
+            if (key instanceof TemplateScalarModel scalar) return scalar.getAsString();
+            throw new TemplateModelException("<@json> can only write hashes with string keys");
+        }
+
+        private void writeValue(Object value) throws IOException, TemplateModelException {
+            if (value == null) {
+                generator.writeNull();
+            } else if (value instanceof String text) {
+                generator.writeString(text);
+            } else if (value instanceof Number number) {
+                writeNumber(number);
+            } else if (value instanceof Boolean bool) {
+                generator.writeBoolean(bool);
+            } else if (value instanceof Map<?, ?> map) {
+                generator.writeStartObject();
+                for (Map.Entry<?, ?> entry : map.entrySet()) {
+                    generator.writeFieldName(String.valueOf(entry.getKey()));
+                    writeValue(entry.getValue());
+                }
+                generator.writeEndObject();
+            } else if (value instanceof LongArrayList longs) {
+                generator.writeStartArray();
+                for (int i = 0, size = longs.size(); i < size; i++) {
+                    generator.writeNumber(longs.getLong(i));
+                }
+                generator.writeEndArray();
+            } else if (value instanceof DoubleArrayList doubles) {
+                generator.writeStartArray();
+                for (int i = 0, size = doubles.size(); i < size; i++) {
+                    generator.writeNumber(doubles.getDouble(i));
+                }
+                generator.writeEndArray();
+            } else if (value instanceof Iterable<?> items) {
+                generator.writeStartArray();
+                for (Object item : items) {
+                    writeValue(item);
+                }
+                generator.writeEndArray();
+            } else if (value instanceof Object[] items) {
+                generator.writeStartArray();
+                for (Object item : items) {
+                    writeValue(item);
+                }
+                generator.writeEndArray();
+            } else if (value instanceof Date date) {
+                generator.writeString(Directives.isoDate(date, TemplateDateModel.UNKNOWN, env.getTimeZone()));
+            } else if (value instanceof TemplateModel model) {
+                writeModel(model);
+            } else {
+                generator.writeString(value.toString());
+            }
+        }
+
+        private void writeNumber(Number number) throws IOException {
+            if (number instanceof Integer || number instanceof Short || number instanceof Byte) {
+                generator.writeNumber(number.intValue());
+            } else if (number instanceof Long value) {
+                generator.writeNumber(value);
+            } else if (number instanceof Double value) {
+                generator.writeNumber(value);
+            } else if (number instanceof Float value) {
+                generator.writeNumber(value);
+            } else if (number instanceof BigDecimal value) {
+                // Template arithmetic pads decimals to its scale, like 2.500000000000
+                generator.writeNumber(value.stripTrailingZeros());
+            } else if (number instanceof BigInteger value) {
+                generator.writeNumber(value);
+            } else {
+                generator.writeNumber(number.doubleValue());
+            }
+        }
+    }
+}
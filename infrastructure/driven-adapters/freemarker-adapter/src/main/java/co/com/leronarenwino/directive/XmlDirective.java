@@ -0,0 +1,433 @@
+/*
+ * This file is part of FreeMarker JSON/XML Toolkit.
+ *
+ * FreeMarker JSON/XML Toolkit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FreeMarker JSON/XML Toolkit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with FreeMarker JSON/XML Toolkit. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package co.com.leronarenwino.directive;
+
+import freemarker.core.Environment;
+import freemarker.template.TemplateDateModel;
+import freemarker.template.TemplateDirectiveBody;
+import freemarker.template.TemplateDirectiveModel;
+import freemarker.template.TemplateException;
+import freemarker.template.TemplateModel;
+import freemarker.template.TemplateModelException;
+import freemarker.template.utility.DeepUnwrap;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * {@code <@xml value=order root="order"/>}: writes a value as XML straight to the
+ * template output through an {@link XMLStreamWriter}, which does all the escaping.
+ * <p>
+ * Hash members become child elements named by their keys, and members listed in
+ * {@code attributes} (or every scalar member with {@code attributes="*"}), as well
+ * as keys starting with {@code @}, become attributes. A {@code #text} member is
+ * written as the element's text. Sequence items are {@code item} elements inside
+ * an element named by their key, or repeat that key with {@code wrap=false}.
+ * Elements go in the {@code namespace} URI, under {@code prefix} when given, and
+ * {@code namespaces} declares further prefixes for names like {@code xsi:type}.
+ * <p>
+ * A null hash member is left out, as an element and as an attribute alike. A null
+ * sequence item is an empty item element, so the items keep their positions. An
+ * undefined or null {@code value} is an error.
+ */
+public class XmlDirective implements TemplateDirectiveModel {
+
+    public static final String NAME = "xml";
+    private static final Set<String> PARAMETERS = Set.of("value", "root", "item", "wrap", "attributes",
+            "namespace", "prefix", "namespaces", "pretty", "declaration");
+    private static final XMLOutputFactory FACTORY = XMLOutputFactory.newFactory();
+    private static final String ATTRIBUTE_PREFIX = "@";
+    private static final String TEXT_KEY = "#text";
+
+    // The interface declares a raw Map; FreeMarker always passes parameter names to models
+    @Override
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    public void execute(Environment env, Map params, TemplateModel[] loopVars, TemplateDirectiveBody body)
+            throws TemplateException, IOException {
+        Map<String, TemplateModel> parameters = (Map<String, TemplateModel>) params;
+        Directives.checkCall(NAME, parameters, PARAMETERS, loopVars, body);
+        TemplateModel value = Directives.valueParam(NAME, parameters);
+        Options options = new Options(parameters);
+        Writer out = env.getOut();
+        if (Directives.booleanParam(NAME, parameters, "declaration", false)) {
+            String encoding = env.getOutputEncoding() != null ? env.getOutputEncoding() : "UTF-8";
+            out.write("<?xml version=\"1.0\" encoding=\"" + encoding + "\"?>");
+            if (options.pretty) out.write('\n');
+        }
+        OutputBuffer buffer = new OutputBuffer(out);
+        try {
+            XMLStreamWriter xml = FACTORY.createXMLStreamWriter(buffer);
+            new Serializer(xml, options, env).writeRoot(DeepUnwrap.unwrap(value));
+            // Ends an empty root element, which the writer leaves open until the next event
+            xml.writeEndDocument();
+            xml.close();
+            buffer.close();
+        } catch (XMLStreamException e) {
+            throw new TemplateModelException("<@xml> could not write the value: " + e.getMessage(), e);
+        }
+    }
+
+    private static final class Options {
+        private final String root;
+        private final String item;
+        private final boolean wrap;
+        private final boolean allScalarAttributes;
+        private final Set<String> attributes = new HashSet<>();
+        private final String namespace;
+        private final String prefix;
+        private final Map<String, String> namespaces = new LinkedHashMap<>();
+        private final boolean pretty;
+
+        private Options(Map<String, TemplateModel> parameters) throws TemplateModelException {
+            root = Directives.stringParam(NAME, parameters, "root", "root");
+            item = Directives.stringParam(NAME, parameters, "item", "item");
+            wrap = Directives.booleanParam(NAME, parameters, "wrap", true);
+            String attributeList = Directives.stringParam(NAME, parameters, "attributes", "").strip();
+            allScalarAttributes = attributeList.equals("*");
+            if (!allScalarAttributes) {
+                for (String name : attributeList.split("\\s*,\\s*")) {
+                    if (!name.isEmpty()) attributes.add(name);
+                }
+            }
+            namespace = Directives.stringParam(NAME, parameters, "namespace", "");
+            prefix = Directives.stringParam(NAME, parameters, "prefix", "");
+            if (!prefix.isEmpty() && namespace.isEmpty()) {
+                throw new TemplateModelException("<@xml> prefix needs a namespace URI");
+            }
+            TemplateModel declared = parameters.get("namespaces");
+            if (declared != null) {
+                if (!(DeepUnwrap.unwrap(declared) instanceof Map<?, ?> map)) {
+                    throw new TemplateModelException("<@xml> namespaces must be a hash of prefixes to URIs");
+                }
+                map.forEach((key, uri) -> namespaces.put(String.valueOf(key), String.valueOf(uri)));
+            }
+            if (!prefix.isEmpty()) {
+                namespaces.putIfAbsent(prefix, namespace);
+            }
+            pretty = Directives.booleanParam(NAME, parameters, "pretty", false);
+        }
+    }
+
+    private static final class Serializer {
+        private final XMLStreamWriter xml;
+        private final Options options;
+        private final Environment env;
+        // Whether each open element has child elements, for indenting its end tag
+        private final Deque<Boolean> open = new ArrayDeque<>();
+
+        private Serializer(XMLStreamWriter xml, Options options, Environment env) {
+            this.xml = xml;
+            this.options = options;
+            this.env = env;
+        }
+
+        private void writeRoot(Object value) throws XMLStreamException, TemplateModelException {
+            boolean empty = isEmpty(value);
+            startElement(options.root, empty);
+            if (!options.namespace.isEmpty() && options.prefix.isEmpty()) {
+                xml.writeDefaultNamespace(options.namespace);
+            }
+            for (Map.Entry<String, String> declared : options.namespaces.entrySet()) {
+                xml.writeNamespace(declared.getKey(), declared.getValue());
+            }
+            writeBody(value, empty);
+        }
+
+        private void writeElement(String name, Object value) throws XMLStreamException, TemplateModelException {
+            if (isSequence(value) && !options.wrap) {
+                // Unwrapped items repeat the member name; nested sequences still use item elements
+                for (Object item : iterable(value)) {
+                    writeElement(name, isSequence(item) ? wrapped(item) : item);
+                }
+                return;
+            }
+            boolean empty = isEmpty(value);
+            startElement(name, empty);
+            writeBody(value, empty);
+        }
+
+        // Inside an element already started: attributes, then text or children
+        private void writeBody(Object value, boolean empty) throws XMLStreamException, TemplateModelException {
+            if (value instanceof Map<?, ?> map) {
+                writeAttributes(map);
+            }
+            if (empty) return;
+            if (value instanceof Wrapped sequence) {
+                writeItems(sequence.items());
+            } else if (value instanceof Map<?, ?> map) {
+                writeChildren(map);
+            } else if (isSequence(value)) {
+                writeItems(value);
+            } else {
+                xml.writeCharacters(clean(text(value)));
+            }
+            endElement();
+        }
+
+        private void writeAttributes(Map<?, ?> map) throws XMLStreamException, TemplateModelException {
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                String key = String.valueOf(entry.getKey());
+                Object member = entry.getValue();
+                if (member != null && isAttribute(key, member)) {
+                    writeAttribute(key.startsWith(ATTRIBUTE_PREFIX) ? key.substring(1) : key, text(member));
+                }
+            }
+        }
+
+        private void writeChildren(Map<?, ?> map) throws XMLStreamException, TemplateModelException {
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                String key = String.valueOf(entry.getKey());
+                Object member = entry.getValue();
+                if (member == null || isAttribute(key, member)) continue;
+                if (key.equals(TEXT_KEY)) {
+                    xml.writeCharacters(clean(text(member)));
+                } else {
+                    writeElement(key, member);
+                }
+            }
+        }
+
+        private void writeItems(Object sequence) throws XMLStreamException, TemplateModelException {
+            for (Object item : iterable(sequence)) {
+                writeElement(options.item, isSequence(item) ? wrapped(item) : item);
+            }
+        }
+
+        // Null, or a hash holding attributes and null members only; sequences are not listed ahead, they may be lazy
+        private boolean isEmpty(Object value) {
+            if (!(value instanceof Map<?, ?> map)) return value == null;
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                if (entry.getValue() != null && !isAttribute(String.valueOf(entry.getKey()), entry.getValue())) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean isAttribute(String key, Object value) {
+            if (key.startsWith(ATTRIBUTE_PREFIX)) return true;
+            boolean selected = options.allScalarAttributes ? !key.equals(TEXT_KEY) : options.attributes.contains(key);
+            return selected && !(value instanceof Map<?, ?>) && !isSequence(value);
+        }
+
+        private void startElement(String name, boolean empty) throws XMLStreamException, TemplateModelException {
+            if (options.pretty && !open.isEmpty()) {
+                xml.writeCharacters("\n" + "  ".repeat(open.size()));
+            }
+            if (!open.isEmpty()) {
+                open.pop();
+                open.push(Boolean.TRUE);
+            }
+            String elementPrefix = options.prefix;
+            String uri = options.namespace;
+            String local = name;
+            int colon = name.indexOf(':');
+            if (colon > 0) {
+                elementPrefix = name.substring(0, colon);
+                local = name.substring(colon + 1);
+                uri = namespaceOf(elementPrefix, name);
+            }
+            checkName(local, name);
+            if (empty) {
+                xml.writeEmptyElement(elementPrefix, local, uri);
+            } else {
+                xml.writeStartElement(elementPrefix, local, uri);
+                open.push(Boolean.FALSE);
+            }
+        }
+
+        private void endElement() throws XMLStreamException {
+            boolean hasChildren = open.pop();
+            if (options.pretty && hasChildren) {
+                xml.writeCharacters("\n" + "  ".repeat(open.size()));
+            }
+            xml.writeEndElement();
+        }
+
+        // Unprefixed attributes are in no namespace, as XML defines them
+        private void writeAttribute(String name, String value) throws XMLStreamException, TemplateModelException {
+            int colon = name.indexOf(':');
+            if (colon > 0) {
+                String attributePrefix = name.substring(0, colon);
+                String local = name.substring(colon + 1);
+                checkName(local, name);
+                xml.writeAttribute(attributePrefix, namespaceOf(attributePrefix, name), local, clean(value));
+            } else {
+                checkName(name, name);
+                xml.writeAttribute(name, clean(value));
+            }
+        }
+
+        private String namespaceOf(String prefix, String name) throws TemplateModelException {
+            String uri = options.namespaces.get(prefix);
+            if (uri == null) {
+                throw new TemplateModelException("<@xml> cannot write \"" + name + "\": prefix \"" + prefix
+                        + "\" is not declared in namespaces");
+            }
+            return uri;
+        }
+
+        private static void checkName(String local, String name) throws TemplateModelException {
+            boolean valid = !local.isEmpty() && (Character.isLetter(local.charAt(0)) || local.charAt(0) == '_');
+            for (int i = 1; valid && i < local.length(); i++) {
+                char c = local.charAt(i);
+                valid = Character.isLetterOrDigit(c) || c == '_' || c == '-' || c == '.';
+            }
+            if (!valid) {
+                throw new TemplateModelException("<@xml> cannot write \"" + name + "\": not a valid XML name");
+            }
+        }
+
+        private String text(Object value) throws TemplateModelException {
+            if (value instanceof String text) return text;
+            if (value instanceof Double number) return doubleText(number);
+            if (value instanceof Float number) return doubleText(number.doubleValue());
+            if (value instanceof BigDecimal number) return number.stripTrailingZeros().toPlainString();
+            if (value instanceof Date date) {
+                return Directives.isoDate(date, TemplateDateModel.UNKNOWN, env.getTimeZone());
+            }
+            if (value instanceof TemplateModel) {
+                throw new TemplateModelException("<@xml> cannot write a " + value.getClass().getSimpleName()
+                        + " value as XML");
+            }
+            return String.valueOf(value);
+        }
+
+        // Plain between 1e-7 and 1e21 as ?c prints them; infinities use the XML Schema names
+        private static String doubleText(double number) {
+            if (Double.isInfinite(number)) return number > 0 ? "INF" : "-INF";
+            double magnitude = Math.abs(number);
+            if (magnitude == 0) return "0";
+            if (magnitude >= 1e-7 && magnitude < 1e21) {
+                return BigDecimal.valueOf(number).stripTrailingZeros().toPlainString();
+            }
+            return Double.toString(number);
+        }
+
+        // Characters XML 1.0 cannot hold at all are replaced, so the output stays well-formed
+        private static String clean(String text) {
+            for (int i = 0; i < text.length(); i++) {
+                if (isInvalid(text.charAt(i))) {
+                    StringBuilder cleaned = new StringBuilder(text);
+                    for (int j = i; j < cleaned.length(); j++) {
+                        if (isInvalid(cleaned.charAt(j))) cleaned.setCharAt(j, '\uFFFD');
+                    }
+                    return cleaned.toString();
+                }
+            }
+            return text;
+        }
+
+        private static boolean isInvalid(char c) {
+            return c < 0x20 && c != '\t' && c != '\n' && c != '\r' || c == '\uFFFE' || c == '\uFFFF';
+        }
+
+        private static boolean isSequence(Object value) {
+            return value instanceof Iterable<?> || value instanceof Object[];
+        }
+
+        private static Iterable<?> iterable(Object sequence) {
+            if (sequence instanceof Wrapped wrapped) return iterable(wrapped.items());
+            if (sequence instanceof Object[] items) return Arrays.asList(items);
+            return (Iterable<?>) sequence;
+        }
+
+        private static Wrapped wrapped(Object items) {
+            return new Wrapped(items);
+        }
+    }
+
+    // A sequence inside a sequence, written as an element holding item elements
+    private record Wrapped(Object items) {
+    }
+
+    /*
+     * The JDK's XMLStreamWriter writes much of its markup a character at a time, and
+     * every write on the template's BufferedWriter takes a lock. This buffer is not
+     * synchronized, and on close hands its content over without flushing the output.
+     */
+    private static final class OutputBuffer extends Writer {
+        private final Writer out;
+        private final char[] buffer = new char[2048];
+        private int count;
+
+        private OutputBuffer(Writer out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int c) throws IOException {
+            if (count == buffer.length) drain();
+            buffer[count++] = (char) c;
+        }
+
+        @Override
+        public void write(char[] chars, int offset, int length) throws IOException {
+            if (length > buffer.length - count) {
+                drain();
+                if (length > buffer.length) {
+                    out.write(chars, offset, length);
+                    return;
+                }
+            }
+            System.arraycopy(chars, offset, buffer, count, length);
+            count += length;
+        }
+
+        @Override
+        public void write(String text, int offset, int length) throws IOException {
+            if (length > buffer.length - count) {
+                drain();
+                if (length > buffer.length) {
+                    out.write(text, offset, length);
+                    return;
+                }
+            }
+            text.getChars(offset, offset + length, buffer, count);
+            count += length;
+        }
+
+        private void drain() throws IOException {
+            out.write(buffer, 0, count);
+            count = 0;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            drain();
+        }
+
+        @Override
+        public void close() throws IOException {
+            // The template's output stays open
+            drain();
+        }
+    }
+}
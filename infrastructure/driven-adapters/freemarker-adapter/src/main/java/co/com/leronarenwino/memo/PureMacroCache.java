@@ -0,0 +1,381 @@
+/*
+ * This file is part of FreeMarker JSON/XML Toolkit.
+ *
+ * FreeMarker JSON/XML Toolkit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FreeMarker JSON/XML Toolkit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with FreeMarker JSON/XML Toolkit. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package co.com.leronarenwino.memo;
+
+import freemarker.core.Environment;
+import freemarker.core.TemplateMarkupOutputModel;
+import freemarker.ext.util.WrapperTemplateModel;
+import freemarker.template.AdapterTemplateModel;
+import freemarker.template.Configuration;
+import freemarker.template.TemplateBooleanModel;
+import freemarker.template.TemplateDateModel;
+import freemarker.template.TemplateDirectiveBody;
+import freemarker.template.TemplateDirectiveModel;
+import freemarker.template.TemplateException;
+import freemarker.template.TemplateHashModel;
+import freemarker.template.TemplateHashModelEx;
+import freemarker.template.TemplateMethodModelEx;
+import freemarker.template.TemplateModel;
+import freemarker.template.TemplateModelException;
+import freemarker.template.TemplateModelIterator;
+import freemarker.template.TemplateNumberModel;
+import freemarker.template.TemplateScalarModel;
+import freemarker.template.TemplateSequenceModel;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache behind the wrappers {@link PureMacros} puts around pure macros and
+ * functions, shared in the configuration as {@value #NAME}.
+ * <p>
+ * A call is keyed by the macro definition, the values of its arguments and the
+ * settings output depends on (locale, time zones and formats) as they are at the
+ * call, so a {@code <#setting>} in the template changes the key. Each configuration
+ * has its own cache, so reloading the configuration starts empty. Results
+ * are kept for the rest of the render, and when a capacity is given, calls whose
+ * arguments and results are all scalars are also kept across renders, least
+ * recently used first out. Hits and misses are counted per macro for {@link #report()}.
+ */
+public class PureMacroCache implements TemplateHashModel {
+
+    public static final String NAME = "__pure";
+
+    // Function results may be null, which a per-render map holds as a present key
+    private static final Object MISSING = new Object();
+
+    private final Set<String> pureNames;
+    private final int capacity;
+    private final Map<Key, Object> shared;
+    private final Map<String, Counters> counters = new ConcurrentHashMap<>();
+
+    private final TemplateMethodModelEx keyMethod = this::key;
+    private final TemplateMethodModelEx hasMethod = arguments -> lookup(keyArgument(arguments, 0)) != MISSING
+            ? TemplateBooleanModel.TRUE : TemplateBooleanModel.FALSE;
+    private final TemplateMethodModelEx getMethod = arguments -> renderCache().get(keyArgument(arguments, 0));
+    private final TemplateMethodModelEx putMethod = this::put;
+    private final TemplateDirectiveModel replayDirective = this::replay;
+
+    public PureMacroCache(Set<String> pureNames, int capacity) {
+        this.pureNames = Set.copyOf(pureNames);
+        this.capacity = capacity;
+        this.shared = capacity <= 0 ? null : new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Object> eldest) {
+                return size() > PureMacroCache.this.capacity;
+            }
+        };
+    }
+
+    // The cache of a configuration, or null when it has none
+    public static PureMacroCache of(Configuration configuration) {
+        return configuration.getSharedVariable(NAME) instanceof PureMacroCache cache ? cache : null;
+    }
+
+    // Names configured as pure in every template
+    public Set<String> getPureNames() {
+        return pureNames;
+    }
+
+    public List<Statistics> statistics() {
+        return counters.entrySet().stream()
+                .map(entry -> entry.getValue().snapshot(entry.getKey()))
+                .sorted((a, b) -> Long.compare(b.calls(), a.calls()))
+                .toList();
+    }
+
+    public String report() {
+        List<Statistics> statistics = statistics();
+        if (statistics.isEmpty()) {
+            return String.format("No pure macro or function was called%n");
+        }
+        StringBuilder report = new StringBuilder(String.format("%-40s %10s %12s %12s %9s%n",
+                "Pure macro", "Calls", "Render hits", "Shared hits", "Hit rate"));
+        for (Statistics entry : statistics) {
+            report.append(String.format("%-40s %10d %12d %12d %8.1f%%%n", entry.macro(), entry.calls(),
+                    entry.renderHits(), entry.sharedHits(), entry.hitRate() * 100));
+        }
+        if (shared != null) {
+            int size;
+            synchronized (shared) {
+                size = shared.size();
+            }
+            report.append(String.format("Shared entries: %d of %d%n", size, capacity));
+        }
+        return report.toString();
+    }
+
+    @Override
+    public TemplateModel get(String key) {
+        return switch (key) {
+            case "key" -> keyMethod;
+            case "has" -> hasMethod;
+            case "get" -> getMethod;
+            case "put" -> putMethod;
+            case "replay" -> replayDirective;
+            default -> null;
+        };
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return false;
+    }
+
+    // key(macro, arguments...)
+    private Key key(List<?> arguments) throws TemplateModelException {
+        if (arguments.isEmpty() || !(arguments.get(0) instanceof TemplateScalarModel macro)) {
+            throw new TemplateModelException(NAME + ".key needs the macro name first");
+        }
+        List<Object> values = new ArrayList<>(arguments.size() - 1);
+        boolean scalar = true;
+        for (int i = 1; i < arguments.size(); i++) {
+            Object value = valueOf((TemplateModel) arguments.get(i));
+            scalar &= isScalar(value);
+            values.add(value);
+        }
+        return new Key(macro.getAsString(), Settings.of(Environment.getCurrentEnvironment()), values, scalar);
+    }
+
+    // put(key, result): returns the result
+    private Object put(List<?> arguments) throws TemplateModelException {
+        Key key = keyArgument(arguments, 0);
+        Object result = arguments.size() > 1 ? arguments.get(1) : null;
+        store(key, result);
+        return result;
+    }
+
+    // <@__pure.replay key=...>: writes the cached output of the body, or renders and keeps it
+    // The interface declares a raw Map; FreeMarker always passes parameter names to models
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private void replay(Environment env, Map params, TemplateModel[] loopVars, TemplateDirectiveBody body)
+            throws TemplateException, IOException {
+        Map<String, TemplateModel> parameters = (Map<String, TemplateModel>) params;
+        if (!(parameters.get("key") instanceof Key key)) {
+            throw new TemplateModelException(NAME + ".replay needs a key from " + NAME + ".key");
+        }
+        Object cached = lookup(key);
+        if (cached != MISSING) {
+            env.getOut().write((String) cached);
+            return;
+        }
+        if (body == null) return;
+        StringBuilder output = new StringBuilder();
+        body.render(new CapturingWriter(env.getOut(), output));
+        store(key, output.toString());
+    }
+
+    private Object lookup(Key key) {
+        Counters counter = counters.computeIfAbsent(key.macro(), name -> new Counters());
+        Map<Key, Object> render = renderCache();
+        Object value = render.getOrDefault(key, MISSING);
+        if (value != MISSING) {
+            counter.renderHits.increment();
+            return value;
+        }
+        if (shared != null && key.scalar()) {
+            synchronized (shared) {
+                value = shared.get(key);
+            }
+            if (value != null) {
+                render.put(key, value);
+                counter.sharedHits.increment();
+                return value;
+            }
+        }
+        counter.misses.increment();
+        return MISSING;
+    }
+
+    private void store(Key key, Object result) {
+        renderCache().put(key, result);
+        if (shared != null && key.scalar() && isShareable(result)) {
+            synchronized (shared) {
+                shared.put(key, result);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<Key, Object> renderCache() {
+        Environment env = Environment.getCurrentEnvironment();
+        Map<Key, Object> cache = (Map<Key, Object>) env.getCustomState(this);
+        if (cache == null) {
+            cache = new HashMap<>();
+            env.setCustomState(this, cache);
+        }
+        return cache;
+    }
+
+    private static Key keyArgument(List<?> arguments, int index) throws TemplateModelException {
+        if (arguments.size() <= index || !(arguments.get(index) instanceof Key key)) {
+            throw new TemplateModelException("Expected a key from " + NAME + ".key");
+        }
+        return key;
+    }
+
+    // Argument values compared by content; anything else only matches itself
+    private static Object valueOf(TemplateModel model) throws TemplateModelException {
+        if (model == null) return null;
+        if (model instanceof TemplateNumberModel number) return number.getAsNumber();
+        if (model instanceof TemplateDateModel date) {
+            return new DateValue(date.getAsDate().getTime(), date.getDateType());
+        }
+        if (model instanceof TemplateBooleanModel bool && !(model instanceof TemplateScalarModel)) {
+            return bool.getAsBoolean();
+        }
+        if (model instanceof TemplateScalarModel scalar) return scalar.getAsString();
+        if (model instanceof TemplateMarkupOutputModel<?> markup) return markupValue(markup);
+        // Data model values: their maps and lists compare by content
+        if (model instanceof AdapterTemplateModel adapter) return adapter.getAdaptedObject(Object.class);
+        if (model instanceof WrapperTemplateModel wrapper) return wrapper.getWrappedObject();
+        if (model instanceof TemplateSequenceModel sequence) {
+            List<Object> values = new ArrayList<>(sequence.size());
+            for (int i = 0; i < sequence.size(); i++) {
+                values.add(valueOf(sequence.get(i)));
+            }
+            return values;
+        }
+        if (model instanceof TemplateHashModelEx hash) {
+            Map<String, Object> values = new TreeMap<>();
+            TemplateModelIterator keys = hash.keys().iterator();
+            while (keys.hasNext()) {
+                String name = ((TemplateScalarModel) keys.next()).getAsString();
+                values.put(name, valueOf(hash.get(name)));
+            }
+            return values;
+        }
+        return model;
+    }
+
+    private static <M extends TemplateMarkupOutputModel<M>> MarkupValue markupValue(TemplateMarkupOutputModel<?> model)
+            throws TemplateModelException {
+        @SuppressWarnings("unchecked")
+        M markup = (M) model;
+        return new MarkupValue(markup.getOutputFormat().getName(), markup.getOutputFormat().getMarkupString(markup));
+    }
+
+    private static boolean isScalar(Object value) {
+        return value == null || value instanceof String || value instanceof Number || value instanceof Boolean
+                || value instanceof DateValue || value instanceof MarkupValue;
+    }
+
+    // Only immutable results outlive the render; captured macro output is a String
+    private static boolean isShareable(Object result) {
+        return result instanceof String || result instanceof TemplateScalarModel
+                || result instanceof TemplateNumberModel || result instanceof TemplateBooleanModel
+                || result instanceof TemplateDateModel || result instanceof TemplateMarkupOutputModel<?>;
+    }
+
+    public record Statistics(String macro, long renderHits, long sharedHits, long misses) {
+
+        public long calls() {
+            return renderHits + sharedHits + misses;
+        }
+
+        public double hitRate() {
+            long calls = calls();
+            return calls == 0 ? 0 : (double) (renderHits + sharedHits) / calls;
+        }
+    }
+
+    // A call: macro identity, effective settings and argument values
+    private record Key(String macro, Settings settings, List<Object> arguments, boolean scalar) implements TemplateModel {
+    }
+
+    // The settings formatting reads; custom formats and the rest come from the configuration
+    private record Settings(Locale locale, String timeZone, String sqlTimeZone, String numberFormat,
+                            String booleanFormat, String dateFormat, String timeFormat, String dateTimeFormat,
+                            String cFormat, String urlEscapingCharset, String outputEncoding, int classicCompatible) {
+
+        private static Settings of(Environment env) {
+            TimeZone sqlTimeZone = env.getSQLDateAndTimeTimeZone();
+            return new Settings(env.getLocale(), env.getTimeZone().getID(),
+                    sqlTimeZone == null ? null : sqlTimeZone.getID(), env.getNumberFormat(), env.getBooleanFormat(),
+                    env.getDateFormat(), env.getTimeFormat(), env.getDateTimeFormat(), env.getCFormat().getName(),
+                    env.getURLEscapingCharset(), env.getOutputEncoding(), env.getClassicCompatibleAsInt());
+        }
+    }
+
+    // Dates of different types format differently, so the type is part of the value
+    private record DateValue(long time, int type) {
+    }
+
+    private record MarkupValue(String format, String markup) {
+    }
+
+    private static final class Counters {
+        private final LongAdder renderHits = new LongAdder();
+        private final LongAdder sharedHits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+
+        private Statistics snapshot(String macro) {
+            return new Statistics(macro, renderHits.sum(), sharedHits.sum(), misses.sum());
+        }
+    }
+
+    // Passes the output through while keeping a copy of it
+    private static final class CapturingWriter extends Writer {
+        private final Writer out;
+        private final StringBuilder copy;
+
+        private CapturingWriter(Writer out, StringBuilder copy) {
+            this.out = out;
+            this.copy = copy;
+        }
+
+        @Override
+        public void write(int c) throws IOException {
+            out.write(c);
+            copy.append((char) c);
+        }
+
+        @Override
+        public void write(char[] chars, int offset, int length) throws IOException {
+            out.write(chars, offset, length);
+            copy.append(chars, offset, length);
+        }
+
+        @Override
+        public void write(String text, int offset, int length) throws IOException {
+            out.write(text, offset, length);
+            copy.append(text, offset, offset + length);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() {
+            // The template's output stays open
+        }
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * This file is part of FreeMarker JSON/XML Toolkit.
+ *
+ * FreeMarker JSON/XML Toolkit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FreeMarker JSON/XML Toolkit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with FreeMarker JSON/XML Toolkit. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package co.com.leronarenwino.memo;
+
+import freemarker.cache.TemplateLoader;
+import freemarker.template.Configuration;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+/**
+ * Loads templates through another loader and wraps their pure macros as
+ * {@link PureMacros} does, so libraries brought in with {@code <#import>} and
+ * {@code <#include>} are memoized too.
+ */
+public class PureMacroLoader implements TemplateLoader {
+
+    private final TemplateLoader delegate;
+    private final Configuration configuration;
+
+    public PureMacroLoader(TemplateLoader delegate, Configuration configuration) {
+        this.delegate = delegate;
+        this.configuration = configuration;
+    }
+
+    @Override
+    public Object findTemplateSource(String name) throws IOException {
+        return delegate.findTemplateSource(name);
+    }
+
+    @Override
+    public long getLastModified(Object templateSource) {
+        return delegate.getLastModified(templateSource);
+    }
+
+    @Override
+    public Reader getReader(Object templateSource, String encoding) throws IOException {
+        StringWriter source = new StringWriter();
+        try (Reader reader = delegate.getReader(templateSource, encoding)) {
+            reader.transferTo(source);
+        }
+        return new StringReader(PureMacros.rewriteSource(templateSource.toString(), source.toString(), configuration));
+    }
+
+    @Override
+    public void closeTemplateSource(Object templateSource) throws IOException {
+        delegate.closeTemplateSource(templateSource);
+    }
+}
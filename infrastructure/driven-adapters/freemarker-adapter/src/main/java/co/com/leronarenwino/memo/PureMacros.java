@@ -0,0 +1,286 @@
+/*
+ * This file is part of FreeMarker JSON/XML Toolkit.
+ *
+ * FreeMarker JSON/XML Toolkit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FreeMarker JSON/XML Toolkit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with FreeMarker JSON/XML Toolkit. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package co.com.leronarenwino.memo;
+
+import co.com.leronarenwino.analysis.TemplateTree;
+import co.com.leronarenwino.cache.Fingerprint;
+import freemarker.template.Configuration;
+import freemarker.template.Template;
+import freemarker.template.utility.StringUtil;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Memoizes the macros and functions marked pure, with a {@code <#-- @pure -->}
+ * comment right before their definition or by name in the {@code pure_macros}
+ * setting.
+ * <p>
+ * FreeMarker has no hook around macro calls, so the source is rewritten before it
+ * is parsed for rendering. The definition gets a {@code __pure} suffix, and a
+ * wrapper with the original name and parameters, appended on the same line so
+ * line numbers stay put, asks {@link PureMacroCache} before calling it. Macros
+ * using {@code <#nested>} or a catch-all parameter are left alone, as their output
+ * depends on more than the named arguments.
+ * <p>
+ * Definitions are found in the template tree, read through {@link TemplateTree};
+ * when it is not readable templates render without memoization. The wrapper key
+ * holds the template name, the macro name and a fingerprint of the definition
+ * and of the template's output format, so an edited macro is not served old results.
+ */
+public class PureMacros {
+
+    private static final Logger logger = Logger.getLogger(PureMacros.class.getName());
+
+    private static final String SUFFIX = "__pure";
+    private static final String MARKER = "@pure";
+    private static final Pattern MARKER_WORD = Pattern.compile("(?:^|\\s)@pure(?:\\s|$)");
+    private static final Pattern IDENTIFIER = Pattern.compile("[A-Za-z_$][A-Za-z0-9_$]*");
+    private static final Pattern DEFINITION = Pattern.compile("[<\\[]#(?:macro|function)\\s+(\"?)([^\\s\"\\]>(]+)\\1");
+    // Subtype parameter of a Macro node for #function
+    private static final int FUNCTION = 1;
+
+    private PureMacros() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    // Parses the template, rewritten when it defines pure macros
+    public static Template parse(String name, String source, Configuration configuration) throws IOException {
+        Template template = new Template(name, new StringReader(source), configuration);
+        String rewritten = mayDefinePure(source, configuration) ? rewrite(template, source) : null;
+        return rewritten == null ? template : new Template(name, new StringReader(rewritten), configuration);
+    }
+
+    // The source with pure macros wrapped; unchanged when it has none or does not parse
+    public static String rewriteSource(String name, String source, Configuration configuration) {
+        if (!mayDefinePure(source, configuration)) return source;
+        try {
+            String rewritten = rewrite(new Template(name, new StringReader(source), configuration), source);
+            return rewritten == null ? source : rewritten;
+        } catch (IOException e) {
+            // The parse error is reported when the template itself is loaded
+            return source;
+        }
+    }
+
+    private static boolean mayDefinePure(String source, Configuration configuration) {
+        PureMacroCache cache = PureMacroCache.of(configuration);
+        if (cache == null || !TemplateTree.isReadable()) return false;
+        return source.contains(MARKER) || cache.getPureNames().stream().anyMatch(source::contains);
+    }
+
+    private static String rewrite(Template template, String source) {
+        PureMacroCache cache = PureMacroCache.of(template.getConfiguration());
+        Positions positions = new Positions(source, template.getParserConfiguration().getTabSize());
+        boolean squareBrackets = template.getActualTagSyntax() == Configuration.SQUARE_BRACKET_TAG_SYNTAX;
+        String format = template.getOutputFormat().getName() + "/" + template.getAutoEscaping();
+        List<Insertion> insertions = new ArrayList<>();
+        for (Object node : macroNodes(template)) {
+            String name = "the macro at line " + TemplateTree.beginLine(node);
+            try {
+                Definition macro = Definition.of(node);
+                name = macro.name();
+                int begin = positions.offset(TemplateTree.beginLine(node), TemplateTree.beginColumn(node));
+                if (!isMarked(source, begin, squareBrackets) && !cache.getPureNames().contains(name)) {
+                    continue;
+                }
+                String reason = unsupported(macro);
+                Matcher header = DEFINITION.matcher(source).region(begin, source.length());
+                if (reason == null && !(header.lookingAt() && header.group(2).equals(name))) {
+                    reason = "its definition could not be located";
+                }
+                if (reason != null) {
+                    logger.log(Level.WARNING, "Not memoizing " + name + " in " + template.getName() + ": " + reason);
+                    continue;
+                }
+                int end = positions.offset(TemplateTree.endLine(node), TemplateTree.endColumn(node)) + 1;
+                String id = template.getName() + ":" + name + "@"
+                        + Fingerprint.ofText(format + "\n" + source.substring(begin, end)).substring(0, 12);
+                insertions.add(new Insertion(header.end(2), SUFFIX));
+                insertions.add(new Insertion(end, wrapper(macro, id, positions, squareBrackets)));
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                logger.log(Level.WARNING, "Not memoizing " + name + " in " + template.getName(), e);
+            }
+        }
+        if (insertions.isEmpty()) return null;
+        // From the end, so earlier offsets stay valid
+        insertions.sort(Comparator.comparingInt(Insertion::offset).reversed());
+        StringBuilder rewritten = new StringBuilder(source);
+        for (Insertion insertion : insertions) {
+            rewritten.insert(insertion.offset(), insertion.text());
+        }
+        return rewritten.toString();
+    }
+
+    // A comment containing @pure, separated from the definition by whitespace only
+    private static boolean isMarked(String source, int begin, boolean squareBrackets) {
+        int end = begin;
+        while (end > 0 && Character.isWhitespace(source.charAt(end - 1))) end--;
+        String close = squareBrackets ? "--]" : "-->";
+        if (end < close.length() || !source.startsWith(close, end - close.length())) return false;
+        int open = source.lastIndexOf(squareBrackets ? "[#--" : "<#--", end - close.length());
+        return open >= 0 && MARKER_WORD.matcher(source.substring(open + 4, end - close.length())).find();
+    }
+
+    // Macro and function definitions, wherever they are in the tree
+    private static List<Object> macroNodes(Template template) {
+        List<Object> macros = new ArrayList<>();
+        Deque<Object> pending = new ArrayDeque<>();
+        pending.push(TemplateTree.root(template));
+        while (!pending.isEmpty()) {
+            Object element = pending.pop();
+            if (TemplateTree.is(element, "Macro")) {
+                macros.add(element);
+                continue;
+            }
+            for (int i = TemplateTree.childCount(element) - 1; i >= 0; i--) {
+                pending.push(TemplateTree.child(element, i));
+            }
+        }
+        return macros;
+    }
+
+    private static String unsupported(Definition macro) {
+        if (macro.catchAll() != null) return "it has a catch-all parameter";
+        if (!IDENTIFIER.matcher(macro.name()).matches()) return "its name is not a plain identifier";
+        for (String parameter : macro.parameters()) {
+            if (!IDENTIFIER.matcher(parameter).matches()) return "parameter " + parameter + " is not a plain identifier";
+        }
+        Deque<Object> pending = new ArrayDeque<>();
+        pending.push(macro.node());
+        while (!pending.isEmpty()) {
+            Object element = pending.pop();
+            if (TemplateTree.is(element, "BodyInstruction")) return "it uses <#nested>";
+            for (int i = 0; i < TemplateTree.childCount(element); i++) {
+                pending.push(TemplateTree.child(element, i));
+            }
+        }
+        return null;
+    }
+
+    /*
+     * Function: <#function f a b=1><#local __pure_key = __pure.key("id", a, b)><#if __pure.has(__pure_key)>
+     *     <#return __pure.get(__pure_key)></#if><#return __pure.put(__pure_key, f__pure(a, b))></#function>
+     * Macro: <#macro m a b=1><@__pure.replay key=__pure.key("id", a, b)><@m__pure a=a b=b/></@__pure.replay></#macro>
+     */
+    private static String wrapper(Definition macro, String id, Positions positions, boolean squareBrackets) {
+        String open = squareBrackets ? "[" : "<";
+        String close = squareBrackets ? "]" : ">";
+        String cache = PureMacroCache.NAME;
+        String name = macro.name();
+        List<String> parameters = macro.parameters();
+        StringBuilder header = new StringBuilder(name);
+        StringBuilder key = new StringBuilder(cache).append(".key(").append(StringUtil.ftlQuote(id));
+        for (int i = 0; i < parameters.size(); i++) {
+            header.append(' ').append(parameters.get(i));
+            if (macro.defaults().get(i) != null) {
+                header.append('=').append(positions.source(macro.defaults().get(i)));
+            }
+            key.append(", ").append(parameters.get(i));
+        }
+        key.append(')');
+        StringBuilder text = new StringBuilder();
+        if (macro.function()) {
+            text.append(open).append("#function ").append(header).append(close)
+                    .append(open).append("#local __pure_key = ").append(key).append(close)
+                    .append(open).append("#if ").append(cache).append(".has(__pure_key)").append(close)
+                    .append(open).append("#return ").append(cache).append(".get(__pure_key)").append(close)
+                    .append(open).append("/#if").append(close)
+                    .append(open).append("#return ").append(cache).append(".put(__pure_key, ").append(name)
+                    .append(SUFFIX).append('(').append(String.join(", ", parameters)).append("))").append(close)
+                    .append(open).append("/#function").append(close);
+        } else {
+            text.append(open).append("#macro ").append(header).append(close)
+                    .append(open).append('@').append(cache).append(".replay key=").append(key).append(close)
+                    .append(open).append('@').append(name).append(SUFFIX);
+            for (String parameter : parameters) {
+                text.append(' ').append(parameter).append('=').append(parameter);
+            }
+            text.append('/').append(close)
+                    .append(open).append("/@").append(cache).append(".replay").append(close)
+                    .append(open).append("/#macro").append(close);
+        }
+        return text.toString();
+    }
+
+    // A Macro node's parameters: name, then each parameter name and its default, then catch-all and subtype
+    private record Definition(Object node, String name, List<String> parameters, List<Object> defaults,
+                              String catchAll, boolean function) {
+
+        private static Definition of(Object node) throws ReflectiveOperationException {
+            int count = TemplateTree.parameterCount(node);
+            List<String> parameters = new ArrayList<>();
+            List<Object> defaults = new ArrayList<>();
+            for (int i = 1; i < count - 2; i += 2) {
+                parameters.add((String) TemplateTree.parameter(node, i));
+                defaults.add(TemplateTree.parameter(node, i + 1));
+            }
+            return new Definition(node, (String) TemplateTree.parameter(node, 0), parameters, defaults,
+                    (String) TemplateTree.parameter(node, count - 2),
+                    Integer.valueOf(FUNCTION).equals(TemplateTree.parameter(node, count - 1)));
+        }
+    }
+
+    private record Insertion(int offset, String text) {
+    }
+
+    // Template positions are 1-based lines and columns, with tabs advancing to the next tab stop
+    private static final class Positions {
+        private final String source;
+        private final int tabSize;
+        private final int[] lineStarts;
+
+        private Positions(String source, int tabSize) {
+            this.source = source;
+            this.tabSize = tabSize;
+            List<Integer> starts = new ArrayList<>();
+            starts.add(0);
+            for (int i = 0; i < source.length(); i++) {
+                char c = source.charAt(i);
+                if (c == '\n' || c == '\r' && (i + 1 == source.length() || source.charAt(i + 1) != '\n')) {
+                    starts.add(i + 1);
+                }
+            }
+            lineStarts = starts.stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        private int offset(int line, int column) {
+            int offset = lineStarts[line - 1];
+            int current = 1;
+            while (current < column && offset < source.length()) {
+                current = source.charAt(offset) == '\t' ? ((current - 1) / tabSize + 1) * tabSize + 1 : current + 1;
+                offset++;
+            }
+            return offset;
+        }
+
+        private String source(Object node) {
+            return source.substring(offset(TemplateTree.beginLine(node), TemplateTree.beginColumn(node)),
+                    offset(TemplateTree.endLine(node), TemplateTree.endColumn(node)) + 1);
+        }
+    }
+}
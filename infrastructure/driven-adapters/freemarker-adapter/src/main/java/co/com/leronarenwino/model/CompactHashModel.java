@@ -0,0 +1,137 @@
+/*
+ * This file is part of FreeMarker JSON/XML Toolkit.
+ *
+ * FreeMarker JSON/XML Toolkit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FreeMarker JSON/XML Toolkit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with FreeMarker JSON/XML Toolkit. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package co.com.leronarenwino.model;
+
+import co.com.leronarenwino.datamodel.CompactObject;
+import freemarker.ext.util.WrapperTemplateModel;
+import freemarker.template.AdapterTemplateModel;
+import freemarker.template.ObjectWrapper;
+import freemarker.template.SimpleScalar;
+import freemarker.template.TemplateCollectionModel;
+import freemarker.template.TemplateHashModelEx2;
+import freemarker.template.TemplateModel;
+import freemarker.template.TemplateModelException;
+import freemarker.template.TemplateModelIterator;
+import freemarker.template.WrappingTemplateModel;
+
+import java.util.NoSuchElementException;
+
+/**
+ * Exposes a {@link CompactObject} to templates without going through its
+ * {@code Map} view, so listing keys and values walks the flat arrays directly
+ * instead of creating an entry per member. Values are wrapped when read.
+ */
+public class CompactHashModel extends WrappingTemplateModel
+        implements TemplateHashModelEx2, AdapterTemplateModel, WrapperTemplateModel {
+
+    private final CompactObject object;
+
+    public CompactHashModel(CompactObject object, ObjectWrapper wrapper) {
+        super(wrapper);
+        this.object = object;
+    }
+
+    @Override
+    public TemplateModel get(String key) throws TemplateModelException {
+        Object value = object.get(key);
+        return value == null ? null : wrap(value);
+    }
+
+    @Override
+    public int size() {
+        return object.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return object.isEmpty();
+    }
+
+    @Override
+    public TemplateCollectionModel keys() {
+        return () -> new Walk(true);
+    }
+
+    @Override
+    public TemplateCollectionModel values() {
+        return () -> new Walk(false);
+    }
+
+    @Override
+    public KeyValuePairIterator keyValuePairIterator() {
+        return new KeyValuePairIterator() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return next < object.size();
+            }
+
+            @Override
+            public KeyValuePair next() throws TemplateModelException {
+                if (next >= object.size()) throw new TemplateModelException("No more members");
+                int i = next++;
+                TemplateModel key = new SimpleScalar(object.keyAt(i));
+                TemplateModel value = wrap(object.valueAt(i));
+                return new KeyValuePair() {
+                    @Override
+                    public TemplateModel getKey() {
+                        return key;
+                    }
+
+                    @Override
+                    public TemplateModel getValue() {
+                        return value;
+                    }
+                };
+            }
+        };
+    }
+
+    @Override
+    public Object getAdaptedObject(Class<?> hint) {
+        return object;
+    }
+
+    @Override
+    public Object getWrappedObject() {
+        return object;
+    }
+
+    // Keys or values in document order
+    private final class Walk implements TemplateModelIterator {
+        private final boolean keys;
+        private int next;
+
+        private Walk(boolean keys) {
+            this.keys = keys;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next < object.size();
+        }
+
+        @Override
+        public TemplateModel next() throws TemplateModelException {
+            if (next >= object.size()) throw new TemplateModelException(new NoSuchElementException());
+            int i = next++;
+            return keys ? new SimpleScalar(object.keyAt(i)) : wrap(object.valueAt(i));
+        }
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * This file is part of FreeMarker JSON/XML Toolkit.
+ *
+ * FreeMarker JSON/XML Toolkit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FreeMarker JSON/XML Toolkit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with FreeMarker JSON/XML Toolkit. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package co.com.leronarenwino.model;
+
+import co.com.leronarenwino.datamodel.CompactObject;
+import co.com.leronarenwino.datamodel.DoubleArrayList;
+import co.com.leronarenwino.datamodel.LazyCollection;
+import co.com.leronarenwino.datamodel.LongArrayList;
+import freemarker.template.DefaultObjectWrapper;
+import freemarker.template.TemplateModel;
+import freemarker.template.TemplateModelException;
+import freemarker.template.Version;
+
+/**
+ * The default object wrapper, plus direct template models for the compact objects,
+ * unboxed numeric arrays and lazily read collections of the data model. Everything
+ * else wraps as usual.
+ */
+public class CompactObjectWrapper extends DefaultObjectWrapper {
+
+    public CompactObjectWrapper(Version incompatibleImprovements) {
+        super(incompatibleImprovements);
+        writeProtect();
+    }
+
+    @Override
+    public TemplateModel wrap(Object obj) throws TemplateModelException {
+        if (obj instanceof CompactObject object) {
+            return new CompactHashModel(object, this);
+        }
+        if (obj instanceof LongArrayList list) {
+            return PrimitiveSequenceModel.of(list);
+        }
+        if (obj instanceof DoubleArrayList list) {
+            return PrimitiveSequenceModel.of(list);
+        }
+        if (obj instanceof LazyCollection collection) {
+            return new StreamedCollectionModel(collection, this);
+        }
+        return super.wrap(obj);
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * This file is part of FreeMarker JSON/XML Toolkit.
+ *
+ * FreeMarker JSON/XML Toolkit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FreeMarker JSON/XML Toolkit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with FreeMarker JSON/XML Toolkit. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package co.com.leronarenwino.model;
+
+import co.com.leronarenwino.datamodel.DoubleArrayList;
+import co.com.leronarenwino.datamodel.LongArrayList;
+import freemarker.ext.util.WrapperTemplateModel;
+import freemarker.template.AdapterTemplateModel;
+import freemarker.template.SimpleNumber;
+import freemarker.template.TemplateModel;
+import freemarker.template.TemplateSequenceModel;
+
+/**
+ * Exposes the unboxed numeric arrays of the data model to templates.
+ * <p>
+ * Elements are boxed and wrapped only when a template reads them. Listing a time
+ * series keeps no boxed number or wrapper per point alive; the model of each point
+ * is dropped as soon as the loop moves on.
+ */
+public abstract class PrimitiveSequenceModel implements TemplateSequenceModel, AdapterTemplateModel,
+        WrapperTemplateModel {
+
+    private final Object list;
+
+    private PrimitiveSequenceModel(Object list) {
+        this.list = list;
+    }
+
+    public static PrimitiveSequenceModel of(LongArrayList list) {
+        return new PrimitiveSequenceModel(list) {
+            @Override
+            public TemplateModel get(int index) {
+                if (index < 0 || index >= list.size()) return null;
+                return new SimpleNumber(list.get(index));
+            }
+
+            @Override
+            public int size() {
+                return list.size();
+            }
+        };
+    }
+
+    public static PrimitiveSequenceModel of(DoubleArrayList list) {
+        return new PrimitiveSequenceModel(list) {
+            @Override
+            public TemplateModel get(int index) {
+                if (index < 0 || index >= list.size()) return null;
+                return new SimpleNumber(list.getDouble(index));
+            }
+
+            @Override
+            public int size() {
+                return list.size();
+            }
+        };
+    }
+
+    @Override
+    public Object getAdaptedObject(Class<?> hint) {
+        return list;
+    }
+
+    @Override
+    public Object getWrappedObject() {
+        return list;
+    }
+}
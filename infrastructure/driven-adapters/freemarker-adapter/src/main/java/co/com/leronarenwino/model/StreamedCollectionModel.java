@@ -0,0 +1,98 @@
+/*
+ * This file is part of FreeMarker JSON/XML Toolkit.
+ *
+ * FreeMarker JSON/XML Toolkit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FreeMarker JSON/XML Toolkit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with FreeMarker JSON/XML Toolkit. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package co.com.leronarenwino.model;
+
+import co.com.leronarenwino.datamodel.LazyCollection;
+import freemarker.ext.util.WrapperTemplateModel;
+import freemarker.template.AdapterTemplateModel;
+import freemarker.template.ObjectWrapper;
+import freemarker.template.TemplateCollectionModelEx;
+import freemarker.template.TemplateModel;
+import freemarker.template.TemplateModelException;
+import freemarker.template.TemplateModelIterator;
+import freemarker.template.WrappingTemplateModel;
+
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+
+/**
+ * Exposes a {@link LazyCollection}, such as a streamed JSON collection or the rows of a
+ * CSV file, as a collection whose elements are read as the template lists them.
+ * <p>
+ * Its size comes from the collection, so {@code ?size} and {@code ?has_content}
+ * do not read the elements. A streamed collection can be read only once; a second pass
+ * fails with an error naming it.
+ */
+public class StreamedCollectionModel extends WrappingTemplateModel
+        implements TemplateCollectionModelEx, AdapterTemplateModel, WrapperTemplateModel {
+
+    private final LazyCollection collection;
+
+    public StreamedCollectionModel(LazyCollection collection, ObjectWrapper wrapper) {
+        super(wrapper);
+        this.collection = collection;
+    }
+
+    @Override
+    public TemplateModelIterator iterator() {
+        Iterator<Object> elements = collection.iterator();
+        return new TemplateModelIterator() {
+            @Override
+            public TemplateModel next() throws TemplateModelException {
+                try {
+                    return wrap(elements.next());
+                } catch (IllegalStateException e) {
+                    throw new TemplateModelException(e.getMessage());
+                } catch (UncheckedIOException e) {
+                    throw new TemplateModelException(e.getMessage(), e.getCause());
+                }
+            }
+
+            @Override
+            public boolean hasNext() throws TemplateModelException {
+                try {
+                    return elements.hasNext();
+                } catch (IllegalStateException e) {
+                    throw new TemplateModelException(e.getMessage());
+                } catch (UncheckedIOException e) {
+                    throw new TemplateModelException(e.getMessage(), e.getCause());
+                }
+            }
+        };
+    }
+
+    @Override
+    public int size() {
+        return collection.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return collection.isEmpty();
+    }
+
+    @Override
+    public Object getAdaptedObject(Class<?> hint) {
+        return collection;
+    }
+
+    @Override
+    public Object getWrappedObject() {
+        return collection;
+    }
+}
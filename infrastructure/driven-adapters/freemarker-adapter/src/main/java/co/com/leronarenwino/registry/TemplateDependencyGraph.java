@@ -0,0 +1,164 @@
+/*
+ * This file is part of FreeMarker JSON/XML Toolkit.
+ *
+ * FreeMarker JSON/XML Toolkit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FreeMarker JSON/XML Toolkit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with FreeMarker JSON/XML Toolkit. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package co.com.leronarenwino.registry;
+
+import co.com.leronarenwino.analysis.TemplateTree;
+import freemarker.template.Template;
+import freemarker.template.TemplateModelException;
+import freemarker.template.TemplateScalarModel;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tracks which templates {@code <#include>} or {@code <#import>} which others, so a
+ * change to a shared library only invalidates the templates that actually use it.
+ * <p>
+ * Dependencies are read from the parsed template tree. A template whose include or
+ * import path is computed at render time cannot be resolved statically and is
+ * treated as depending on every template; the includes that could not be resolved
+ * are listed in its {@link Dependencies}, so they can be reported.
+ */
+public class TemplateDependencyGraph {
+
+    private final Map<String, Set<String>> dependencies = new HashMap<>();
+    private final Map<String, Set<String>> dependents = new HashMap<>();
+    private final Set<String> dynamic = new HashSet<>();
+
+    // Direct include/import targets of a template, as full template names
+    public static Dependencies scan(Template template) {
+        Set<String> names = new LinkedHashSet<>();
+        List<String> unresolved = new ArrayList<>();
+        if (!TemplateTree.isReadable()) {
+            unresolved.add("its includes and imports (template tree not readable)");
+            return new Dependencies(names, unresolved);
+        }
+        Deque<Object> pending = new ArrayDeque<>();
+        pending.push(TemplateTree.root(template));
+        try {
+            while (!pending.isEmpty()) {
+                Object element = pending.pop();
+                if (TemplateTree.is(element, "Include") || TemplateTree.is(element, "LibraryLoad")) {
+                    // Parameter 0 is the template name expression of both directives
+                    String path = literalPath(TemplateTree.parameter(element, 0));
+                    String resolved = path == null ? null : resolveName(template.getName(), path);
+                    if (resolved != null) {
+                        names.add(resolved);
+                    } else {
+                        unresolved.add(TemplateTree.canonicalForm(element) + " " + TemplateTree.location(element));
+                    }
+                }
+                for (int i = TemplateTree.childCount(element) - 1; i >= 0; i--) {
+                    pending.push(TemplateTree.child(element, i));
+                }
+            }
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            unresolved.add("its includes and imports (template tree not readable: " + e + ")");
+        }
+        return new Dependencies(names, unresolved);
+    }
+
+    // Value of a string literal without interpolations, null for anything computed at render time
+    private static String literalPath(Object expression) throws ReflectiveOperationException {
+        if (!TemplateTree.is(expression, "StringLiteral") || TemplateTree.parameterCount(expression) != 0) {
+            return null;
+        }
+        try {
+            return ((TemplateScalarModel) expression).getAsString();
+        } catch (TemplateModelException e) {
+            return null;
+        }
+    }
+
+    // Mirrors FreeMarker's default name format: relative to the including template, "/" for root
+    static String resolveName(String baseName, String targetName) {
+        if (targetName.isEmpty() || targetName.contains("://") || targetName.contains("*")) {
+            return null;
+        }
+        String path;
+        if (targetName.startsWith("/")) {
+            path = targetName.substring(1);
+        } else {
+            int lastSlash = baseName == null ? -1 : baseName.lastIndexOf('/');
+            path = lastSlash < 0 ? targetName : baseName.substring(0, lastSlash + 1) + targetName;
+        }
+        Deque<String> segments = new ArrayDeque<>();
+        for (String segment : path.split("/")) {
+            if (segment.isEmpty() || segment.equals(".")) continue;
+            if (segment.equals("..")) {
+                if (segments.isEmpty()) return null;
+                segments.removeLast();
+            } else {
+                segments.addLast(segment);
+            }
+        }
+        return segments.isEmpty() ? null : String.join("/", segments);
+    }
+
+    public synchronized void update(String name, Dependencies scanned) {
+        Set<String> previous = dependencies.put(name, scanned.names());
+        if (previous != null) {
+            for (String dependency : previous) {
+                Set<String> users = dependents.get(dependency);
+                if (users != null) users.remove(name);
+            }
+        }
+        for (String dependency : scanned.names()) {
+            dependents.computeIfAbsent(dependency, k -> new HashSet<>()).add(name);
+        }
+        if (scanned.hasUnresolved()) {
+            dynamic.add(name);
+        } else {
+            dynamic.remove(name);
+        }
+    }
+
+    public synchronized void remove(String name) {
+        update(name, new Dependencies(Collections.emptySet(), List.of()));
+        dependencies.remove(name);
+    }
+
+    // The changed template plus everything that includes or imports it, directly or transitively
+    public synchronized Set<String> affectedBy(String name) {
+        Set<String> affected = new LinkedHashSet<>();
+        Deque<String> pending = new ArrayDeque<>();
+        pending.add(name);
+        pending.addAll(dynamic);
+        while (!pending.isEmpty()) {
+            String current = pending.poll();
+            if (!affected.add(current)) continue;
+            pending.addAll(dependents.getOrDefault(current, Collections.emptySet()));
+        }
+        return affected;
+    }
+
+    // Unresolved entries describe each include or import whose target is not known before rendering
+    public record Dependencies(Set<String> names, List<String> unresolved) {
+        public boolean hasUnresolved() {
+            return !unresolved.isEmpty();
+        }
+    }
+}
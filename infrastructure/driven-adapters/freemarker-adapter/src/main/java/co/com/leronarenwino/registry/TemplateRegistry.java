@@ -0,0 +1,400 @@
+/*
+ * This file is part of FreeMarker JSON/XML Toolkit.
+ *
+ * FreeMarker JSON/XML Toolkit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FreeMarker JSON/XML Toolkit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with FreeMarker JSON/XML Toolkit. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package co.com.leronarenwino.registry;
+
+import co.com.leronarenwino.CompiledTemplate;
+import co.com.leronarenwino.analysis.TemplateUsageAnalyzer;
+import co.com.leronarenwino.config.FreemarkerConfigProvider;
+import co.com.leronarenwino.datamodel.DataUsage;
+import co.com.leronarenwino.memo.PureMacroLoader;
+import freemarker.template.Configuration;
+import freemarker.template.Template;
+import freemarker.template.TemplateNotFoundException;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Compiles every {@code .ftl} file below a directory and keeps the compiled
+ * templates up to date while the files change on disk.
+ * <p>
+ * Renders always pick the {@link Template} currently published in the registry;
+ * a recompiled version replaces the previous one in a single map write, so a
+ * render that already started keeps using the version it looked up.
+ * <p>
+ * Includes and imports resolve against the template directory first and then the
+ * library path. Libraries are parsed once into the configuration cache and shared by
+ * every template that uses them; editing one recompiles only its dependents.
+ * <p>
+ * A template that does not compile is not published; looking it up throws the
+ * error of its last compile, with the line and column FreeMarker reports.
+ */
+public class TemplateRegistry implements AutoCloseable {
+
+    private static final Logger logger = Logger.getLogger(TemplateRegistry.class.getName());
+
+    public static final String TEMPLATE_EXTENSION = ".ftl";
+
+    // Events arriving within this window are handled as one batch (editors often save in several writes)
+    private static final long EVENT_COALESCE_MILLIS = 50;
+
+    private final Path directory;
+    private final List<Path> roots;
+    private final Configuration configuration;
+    private final TemplateDependencyGraph dependencies = new TemplateDependencyGraph();
+    private final Set<String> scannedLibraries = ConcurrentHashMap.newKeySet();
+    private final Map<String, Template> templates = new ConcurrentHashMap<>();
+    private final Map<String, Long> lastModified = new ConcurrentHashMap<>();
+    private final Map<String, Exception> failures = new ConcurrentHashMap<>();
+    private final Map<WatchKey, Path> watchedDirectories = new ConcurrentHashMap<>();
+
+    private WatchService watchService;
+    private Thread watcherThread;
+
+    public TemplateRegistry(Path directory) throws IOException {
+        this(directory, FreemarkerConfigProvider.getLibraryPath());
+    }
+
+    public TemplateRegistry(Path directory, List<Path> libraryPath) throws IOException {
+        this.directory = directory.toAbsolutePath().normalize();
+        if (!Files.isDirectory(this.directory)) {
+            throw new IOException("Template directory not found: " + this.directory);
+        }
+        List<Path> allRoots = new ArrayList<>();
+        allRoots.add(this.directory);
+        for (Path library : libraryPath) {
+            Path normalized = library.toAbsolutePath().normalize();
+            if (!allRoots.contains(normalized)) allRoots.add(normalized);
+        }
+        this.roots = List.copyOf(allRoots);
+        this.configuration = (Configuration) FreemarkerConfigProvider.getConfiguration().clone();
+        this.configuration.setTemplateLoader(
+                new PureMacroLoader(FreemarkerConfigProvider.createLoader(roots), configuration));
+        // The watcher decides when a template is stale, FreeMarker must never re-check on its own
+        this.configuration.setTemplateUpdateDelayMilliseconds(Long.MAX_VALUE);
+    }
+
+    // Compiles all templates in parallel, then starts watching the directory for changes
+    public synchronized void start() throws IOException {
+        if (watcherThread != null) return;
+        precompileAll();
+        watchService = FileSystems.getDefault().newWatchService();
+        for (Path root : roots) {
+            registerTree(root);
+        }
+        watcherThread = new Thread(this::watchLoop, "template-registry-watcher");
+        watcherThread.setDaemon(true);
+        watcherThread.start();
+    }
+
+    // Compiles just the named template, for a single render that needs neither the others nor the watcher
+    public CompiledTemplate load(String name) throws IOException {
+        compile(name, false);
+        return compile(name);
+    }
+
+    public Template getTemplate(String name) throws IOException {
+        Template template = templates.get(name);
+        if (template != null) {
+            return template;
+        }
+        Exception failure = failures.get(name);
+        if (failure instanceof IOException e) {
+            // Parse errors are IOExceptions and keep their line and column
+            throw e;
+        }
+        if (failure != null) {
+            throw new IOException("Could not compile template " + name + ": " + failure.getMessage(), failure);
+        }
+        throw new TemplateNotFoundException(name, null, "Template not registered: " + name);
+    }
+
+    public String process(String name, Map<String, Object> dataModel) throws Exception {
+        Template template = getTemplate(name);
+        StringWriter writer = new StringWriter();
+        template.process(dataModel, writer);
+        return writer.toString();
+    }
+
+    // The version published now; later reloads do not change what the returned template renders
+    public CompiledTemplate compile(String name) throws IOException {
+        return getTemplate(name)::process;
+    }
+
+    public DataUsage analyzeUsage(String name) throws IOException {
+        return TemplateUsageAnalyzer.analyze(getTemplate(name));
+    }
+
+    public Set<String> getTemplateNames() {
+        return Collections.unmodifiableSet(new TreeSet<>(templates.keySet()));
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Could not close template watcher", e);
+            }
+        }
+        if (watcherThread != null) {
+            watcherThread.interrupt();
+            watcherThread = null;
+        }
+    }
+
+    private void precompileAll() throws IOException {
+        List<String> names = listTemplateNames(directory);
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(names.size(), Runtime.getRuntime().availableProcessors())));
+        try {
+            List<Future<?>> futures = new ArrayList<>(names.size());
+            for (String name : names) {
+                futures.add(pool.submit(() -> compile(name, false)));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while compiling templates", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Error compiling templates", e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    // Parses the file again and publishes the new version; a broken edit keeps the last good version
+    private void compile(String name, boolean force) {
+        Path file = directory.resolve(name);
+        try {
+            long modified = Files.getLastModifiedTime(file).toMillis();
+            Long previous = lastModified.get(name);
+            if (!force && previous != null && previous == modified && templates.containsKey(name)) {
+                return;
+            }
+            configuration.removeTemplateFromCache(name);
+            Template template = configuration.getTemplate(name);
+            trackDependencies(name, template);
+            templates.put(name, template);
+            lastModified.put(name, modified);
+            failures.remove(name);
+        } catch (Exception e) {
+            failures.put(name, e);
+            logger.log(Level.WARNING, "Could not compile template " + name + ": " + e.getMessage());
+        }
+    }
+
+    // Loads included and imported libraries through the configuration cache so each is parsed only once
+    private void trackDependencies(String name, Template template) {
+        TemplateDependencyGraph.Dependencies scanned = TemplateDependencyGraph.scan(template);
+        dependencies.update(name, scanned);
+        for (String include : scanned.unresolved()) {
+            logger.log(Level.WARNING, "Template " + name + " is reloaded after any change, cannot resolve " + include);
+        }
+        for (String library : scanned.names()) {
+            if (!scannedLibraries.add(library)) continue;
+            try {
+                trackDependencies(library, configuration.getTemplate(library));
+            } catch (Exception e) {
+                scannedLibraries.remove(library);
+                logger.log(Level.WARNING, "Could not load library " + library + " used by " + name + ": " + e.getMessage());
+            }
+        }
+    }
+
+    // Drops the changed template and everything depending on it, then recompiles the registered ones
+    private void invalidate(String name) {
+        Set<String> affected = dependencies.affectedBy(name);
+        for (String stale : affected) {
+            scannedLibraries.remove(stale);
+            try {
+                configuration.removeTemplateFromCache(stale);
+            } catch (IOException ignored) {
+            }
+        }
+        for (String stale : affected) {
+            if (Files.isRegularFile(directory.resolve(stale)) && isTemplateFile(directory.resolve(stale))) {
+                compile(stale, true);
+            }
+        }
+    }
+
+    private void remove(String name) {
+        templates.remove(name);
+        failures.remove(name);
+        lastModified.remove(name);
+        dependencies.remove(name);
+        try {
+            configuration.removeTemplateFromCache(name);
+        } catch (IOException ignored) {
+        }
+    }
+
+    private void watchLoop() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                WatchKey key = watchService.take();
+                Set<Path> changed = new LinkedHashSet<>();
+                Set<Path> deleted = new LinkedHashSet<>();
+                boolean overflow = false;
+                while (key != null) {
+                    overflow |= collectEvents(key, changed, deleted);
+                    key = watchService.poll(EVENT_COALESCE_MILLIS, TimeUnit.MILLISECONDS);
+                }
+                applyChanges(changed, deleted, overflow);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ClosedWatchServiceException e) {
+                return;
+            }
+        }
+    }
+
+    private boolean collectEvents(WatchKey key, Set<Path> changed, Set<Path> deleted) {
+        Path dir = watchedDirectories.get(key);
+        boolean overflow = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW || dir == null) {
+                overflow = true;
+                continue;
+            }
+            Path path = dir.resolve((Path) event.context());
+            if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+                deleted.add(path);
+                changed.remove(path);
+            } else {
+                changed.add(path);
+                deleted.remove(path);
+            }
+        }
+        if (!key.reset()) {
+            watchedDirectories.remove(key);
+        }
+        return overflow;
+    }
+
+    private void applyChanges(Set<Path> changed, Set<Path> deleted, boolean overflow) {
+        if (overflow) {
+            // Events were lost, so nothing cached can be trusted anymore
+            templates.keySet().stream()
+                    .filter(name -> !Files.isRegularFile(directory.resolve(name)))
+                    .toList()
+                    .forEach(this::remove);
+            scannedLibraries.clear();
+            configuration.clearTemplateCache();
+            try {
+                listTemplateNames(directory).forEach(name -> compile(name, true));
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Could not rescan template directory", e);
+            }
+            return;
+        }
+        for (Path path : deleted) {
+            String name = toName(path);
+            if (name == null) continue;
+            String prefix = name + "/";
+            templates.keySet().stream()
+                    .filter(n -> n.equals(name) || n.startsWith(prefix))
+                    .toList()
+                    .forEach(this::remove);
+            invalidate(name);
+        }
+        for (Path path : changed) {
+            String name = toName(path);
+            if (name == null) continue;
+            try {
+                if (Files.isDirectory(path)) {
+                    registerTree(path);
+                    if (path.startsWith(directory)) {
+                        listTemplateNames(path).forEach(n -> compile(n, false));
+                    }
+                } else if (isTemplateFile(path)) {
+                    invalidate(name);
+                }
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Could not reload " + path, e);
+            }
+        }
+    }
+
+    private void registerTree(Path root) throws IOException {
+        try (Stream<Path> dirs = Files.walk(root)) {
+            for (Path dir : dirs.filter(Files::isDirectory).toList()) {
+                WatchKey key = dir.register(watchService,
+                        StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY,
+                        StandardWatchEventKinds.ENTRY_DELETE);
+                watchedDirectories.put(key, dir);
+            }
+        }
+    }
+
+    private List<String> listTemplateNames(Path root) throws IOException {
+        try (Stream<Path> files = Files.walk(root)) {
+            return files.filter(Files::isRegularFile)
+                    .filter(TemplateRegistry::isTemplateFile)
+                    .map(path -> directory.relativize(path.toAbsolutePath().normalize()).toString().replace('\\', '/'))
+                    .toList();
+        }
+    }
+
+    private static boolean isTemplateFile(Path path) {
+        return path.getFileName().toString().endsWith(TEMPLATE_EXTENSION);
+    }
+
+    // Template name of a watched file, relative to the root (template or library directory) holding it
+    private String toName(Path path) {
+        Path normalized = path.toAbsolutePath().normalize();
+        for (Path root : roots) {
+            if (normalized.startsWith(root)) {
+                return root.relativize(normalized).toString().replace('\\', '/');
+            }
+        }
+        return null;
+    }
+}
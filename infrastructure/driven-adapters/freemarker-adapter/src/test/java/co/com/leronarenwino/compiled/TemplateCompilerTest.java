@@ -0,0 +1,108 @@
+/*
+ * This file is part of FreeMarker JSON/XML Toolkit.
+ *
+ * FreeMarker JSON/XML Toolkit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FreeMarker JSON/XML Toolkit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with FreeMarker JSON/XML Toolkit. If not, see <https://www.gnu.org/licenses/>.
+ */
+package co.com.leronarenwino.compiled;
+
+import co.com.leronarenwino.TemplateValidator;
+import co.com.leronarenwino.model.CompactObjectWrapper;
+import freemarker.template.Configuration;
+import freemarker.template.Template;
+import freemarker.template.TemplateExceptionHandler;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+// Renders a corpus through FreeMarker and through the compiled engine, which must agree on output and errors
+class TemplateCompilerTest {
+
+    private static Configuration configuration;
+    private static Map<String, Object> dataModel;
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        // As FreemarkerConfigProvider sets it up, without the settings files
+        configuration = new Configuration(Configuration.VERSION_2_3_34);
+        configuration.setObjectWrapper(new CompactObjectWrapper(Configuration.VERSION_2_3_34));
+        configuration.setTemplateExceptionHandler(TemplateExceptionHandler.RETHROW_HANDLER);
+        configuration.setLogTemplateExceptions(false);
+        configuration.setWrapUncheckedExceptions(true);
+        dataModel = TemplateValidator.parseJsonToDataModel(resource("data.json"));
+    }
+
+    static Stream<String> corpus() throws IOException {
+        return resource("corpus.txt").lines()
+                .filter(line -> !line.isBlank() && !line.startsWith("##"))
+                .map(line -> line.replace("\\n", "\n"));
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("corpus")
+    void rendersLikeFreeMarker(String source) throws Exception {
+        Template template = new Template("corpus", new StringReader(source), configuration);
+        CompiledProgram program = TemplateCompiler.compile(template);
+        assertEquals(outcome(() -> {
+            StringWriter out = new StringWriter();
+            template.process(dataModel, out);
+            return out.toString();
+        }), outcome(() -> {
+            StringWriter out = new StringWriter();
+            program.render(dataModel, out);
+            return out.toString();
+        }));
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @ValueSource(strings = {"${n?string.c}", "<#include \"x.ftl\">", "<#switch n><#case 5>five</#switch>",
+            "${.now}", "<@json value=h/>", "<#macro m><#nested></#macro><@m>x</@m>", "${n?abs}"})
+    void leavesTheRestToFreeMarker(String source) throws Exception {
+        Template template = new Template("corpus", new StringReader(source), configuration);
+        assertThrows(UnsupportedTemplateException.class, () -> TemplateCompiler.compile(template));
+    }
+
+    // The output, or the type of the error; FreeMarker's internal exception types count as their public parent
+    private static String outcome(Render render) {
+        try {
+            return "Output: " + render.run();
+        } catch (Exception e) {
+            Class<?> type = e.getClass();
+            while (type.getSimpleName().startsWith("_")) type = type.getSuperclass();
+            return "Error: " + type.getName();
+        }
+    }
+
+    private static String resource(String name) throws IOException {
+        try (InputStream in = TemplateCompilerTest.class.getResourceAsStream(name)) {
+            if (in == null) throw new IOException("Missing test resource " + name);
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private interface Render {
+        String run() throws Exception;
+    }
+}
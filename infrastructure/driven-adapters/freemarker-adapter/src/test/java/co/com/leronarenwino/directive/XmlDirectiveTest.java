@@ -0,0 +1,70 @@
+/*
+ * This file is part of FreeMarker JSON/XML Toolkit.
+ *
+ * FreeMarker JSON/XML Toolkit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FreeMarker JSON/XML Toolkit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with FreeMarker JSON/XML Toolkit. If not, see <https://www.gnu.org/licenses/>.
+ */
+package co.com.leronarenwino.directive;
+
+import freemarker.template.Configuration;
+import freemarker.template.Template;
+import freemarker.template.TemplateException;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class XmlDirectiveTest {
+
+    private static String render(String source) throws Exception {
+        Configuration configuration = new Configuration(Configuration.VERSION_2_3_34);
+        configuration.setSharedVariable(XmlDirective.NAME, new XmlDirective());
+        Map<String, Object> order = new LinkedHashMap<>();
+        order.put("id", 7);
+        order.put("note", null);
+        order.put("tags", Arrays.asList("a", null));
+        Map<String, Object> model = Map.of("order", order);
+        StringWriter out = new StringWriter();
+        new Template("test", new StringReader(source), configuration).process(model, out);
+        return out.toString();
+    }
+
+    @Test
+    void leavesOutNullMembersAsElements() throws Exception {
+        assertEquals("<root><id>7</id><tags><item>a</item><item/></tags></root>", render("<@xml value=order/>"));
+    }
+
+    @Test
+    void leavesOutNullMembersAsAttributes() throws Exception {
+        assertEquals("<root id=\"7\"><tags><item>a</item><item/></tags></root>",
+                render("<@xml value=order attributes=\"*\"/>"));
+    }
+
+    @Test
+    void closesAnEmptyRoot() throws Exception {
+        assertEquals("<root id=\"7\"/>", render("<@xml value={\"id\": 7} attributes=\"*\"/>"));
+    }
+
+    @Test
+    void undefinedValueIsAnError() {
+        TemplateException e = assertThrows(TemplateException.class, () -> render("<@xml value=nosuch/>"));
+        assertTrue(e.getMessage().contains("value is undefined or null"), e.getMessage());
+    }
+}
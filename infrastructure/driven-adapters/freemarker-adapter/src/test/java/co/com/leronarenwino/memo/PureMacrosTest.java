@@ -0,0 +1,98 @@
+/*
+ * This file is part of FreeMarker JSON/XML Toolkit.
+ *
+ * FreeMarker JSON/XML Toolkit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FreeMarker JSON/XML Toolkit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with FreeMarker JSON/XML Toolkit. If not, see <https://www.gnu.org/licenses/>.
+ */
+package co.com.leronarenwino.memo;
+
+import freemarker.template.Configuration;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringWriter;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PureMacrosTest {
+
+    private static final String FUNCTION = "<#-- @pure --><#function f x y=1+1><#return (x * y)?string></#function>";
+    private static final String MACRO = "<#-- @pure --><#macro m x>[${x}]</#macro>";
+
+    private Configuration configuration;
+    private PureMacroCache cache;
+
+    @BeforeEach
+    void setUp() {
+        configuration = new Configuration(Configuration.VERSION_2_3_34);
+        cache = new PureMacroCache(Set.of("named"), 100);
+        configuration.setSharedVariable(PureMacroCache.NAME, cache);
+    }
+
+    private String render(String source) throws Exception {
+        StringWriter out = new StringWriter();
+        PureMacros.parse("test", source, configuration).process(Map.of(), out);
+        return out.toString();
+    }
+
+    private PureMacroCache.Statistics statistics() {
+        assertEquals(1, cache.statistics().size());
+        return cache.statistics().get(0);
+    }
+
+    @Test
+    void memoizesAMarkedFunctionKeepingItsDefaults() throws Exception {
+        assertEquals("1.5 1.5 3", render(FUNCTION + "${f(0.75)} ${f(0.75)} ${f(1.5)}"));
+        assertEquals(3, statistics().calls());
+        assertEquals(1, statistics().renderHits());
+    }
+
+    @Test
+    void memoizesAMarkedMacro() throws Exception {
+        assertEquals("[a][a]", render(MACRO + "<@m x=\"a\"/><@m x=\"a\"/>"));
+        assertEquals(1, statistics().renderHits());
+    }
+
+    @Test
+    void memoizesByConfiguredName() throws Exception {
+        assertEquals("ab", render("<#if true><#macro named x>${x}</#macro></#if><@named x=\"a\"/><@named x=\"b\"/>"));
+        assertEquals(2, statistics().misses());
+    }
+
+    @Test
+    void keepsResultsAcrossRenders() throws Exception {
+        render(FUNCTION + "${f(0.75)}");
+        assertEquals("1.5", render(FUNCTION + "${f(0.75)}"));
+        assertEquals(1, statistics().sharedHits());
+    }
+
+    @Test
+    void settingsChangedByTheTemplateChangeTheKey() throws Exception {
+        assertEquals("1.5 1,5", render(FUNCTION + "${f(0.75)} <#setting locale=\"de_DE\">${f(0.75)}"));
+        assertEquals("[1.5]", render(MACRO + "<@m x=1.5/>"));
+        assertEquals("[1,50]", render("<#setting number_format=\"0.00\"><#setting locale=\"de_DE\">" + MACRO + "<@m x=1.5/>"));
+        // Every call missed: f is called once per locale, m once per locale and number format
+        assertTrue(cache.statistics().stream().allMatch(entry -> entry.misses() == entry.calls()));
+    }
+
+    @Test
+    void leavesMacrosUsingNestedAlone() {
+        String source = "<#-- @pure --><#macro m x>${x}<#nested></#macro><@m x=1>b</@m>";
+        assertSame(source, PureMacros.rewriteSource("test", source, configuration));
+        assertTrue(cache.statistics().isEmpty());
+    }
+}
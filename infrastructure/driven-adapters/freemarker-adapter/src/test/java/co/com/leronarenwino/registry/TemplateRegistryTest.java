@@ -0,0 +1,81 @@
+/*
+ * This file is part of FreeMarker JSON/XML Toolkit.
+ *
+ * FreeMarker JSON/XML Toolkit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FreeMarker JSON/XML Toolkit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with FreeMarker JSON/XML Toolkit. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package co.com.leronarenwino.registry;
+
+import co.com.leronarenwino.config.FreemarkerConfigProvider;
+import co.com.leronarenwino.memo.PureMacroCache;
+import freemarker.core.ParseException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TemplateRegistryTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void reportsTheParseErrorOfATemplateThatDoesNotCompile() throws IOException {
+        Files.writeString(directory.resolve("good.ftl"), "Hello ${name}");
+        Files.writeString(directory.resolve("bad.ftl"), "line one\n<#if x>never closed");
+        try (TemplateRegistry registry = new TemplateRegistry(directory, List.of())) {
+            registry.start();
+            assertEquals(Set.of("good.ftl"), registry.getTemplateNames());
+            ParseException error = assertThrows(ParseException.class, () -> registry.getTemplate("bad.ftl"));
+            assertEquals(2, error.getLineNumber());
+            assertThrows(ParseException.class, () -> registry.analyzeUsage("bad.ftl"));
+        }
+    }
+
+    @Test
+    void loadsOnlyTheNamedTemplate() throws Exception {
+        Files.writeString(directory.resolve("one.ftl"), "One ${name}");
+        Files.writeString(directory.resolve("bad.ftl"), "<#if");
+        try (TemplateRegistry registry = new TemplateRegistry(directory, List.of())) {
+            StringWriter out = new StringWriter();
+            registry.load("one.ftl").render(Map.of("name", "x"), out);
+            assertEquals("One x", out.toString());
+            assertEquals(Set.of("one.ftl"), registry.getTemplateNames());
+            assertThrows(ParseException.class, () -> registry.load("bad.ftl"));
+        }
+    }
+
+    @Test
+    void memoizesPureMacrosOfRegisteredTemplates() throws Exception {
+        Files.writeString(directory.resolve("pure.ftl"), "<#-- @pure --><#function registry_double x>"
+                + "<#return x * 2></#function>${registry_double(2)} ${registry_double(2)}");
+        try (TemplateRegistry registry = new TemplateRegistry(directory, List.of())) {
+            registry.load("pure.ftl");
+            assertEquals("4 4", registry.process("pure.ftl", Map.of()));
+        }
+        PureMacroCache cache = PureMacroCache.of(FreemarkerConfigProvider.getConfiguration());
+        assertTrue(cache.statistics().stream().anyMatch(entry ->
+                entry.macro().contains("registry_double") && entry.calls() == 2 && entry.renderHits() == 1));
+    }
+}
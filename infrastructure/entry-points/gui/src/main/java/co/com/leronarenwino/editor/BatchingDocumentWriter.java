@@ -0,0 +1,128 @@
+/*
+ * This file is part of FreeMarker JSON/XML Toolkit.
+ *
+ * FreeMarker JSON/XML Toolkit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FreeMarker JSON/XML Toolkit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with FreeMarker JSON/XML Toolkit. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package co.com.leronarenwino.editor;
+
+import javax.swing.*;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Writer;
+
+/**
+ * Writer for a background render that appends its output to a document on the EDT.
+ * <p>
+ * Writes are collected in a buffer that a Swing timer appends in one insert per
+ * tick, so the EDT sees a bounded number of document events however small the
+ * writes are. A writer that gets too far ahead waits for the EDT to catch up.
+ */
+public class BatchingDocumentWriter extends Writer {
+
+    private static final int TICK_MS = 40;
+    private static final int MAX_BUFFERED_CHARS = 4 * 1024 * 1024;
+
+    private final Document document;
+    private final Runnable onFinished;
+    private final Timer timer;
+    private final StringBuilder pending = new StringBuilder();
+    private boolean closed;
+    private boolean cancelled;
+
+    // Create on the EDT; onFinished runs there once the writer is closed and everything was appended
+    public BatchingDocumentWriter(Document document, Runnable onFinished) {
+        this.document = document;
+        this.onFinished = onFinished;
+        this.timer = new Timer(TICK_MS, e -> drain());
+        timer.setInitialDelay(0);
+        timer.start();
+    }
+
+    @Override
+    public void write(char[] buffer, int offset, int length) throws IOException {
+        synchronized (pending) {
+            awaitRoom();
+            pending.append(buffer, offset, length);
+        }
+    }
+
+    @Override
+    public void write(String text, int offset, int length) throws IOException {
+        synchronized (pending) {
+            awaitRoom();
+            pending.append(text, offset, offset + length);
+        }
+    }
+
+    private void awaitRoom() throws IOException {
+        while (pending.length() >= MAX_BUFFERED_CHARS && !cancelled) {
+            try {
+                pending.wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Render interrupted");
+            }
+        }
+        if (cancelled) throw new IOException("Render cancelled");
+        if (closed) throw new IOException("Writer closed");
+    }
+
+    @Override
+    public void flush() {
+        // The timer appends on its own schedule
+    }
+
+    @Override
+    public void close() {
+        synchronized (pending) {
+            closed = true;
+        }
+    }
+
+    // Stops appending; the rendering thread fails on its next write
+    public void cancel() {
+        timer.stop();
+        synchronized (pending) {
+            cancelled = true;
+            pending.setLength(0);
+            pending.notifyAll();
+        }
+    }
+
+    private void drain() {
+        String chunk;
+        boolean finished;
+        synchronized (pending) {
+            if (cancelled) return;
+            chunk = pending.isEmpty() ? null : pending.toString();
+            pending.setLength(0);
+            finished = closed;
+            pending.notifyAll();
+        }
+        if (chunk != null) {
+            try {
+                document.insertString(document.getLength(), chunk, null);
+            } catch (BadLocationException e) {
+                // Appending at the current length is always valid
+            }
+        }
+        if (finished) {
+            timer.stop();
+            onFinished.run();
+        }
+    }
+}
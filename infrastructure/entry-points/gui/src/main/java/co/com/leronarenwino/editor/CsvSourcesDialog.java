@@ -0,0 +1,189 @@
+/*
+ * This file is part of FreeMarker JSON/XML Toolkit.
+ *
+ * FreeMarker JSON/XML Toolkit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FreeMarker JSON/XML Toolkit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with FreeMarker JSON/XML Toolkit. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package co.com.leronarenwino.editor;
+
+import co.com.leronarenwino.datamodel.CsvTable;
+
+import javax.swing.*;
+import java.awt.*;
+import java.io.File;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Attaches CSV files to the data model as top-level variables, so CSV extracts
+ * can be rendered without converting them to JSON first. The rows stay in the
+ * files and are read each time a template lists them.
+ */
+public class CsvSourcesDialog extends JDialog {
+
+    private static final String[] DELIMITERS = {",", ";", "tab", "|"};
+
+    private final Map<String, CsvTable> sources;
+
+    private JPanel mainPanel;
+    private JPanel optionsPanel;
+    private JTextField nameField;
+    private JComboBox<String> delimiterCombo;
+    private DefaultListModel<String> sourcesModel;
+    private JList<String> sourcesList;
+    private JLabel statusLabel;
+
+    private JPanel buttonPanel;
+    private JButton addButton;
+    private JButton removeButton;
+    private JButton closeButton;
+
+    private SwingWorker<CsvTable, Void> worker;
+
+    public CsvSourcesDialog(JFrame parent, Map<String, CsvTable> sources) {
+        super(parent, "CSV Data Sources", true);
+        this.sources = sources;
+        setSize(520, 340);
+        setLocationRelativeTo(parent);
+
+        initComponents();
+        setComponents();
+        addComponents();
+    }
+
+    private void initComponents() {
+        mainPanel = new JPanel(new BorderLayout(0, 10));
+        optionsPanel = new JPanel(new GridLayout(0, 2, 5, 5));
+        nameField = new JTextField("rows");
+        delimiterCombo = new JComboBox<>(DELIMITERS);
+        sourcesModel = new DefaultListModel<>();
+        sourcesList = new JList<>(sourcesModel);
+        statusLabel = new JLabel("Each CSV file becomes a list of rows named as the variable");
+
+        buttonPanel = new JPanel(new FlowLayout(FlowLayout.CENTER));
+        addButton = new JButton("Add CSV file...");
+        removeButton = new JButton("Remove");
+        closeButton = new JButton("Close");
+    }
+
+    private void setComponents() {
+        mainPanel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+        setContentPane(mainPanel);
+
+        nameField.setToolTipText("Top-level variable holding the rows; replaces a data model member of the same name");
+        delimiterCombo.setEditable(true);
+        delimiterCombo.setToolTipText("Field delimiter, one character or \"tab\"");
+        sourcesList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        refreshSources();
+    }
+
+    private void addComponents() {
+        optionsPanel.add(new JLabel("Variable name:"));
+        optionsPanel.add(nameField);
+        optionsPanel.add(new JLabel("Delimiter:"));
+        optionsPanel.add(delimiterCombo);
+        buttonPanel.add(addButton);
+        buttonPanel.add(removeButton);
+        buttonPanel.add(closeButton);
+
+        JPanel centerPanel = new JPanel(new BorderLayout(0, 5));
+        centerPanel.add(new JScrollPane(sourcesList), BorderLayout.CENTER);
+        centerPanel.add(statusLabel, BorderLayout.SOUTH);
+
+        mainPanel.add(optionsPanel, BorderLayout.NORTH);
+        mainPanel.add(centerPanel, BorderLayout.CENTER);
+        mainPanel.add(buttonPanel, BorderLayout.SOUTH);
+
+        addButton.addActionListener(e -> addSource());
+        removeButton.addActionListener(e -> removeSource());
+        closeButton.addActionListener(e -> dispose());
+        sourcesList.addListSelectionListener(e -> removeButton.setEnabled(sourcesList.getSelectedIndex() >= 0));
+    }
+
+    private void addSource() {
+        String name = nameField.getText().strip();
+        if (!isIdentifier(name)) {
+            statusLabel.setText("The variable name must be a plain identifier, like rows or orders");
+            return;
+        }
+        char delimiter;
+        try {
+            delimiter = CsvTable.parseDelimiter(String.valueOf(delimiterCombo.getSelectedItem()));
+        } catch (IllegalArgumentException ex) {
+            statusLabel.setText(ex.getMessage());
+            return;
+        }
+        JFileChooser chooser = new JFileChooser();
+        if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) return;
+        File file = chooser.getSelectedFile();
+
+        addButton.setEnabled(false);
+        statusLabel.setText("Reading the header of " + file.getName() + "...");
+        worker = new SwingWorker<>() {
+            @Override
+            protected CsvTable doInBackground() throws Exception {
+                return CsvTable.open(file.toPath(), delimiter);
+            }
+
+            @Override
+            protected void done() {
+                if (worker != this) return;
+                worker = null;
+                addButton.setEnabled(true);
+                try {
+                    CsvTable previous = sources.put(name, get());
+                    if (previous != null) previous.close();
+                    statusLabel.setText("Attached " + file.getName() + " as " + name);
+                    refreshSources();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException ex) {
+                    statusLabel.setText("Could not read " + file.getName() + ": " + ex.getCause().getMessage());
+                }
+            }
+        };
+        worker.execute();
+    }
+
+    private void removeSource() {
+        int index = sourcesList.getSelectedIndex();
+        if (index < 0) return;
+        String name = sources.keySet().stream().skip(index).findFirst().orElse(null);
+        CsvTable table = sources.remove(name);
+        if (table != null) table.close();
+        statusLabel.setText("Removed " + name);
+        refreshSources();
+    }
+
+    private void refreshSources() {
+        sourcesModel.clear();
+        sources.forEach((name, table) -> sourcesModel.addElement(
+                name + " ← " + table.getFile().getFileName() + " (" + String.join(", ", table.getColumns()) + ")"));
+        removeButton.setEnabled(sourcesList.getSelectedIndex() >= 0);
+    }
+
+    private static boolean isIdentifier(String name) {
+        if (name.isEmpty() || !Character.isJavaIdentifierStart(name.charAt(0))) return false;
+        return name.chars().allMatch(Character::isJavaIdentifierPart);
+    }
+
+    @Override
+    public void dispose() {
+        if (worker != null) {
+            worker.cancel(true);
+            worker = null;
+        }
+        super.dispose();
+    }
+}
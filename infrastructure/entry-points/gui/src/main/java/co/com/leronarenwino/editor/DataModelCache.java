@@ -0,0 +1,118 @@
+/*
+ * This file is part of FreeMarker JSON/XML Toolkit.
+ *
+ * FreeMarker JSON/XML Toolkit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FreeMarker JSON/XML Toolkit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with FreeMarker JSON/XML Toolkit. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package co.com.leronarenwino.editor;
+
+import co.com.leronarenwino.cache.Fingerprint;
+import co.com.leronarenwino.datamodel.DataUsage;
+import org.fife.ui.rsyntaxtextarea.RSyntaxTextArea;
+
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.Document;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static co.com.leronarenwino.editor.TemplateUtils.parseDataModel;
+
+/**
+ * Keeps the parsed data model of the data area so rendering again after editing
+ * only the template does not parse the JSON again.
+ * <p>
+ * Edits just mark the cache dirty. The text is hashed on the next lookup, so
+ * undoing back to a recent version also finds its parsed model. Models are parsed
+ * down to what the template reads, so a template edit that reads other fields
+ * parses the text again.
+ */
+public class DataModelCache {
+
+    private static final int MAX_ENTRIES = 3;
+
+    private final RSyntaxTextArea textArea;
+    private final DocumentListener dirtyListener = new DocumentListener() {
+        @Override
+        public void insertUpdate(DocumentEvent e) {
+            dirty = true;
+        }
+
+        @Override
+        public void removeUpdate(DocumentEvent e) {
+            dirty = true;
+        }
+
+        @Override
+        public void changedUpdate(DocumentEvent e) {
+            // Attribute changes (highlighting) do not alter the text
+        }
+    };
+    private final Map<String, Map<String, Object>> parsedByHash = new LinkedHashMap<>(MAX_ENTRIES + 1, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Map<String, Object>> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    private boolean dirty = true;
+    private Map<String, Object> current;
+    private DataUsage currentUsage;
+    private String currentHash;
+
+    public DataModelCache(RSyntaxTextArea textArea) {
+        this.textArea = textArea;
+        textArea.getDocument().addDocumentListener(dirtyListener);
+        textArea.addPropertyChangeListener("document", e -> {
+            if (e.getOldValue() instanceof Document old) {
+                old.removeDocumentListener(dirtyListener);
+            }
+            if (e.getNewValue() instanceof Document replacement) {
+                replacement.addDocumentListener(dirtyListener);
+            }
+            dirty = true;
+        });
+    }
+
+    // Parses only what the usage lists; each usage of the same text is kept as its own entry
+    public Map<String, Object> getDataModel(DataUsage usage) throws Exception {
+        if (!dirty && current != null && usage.equals(currentUsage)) {
+            return current;
+        }
+        // Copied once: getText copies the whole document
+        String text = dirty || currentHash == null ? textArea.getText().trim() : null;
+        if (text != null) {
+            currentHash = Fingerprint.ofText(text);
+        }
+        String key = currentHash + ':' + usage;
+        Map<String, Object> model = parsedByHash.get(key);
+        if (model == null) {
+            if (text == null) text = textArea.getText().trim();
+            model = parseDataModel(text, usage);
+            parsedByHash.put(key, model);
+        }
+        current = model;
+        currentUsage = usage;
+        dirty = false;
+        return model;
+    }
+
+    public void clear() {
+        parsedByHash.clear();
+        current = null;
+        currentUsage = null;
+        currentHash = null;
+        dirty = true;
+    }
+}
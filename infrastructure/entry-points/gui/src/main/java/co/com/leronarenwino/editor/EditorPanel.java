@@ -21,9 +21,17 @@ import co.com.leronarenwino.utils.ButtonStyleUtil;
 import co.com.leronarenwino.utils.CaretUtil;
 import co.com.leronarenwino.utils.FindReplacePanel;
 import org.fife.ui.rsyntaxtextarea.RSyntaxTextArea;
+import org.fife.ui.rsyntaxtextarea.SyntaxConstants;
 import org.fife.ui.rtextarea.RTextScrollPane;
+import utils.SettingsSingleton;
 
 import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.AbstractDocument;
+import javax.swing.text.AttributeSet;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.DocumentFilter;
 import java.awt.*;
 
 public abstract class EditorPanel extends JPanel {
@@ -38,6 +46,18 @@ public abstract class EditorPanel extends JPanel {
     protected JButton toggleWrapButton;
     protected boolean isWrapEnabled = false;
 
+    // Large-document mode: the features it turns off and their settings before it did
+    private static final double LARGE_DOCUMENT_RESTORE_RATIO = 0.8;
+    protected JLabel largeDocumentBanner;
+    private boolean largeDocumentMode = false;
+    private boolean largeDocumentCheckPending = false;
+    private String savedSyntaxStyle;
+    private boolean savedCodeFolding;
+    private boolean savedLineNumbers;
+    private boolean savedFoldIndicator;
+    private boolean savedBracketMatching;
+    private boolean savedMarkOccurrences;
+
     public EditorPanel(String labelText) {
         setLayout(new BorderLayout());
         textArea = new RSyntaxTextArea();
@@ -61,6 +81,12 @@ public abstract class EditorPanel extends JPanel {
         centerPanel.add(findReplacePanel, BorderLayout.NORTH);
         centerPanel.add(scrollPane, BorderLayout.CENTER);
 
+        largeDocumentBanner = new JLabel();
+        largeDocumentBanner.setBorder(BorderFactory.createEmptyBorder(2, 5, 2, 5));
+        largeDocumentBanner.setForeground(Color.GRAY);
+        largeDocumentBanner.setVisible(false);
+        centerPanel.add(largeDocumentBanner, BorderLayout.SOUTH);
+
         // Initialize wrap button
         toggleWrapButton = createStyledButton("→", "Toggle line wrap", ButtonStyleUtil.ButtonStyle.SECONDARY);
         toggleWrapButton.setToolTipText("Toggle line wrap");
@@ -76,6 +102,7 @@ public abstract class EditorPanel extends JPanel {
         add(bottomPanel, BorderLayout.EAST);
 
         textArea.addCaretListener(e -> updateCaretPosition());
+        addLargeDocumentCheck();
         addFindKeyBinding();
         addReplaceKeyBinding();
         addEscapeKeyBinding();
@@ -95,7 +122,115 @@ public abstract class EditorPanel extends JPanel {
     protected abstract void addComponents();
 
     private void updateCaretPosition() {
-        CaretUtil.updateCaretPosition(textArea, positionLabel);
+        if (largeDocumentMode) {
+            CaretUtil.updateCaretOffset(textArea, positionLabel);
+        } else {
+            CaretUtil.updateCaretPosition(textArea, positionLabel);
+        }
+    }
+
+    private void addLargeDocumentCheck() {
+        // Growing past the threshold switches before the text goes in, so a large paste is never highlighted or folded
+        if (textArea.getDocument() instanceof AbstractDocument document && document.getDocumentFilter() == null) {
+            document.setDocumentFilter(new DocumentFilter() {
+                @Override
+                public void insertString(FilterBypass fb, int offset, String text, AttributeSet attr) throws BadLocationException {
+                    beforeInsert(fb.getDocument().getLength() + (text == null ? 0 : text.length()));
+                    super.insertString(fb, offset, text, attr);
+                }
+
+                @Override
+                public void replace(FilterBypass fb, int offset, int length, String text, AttributeSet attrs) throws BadLocationException {
+                    beforeInsert(fb.getDocument().getLength() - length + (text == null ? 0 : text.length()));
+                    super.replace(fb, offset, length, text, attrs);
+                }
+            });
+        }
+        textArea.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                scheduleLargeDocumentCheck();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                scheduleLargeDocumentCheck();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                // Attribute changes do not alter the size
+            }
+        });
+    }
+
+    private void beforeInsert(int newLength) {
+        long threshold = SettingsSingleton.getLargeDocumentThreshold();
+        if (!largeDocumentMode && threshold > 0 && newLength > threshold && SwingUtilities.isEventDispatchThread()) {
+            enterLargeDocumentMode(newLength);
+        }
+    }
+
+    // The syntax style cannot change while the document notifies its listeners, so switch afterwards
+    private void scheduleLargeDocumentCheck() {
+        if (largeDocumentCheckPending) return;
+        largeDocumentCheckPending = true;
+        SwingUtilities.invokeLater(() -> {
+            largeDocumentCheckPending = false;
+            updateLargeDocumentMode();
+        });
+    }
+
+    private void updateLargeDocumentMode() {
+        long threshold = SettingsSingleton.getLargeDocumentThreshold();
+        int length = textArea.getDocument().getLength();
+        if (threshold <= 0) {
+            if (largeDocumentMode) exitLargeDocumentMode();
+        } else if (!largeDocumentMode && length > threshold) {
+            enterLargeDocumentMode(length);
+        } else if (largeDocumentMode && length < threshold * LARGE_DOCUMENT_RESTORE_RATIO) {
+            // Restore only well below the threshold so edits around it do not toggle back and forth
+            exitLargeDocumentMode();
+        }
+    }
+
+    private void enterLargeDocumentMode(int length) {
+        largeDocumentMode = true;
+        savedSyntaxStyle = textArea.getSyntaxEditingStyle();
+        savedCodeFolding = textArea.isCodeFoldingEnabled();
+        savedLineNumbers = scrollPane.getLineNumbersEnabled();
+        savedFoldIndicator = scrollPane.isFoldIndicatorEnabled();
+        savedBracketMatching = textArea.isBracketMatchingEnabled();
+        savedMarkOccurrences = textArea.getMarkOccurrences();
+
+        textArea.setSyntaxEditingStyle(SyntaxConstants.SYNTAX_STYLE_NONE);
+        textArea.setCodeFoldingEnabled(false);
+        textArea.setBracketMatchingEnabled(false);
+        textArea.setMarkOccurrences(false);
+        scrollPane.setFoldIndicatorEnabled(false);
+        scrollPane.setLineNumbersEnabled(false);
+
+        largeDocumentBanner.setText(String.format("Large document (%.1f MB): syntax highlighting, folding and line numbers are off",
+                length / (1024.0 * 1024.0)));
+        largeDocumentBanner.setVisible(true);
+        updateCaretPosition();
+    }
+
+    private void exitLargeDocumentMode() {
+        largeDocumentMode = false;
+        textArea.setSyntaxEditingStyle(savedSyntaxStyle);
+        textArea.setCodeFoldingEnabled(savedCodeFolding);
+        textArea.setBracketMatchingEnabled(savedBracketMatching);
+        textArea.setMarkOccurrences(savedMarkOccurrences);
+        scrollPane.setLineNumbersEnabled(savedLineNumbers);
+        scrollPane.setFoldIndicatorEnabled(savedFoldIndicator);
+
+        largeDocumentBanner.setVisible(false);
+        updateCaretPosition();
+    }
+
+    public boolean isLargeDocumentMode() {
+        return largeDocumentMode;
     }
 
     public RSyntaxTextArea getTextArea() {
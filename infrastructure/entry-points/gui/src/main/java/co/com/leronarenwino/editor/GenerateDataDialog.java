@@ -0,0 +1,165 @@
+/*
+ * This file is part of FreeMarker JSON/XML Toolkit.
+ *
+ * FreeMarker JSON/XML Toolkit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FreeMarker JSON/XML Toolkit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with FreeMarker JSON/XML Toolkit. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package co.com.leronarenwino.editor;
+
+import co.com.leronarenwino.generator.DataGenerator;
+import co.com.leronarenwino.generator.Shape;
+import co.com.leronarenwino.generator.ShapeInference;
+
+import javax.swing.*;
+import java.awt.*;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Writes synthetic data models shaped like the JSON in the data panel to a file,
+ * for trying templates with inputs from kilobytes to gigabytes.
+ */
+public class GenerateDataDialog extends JDialog {
+
+    private final String sampleJson;
+
+    private JPanel mainPanel;
+    private JPanel optionsPanel;
+    private JSpinner seedSpinner;
+    private JSpinner arrayLengthSpinner;
+    private JSpinner depthSpinner;
+    private JSpinner stringLengthSpinner;
+    private JSpinner sizeSpinner;
+    private JLabel statusLabel;
+
+    private JPanel buttonPanel;
+    private JButton generateButton;
+    private JButton closeButton;
+
+    private SwingWorker<Long, Void> worker;
+
+    public GenerateDataDialog(JFrame parent, String sampleJson) {
+        super(parent, "Generate Test Data", true);
+        this.sampleJson = sampleJson;
+        setSize(420, 300);
+        setResizable(false);
+        setLocationRelativeTo(parent);
+
+        initComponents();
+        setComponents();
+        addComponents();
+    }
+
+    private void initComponents() {
+        mainPanel = new JPanel(new BorderLayout(0, 10));
+        optionsPanel = new JPanel(new GridLayout(0, 2, 5, 5));
+        seedSpinner = new JSpinner(new SpinnerNumberModel(Long.valueOf(42), Long.valueOf(Long.MIN_VALUE), Long.valueOf(Long.MAX_VALUE), Long.valueOf(1)));
+        arrayLengthSpinner = new JSpinner(new SpinnerNumberModel(0, 0, Integer.MAX_VALUE, 10));
+        depthSpinner = new JSpinner(new SpinnerNumberModel(0, 0, 1000, 1));
+        stringLengthSpinner = new JSpinner(new SpinnerNumberModel(0, 0, 1_000_000, 1));
+        sizeSpinner = new JSpinner(new SpinnerNumberModel(0, 0, 1_000_000, 10));
+        statusLabel = new JLabel("Shape taken from the data panel");
+
+        buttonPanel = new JPanel(new FlowLayout(FlowLayout.CENTER));
+        generateButton = new JButton("Generate...");
+        closeButton = new JButton("Close");
+    }
+
+    private void setComponents() {
+        mainPanel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+        setContentPane(mainPanel);
+
+        arrayLengthSpinner.setToolTipText("Elements per array, 0 keeps the sample lengths");
+        depthSpinner.setToolTipText("Deeper objects and arrays are left empty, 0 for no limit");
+        stringLengthSpinner.setToolTipText("Length of free-text strings, 0 keeps the sample lengths");
+        sizeSpinner.setToolTipText("Grows the outermost array until the file reaches this size, 0 for none");
+    }
+
+    private void addComponents() {
+        optionsPanel.add(new JLabel("Seed:"));
+        optionsPanel.add(seedSpinner);
+        optionsPanel.add(new JLabel("Array length:"));
+        optionsPanel.add(arrayLengthSpinner);
+        optionsPanel.add(new JLabel("Max depth:"));
+        optionsPanel.add(depthSpinner);
+        optionsPanel.add(new JLabel("String length:"));
+        optionsPanel.add(stringLengthSpinner);
+        optionsPanel.add(new JLabel("Target size (MB):"));
+        optionsPanel.add(sizeSpinner);
+        buttonPanel.add(generateButton);
+        buttonPanel.add(closeButton);
+
+        mainPanel.add(optionsPanel, BorderLayout.NORTH);
+        mainPanel.add(statusLabel, BorderLayout.CENTER);
+        mainPanel.add(buttonPanel, BorderLayout.SOUTH);
+
+        generateButton.addActionListener(e -> generate());
+        closeButton.addActionListener(e -> dispose());
+    }
+
+    private void generate() {
+        Shape shape;
+        try {
+            shape = ShapeInference.fromSampleJson(sampleJson);
+        } catch (Exception ex) {
+            statusLabel.setText("The data panel does not hold valid JSON");
+            return;
+        }
+        JFileChooser chooser = new JFileChooser();
+        chooser.setSelectedFile(new File("data.json"));
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) return;
+        File file = chooser.getSelectedFile();
+        DataGenerator.Options options = new DataGenerator.Options(
+                ((Number) seedSpinner.getValue()).longValue(),
+                (Integer) arrayLengthSpinner.getValue(),
+                (Integer) depthSpinner.getValue(),
+                (Integer) stringLengthSpinner.getValue(),
+                ((Integer) sizeSpinner.getValue()) * 1024L * 1024L);
+
+        generateButton.setEnabled(false);
+        statusLabel.setText("Writing " + file.getName() + "...");
+        worker = new SwingWorker<>() {
+            @Override
+            protected Long doInBackground() throws Exception {
+                try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file.toPath()), 1 << 16)) {
+                    return DataGenerator.generate(shape, options, out);
+                }
+            }
+
+            @Override
+            protected void done() {
+                generateButton.setEnabled(true);
+                try {
+                    statusLabel.setText(String.format("Wrote %,d bytes to %s", get(), file.getName()));
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException ex) {
+                    statusLabel.setText("Could not write " + file.getName() + ": " + ex.getCause().getMessage());
+                }
+            }
+        };
+        worker.execute();
+    }
+
+    @Override
+    public void dispose() {
+        if (worker != null) {
+            worker.cancel(true);
+        }
+        super.dispose();
+    }
+}
@@ -0,0 +1,296 @@
+/*
+ * This file is part of FreeMarker JSON/XML Toolkit.
+ *
+ * FreeMarker JSON/XML Toolkit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FreeMarker JSON/XML Toolkit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with FreeMarker JSON/XML Toolkit. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package co.com.leronarenwino.editor;
+
+import co.com.leronarenwino.diff.GoldenComparator;
+import co.com.leronarenwino.diff.GoldenComparator.Difference;
+import co.com.leronarenwino.diff.GoldenComparator.Mode;
+import co.com.leronarenwino.diff.GoldenComparator.Result;
+import org.fife.ui.rsyntaxtextarea.RSyntaxTextArea;
+import org.fife.ui.rsyntaxtextarea.SyntaxConstants;
+import org.fife.ui.rtextarea.RTextScrollPane;
+import utils.SettingsSingleton;
+
+import javax.swing.*;
+import javax.swing.text.BadLocationException;
+import java.awt.*;
+import java.awt.event.KeyEvent;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Compares the rendered output with a known-good output and lists the differences.
+ * <p>
+ * Selecting a difference, or stepping with Previous/Next (F8 and Shift+F8), moves
+ * both the golden text and the output panel to the lines involved. The comparison
+ * runs in the background so large outputs do not block the editor.
+ */
+public class GoldenComparisonDialog extends JDialog {
+
+    private final RSyntaxTextArea outputArea;
+
+    private JPanel mainPanel;
+    private JPanel toolbarPanel;
+    private JButton loadButton;
+    private JComboBox<Mode> modeCombo;
+    private JButton compareButton;
+    private JLabel statusLabel;
+
+    private RSyntaxTextArea goldenArea;
+    private RTextScrollPane goldenScrollPane;
+    private DefaultListModel<Difference> differencesModel;
+    private JList<Difference> differencesList;
+    private JSplitPane splitPane;
+
+    private JPanel navigationPanel;
+    private JButton previousButton;
+    private JButton nextButton;
+
+    private SwingWorker<?, Void> worker;
+
+    public GoldenComparisonDialog(JFrame parent, RSyntaxTextArea outputArea) {
+        super(parent, "Compare with Golden Output", false);
+        this.outputArea = outputArea;
+        setSize(900, 600);
+        setLocationRelativeTo(parent);
+
+        initComponents();
+        setComponents();
+        addComponents();
+    }
+
+    private void initComponents() {
+        mainPanel = new JPanel(new BorderLayout(0, 10));
+        toolbarPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        loadButton = new JButton("Load file...");
+        modeCombo = new JComboBox<>(Mode.values());
+        compareButton = new JButton("Compare");
+        statusLabel = new JLabel("Paste or load the expected output, then compare");
+
+        goldenArea = new RSyntaxTextArea();
+        goldenScrollPane = new RTextScrollPane(goldenArea);
+        differencesModel = new DefaultListModel<>();
+        differencesList = new JList<>(differencesModel);
+        splitPane = new JSplitPane(JSplitPane.VERTICAL_SPLIT, true);
+
+        navigationPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        previousButton = new JButton("Previous");
+        nextButton = new JButton("Next");
+    }
+
+    private void setComponents() {
+        mainPanel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+        setContentPane(mainPanel);
+
+        goldenArea.setSyntaxEditingStyle(SyntaxConstants.SYNTAX_STYLE_JSON);
+        goldenArea.setCodeFoldingEnabled(true);
+        UiConfig.applyRSyntaxTheme(goldenArea, "/themes/" + SettingsSingleton.getRSyntaxTheme(), this);
+        modeCombo.setToolTipText("AUTO picks JSON or XML from the first character, otherwise compares lines");
+        differencesList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        previousButton.setToolTipText("Previous difference (Shift+F8)");
+        nextButton.setToolTipText("Next difference (F8)");
+
+        splitPane.setTopComponent(goldenScrollPane);
+        splitPane.setBottomComponent(new JScrollPane(differencesList));
+        splitPane.setResizeWeight(0.6);
+        splitPane.setContinuousLayout(true);
+        splitPane.setBorder(null);
+        updateNavigation();
+    }
+
+    private void addComponents() {
+        toolbarPanel.add(loadButton);
+        toolbarPanel.add(modeCombo);
+        toolbarPanel.add(compareButton);
+        toolbarPanel.add(statusLabel);
+        navigationPanel.add(previousButton);
+        navigationPanel.add(nextButton);
+
+        mainPanel.add(toolbarPanel, BorderLayout.NORTH);
+        mainPanel.add(splitPane, BorderLayout.CENTER);
+        mainPanel.add(navigationPanel, BorderLayout.SOUTH);
+
+        loadButton.addActionListener(e -> loadGoldenFile());
+        compareButton.addActionListener(e -> compare());
+        previousButton.addActionListener(e -> step(-1));
+        nextButton.addActionListener(e -> step(1));
+        differencesList.addListSelectionListener(e -> {
+            if (!e.getValueIsAdjusting()) {
+                showDifference(differencesList.getSelectedValue());
+                updateNavigation();
+            }
+        });
+
+        JRootPane root = getRootPane();
+        root.registerKeyboardAction(e -> step(1), KeyStroke.getKeyStroke(KeyEvent.VK_F8, 0),
+                JComponent.WHEN_IN_FOCUSED_WINDOW);
+        root.registerKeyboardAction(e -> step(-1), KeyStroke.getKeyStroke(KeyEvent.VK_F8, KeyEvent.SHIFT_DOWN_MASK),
+                JComponent.WHEN_IN_FOCUSED_WINDOW);
+    }
+
+    private void loadGoldenFile() {
+        JFileChooser chooser = new JFileChooser();
+        if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) return;
+        File file = chooser.getSelectedFile();
+        setBusy("Loading " + file.getName() + "...");
+        SwingWorker<String, Void> loader = new SwingWorker<>() {
+            @Override
+            protected String doInBackground() throws Exception {
+                return Files.readString(file.toPath());
+            }
+
+            @Override
+            protected void done() {
+                if (worker != this) return;
+                worker = null;
+                try {
+                    setGoldenText(get());
+                    statusLabel.setText("Loaded " + file.getName());
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException ex) {
+                    statusLabel.setText("Could not read " + file.getName() + ": " + ex.getCause().getMessage());
+                }
+                setControlsEnabled(true);
+            }
+        };
+        worker = loader;
+        loader.execute();
+    }
+
+    private void setGoldenText(String text) {
+        // Large golden files are shown without highlighting, like the editors do
+        boolean large = text.length() >= SettingsSingleton.getLargeDocumentThreshold();
+        goldenArea.setSyntaxEditingStyle(large ? SyntaxConstants.SYNTAX_STYLE_NONE : styleOf(GoldenComparator.detect(text)));
+        goldenArea.setCodeFoldingEnabled(!large);
+        goldenArea.setText(text);
+        goldenArea.setCaretPosition(0);
+        goldenArea.discardAllEdits();
+    }
+
+    private static String styleOf(Mode mode) {
+        return switch (mode) {
+            case JSON -> SyntaxConstants.SYNTAX_STYLE_JSON;
+            case XML -> SyntaxConstants.SYNTAX_STYLE_XML;
+            default -> SyntaxConstants.SYNTAX_STYLE_NONE;
+        };
+    }
+
+    private void compare() {
+        String golden = goldenArea.getText();
+        String output = outputArea.getText();
+        Mode mode = (Mode) modeCombo.getSelectedItem();
+        differencesModel.clear();
+        setBusy("Comparing...");
+        SwingWorker<Result, Void> comparison = new SwingWorker<>() {
+            @Override
+            protected Result doInBackground() {
+                return GoldenComparator.compare(golden, output, mode);
+            }
+
+            @Override
+            protected void done() {
+                if (worker != this) return;
+                worker = null;
+                try {
+                    showResult(get());
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException ex) {
+                    statusLabel.setText("Comparison failed: " + ex.getCause().getMessage());
+                }
+                setControlsEnabled(true);
+            }
+        };
+        worker = comparison;
+        comparison.execute();
+    }
+
+    private void showResult(Result result) {
+        differencesModel.addAll(result.differences());
+        String summary = result.isEqual()
+                ? "Output matches (" + result.mode() + ")"
+                : result.differences().size() + (result.truncated() ? "+" : "") + " difference(s) (" + result.mode() + ")";
+        statusLabel.setText(summary);
+        statusLabel.setToolTipText(result.note());
+        if (!result.isEqual()) {
+            differencesList.setSelectedIndex(0);
+        }
+        updateNavigation();
+    }
+
+    private void step(int direction) {
+        int size = differencesModel.size();
+        if (size == 0) return;
+        int index = differencesList.getSelectedIndex() + direction;
+        if (index < 0 || index >= size) return;
+        differencesList.setSelectedIndex(index);
+        differencesList.ensureIndexIsVisible(index);
+    }
+
+    private void showDifference(Difference difference) {
+        if (difference == null) return;
+        selectLine(goldenArea, difference.expectedLine());
+        selectLine(outputArea, difference.actualLine());
+    }
+
+    private static void selectLine(RSyntaxTextArea area, int line) {
+        if (line <= 0 || line > area.getLineCount()) return;
+        try {
+            int start = area.getLineStartOffset(line - 1);
+            int end = area.getLineEndOffset(line - 1);
+            area.setCaretPosition(start);
+            area.moveCaretPosition(Math.max(start, end - 1));
+            area.requestFocusInWindow();
+        } catch (BadLocationException e) {
+            // Line checked against the line count above
+        }
+    }
+
+    private void setBusy(String status) {
+        if (worker != null) {
+            worker.cancel(true);
+            worker = null;
+        }
+        statusLabel.setText(status);
+        statusLabel.setToolTipText(null);
+        setControlsEnabled(false);
+    }
+
+    private void setControlsEnabled(boolean enabled) {
+        loadButton.setEnabled(enabled);
+        compareButton.setEnabled(enabled);
+        modeCombo.setEnabled(enabled);
+    }
+
+    private void updateNavigation() {
+        int index = differencesList.getSelectedIndex();
+        previousButton.setEnabled(index > 0);
+        nextButton.setEnabled(index < differencesModel.size() - 1);
+    }
+
+    @Override
+    public void dispose() {
+        if (worker != null) {
+            worker.cancel(true);
+            worker = null;
+        }
+        super.dispose();
+    }
+}
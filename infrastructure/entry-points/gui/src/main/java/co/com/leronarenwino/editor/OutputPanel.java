@@ -17,14 +17,21 @@
 
 package co.com.leronarenwino.editor;
 
+import co.com.leronarenwino.diff.LineDiff;
+import co.com.leronarenwino.diff.MyersDiff;
 import co.com.leronarenwino.utils.ButtonStyleUtil;
 import org.fife.ui.rsyntaxtextarea.SyntaxConstants;
 
 import javax.swing.*;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
 import java.awt.*;
+import java.util.List;
 
 public class OutputPanel extends EditorPanel {
     private static OutputPanel instance;
+    // Beyond this many changed regions a single setText is cheaper than patching
+    private static final int MAX_PATCH_EDITS = 2000;
     private JButton processTemplateButton;
     private JButton formatJsonButton;
     private JButton clearOutputButton;
@@ -84,6 +91,35 @@ public class OutputPanel extends EditorPanel {
         return processTemplateButton;
     }
 
+    // Turns the shown output into the diff's new text by editing only the changed lines, keeping scroll and folds
+    public void applyDiff(LineDiff diff) {
+        Document document = textArea.getDocument();
+        List<MyersDiff.Edit> edits = diff.getEdits();
+        if (edits.isEmpty()) return;
+        if (document.getLength() != diff.getOldText().length() || edits.size() > MAX_PATCH_EDITS) {
+            textArea.setText(diff.getNewText().toString());
+            return;
+        }
+        textArea.beginAtomicEdit();
+        try {
+            // Back to front, so the offsets of the edits still to apply stay valid
+            for (int i = edits.size() - 1; i >= 0; i--) {
+                MyersDiff.Edit edit = edits.get(i);
+                int start = diff.oldOffset(edit.oldStart());
+                int end = diff.oldOffset(edit.oldEnd());
+                document.remove(start, end - start);
+                if (!edit.isDelete()) {
+                    document.insertString(start, diff.replacementOf(edit).toString(), null);
+                }
+            }
+        } catch (BadLocationException e) {
+            textArea.setText(diff.getNewText().toString());
+        } finally {
+            textArea.endAtomicEdit();
+        }
+        textArea.discardAllEdits();
+    }
+
     @Override
     protected void addReplaceKeyBinding() {
         // No agregar binding para Ctrl+R - deshabilitar reemplazo en OutputPanel
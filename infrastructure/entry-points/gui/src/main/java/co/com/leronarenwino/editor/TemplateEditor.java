@@ -18,7 +18,13 @@
 package co.com.leronarenwino.editor;
 
 import co.com.leronarenwino.FreemarkerProcessor;
+import co.com.leronarenwino.TemplateProcessor;
 import co.com.leronarenwino.TemplateValidator;
+import co.com.leronarenwino.cache.CachingTemplateProcessor;
+import co.com.leronarenwino.cache.RenderCache;
+import co.com.leronarenwino.config.FreemarkerConfigProvider;
+import co.com.leronarenwino.datamodel.CsvTable;
+import co.com.leronarenwino.diff.LineDiff;
 import co.com.leronarenwino.settings.Settings;
 import co.com.leronarenwino.utils.ButtonStyleUtil;
 import org.fife.ui.rsyntaxtextarea.RSyntaxTextArea;
@@ -26,12 +32,14 @@ import utils.SettingsSingleton;
 
 import javax.swing.*;
 import java.awt.*;
+import java.io.StringWriter;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ExecutionException;
 
 import static co.com.leronarenwino.TemplateValidator.formatFreemarkerTemplateCombined;
 import static co.com.leronarenwino.editor.TemplateUtils.formatJsonSafely;
-import static co.com.leronarenwino.editor.TemplateUtils.parseDataModel;
 import static co.com.leronarenwino.settings.Settings.PROPERTIES_FILE;
 import static utils.PropertiesManager.loadProperties;
 import static utils.SettingsSingleton.defaultAppProperties;
@@ -48,6 +56,10 @@ public class TemplateEditor extends JFrame {
     private JMenuItem openSettingsItem;
     private JMenu viewMenu;
     private JCheckBoxMenuItem toggleExpectedFieldsItem;
+    private JMenu toolsMenu;
+    private JMenuItem compareGoldenItem;
+    private JMenuItem generateDataItem;
+    private JMenuItem csvSourcesItem;
 
     // Panels for layout
     private JPanel columnsPanel;
@@ -62,6 +74,9 @@ public class TemplateEditor extends JFrame {
 
     // Components for data input
     private DataPanel dataPanel;
+    private DataModelCache dataModelCache;
+    // CSV files attached as top-level variables, by name
+    private final Map<String, CsvTable> csvSources = new LinkedHashMap<>();
 
     // Components for expected fields
     private ExpectedFieldsPanel expectedFieldsPanel;
@@ -76,7 +91,15 @@ public class TemplateEditor extends JFrame {
 
     private RSyntaxTextArea[] textAreas;
 
-    private final TemplateValidator templateValidator = new TemplateValidator(new FreemarkerProcessor());
+    // Kept between openings so the golden output does not have to be loaded again
+    private GoldenComparisonDialog goldenComparisonDialog;
+
+    private TemplateValidator templateValidator;
+    private RenderCache renderCache;
+
+    // Render in progress, streaming into the output panel
+    private SwingWorker<?, Void> renderWorker;
+    private BatchingDocumentWriter renderWriter;
 
 
     public TemplateEditor() {
@@ -94,6 +117,9 @@ public class TemplateEditor extends JFrame {
                 )
         );
 
+        // Template engine, optionally memoizing outputs
+        templateValidator = new TemplateValidator(createTemplateProcessor());
+
         String theme = SettingsSingleton.getTheme();
         try {
             switch (theme) {
@@ -134,6 +160,10 @@ public class TemplateEditor extends JFrame {
         openSettingsItem = new JMenuItem("Settings...");
         viewMenu = new JMenu("View");
         toggleExpectedFieldsItem = new JCheckBoxMenuItem("Show Expected Fields Panel", SettingsSingleton.isExpectedFieldsVisible());
+        toolsMenu = new JMenu("Tools");
+        compareGoldenItem = new JMenuItem("Compare with Golden Output...");
+        generateDataItem = new JMenuItem("Generate Test Data...");
+        csvSourcesItem = new JMenuItem("CSV Data Sources...");
 
         // Left, right, and options panels
         leftPanel = new JPanel();
@@ -145,6 +175,7 @@ public class TemplateEditor extends JFrame {
 
         // Data input
         dataPanel = DataPanel.getInstance();
+        dataModelCache = new DataModelCache(dataPanel.getTextArea());
 
         // Expected fields input
         expectedFieldsPanel = ExpectedFieldsPanel.getInstance();
@@ -213,7 +244,11 @@ public class TemplateEditor extends JFrame {
         fileMenu.add(exitItem);
         viewMenu.add(toggleExpectedFieldsItem);
         menuBar.add(fileMenu);
+        toolsMenu.add(compareGoldenItem);
+        toolsMenu.add(generateDataItem);
+        toolsMenu.add(csvSourcesItem);
         menuBar.add(viewMenu);
+        menuBar.add(toolsMenu);
 
         // Add columns panel components
         addLeftPanelComponents();
@@ -240,13 +275,20 @@ public class TemplateEditor extends JFrame {
             toggleExpectedFieldsPanel(visible);
         });
 
+        compareGoldenItem.addActionListener(e -> showGoldenComparison());
+        generateDataItem.addActionListener(e -> new GenerateDataDialog(this, dataPanel.getTextArea().getText()).setVisible(true));
+        csvSourcesItem.addActionListener(e -> new CsvSourcesDialog(this, csvSources).setVisible(true));
+
         // Button actions
         dataPanel.getValidateDataModelButton().addActionListener(e -> formatDataInputJson());
         templatePanel.getFormatTemplateButton().addActionListener(e -> formatTemplateInputArea());
         templatePanel.getSingleLineButton().addActionListener(e -> setTemplateToSingleLine());
         outputPanel.getProcessTemplateButton().addActionListener(e -> processTemplateOutput());
         outputPanel.getFormatJsonButton().addActionListener(e -> formatJsonOutput());
-        outputPanel.getClearOutputButton().addActionListener(e -> outputPanel.getTextArea().setText(""));
+        outputPanel.getClearOutputButton().addActionListener(e -> {
+            cancelRender();
+            outputPanel.getTextArea().setText("");
+        });
         expectedFieldsPanel.getValidateFieldsButton().addActionListener(e -> validateOutputFields());
 
         // Add to main panel
@@ -298,14 +340,125 @@ public class TemplateEditor extends JFrame {
     }
 
     private void processTemplateOutput() {
+        cancelRender();
         String templateContent = templatePanel.getTextArea().getText();
+        Map<String, Object> dataModel;
         try {
-            Map<String, Object> dataModel = getDataModelFromInput();
-            String output = templateValidator.processTemplate(templateContent, dataModel);
-            outputPanel.getTextArea().setText(output);
+            dataModel = getDataModelFromInput(templateContent);
         } catch (Exception ex) {
             outputPanel.getTextArea().setText("Error processing template: " + ex.getMessage());
+            return;
+        }
+
+        RSyntaxTextArea outputArea = outputPanel.getTextArea();
+        if (outputArea.getDocument().getLength() > 0) {
+            renderAndPatch(templateContent, dataModel, outputArea.getText());
+            return;
+        }
+
+        // Nothing shown yet: the output streams in while the template renders in the background
+        BatchingDocumentWriter writer = new BatchingDocumentWriter(outputArea.getDocument(), this::renderFinished);
+        SwingWorker<Void, Void> worker = new SwingWorker<>() {
+            @Override
+            protected Void doInBackground() throws Exception {
+                try {
+                    templateValidator.processTemplate(templateContent, dataModel, writer);
+                } finally {
+                    closeCsvSessions(dataModel);
+                }
+                // A failed render leaves the writer open, so done() reports the error instead
+                writer.close();
+                return null;
+            }
+
+            @Override
+            protected void done() {
+                if (isCancelled() || renderWorker != this) return;
+                try {
+                    get();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException ex) {
+                    cancelRender();
+                    Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+                    outputArea.setText("Error processing template: " + cause.getMessage());
+                }
+            }
+        };
+        renderWriter = writer;
+        renderWorker = worker;
+        worker.execute();
+    }
+
+    // Renders in the background and edits only the lines that differ from the output already shown
+    private void renderAndPatch(String templateContent, Map<String, Object> dataModel, String previousOutput) {
+        SwingWorker<LineDiff, Void> worker = new SwingWorker<>() {
+            @Override
+            protected LineDiff doInBackground() throws Exception {
+                StringWriter output = new StringWriter();
+                try {
+                    templateValidator.processTemplate(templateContent, dataModel, output);
+                } finally {
+                    closeCsvSessions(dataModel);
+                }
+                return LineDiff.compute(previousOutput, output.toString());
+            }
+
+            @Override
+            protected void done() {
+                if (isCancelled() || renderWorker != this) return;
+                renderWorker = null;
+                try {
+                    outputPanel.applyDiff(get());
+                    renderFinished();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException ex) {
+                    Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+                    outputPanel.getTextArea().setText("Error processing template: " + cause.getMessage());
+                }
+            }
+        };
+        renderWorker = worker;
+        worker.execute();
+    }
+
+    private void renderFinished() {
+        renderWorker = null;
+        renderWriter = null;
+        outputPanel.getTextArea().discardAllEdits();
+        if (renderCache != null) {
+            outputPanel.getProcessTemplateButton().setToolTipText("Evaluate the template with data (cache " + renderCache.getStats() + ")");
+        }
+    }
+
+    private void cancelRender() {
+        if (renderWriter != null) {
+            renderWriter.cancel();
+            renderWriter = null;
         }
+        if (renderWorker != null) {
+            renderWorker.cancel(true);
+            renderWorker = null;
+        }
+    }
+
+    private TemplateProcessor createTemplateProcessor() {
+        TemplateProcessor processor = new FreemarkerProcessor();
+        if (!SettingsSingleton.isRenderCacheEnabled()) {
+            return processor;
+        }
+        renderCache = new RenderCache(
+                Math.max(1, SettingsSingleton.getRenderCacheMaxMb()) * 1024 * 1024,
+                SettingsSingleton.getRenderCacheTtlSeconds() * 1000);
+        return new CachingTemplateProcessor(processor, renderCache, FreemarkerConfigProvider::getGeneration);
+    }
+
+    private void showGoldenComparison() {
+        if (goldenComparisonDialog == null) {
+            goldenComparisonDialog = new GoldenComparisonDialog(this, outputPanel.getTextArea());
+        }
+        goldenComparisonDialog.setVisible(true);
     }
 
     private void validateOutputFields() {
@@ -313,9 +466,20 @@ public class TemplateEditor extends JFrame {
         expectedFieldsPanel.validateFields(output);
     }
 
-    private Map<String, Object> getDataModelFromInput() throws Exception {
-        String json = dataPanel.getTextArea().getText().trim();
-        return parseDataModel(json);
+    // Parses only the data the template reads, then adds a session of each attached CSV file
+    private Map<String, Object> getDataModelFromInput(String templateContent) throws Exception {
+        Map<String, Object> dataModel = dataModelCache.getDataModel(templateValidator.analyzeUsage(templateContent));
+        if (csvSources.isEmpty()) return dataModel;
+        Map<String, Object> combined = new LinkedHashMap<>(dataModel);
+        csvSources.forEach((name, table) -> combined.put(name, table.session()));
+        return combined;
+    }
+
+    // Closes the files of listings the render left early, such as one ended by #break
+    private static void closeCsvSessions(Map<String, Object> dataModel) {
+        for (Object value : dataModel.values()) {
+            if (value instanceof CsvTable table) table.close();
+        }
     }
 
     private void formatJsonOutput() {
@@ -18,6 +18,7 @@
 package co.com.leronarenwino.editor;
 
 import co.com.leronarenwino.TemplateValidator;
+import co.com.leronarenwino.datamodel.DataUsage;
 import org.fife.ui.rsyntaxtextarea.RSyntaxTextArea;
 
 import javax.swing.*;
@@ -108,7 +109,7 @@ public class TemplateUtils {
         return TemplateValidator.validateFieldsPresentWithTypes(output, expectedFields);
     }
 
-    public static Map<String, Object> parseDataModel(String json) throws Exception {
-        return TemplateValidator.parseJsonToDataModel(json.isEmpty() ? "{}" : json);
+    public static Map<String, Object> parseDataModel(String json, DataUsage usage) throws Exception {
+        return TemplateValidator.parseJsonToDataModel(json.isEmpty() ? "{}" : json, usage);
     }
 }
\ No newline at end of file
@@ -51,6 +51,7 @@ public class Settings extends JDialog {
     private BiFunction<String, JComboBox<String>, JPanel> createOption;
     private JComboBox<String> localeCombo;
     private JComboBox<String> timeZoneCombo;
+    private JComboBox<String> libraryPathCombo;
 
     // Buttons
     private JPanel buttonPanel;
@@ -104,6 +105,9 @@ public class Settings extends JDialog {
         freemarkerPanel = new JPanel();
         localeCombo = new JComboBox<>(new String[]{"en_US", "es_CO", "fr_FR"});
         timeZoneCombo = new JComboBox<>(new String[]{"America/Los_Angeles", "UTC"});
+        libraryPathCombo = new JComboBox<>();
+        libraryPathCombo.setEditable(true);
+        libraryPathCombo.setToolTipText("Directories for <#include> and <#import>, separated by '" + java.io.File.pathSeparator + "'");
 
         // Buttons
         buttonPanel = new JPanel(new FlowLayout(FlowLayout.CENTER));
@@ -145,6 +149,9 @@ public class Settings extends JDialog {
         freemarkerPanel.add(createOption.apply("Locale:", localeCombo));
         freemarkerPanel.add(Box.createVerticalStrut(5));
         freemarkerPanel.add(createOption.apply("Time zone:", timeZoneCombo));
+        freemarkerPanel.add(Box.createVerticalStrut(5));
+        libraryPathCombo.setSelectedItem(props.getProperty(SettingsSingleton.FREEMARKER_LIBRARY_PATH, ""));
+        freemarkerPanel.add(createOption.apply("Library path:", libraryPathCombo));
     }
 
     private void addComponents() {
@@ -217,6 +224,8 @@ public class Settings extends JDialog {
         Properties props = loadProperties(PROPERTIES_FILE, defaultAppProperties());
         props.setProperty(SettingsSingleton.FREEMARKER_LOCALE, (String) localeCombo.getSelectedItem());
         props.setProperty(SettingsSingleton.FREEMARKER_TIME_ZONE, (String) timeZoneCombo.getSelectedItem());
+        Object libraryPath = libraryPathCombo.getEditor().getItem();
+        props.setProperty(SettingsSingleton.FREEMARKER_LIBRARY_PATH, libraryPath == null ? "" : libraryPath.toString().trim());
         props.setProperty(SettingsSingleton.APP_THEME, (String) themeCombo.getSelectedItem());
         String selectedDisplay = (String) rsyntaxThemeCombo.getSelectedItem();
         String fileName = THEME_DISPLAY_TO_FILE.get(selectedDisplay);
@@ -233,6 +242,7 @@ public class Settings extends JDialog {
 
         localeCombo.setSelectedItem(props.getProperty(SettingsSingleton.FREEMARKER_LOCALE));
         timeZoneCombo.setSelectedItem(props.getProperty(SettingsSingleton.FREEMARKER_TIME_ZONE));
+        libraryPathCombo.setSelectedItem(props.getProperty(SettingsSingleton.FREEMARKER_LIBRARY_PATH, ""));
         themeCombo.setSelectedItem(props.getProperty(SettingsSingleton.APP_THEME));
         String fileName = props.getProperty(SettingsSingleton.RSYNTAX_THEME, "idea.xml");
         String displayName = THEME_FILE_TO_DISPLAY.getOrDefault(fileName, "IDEA");
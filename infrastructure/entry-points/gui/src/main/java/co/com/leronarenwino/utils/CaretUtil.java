@@ -32,4 +32,9 @@ public class CaretUtil {
             label.setText("?:?");
         }
     }
+
+    // Skips the line lookup, for documents too large to keep line information cheap
+    public static void updateCaretOffset(RSyntaxTextArea textArea, JLabel label) {
+        label.setText("@" + textArea.getCaretPosition());
+    }
 }
\ No newline at end of file
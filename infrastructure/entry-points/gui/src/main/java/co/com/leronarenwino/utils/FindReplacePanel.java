@@ -18,9 +18,15 @@
 package co.com.leronarenwino.utils;
 
 import org.fife.ui.rsyntaxtextarea.RSyntaxTextArea;
+import utils.SettingsSingleton;
 
 import javax.swing.*;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import javax.swing.text.Segment;
 import java.awt.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 public class FindReplacePanel extends JPanel {
     private final RSyntaxTextArea area;
@@ -31,12 +37,26 @@ public class FindReplacePanel extends JPanel {
     private final JCheckBox regexCB;
     private final JCheckBox matchCaseCB;
     private final JLabel matchInfoLabel;
+    // Time an edit may spend updating regex matches on the EDT before a background search takes over
+    private static final long INCREMENTAL_BUDGET_NANOS = 20_000_000L;
+    private static final int RESTART_DELAY_MS = 200;
     private boolean replaceMode = false;
     private int currentMatchIndex = 0;
-    private java.util.List<int[]> matches = java.util.Collections.emptyList();
+    private final MatchIndex matches = new MatchIndex();
+    private final VisibleMatchHighlighter markAll;
+    // Set when the area changed while the panel was hidden; the index is rebuilt when shown again
+    private boolean matchesStale = true;
+    // Full searches run in the background; a newer query or an edit cancels the running one
+    private MatchSearchWorker searchWorker;
+    private boolean searchTimedOut;
+    private boolean replacingAll;
+    private final Timer restartSearchTimer;
 
     public FindReplacePanel(RSyntaxTextArea area) {
         this.area = area;
+        this.markAll = new VisibleMatchHighlighter(area, matches);
+        restartSearchTimer = new Timer(RESTART_DELAY_MS, e -> updateMatches());
+        restartSearchTimer.setRepeats(false);
         setLayout(new BorderLayout());
         setBorder(BorderFactory.createMatteBorder(0, 0, 1, 0, Color.LIGHT_GRAY));
         setBackground(UIManager.getColor("Panel.background"));
@@ -118,7 +138,31 @@ public class FindReplacePanel extends JPanel {
             }
         };
         searchField.getDocument().addDocumentListener(docListener);
-        area.getDocument().addDocumentListener(docListener);
+        // Edits in the area only re-scan the text around them
+        javax.swing.event.DocumentListener areaListener = new javax.swing.event.DocumentListener() {
+            public void insertUpdate(javax.swing.event.DocumentEvent e) {
+                areaChanged(e);
+            }
+
+            public void removeUpdate(javax.swing.event.DocumentEvent e) {
+                areaChanged(e);
+            }
+
+            public void changedUpdate(javax.swing.event.DocumentEvent e) {
+                // Attribute changes (highlighting) do not move matches
+            }
+        };
+        area.getDocument().addDocumentListener(areaListener);
+        area.addPropertyChangeListener("document", e -> {
+            if (e.getOldValue() instanceof Document old) {
+                old.removeDocumentListener(areaListener);
+            }
+            if (e.getNewValue() instanceof Document replacement) {
+                replacement.addDocumentListener(areaListener);
+            }
+            matchesStale = true;
+            if (isVisible()) updateMatches();
+        });
         regexCB.addActionListener(e -> updateMatches());
         matchCaseCB.addActionListener(e -> updateMatches());
 
@@ -184,10 +228,14 @@ public class FindReplacePanel extends JPanel {
         setReplaceMode(replace);
         setVisible(true);
         searchField.requestFocusInWindow();
+        markAll.setActive(true);
         updateMatches();
     }
 
     public void hidePanel() {
+        cancelSearch();
+        matchesStale = true;
+        markAll.setActive(false);
         setVisible(false);
         area.requestFocusInWindow();
     }
@@ -218,20 +266,89 @@ public class FindReplacePanel extends JPanel {
     }
 
     private void updateMatches() {
-        String search = searchField.getText();
-        String text = area.getText();
-        boolean matchCase = matchCaseCB.isSelected();
-        boolean regex = regexCB.isSelected();
-        matches = getAllMatchesUtil(text, search, matchCase, regex);
+        cancelSearch();
+        matches.setQuery(searchField.getText(), matchCaseCB.isSelected(), regexCB.isSelected());
+        matches.setRegexWindow(SettingsSingleton.getFindRegexWindow());
+        matches.clear();
+        searchTimedOut = false;
+        matchesStale = true;
+        if (matches.getSearch().isEmpty() || area.getDocument().getLength() == 0
+                || (matches.isRegex() && matches.getPattern() == null)) {
+            matchesStale = false;
+            showMatchInfo();
+            return;
+        }
+        MatchSearchWorker worker = new MatchSearchWorker(area.getText(), matches,
+                SettingsSingleton.getFindTimeoutMillis(), this::showMatchInfo, this::searchDone);
+        searchWorker = worker;
+        showMatchInfo();
+        worker.execute();
+    }
+
+    private void searchDone(MatchSearchWorker.Outcome outcome) {
+        searchWorker = null;
+        matchesStale = false;
+        searchTimedOut = outcome == MatchSearchWorker.Outcome.TIMED_OUT;
+        showMatchInfo();
+    }
+
+    private void cancelSearch() {
+        restartSearchTimer.stop();
+        if (searchWorker != null) {
+            searchWorker.abandon();
+            searchWorker = null;
+        }
+    }
+
+    private void areaChanged(javax.swing.event.DocumentEvent e) {
+        if (replacingAll) return;
+        if (!isVisible()) {
+            cancelSearch();
+            matchesStale = true;
+            return;
+        }
+        if (searchWorker != null || restartSearchTimer.isRunning()) {
+            // The running search looks at an outdated snapshot; start over once typing pauses
+            cancelSearch();
+            matches.clear();
+            matchesStale = true;
+            restartSearchTimer.restart();
+            showMatchInfo();
+            return;
+        }
+        if (searchTimedOut) {
+            // Partial results of a search that ran out of time; searching again on every keystroke would not finish either
+            return;
+        }
+        if (matchesStale) {
+            updateMatches();
+            return;
+        }
+        try {
+            matches.documentChanged(area.getDocument(), e, System.nanoTime() + INCREMENTAL_BUDGET_NANOS);
+        } catch (InterruptibleCharSequence.SearchAbortedException ex) {
+            updateMatches();
+            return;
+        }
+        showMatchInfo();
+    }
+
+    private void showMatchInfo() {
+        markAll.refresh();
         int total = matches.size();
+        boolean searching = searchWorker != null || restartSearchTimer.isRunning();
+        String suffix = searching ? "+ …" : searchTimedOut ? "+ (timed out)" : "";
         if (total == 0) {
-            matchInfoLabel.setText("0 results");
+            matchInfoLabel.setText(searching ? "…" : searchTimedOut ? "0 (timed out)" : "0 results");
             currentMatchIndex = 0;
         } else {
+            boolean firstResults = currentMatchIndex < 1;
             if (currentMatchIndex < 1 || currentMatchIndex > total) {
                 currentMatchIndex = 1;
             }
-            matchInfoLabel.setText(currentMatchIndex + "/" + total);
+            matchInfoLabel.setText(currentMatchIndex + "/" + total + suffix);
+            // While results stream in, only the first batch moves the selection
+            if (searching && !firstResults) return;
             // Only select and scroll to the current match if the search field is focused (not while editing the main area)
             if (searchField.isFocusOwner()) {
                 scrollToCurrentMatch();
@@ -241,32 +358,32 @@ public class FindReplacePanel extends JPanel {
 
     private void findNext() {
         if (matches.isEmpty()) {
-            updateMatches();
+            if (searchWorker == null) updateMatches();
             return;
         }
         currentMatchIndex = (currentMatchIndex < matches.size()) ? currentMatchIndex + 1 : 1;
         scrollToCurrentMatch();
-        matchInfoLabel.setText(currentMatchIndex + "/" + matches.size());
+        showMatchInfo();
     }
 
     private void findPrev() {
         if (matches.isEmpty()) {
-            updateMatches();
+            if (searchWorker == null) updateMatches();
             return;
         }
         currentMatchIndex = (currentMatchIndex > 1) ? currentMatchIndex - 1 : matches.size();
         scrollToCurrentMatch();
         searchField.requestFocusInWindow();
-        matchInfoLabel.setText(currentMatchIndex + "/" + matches.size());
+        showMatchInfo();
     }
 
     // Utility method to select and scroll to the current match
     private void scrollToCurrentMatch() {
         if (matches.isEmpty() || currentMatchIndex < 1 || currentMatchIndex > matches.size()) return;
-        int[] m = matches.get(currentMatchIndex - 1);
-        area.select(m[0], m[1]);
+        int start = matches.start(currentMatchIndex - 1);
+        area.select(start, matches.end(currentMatchIndex - 1));
         try {
-            Rectangle rect = area.modelToView2D(m[0]).getBounds();
+            Rectangle rect = area.modelToView2D(start).getBounds();
             if (rect != null) {
                 area.scrollRectToVisible(rect);
             }
@@ -275,54 +392,123 @@ public class FindReplacePanel extends JPanel {
 
     private void replace() {
         if (matches.isEmpty() || currentMatchIndex < 1 || currentMatchIndex > matches.size()) return;
-        int[] m = matches.get(currentMatchIndex - 1);
-        area.select(m[0], m[1]);
-        area.replaceSelection(replaceField.getText());
+        area.select(matches.start(currentMatchIndex - 1), matches.end(currentMatchIndex - 1));
         int prevIndex = currentMatchIndex;
-        updateMatches();
+        // The area listener updates the matches around the replaced text
+        area.replaceSelection(replaceField.getText());
         if (!matches.isEmpty()) {
             currentMatchIndex = Math.min(prevIndex, matches.size());
             scrollToCurrentMatch();
-            matchInfoLabel.setText(currentMatchIndex + "/" + matches.size());
+            showMatchInfo();
         }
     }
 
     private void replaceAll() {
-        if (matches.isEmpty()) return;
-        String replacement = replaceField.getText();
-        for (int i = matches.size() - 1; i >= 0; i--) {
-            int[] m = matches.get(i);
-            area.select(m[0], m[1]);
-            area.replaceSelection(replacement);
+        // Replacing only the matches found so far would leave the rest behind
+        if (matches.isEmpty() || searchWorker != null || searchTimedOut) return;
+        int first = matches.start(0);
+        int last = matches.end(matches.size() - 1);
+        String replaced;
+        try {
+            replaced = matches.isRegex() ? replaceAllRegex(first, last) : replaceAllLiteral(first, last);
+        } catch (InterruptibleCharSequence.SearchAbortedException e) {
+            matchInfoLabel.setText("Replace timed out");
+            return;
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            JOptionPane.showMessageDialog(this, "Invalid replacement: " + e.getMessage(),
+                    "Replace All", JOptionPane.ERROR_MESSAGE);
+            return;
+        } catch (BadLocationException e) {
+            return;
+        }
+        // One edit for the whole span: a single undo step, and the matches are searched again once afterwards
+        replacingAll = true;
+        area.beginAtomicEdit();
+        try {
+            area.replaceRange(replaced, first, last);
+        } finally {
+            area.endAtomicEdit();
+            replacingAll = false;
         }
+        area.setCaretPosition(first);
+        currentMatchIndex = 0;
         updateMatches();
     }
 
-    // Extracted utility to avoid code duplication
-    public static java.util.List<int[]> getAllMatchesUtil(String text, String search, boolean matchCase, boolean regex) {
-        java.util.List<int[]> result = new java.util.ArrayList<>();
-        if (search == null || search.isEmpty() || text.isEmpty()) return result;
-        if (regex) {
-            try {
-                java.util.regex.Pattern pattern = matchCase
-                        ? java.util.regex.Pattern.compile(search)
-                        : java.util.regex.Pattern.compile(search, java.util.regex.Pattern.CASE_INSENSITIVE);
-                java.util.regex.Matcher matcher = pattern.matcher(text);
-                while (matcher.find()) {
-                    result.add(new int[]{matcher.start(), matcher.end()});
+    // New content of [first, last) with every indexed match replaced by the literal replacement
+    private String replaceAllLiteral(int first, int last) throws BadLocationException {
+        String replacement = replaceField.getText();
+        Segment text = new Segment();
+        text.setPartialReturn(false);
+        area.getDocument().getText(first, last - first, text);
+        StringBuilder out = new StringBuilder(last - first + matches.size() * Math.max(0, replacement.length() - matches.getSearch().length()));
+        int copied = first;
+        for (int i = 0; i < matches.size(); i++) {
+            int start = matches.start(i);
+            out.append(text, copied - first, start - first).append(replacement);
+            copied = matches.end(i);
+        }
+        return out.toString();
+    }
+
+    // Same for a regex, expanding $n and ${name} group references like Matcher.replaceAll
+    private String replaceAllRegex(int first, int last) throws BadLocationException {
+        // Lookarounds may read past the span, so the matcher sees the whole document; the
+        // segment shares the document's buffer unless the edit gap lies inside it
+        Document document = area.getDocument();
+        Segment text = new Segment();
+        text.setPartialReturn(false);
+        document.getText(0, document.getLength(), text);
+        return replaceAllRegex(new InterruptibleCharSequence(text, null,
+                        System.nanoTime() + Math.max(1, SettingsSingleton.getFindTimeoutMillis()) * 1_000_000L),
+                matches.getPattern(), first, last, replaceField.getText());
+    }
+
+    // New content of [first, last): the text between matches is copied from the span only, up to its end
+    static String replaceAllRegex(CharSequence text, Pattern pattern, int first, int last, String replacement) {
+        Matcher matcher = pattern.matcher(text);
+        matcher.region(first, last);
+        matcher.useTransparentBounds(true);
+        matcher.useAnchoringBounds(false);
+        StringBuilder out = new StringBuilder(last - first);
+        int copied = first;
+        while (matcher.find()) {
+            out.append(text, copied, matcher.start());
+            appendReplacement(out, matcher, replacement);
+            copied = matcher.end();
+        }
+        return out.append(text, copied, last).toString();
+    }
+
+    // Matcher.appendReplacement without its copy of everything before the first match
+    private static void appendReplacement(StringBuilder out, Matcher matcher, String replacement) {
+        int i = 0;
+        while (i < replacement.length()) {
+            char c = replacement.charAt(i++);
+            if (c == '\\') {
+                if (i == replacement.length()) throw new IllegalArgumentException("character to be escaped is missing");
+                out.append(replacement.charAt(i++));
+            } else if (c != '$') {
+                out.append(c);
+            } else if (i == replacement.length()) {
+                throw new IllegalArgumentException("Illegal group reference: group index is missing");
+            } else if (replacement.charAt(i) == '{') {
+                int close = replacement.indexOf('}', i);
+                if (close < 0) throw new IllegalArgumentException("named capturing group is missing trailing '}'");
+                String group = matcher.group(replacement.substring(i + 1, close));
+                if (group != null) out.append(group);
+                i = close + 1;
+            } else {
+                int group = replacement.charAt(i++) - '0';
+                if (group < 0 || group > 9) throw new IllegalArgumentException("Illegal group reference");
+                // Further digits belong to the reference while they name an existing group
+                while (i < replacement.length() && replacement.charAt(i) >= '0' && replacement.charAt(i) <= '9'
+                        && group * 10 + replacement.charAt(i) - '0' <= matcher.groupCount()) {
+                    group = group * 10 + replacement.charAt(i++) - '0';
                 }
-            } catch (Exception e) {
-                // ignore invalid regex
-            }
-        } else {
-            String searchFor = matchCase ? search : search.toLowerCase();
-            String haystack = matchCase ? text : text.toLowerCase();
-            int idx = 0;
-            while ((idx = haystack.indexOf(searchFor, idx)) != -1) {
-                result.add(new int[]{idx, idx + searchFor.length()});
-                idx += (!searchFor.isEmpty() ? searchFor.length() : 1);
+                String value = matcher.group(group);
+                if (value != null) out.append(value);
             }
         }
-        return result;
     }
 }
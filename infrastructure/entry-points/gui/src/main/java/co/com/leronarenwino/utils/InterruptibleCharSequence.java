@@ -0,0 +1,93 @@
+/*
+ * This file is part of FreeMarker JSON/XML Toolkit.
+ *
+ * FreeMarker JSON/XML Toolkit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FreeMarker JSON/XML Toolkit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with FreeMarker JSON/XML Toolkit. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package co.com.leronarenwino.utils;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * Text that aborts whoever is reading it once the search is cancelled or its
+ * deadline has passed.
+ * <p>
+ * {@link java.util.regex.Matcher} cannot be interrupted, but every step of a match
+ * reads characters, so a runaway pattern like {@code (a+)+b} is stopped here.
+ */
+public class InterruptibleCharSequence implements CharSequence {
+
+    // Reads between two checks of the clock and the cancellation flag
+    private static final int CHECK_INTERVAL = 1024;
+
+    private final CharSequence text;
+    private final BooleanSupplier cancelled;
+    private final long deadlineNanos;
+    private int reads;
+
+    // A deadline of 0 means none
+    public InterruptibleCharSequence(CharSequence text, BooleanSupplier cancelled, long deadlineNanos) {
+        this.text = text;
+        this.cancelled = cancelled;
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (++reads >= CHECK_INTERVAL) {
+            reads = 0;
+            check();
+        }
+        return text.charAt(index);
+    }
+
+    @Override
+    public int length() {
+        return text.length();
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return new InterruptibleCharSequence(text.subSequence(start, end), cancelled, deadlineNanos);
+    }
+
+    @Override
+    public String toString() {
+        return text.toString();
+    }
+
+    public void check() {
+        if (cancelled != null && cancelled.getAsBoolean()) {
+            throw new SearchAbortedException(false);
+        }
+        if (deadlineNanos != 0 && System.nanoTime() - deadlineNanos > 0) {
+            throw new SearchAbortedException(true);
+        }
+    }
+
+    public static class SearchAbortedException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private final boolean timedOut;
+
+        public SearchAbortedException(boolean timedOut) {
+            super(timedOut ? "Search timed out" : "Search cancelled", null, false, false);
+            this.timedOut = timedOut;
+        }
+
+        public boolean isTimedOut() {
+            return timedOut;
+        }
+    }
+}
@@ -0,0 +1,401 @@
+/*
+ * This file is part of FreeMarker JSON/XML Toolkit.
+ *
+ * FreeMarker JSON/XML Toolkit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FreeMarker JSON/XML Toolkit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with FreeMarker JSON/XML Toolkit. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package co.com.leronarenwino.utils;
+
+import javax.swing.event.DocumentEvent;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import javax.swing.text.Segment;
+import java.util.Arrays;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Sorted, non-overlapping matches of a search in a document, kept up to date
+ * from document events instead of rescanning the whole text on every edit.
+ * <p>
+ * An edit only rescans the text around it. Literal searches need
+ * {@code search.length() - 1} characters of context on each side and stay exact.
+ * A regular expression can depend on text arbitrarily far away, so its rescan is
+ * bounded by a look-around window; matches longer than the window may be missed
+ * until the next full rebuild.
+ */
+public class MatchIndex {
+
+    public static final int DEFAULT_REGEX_WINDOW = 256;
+
+    // Minimum amount of text fetched from the document per scan step
+    private static final int MIN_CHUNK = 4096;
+
+    private int regexWindow;
+
+    private String search = "";
+    private boolean matchCase;
+    private boolean regex;
+    private Pattern pattern;
+    private boolean validQuery;
+
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    private int size;
+
+    public MatchIndex() {
+        this(DEFAULT_REGEX_WINDOW);
+    }
+
+    public MatchIndex(int regexWindow) {
+        setRegexWindow(regexWindow);
+    }
+
+    // Takes effect for the following edits; matches already indexed are kept
+    public void setRegexWindow(int regexWindow) {
+        this.regexWindow = Math.max(0, regexWindow);
+    }
+
+    // Returns whether the query changed; an invalid regular expression matches nothing
+    public boolean setQuery(String search, boolean matchCase, boolean regex) {
+        String newSearch = search == null ? "" : search;
+        if (newSearch.equals(this.search) && matchCase == this.matchCase && regex == this.regex) {
+            return false;
+        }
+        this.search = newSearch;
+        this.matchCase = matchCase;
+        this.regex = regex;
+        this.pattern = null;
+        this.validQuery = !newSearch.isEmpty();
+        if (regex && validQuery) {
+            try {
+                pattern = matchCase ? Pattern.compile(newSearch) : Pattern.compile(newSearch, Pattern.CASE_INSENSITIVE);
+            } catch (PatternSyntaxException e) {
+                validQuery = false;
+            }
+        }
+        return true;
+    }
+
+    public boolean isRegex() {
+        return regex;
+    }
+
+    public Pattern getPattern() {
+        return pattern;
+    }
+
+    public String getSearch() {
+        return search;
+    }
+
+    public boolean isMatchCase() {
+        return matchCase;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int start(int index) {
+        return starts[index];
+    }
+
+    public int end(int index) {
+        return ends[index];
+    }
+
+    public int[] get(int index) {
+        return new int[]{starts[index], ends[index]};
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    // Index of the first match ending after the offset, or size() if there is none
+    public int indexAfter(int offset) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (ends[mid] <= offset) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    public void rebuild(Document document) {
+        size = 0;
+        int length = document.getLength();
+        if (!validQuery || length == 0) return;
+        Chunk chunk = new Chunk(document, 0);
+        int position = 0;
+        while (position <= length) {
+            if (!find(chunk, position, length + 1)) break;
+            append(chunk.matchStart, chunk.matchEnd);
+            position = resumeAfter(chunk.matchStart, chunk.matchEnd);
+        }
+    }
+
+    // Updates the index after an insert or remove; must run after the document applied the change
+    public void documentChanged(Document document, DocumentEvent event) {
+        documentChanged(document, event, 0);
+    }
+
+    // Same, giving up with a SearchAbortedException once the deadline passes; the index is then left untouched
+    public void documentChanged(Document document, DocumentEvent event, long deadlineNanos) {
+        DocumentEvent.EventType type = event.getType();
+        if (type == DocumentEvent.EventType.CHANGE) return;
+        if (!validQuery || document.getLength() == 0) {
+            size = 0;
+            return;
+        }
+        int offset = event.getOffset();
+        int inserted = type == DocumentEvent.EventType.INSERT ? event.getLength() : 0;
+        int removed = type == DocumentEvent.EventType.REMOVE ? event.getLength() : 0;
+        int delta = inserted - removed;
+        int context = contextLength();
+        int length = document.getLength();
+
+        // Old matches well before the edit stay untouched, those well after it only shift
+        int keptBefore = indexAfter(regex ? offset - regexWindow : offset);
+        int firstAfter = firstStartAtOrAfter(offset + removed + (regex ? regexWindow : 0), keptBefore);
+        // A regular expression may match empty text at the very end of the document
+        int damageEnd = Math.min(length + 1, offset + inserted + (regex ? regexWindow : 0));
+
+        int[] newStarts = new int[8];
+        int[] newEnds = new int[8];
+        int added = 0;
+        // The rescan resumes where the old scan did; nothing could start between there and the
+        // first dropped match, nor anywhere the edit is out of reach
+        int position = keptBefore > 0 ? resumeAfter(starts[keptBefore - 1], ends[keptBefore - 1]) : 0;
+        int firstDropped = keptBefore < size ? starts[keptBefore] : Integer.MAX_VALUE;
+        position = Math.max(position, Math.min(firstDropped, offset - context));
+
+        // How far the dropped matches around the edit made the old scan jump, in new offsets
+        int shadowEnd = 0;
+        for (int i = keptBefore; i < firstAfter; i++) {
+            int end = ends[i];
+            int mappedEnd = end >= offset + removed ? end + delta : (end > offset ? offset + inserted : end);
+            shadowEnd = Math.max(shadowEnd, mappedEnd);
+        }
+
+        Chunk chunk = new Chunk(document, deadlineNanos);
+        int next = firstAfter;
+        while (true) {
+            if (position >= damageEnd) {
+                // The old scan is only trustworthy from a position it did not jump over
+                boolean straddles = shadowEnd > position;
+                int straddleEnd = Math.max(position, shadowEnd);
+                while (next < size && starts[next] + delta < position) {
+                    if (ends[next] + delta > position) {
+                        straddles = true;
+                        straddleEnd = Math.max(straddleEnd, ends[next] + delta);
+                    }
+                    next++;
+                }
+                if (!straddles) break;
+                // The old scan jumped over this position; look for a match before it resumed again
+                if (!find(chunk, position, Math.min(straddleEnd, length + 1))) {
+                    position = straddleEnd;
+                    continue;
+                }
+            } else if (!find(chunk, position, damageEnd)) {
+                position = damageEnd;
+                continue;
+            }
+            if (added == newStarts.length) {
+                newStarts = Arrays.copyOf(newStarts, added * 2);
+                newEnds = Arrays.copyOf(newEnds, added * 2);
+            }
+            newStarts[added] = chunk.matchStart;
+            newEnds[added] = chunk.matchEnd;
+            added++;
+            position = resumeAfter(chunk.matchStart, chunk.matchEnd);
+            if (position > length) break;
+        }
+        if (position > length) {
+            next = size;
+        }
+        splice(keptBefore, next, newStarts, newEnds, added, delta);
+    }
+
+    // Appends a match found past the last one, for searches that run outside the index
+    public void add(int start, int end) {
+        if (size > 0 && start < ends[size - 1]) {
+            throw new IllegalArgumentException("Match " + start + "-" + end + " overlaps the last one");
+        }
+        append(start, end);
+    }
+
+    // Finds the first match starting in [from, startLimit) into chunk.matchStart / chunk.matchEnd
+    private boolean find(Chunk chunk, int from, int startLimit) {
+        int length = chunk.document.getLength();
+        if (from > length || from >= startLimit) return false;
+        if (regex) {
+            int regionEnd = Math.min(length, Math.max(startLimit, from) + regexWindow);
+            if (!chunk.load(Math.max(0, from - regexWindow), regionEnd)) return false;
+            Matcher matcher = chunk.matcher(pattern);
+            matcher.region(from - chunk.base, regionEnd - chunk.base);
+            if (!matcher.find() || matcher.start() + chunk.base >= startLimit) return false;
+            chunk.matchStart = matcher.start() + chunk.base;
+            chunk.matchEnd = matcher.end() + chunk.base;
+            return true;
+        }
+        int needle = search.length();
+        int lastStart = Math.min(startLimit - 1, length - needle);
+        if (lastStart < from) return false;
+        if (!chunk.load(from, lastStart + needle)) return false;
+        int index = indexOf(chunk.text, from - chunk.base, lastStart - chunk.base, search, matchCase);
+        if (index < 0) return false;
+        chunk.matchStart = index + chunk.base;
+        chunk.matchEnd = chunk.matchStart + needle;
+        return true;
+    }
+
+    // First position in [from, lastStart] where the needle occurs, comparing case-insensitively without copying
+    static int indexOf(CharSequence text, int from, int lastStart, String needle, boolean matchCase) {
+        char first = needle.charAt(0);
+        char firstUpper = Character.toUpperCase(first);
+        char firstLower = Character.toLowerCase(first);
+        for (int i = from; i <= lastStart; i++) {
+            char c = text.charAt(i);
+            if (matchCase ? c != first : (c != firstUpper && c != firstLower && !sameIgnoringCase(c, first))) {
+                continue;
+            }
+            if (regionMatches(text, i, needle, matchCase)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean regionMatches(CharSequence text, int offset, String needle, boolean matchCase) {
+        for (int j = 1; j < needle.length(); j++) {
+            char a = text.charAt(offset + j);
+            char b = needle.charAt(j);
+            if (a != b && (matchCase || !sameIgnoringCase(a, b))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Same rule as String.regionMatches(true, ...)
+    private static boolean sameIgnoringCase(char a, char b) {
+        char upperA = Character.toUpperCase(a);
+        char upperB = Character.toUpperCase(b);
+        return upperA == upperB || Character.toLowerCase(upperA) == Character.toLowerCase(upperB);
+    }
+
+    private int contextLength() {
+        return regex ? regexWindow : Math.max(0, search.length() - 1);
+    }
+
+    // Where the next search starts after a match; an empty match moves one character forward like Matcher.find()
+    private static int resumeAfter(int start, int end) {
+        return end > start ? end : end + 1;
+    }
+
+    private int firstStartAtOrAfter(int offset, int from) {
+        int low = from;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (starts[mid] < offset) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    private void append(int start, int end) {
+        ensureCapacity(size + 1);
+        starts[size] = start;
+        ends[size] = end;
+        size++;
+    }
+
+    // Replaces old matches [from, to) with the rescanned ones and shifts the rest by delta
+    private void splice(int from, int to, int[] newStarts, int[] newEnds, int added, int delta) {
+        int tail = size - to;
+        int newSize = from + added + tail;
+        ensureCapacity(newSize);
+        System.arraycopy(starts, to, starts, from + added, tail);
+        System.arraycopy(ends, to, ends, from + added, tail);
+        System.arraycopy(newStarts, 0, starts, from, added);
+        System.arraycopy(newEnds, 0, ends, from, added);
+        if (delta != 0) {
+            for (int i = from + added; i < newSize; i++) {
+                starts[i] += delta;
+                ends[i] += delta;
+            }
+        }
+        size = newSize;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > starts.length) {
+            int newCapacity = Math.max(capacity, starts.length * 2);
+            starts = Arrays.copyOf(starts, newCapacity);
+            ends = Arrays.copyOf(ends, newCapacity);
+        }
+    }
+
+    // A window of document text, fetched again only when a scan step needs text outside it
+    private static final class Chunk {
+        private final Document document;
+        private final long deadlineNanos;
+        private final Segment text = new Segment();
+        private int base = -1;
+        private int matchStart;
+        private int matchEnd;
+        private Matcher matcher;
+
+        private Chunk(Document document, long deadlineNanos) {
+            this.document = document;
+            this.deadlineNanos = deadlineNanos;
+            text.setPartialReturn(false);
+        }
+
+        private boolean load(int from, int to) {
+            if (base >= 0 && from >= base && to <= base + text.length()) return true;
+            int length = document.getLength();
+            int end = Math.min(length, Math.max(to, from + MIN_CHUNK));
+            try {
+                document.getText(from, end - from, text);
+                base = from;
+                matcher = null;
+                return true;
+            } catch (BadLocationException e) {
+                return false;
+            }
+        }
+
+        private Matcher matcher(Pattern pattern) {
+            if (matcher == null) {
+                matcher = pattern.matcher(deadlineNanos == 0 ? text
+                        : new InterruptibleCharSequence(text, null, deadlineNanos));
+                matcher.useTransparentBounds(true);
+                matcher.useAnchoringBounds(false);
+            }
+            return matcher;
+        }
+    }
+}
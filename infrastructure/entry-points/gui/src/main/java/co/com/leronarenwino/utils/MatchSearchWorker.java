@@ -0,0 +1,120 @@
+/*
+ * This file is part of FreeMarker JSON/XML Toolkit.
+ *
+ * FreeMarker JSON/XML Toolkit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FreeMarker JSON/XML Toolkit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with FreeMarker JSON/XML Toolkit. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package co.com.leronarenwino.utils;
+
+import javax.swing.*;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+
+/**
+ * Fills a {@link MatchIndex} from a snapshot of the text off the EDT, handing the
+ * matches over in batches as they are found.
+ * <p>
+ * The text is read through an {@link InterruptibleCharSequence}, so cancelling the
+ * worker or reaching the deadline stops even a catastrophically backtracking regex.
+ */
+class MatchSearchWorker extends SwingWorker<MatchSearchWorker.Outcome, int[]> {
+
+    enum Outcome {COMPLETED, TIMED_OUT, CANCELLED}
+
+    // How often cancellation and the deadline are checked while matches keep coming
+    private static final long CHECK_INTERVAL_NANOS = 100_000_000L;
+
+    private final String text;
+    private final MatchIndex target;
+    private final long deadlineNanos;
+    private final Runnable onProgress;
+    private final Consumer<Outcome> onDone;
+    // Only touched on the EDT; a worker that already finished in the background still delivers unless abandoned
+    private boolean abandoned;
+
+    // The index must already hold the query and be empty
+    MatchSearchWorker(String text, MatchIndex target, long timeoutMillis, Runnable onProgress, Consumer<Outcome> onDone) {
+        this.text = text;
+        this.target = target;
+        this.deadlineNanos = timeoutMillis > 0 ? System.nanoTime() + timeoutMillis * 1_000_000L : 0;
+        this.onProgress = onProgress;
+        this.onDone = onDone;
+    }
+
+    // Stops the search and drops whatever it has not delivered yet
+    void abandon() {
+        abandoned = true;
+        cancel(true);
+    }
+
+    @Override
+    protected Outcome doInBackground() {
+        InterruptibleCharSequence chars = new InterruptibleCharSequence(text, this::isCancelled, deadlineNanos);
+        long lastCheck = System.nanoTime();
+        try {
+            if (target.isRegex()) {
+                Matcher matcher = target.getPattern().matcher(chars);
+                while (matcher.find()) {
+                    publish(new int[]{matcher.start(), matcher.end()});
+                    lastCheck = checkIfDue(lastCheck);
+                }
+            } else {
+                String search = target.getSearch();
+                int lastStart = text.length() - search.length();
+                int index = 0;
+                while ((index = MatchIndex.indexOf(chars, index, lastStart, search, target.isMatchCase())) != -1) {
+                    publish(new int[]{index, index + search.length()});
+                    index += search.length();
+                    lastCheck = checkIfDue(lastCheck);
+                }
+            }
+            return Outcome.COMPLETED;
+        } catch (InterruptibleCharSequence.SearchAbortedException e) {
+            return e.isTimedOut() ? Outcome.TIMED_OUT : Outcome.CANCELLED;
+        }
+    }
+
+    // A literal search that keeps finding matches reads few characters per match, so check here too
+    private long checkIfDue(long lastCheck) {
+        long now = System.nanoTime();
+        if (now - lastCheck < CHECK_INTERVAL_NANOS) return lastCheck;
+        if (isCancelled()) throw new InterruptibleCharSequence.SearchAbortedException(false);
+        if (deadlineNanos != 0 && now - deadlineNanos > 0) throw new InterruptibleCharSequence.SearchAbortedException(true);
+        return now;
+    }
+
+    @Override
+    protected void process(List<int[]> found) {
+        if (abandoned) return;
+        for (int[] match : found) {
+            target.add(match[0], match[1]);
+        }
+        onProgress.run();
+    }
+
+    @Override
+    protected void done() {
+        if (abandoned || isCancelled()) return;
+        try {
+            onDone.accept(get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // A search that failed keeps the matches found so far, like one that timed out
+            onDone.accept(Outcome.TIMED_OUT);
+        }
+    }
+}
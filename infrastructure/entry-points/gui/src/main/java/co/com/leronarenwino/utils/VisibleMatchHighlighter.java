@@ -0,0 +1,97 @@
+/*
+ * This file is part of FreeMarker JSON/XML Toolkit.
+ *
+ * FreeMarker JSON/XML Toolkit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FreeMarker JSON/XML Toolkit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with FreeMarker JSON/XML Toolkit. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package co.com.leronarenwino.utils;
+
+import org.fife.ui.rsyntaxtextarea.DocumentRange;
+import org.fife.ui.rsyntaxtextarea.RSyntaxTextArea;
+
+import javax.swing.*;
+import javax.swing.event.ChangeListener;
+import javax.swing.text.BadLocationException;
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Marks the matches of a {@link MatchIndex} that are inside the visible part of the
+ * text area, and marks them again as the viewport scrolls or resizes.
+ * <p>
+ * Only the visible range is looked up in the index, so the cost depends on the
+ * size of the screen rather than on the number of matches.
+ */
+public class VisibleMatchHighlighter {
+
+    // Guards a single very long line, where the visible range can span the whole document
+    private static final int MAX_MARKS = 1000;
+
+    private final RSyntaxTextArea area;
+    private final MatchIndex matches;
+    private final ChangeListener viewportListener = e -> refresh();
+    private JViewport viewport;
+    private boolean active;
+
+    public VisibleMatchHighlighter(RSyntaxTextArea area, MatchIndex matches) {
+        this.area = area;
+        this.matches = matches;
+        bindViewport();
+        area.addPropertyChangeListener("ancestor", e -> bindViewport());
+    }
+
+    private void bindViewport() {
+        JViewport current = area.getParent() instanceof JViewport parent ? parent : null;
+        if (current == viewport) return;
+        if (viewport != null) {
+            viewport.removeChangeListener(viewportListener);
+        }
+        viewport = current;
+        if (viewport != null) {
+            viewport.addChangeListener(viewportListener);
+        }
+    }
+
+    public void setActive(boolean active) {
+        this.active = active;
+        refresh();
+    }
+
+    public void refresh() {
+        if (!active || matches.isEmpty()) {
+            area.clearMarkAllHighlights();
+            return;
+        }
+        Rectangle visible = area.getVisibleRect();
+        if (visible.isEmpty()) return;
+        int from;
+        int to;
+        try {
+            int top = area.viewToModel2D(new Point(0, visible.y));
+            int bottom = area.viewToModel2D(new Point(0, visible.y + visible.height));
+            from = area.getLineStartOffset(area.getLineOfOffset(Math.max(0, top)));
+            to = area.getLineEndOffset(area.getLineOfOffset(Math.max(0, bottom)));
+        } catch (BadLocationException e) {
+            return;
+        }
+        List<DocumentRange> ranges = new ArrayList<>();
+        for (int i = matches.indexAfter(from); i < matches.size() && matches.start(i) < to && ranges.size() < MAX_MARKS; i++) {
+            if (matches.end(i) > matches.start(i)) {
+                ranges.add(new DocumentRange(matches.start(i), matches.end(i)));
+            }
+        }
+        area.markAll(ranges);
+    }
+}
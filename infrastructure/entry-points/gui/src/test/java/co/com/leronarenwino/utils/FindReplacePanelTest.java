@@ -0,0 +1,74 @@
+/*
+ * This file is part of FreeMarker JSON/XML Toolkit.
+ *
+ * FreeMarker JSON/XML Toolkit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FreeMarker JSON/XML Toolkit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with FreeMarker JSON/XML Toolkit. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package co.com.leronarenwino.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class FindReplacePanelTest {
+
+    private static String replaceSpan(String text, String regex, int first, int last, String replacement) {
+        return FindReplacePanel.replaceAllRegex(text, Pattern.compile(regex), first, last, replacement);
+    }
+
+    @Test
+    void keepsTextAfterTheLastMatchOfTheSpan() {
+        assertEquals("#1 #2 xyz", replaceSpan("a1 b2 xyz", "[ab]", 0, 9, "#"));
+    }
+
+    @Test
+    void returnsOnlyTheSpan() {
+        String text = "head a1 b2 tail";
+        String span = replaceSpan(text, "[ab](\\d)", 5, 12, "<$1>");
+        assertEquals("<1> <2> t", span);
+        assertEquals("head <1> <2> tail", text.substring(0, 5) + span + text.substring(12));
+    }
+
+    @Test
+    void spanWithoutMatchesIsUnchanged() {
+        assertEquals("xyz", replaceSpan("abc xyz", "q", 4, 7, "#"));
+    }
+
+    @Test
+    void lookaroundsSeeTextOutsideTheSpan() {
+        assertEquals("#b", replaceSpan("aab", "(?<=a)a", 1, 3, "#"));
+        assertEquals("#", replaceSpan("ab", "a(?=b)", 0, 1, "#"));
+    }
+
+    @Test
+    void expandsReplacementsLikeMatcher() {
+        String text = "k1=v1; k2=v2; k3=";
+        String regex = "(?<key>k\\d)=(v\\d)?";
+        for (String replacement : new String[]{"$2:$1", "${key}", "\\$1", "$10", "[$2]", "\\\\", "x$0y"}) {
+            assertEquals(Pattern.compile(regex).matcher(text).replaceAll(replacement),
+                    replaceSpan(text, regex, 0, text.length(), replacement), replacement);
+        }
+    }
+
+    @Test
+    void rejectsReferencesLikeMatcher() {
+        assertThrows(IndexOutOfBoundsException.class, () -> replaceSpan("ab", "a", 0, 2, "$3"));
+        assertThrows(IllegalArgumentException.class, () -> replaceSpan("ab", "a", 0, 2, "${none}"));
+        assertThrows(IllegalArgumentException.class, () -> replaceSpan("ab", "a", 0, 2, "$"));
+        assertThrows(IllegalArgumentException.class, () -> replaceSpan("ab", "a", 0, 2, "x\\"));
+    }
+}
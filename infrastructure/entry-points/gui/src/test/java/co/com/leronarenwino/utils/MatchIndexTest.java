@@ -0,0 +1,130 @@
+/*
+ * This file is part of FreeMarker JSON/XML Toolkit.
+ *
+ * FreeMarker JSON/XML Toolkit is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * FreeMarker JSON/XML Toolkit is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with FreeMarker JSON/XML Toolkit. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package co.com.leronarenwino.utils;
+
+import org.junit.jupiter.api.Test;
+
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.PlainDocument;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MatchIndexTest {
+
+    private static final String ALPHABET = "aAbB c\n";
+
+    // Matches a fresh search of the whole text would find, as start-end pairs
+    private static List<String> rescan(String text, String search, boolean matchCase, boolean regex) {
+        List<String> matches = new ArrayList<>();
+        if (regex) {
+            Matcher matcher = Pattern.compile(search, matchCase ? 0 : Pattern.CASE_INSENSITIVE).matcher(text);
+            while (matcher.find()) matches.add(matcher.start() + "-" + matcher.end());
+        } else {
+            int from = 0;
+            while ((from = MatchIndex.indexOf(text, from, text.length() - search.length(), search, matchCase)) >= 0) {
+                matches.add(from + "-" + (from + search.length()));
+                from += search.length();
+            }
+        }
+        return matches;
+    }
+
+    private static List<String> matches(MatchIndex index) {
+        List<String> matches = new ArrayList<>(index.size());
+        for (int i = 0; i < index.size(); i++) matches.add(index.start(i) + "-" + index.end(i));
+        return matches;
+    }
+
+    // Random inserts and removals, each checked against a full rescan of the text it leaves
+    private static void checkEdits(String search, boolean matchCase, boolean regex) throws BadLocationException {
+        Random random = new Random(search.hashCode());
+        PlainDocument document = new PlainDocument();
+        MatchIndex index = new MatchIndex();
+        index.setQuery(search, matchCase, regex);
+        document.addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                index.documentChanged(document, e);
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                index.documentChanged(document, e);
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+            }
+        });
+        for (int edit = 0; edit < 2000; edit++) {
+            int length = document.getLength();
+            if (length > 0 && (length > 400 || random.nextInt(3) == 0)) {
+                int offset = random.nextInt(length);
+                document.remove(offset, 1 + random.nextInt(Math.min(8, length - offset)));
+            } else {
+                StringBuilder text = new StringBuilder();
+                for (int i = random.nextInt(6); i >= 0; i--) {
+                    text.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+                }
+                document.insertString(random.nextInt(length + 1), text.toString(), null);
+            }
+            String text = document.getText(0, document.getLength());
+            assertEquals(rescan(text, search, matchCase, regex), matches(index),
+                    "after edit " + edit + " of \"" + search + "\" in \"" + text + "\"");
+        }
+    }
+
+    @Test
+    void literalSearchMatchesARescan() throws BadLocationException {
+        checkEdits("a", true, false);
+        checkEdits("aa", true, false);
+        checkEdits("aba", true, false);
+        checkEdits("Ab", false, false);
+    }
+
+    @Test
+    void regexSearchMatchesARescan() throws BadLocationException {
+        checkEdits("a+b", true, true);
+        checkEdits("a+b", false, true);
+        checkEdits("\\bab", true, true);
+        checkEdits("a(?=b)", true, true);
+        checkEdits("b*", true, true);
+        checkEdits("[ab]{2,3}", false, true);
+    }
+
+    @Test
+    void rebuildMatchesARescan() throws BadLocationException {
+        PlainDocument document = new PlainDocument();
+        document.insertString(0, "abab ABAB\naaab", null);
+        MatchIndex index = new MatchIndex();
+        index.setQuery("ab", false, false);
+        index.rebuild(document);
+        assertEquals(rescan("abab ABAB\naaab", "ab", false, false), matches(index));
+        assertEquals(1, index.indexAfter(3));
+        index.setQuery("(", true, true);
+        index.rebuild(document);
+        assertEquals(0, index.size());
+    }
+}
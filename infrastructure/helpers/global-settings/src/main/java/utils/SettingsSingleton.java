@@ -47,6 +47,46 @@ public class SettingsSingleton {
     private static final boolean DEFAULT_EXPECTED_FIELDS_VISIBLE = true;
     private static boolean expectedFieldsVisible = DEFAULT_EXPECTED_FIELDS_VISIBLE;
 
+    // Directories searched by <#include> and <#import>, separated by the platform path separator
+    public static final String FREEMARKER_LIBRARY_PATH = "library_path";
+    private static final String DEFAULT_LIBRARY_PATH = "";
+    private static String libraryPath = DEFAULT_LIBRARY_PATH;
+
+    // Optional memoization of rendered outputs
+    public static final String RENDER_CACHE_ENABLED = "render_cache_enabled";
+    public static final String RENDER_CACHE_MAX_MB = "render_cache_max_mb";
+    public static final String RENDER_CACHE_TTL_SECONDS = "render_cache_ttl_seconds";
+    private static final boolean DEFAULT_RENDER_CACHE_ENABLED = false;
+    private static final long DEFAULT_RENDER_CACHE_MAX_MB = 64;
+    private static final long DEFAULT_RENDER_CACHE_TTL_SECONDS = 300;
+    private static boolean renderCacheEnabled = DEFAULT_RENDER_CACHE_ENABLED;
+    private static long renderCacheMaxMb = DEFAULT_RENDER_CACHE_MAX_MB;
+    private static long renderCacheTtlSeconds = DEFAULT_RENDER_CACHE_TTL_SECONDS;
+
+    // Macros and functions memoized as pure in every template, besides those marked with a <#-- @pure --> comment
+    public static final String PURE_MACROS = "pure_macros";
+    // Pure calls with scalar arguments also cached across renders, up to this many; 0 caches within a render only
+    public static final String PURE_CACHE_ENTRIES = "pure_cache_entries";
+    private static final String DEFAULT_PURE_MACROS = "";
+    private static final long DEFAULT_PURE_CACHE_ENTRIES = 0;
+    private static String pureMacros = DEFAULT_PURE_MACROS;
+    private static long pureCacheEntries = DEFAULT_PURE_CACHE_ENTRIES;
+
+    // Characters around an edit re-scanned by an incremental regex search
+    public static final String FIND_REGEX_WINDOW = "find_regex_window";
+    private static final long DEFAULT_FIND_REGEX_WINDOW = 256;
+    private static long findRegexWindow = DEFAULT_FIND_REGEX_WINDOW;
+
+    // Longest time a background search may run before showing the matches found so far
+    public static final String FIND_TIMEOUT_MS = "find_timeout_ms";
+    private static final long DEFAULT_FIND_TIMEOUT_MS = 5000;
+    private static long findTimeoutMs = DEFAULT_FIND_TIMEOUT_MS;
+
+    // Editors holding more characters than this turn off syntax highlighting, folding and line numbers
+    public static final String LARGE_DOCUMENT_THRESHOLD = "large_document_threshold_chars";
+    private static final long DEFAULT_LARGE_DOCUMENT_THRESHOLD = 5_000_000;
+    private static long largeDocumentThreshold = DEFAULT_LARGE_DOCUMENT_THRESHOLD;
+
     public static Properties defaultAppProperties() {
         Properties properties = new Properties();
         properties.setProperty(FREEMARKER_LOCALE, DEFAULT_LOCALE);
@@ -54,6 +94,15 @@ public class SettingsSingleton {
         properties.setProperty(APP_THEME, DEFAULT_THEME);
         properties.setProperty(RSYNTAX_THEME, DEFAULT_RSYNTAX_THEME);
         properties.setProperty(EXPECTED_FIELDS_VISIBLE, String.valueOf(DEFAULT_EXPECTED_FIELDS_VISIBLE));
+        properties.setProperty(FREEMARKER_LIBRARY_PATH, DEFAULT_LIBRARY_PATH);
+        properties.setProperty(RENDER_CACHE_ENABLED, String.valueOf(DEFAULT_RENDER_CACHE_ENABLED));
+        properties.setProperty(RENDER_CACHE_MAX_MB, String.valueOf(DEFAULT_RENDER_CACHE_MAX_MB));
+        properties.setProperty(RENDER_CACHE_TTL_SECONDS, String.valueOf(DEFAULT_RENDER_CACHE_TTL_SECONDS));
+        properties.setProperty(PURE_MACROS, DEFAULT_PURE_MACROS);
+        properties.setProperty(PURE_CACHE_ENTRIES, String.valueOf(DEFAULT_PURE_CACHE_ENTRIES));
+        properties.setProperty(FIND_REGEX_WINDOW, String.valueOf(DEFAULT_FIND_REGEX_WINDOW));
+        properties.setProperty(FIND_TIMEOUT_MS, String.valueOf(DEFAULT_FIND_TIMEOUT_MS));
+        properties.setProperty(LARGE_DOCUMENT_THRESHOLD, String.valueOf(DEFAULT_LARGE_DOCUMENT_THRESHOLD));
         return properties;
     }
 
@@ -83,6 +132,24 @@ public class SettingsSingleton {
         theme = properties.getProperty(APP_THEME, DEFAULT_THEME);
         rsyntaxTheme = properties.getProperty(RSYNTAX_THEME, DEFAULT_RSYNTAX_THEME);
         expectedFieldsVisible = Boolean.parseBoolean(properties.getProperty(EXPECTED_FIELDS_VISIBLE, String.valueOf(DEFAULT_EXPECTED_FIELDS_VISIBLE)));
+        libraryPath = properties.getProperty(FREEMARKER_LIBRARY_PATH, DEFAULT_LIBRARY_PATH);
+        renderCacheEnabled = Boolean.parseBoolean(properties.getProperty(RENDER_CACHE_ENABLED, String.valueOf(DEFAULT_RENDER_CACHE_ENABLED)));
+        renderCacheMaxMb = parseLong(properties.getProperty(RENDER_CACHE_MAX_MB), DEFAULT_RENDER_CACHE_MAX_MB);
+        renderCacheTtlSeconds = parseLong(properties.getProperty(RENDER_CACHE_TTL_SECONDS), DEFAULT_RENDER_CACHE_TTL_SECONDS);
+        pureMacros = properties.getProperty(PURE_MACROS, DEFAULT_PURE_MACROS);
+        pureCacheEntries = parseLong(properties.getProperty(PURE_CACHE_ENTRIES), DEFAULT_PURE_CACHE_ENTRIES);
+        findRegexWindow = parseLong(properties.getProperty(FIND_REGEX_WINDOW), DEFAULT_FIND_REGEX_WINDOW);
+        findTimeoutMs = parseLong(properties.getProperty(FIND_TIMEOUT_MS), DEFAULT_FIND_TIMEOUT_MS);
+        largeDocumentThreshold = parseLong(properties.getProperty(LARGE_DOCUMENT_THRESHOLD), DEFAULT_LARGE_DOCUMENT_THRESHOLD);
+    }
+
+    private static long parseLong(String value, long defaultValue) {
+        if (value == null) return defaultValue;
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
     }
 
     public static String getLocale() {
@@ -93,6 +160,42 @@ public class SettingsSingleton {
         return timeZone;
     }
 
+    public static String getLibraryPath() {
+        return libraryPath;
+    }
+
+    public static boolean isRenderCacheEnabled() {
+        return renderCacheEnabled;
+    }
+
+    public static long getRenderCacheMaxMb() {
+        return renderCacheMaxMb;
+    }
+
+    public static long getRenderCacheTtlSeconds() {
+        return renderCacheTtlSeconds;
+    }
+
+    public static String getPureMacros() {
+        return pureMacros;
+    }
+
+    public static int getPureCacheEntries() {
+        return (int) Math.max(0, Math.min(Integer.MAX_VALUE, pureCacheEntries));
+    }
+
+    public static int getFindRegexWindow() {
+        return (int) Math.max(0, Math.min(Integer.MAX_VALUE, findRegexWindow));
+    }
+
+    public static long getFindTimeoutMillis() {
+        return findTimeoutMs;
+    }
+
+    public static long getLargeDocumentThreshold() {
+        return largeDocumentThreshold;
+    }
+
     public static boolean isExpectedFieldsVisible() {
         return expectedFieldsVisible;
     }